@@ -0,0 +1,167 @@
+import java.util.Calendar;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+/**
+ * A contact manager whose operations do not block the calling thread.
+ *
+ * Every method mirrors the ContactManager method of the same name and
+ * returns a future that completes with its result, or exceptionally
+ * with the exception the ContactManager method would have thrown.
+ *
+ * @author Stefan E. Mayer
+ * @version 1.0
+ */
+public interface AsyncContactManager extends AutoCloseable {
+    /**
+     * Add a new meeting to be held in the future.
+     *
+     * @param contacts a list of contacts that will participate in the meeting
+     * @param date the date on which the meeting will take place
+     * @return a future of the ID for the meeting
+     * @see ContactManager#addFutureMeeting
+     */
+    CompletableFuture<Integer> addFutureMeeting(Set<Contact> contacts,
+                                                Calendar date);
+
+    /**
+     * Returns the PAST meeting with the requested ID.
+     *
+     * @param id the ID for the meeting
+     * @return a future of the meeting, or of null if there is none
+     * @see ContactManager#getPastMeeting
+     */
+    CompletableFuture<PastMeeting> getPastMeeting(int id);
+
+    /**
+     * Returns the FUTURE meeting with the requested ID.
+     *
+     * @param id the ID for the meeting
+     * @return a future of the meeting, or of null if there is none
+     * @see ContactManager#getFutureMeeting
+     */
+    CompletableFuture<FutureMeeting> getFutureMeeting(int id);
+
+    /**
+     * Returns the meeting with the requested ID.
+     *
+     * @param id the ID for the meeting
+     * @return a future of the meeting, or of null if there is none
+     * @see ContactManager#getMeeting
+     */
+    CompletableFuture<Meeting> getMeeting(int id);
+
+    /**
+     * Returns the list of future meetings scheduled with this contact.
+     *
+     * @param contact one of the user’s contacts
+     * @return a future of the chronologically sorted list of meetings
+     * @see ContactManager#getFutureMeetingList(Contact)
+     */
+    CompletableFuture<List<Meeting>> getFutureMeetingList(Contact contact);
+
+    /**
+     * Returns the list of meetings that are scheduled for, or that took
+     * place on, the specified date.
+     *
+     * @param date the date
+     * @return a future of the chronologically sorted list of meetings
+     * @see ContactManager#getFutureMeetingList(Calendar)
+     */
+    CompletableFuture<List<Meeting>> getFutureMeetingList(Calendar date);
+
+    /**
+     * Returns the list of past meetings in which this contact has participated.
+     *
+     * @param contact one of the user’s contacts
+     * @return a future of the chronologically sorted list of meetings
+     * @see ContactManager#getPastMeetingList
+     */
+    CompletableFuture<List<PastMeeting>> getPastMeetingList(Contact contact);
+
+    /**
+     * Create a new record for a meeting that took place in the past.
+     *
+     * @param contacts a list of participants
+     * @param date the date on which the meeting took place
+     * @param text messages to be added about the meeting.
+     * @return a future that completes when the meeting is added
+     * @see ContactManager#addNewPastMeeting
+     */
+    CompletableFuture<Void> addNewPastMeeting(Set<Contact> contacts,
+                                              Calendar date, String text);
+
+    /**
+     * Add notes to a meeting.
+     *
+     * @param id the ID of the meeting
+     * @param text messages to be added about the meeting.
+     * @return a future that completes when the notes are added
+     * @see ContactManager#addMeetingNotes
+     */
+    CompletableFuture<Void> addMeetingNotes(int id, String text);
+
+    /**
+     * Cancel a meeting.
+     *
+     * @param id the ID of the meeting
+     * @return a future that completes when the meeting is cancelled
+     * @see ContactManager#cancelMeeting
+     */
+    CompletableFuture<Void> cancelMeeting(int id);
+
+    /**
+     * Move a future meeting to a new date and/or new participants.
+     *
+     * @param id the ID of the meeting
+     * @param date the new date of the meeting
+     * @param contacts the new participants
+     * @return a future that completes when the meeting is moved
+     * @see ContactManager#rescheduleMeeting
+     */
+    CompletableFuture<Void> rescheduleMeeting(int id, Calendar date,
+                                              Set<Contact> contacts);
+
+    /**
+     * Create a new contact with the specified name and notes.
+     *
+     * @param name the name of the contact.
+     * @param notes notes to be added about the contact.
+     * @return a future that completes when the contact is added
+     * @see ContactManager#addNewContact
+     */
+    CompletableFuture<Void> addNewContact(String name, String notes);
+
+    /**
+     * Returns a list containing the contacts that correspond to the IDs.
+     *
+     * @param ids an arbitrary number of contact IDs
+     * @return a future of the contacts
+     * @see ContactManager#getContacts(int...)
+     */
+    CompletableFuture<Set<Contact>> getContacts(int... ids);
+
+    /**
+     * Returns a list with the contacts whose name contains that string.
+     *
+     * @param name the string to search for
+     * @return a future of the contacts
+     * @see ContactManager#getContacts(String)
+     */
+    CompletableFuture<Set<Contact>> getContacts(String name);
+
+    /**
+     * Save all data to disk.
+     *
+     * @return a future that completes when the data is saved
+     * @see ContactManager#flush
+     */
+    CompletableFuture<Void> flush();
+
+    /**
+     * Completes all operations already submitted and stops accepting
+     * new ones, which then complete with an IllegalStateException.
+     */
+    @Override
+    void close();
+}
@@ -0,0 +1,150 @@
+import static org.junit.Assert.*;
+import org.junit.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.io.*;
+
+/**
+ * The test class AsyncContactManagerTester.
+ *
+ * @author  Stefan E. Mayer
+ * @version 1.0
+ */
+public class AsyncContactManagerTester {
+    private final static File FILE = new File("async.txt");
+
+    private AsyncContactManager manager;
+
+    /**
+     * Sets up the test fixture.
+     *
+     * Called before every test case method.
+     */
+    @Before
+    public void setUp() {
+        FILE.delete();
+        manager = new RingBufferContactManager(new ContactManagerImpl(FILE),
+                                               8, 4,
+                                               ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Tears down the test fixture.
+     *
+     * Called after every test case method.
+     */
+    @After
+    public void tearDown() {
+        manager.close();
+        manager = null;
+        FILE.delete();
+    }
+
+    /**
+     * Tests if concurrent producers get unique IDs and
+     * all their mutations are applied.
+     */
+    @Test
+    public void testConcurrentWrites() throws Exception {
+        manager.addNewContact("c1", "notes1").get();
+        final Set<Contact> contacts = manager.getContacts(1).get();
+        final Calendar later = new GregorianCalendar();
+        later.add(Calendar.HOUR_OF_DAY, 2);
+        ExecutorService producers = Executors.newFixedThreadPool(4);
+        List<Future<List<Integer>>> results =
+            new ArrayList<Future<List<Integer>>>();
+        for (int p = 0; p < 4; p++) {
+            results.add(producers.submit(new Callable<List<Integer>>() {
+                @Override
+                public List<Integer> call() throws Exception {
+                    List<CompletableFuture<Integer>> futures =
+                        new ArrayList<CompletableFuture<Integer>>();
+                    for (int i = 0; i < 50; i++) {
+                        futures.add(manager.addFutureMeeting(contacts,
+                                                             later));
+                    }
+                    List<Integer> ids = new ArrayList<Integer>();
+                    for (CompletableFuture<Integer> future : futures) {
+                        ids.add(future.get());
+                    }
+                    return ids;
+                }
+            }));
+        }
+        Set<Integer> ids = new HashSet<Integer>();
+        for (Future<List<Integer>> result : results) {
+            ids.addAll(result.get());
+        }
+        producers.shutdown();
+        assertEquals(200, ids.size());
+        Contact c1 = contacts.iterator().next();
+        assertEquals(200, manager.getFutureMeetingList(c1).get().size());
+    }
+
+    /**
+     * Tests if exceptions complete the future exceptionally
+     * without stopping the writer.
+     */
+    @Test
+    public void testFailedMutation() throws Exception {
+        try {
+            manager.addMeetingNotes(1, "notes").get();
+            fail();
+        } catch (ExecutionException expected) {
+            assertTrue(expected.getCause()
+                       instanceof IllegalArgumentException);
+        }
+        manager.addNewContact("c1", "notes1").get();
+        assertEquals(1, manager.getContacts("c").get().size());
+    }
+
+    /**
+     * Tests if an error only fails its own operation, not the writer.
+     */
+    @Test
+    public void testErrorInMutation() throws Exception {
+        manager.close();
+        manager = new RingBufferContactManager(new ContactManagerImpl(FILE) {
+            @Override
+            public void addNewContact(String name, String notes) {
+                if (name.equals("broken")) {
+                    throw new AssertionError("Broken!");
+                }
+                super.addNewContact(name, notes);
+            }
+        }, 8, 4, ForkJoinPool.commonPool());
+        List<CompletableFuture<Void>> added =
+            new ArrayList<CompletableFuture<Void>>();
+        for (int i = 0; i < 20; i++) {
+            added.add(manager.addNewContact(i % 5 == 0 ? "broken" : "c" + i,
+                                            ""));
+        }
+        for (int i = 0; i < 20; i++) {
+            try {
+                added.get(i).get(5, TimeUnit.SECONDS);
+                assertTrue(i % 5 != 0);
+            } catch (ExecutionException expected) {
+                assertTrue(expected.getCause() instanceof AssertionError);
+            }
+        }
+        assertEquals(16, manager.getContacts("c").get().size());
+    }
+
+    /**
+     * Tests if flushed data can be loaded and if a closed
+     * contact manager rejects operations.
+     */
+    @Test
+    public void testFlushAndClose() throws Exception {
+        manager.addNewContact("c1", "notes1");
+        manager.flush().get();
+        assertEquals(1, new ContactManagerImpl(FILE).getContacts("c").size());
+        manager.close();
+        try {
+            manager.addNewContact("c2", "notes2").get();
+            fail();
+        } catch (ExecutionException expected) {
+            assertTrue(expected.getCause() instanceof IllegalStateException);
+        }
+    }
+}
@@ -0,0 +1,264 @@
+import java.util.*;
+/**
+ * Finds the earliest times when all of a set of contacts are free.
+ *
+ * Meetings only have a start date, so every meeting is taken to last
+ * the same configurable time. For every contact the index keeps the
+ * start times of its meetings in a sorted map. As all meetings last
+ * equally long, meetings sorted by start are sorted by end as well, so
+ * the meetings overlapping a time window are a range of that map.
+ *
+ * A search merges the meetings of all contacts after the given time in
+ * start order, with a priority queue holding one cursor per contact,
+ * and collects the gaps between them. It stops as soon as enough slots
+ * are found, so it only reads the meetings before the last slot: the
+ * cost is O(m log c) for m such meetings of c contacts.
+ *
+ * Recurring meetings are not expanded into the maps. Each one takes
+ * part in the merge as another cursor, which computes its occurrences
+ * as the search reads them. As a recurring meeting may never end, a
+ * search gives up SEARCH_YEARS after its start time.
+ *
+ * The index is not thread-safe; searches may run concurrently with
+ * each other but not with changes.
+ *
+ * @author Stefan E. Mayer
+ * @version 1.0
+ */
+public class AvailabilityIndex {
+    /**
+     * The default length of a meeting in minutes.
+     */
+    public static final int DEFAULT_MEETING_MINUTES = 60;
+    /**
+     * The number of years after which a search stops looking for slots.
+     */
+    public static final int SEARCH_YEARS = 10;
+
+    private long meetingMillis;
+    // Per contact ID: start time of meetings -> number of meetings.
+    private Map<Integer, TreeMap<Long, Integer>> busy;
+    // Per contact ID: the recurring meetings of the contact.
+    private Map<Integer, List<RecurringMeeting>> recurring;
+
+    /**
+     * Create a new index taking every meeting to last an hour.
+     */
+    public AvailabilityIndex() {
+        this(DEFAULT_MEETING_MINUTES);
+    }
+
+    /**
+     * Create a new index.
+     *
+     * @param meetingMinutes the length of every meeting in minutes
+     * @throws IllegalArgumentException if the length is not positive
+     */
+    public AvailabilityIndex(int meetingMinutes) {
+        if (meetingMinutes <= 0) {
+            throw new IllegalArgumentException(
+                      "Meeting length must be positive!");
+        }
+        this.meetingMillis = meetingMinutes * 60000L;
+        this.busy = new HashMap<Integer, TreeMap<Long, Integer>>();
+        this.recurring = new HashMap<Integer, List<RecurringMeeting>>();
+    }
+
+    /**
+     * Returns the length of every meeting.
+     *
+     * @return the length in minutes
+     */
+    public int getMeetingMinutes() {
+        return (int)(meetingMillis / 60000);
+    }
+
+    /**
+     * Marks all participants of a meeting as busy.
+     *
+     * @param meeting the meeting
+     */
+    public void add(Meeting meeting) {
+        long start = meeting.getDate().getTimeInMillis();
+        for (Contact contact : meeting.getContacts()) {
+            TreeMap<Long, Integer> starts = busy.get(contact.getId());
+            if (starts == null) {
+                starts = new TreeMap<Long, Integer>();
+                busy.put(contact.getId(), starts);
+            }
+            Integer count = starts.get(start);
+            starts.put(start, count == null ? 1 : count + 1);
+        }
+    }
+
+    /**
+     * Marks all participants of a recurring meeting as busy at every
+     * occurrence that its series does not skip.
+     *
+     * @param series the recurring meeting
+     */
+    public void addSeries(RecurringMeeting series) {
+        for (Contact contact : series.getContacts()) {
+            List<RecurringMeeting> ofContact = recurring.get(contact.getId());
+            if (ofContact == null) {
+                ofContact = new ArrayList<RecurringMeeting>();
+                recurring.put(contact.getId(), ofContact);
+            }
+            ofContact.add(series);
+        }
+    }
+
+    /**
+     * Forgets all meetings of a contact, e.g. because it was deleted.
+     *
+     * @param contact the contact
+     */
+    public void removeContact(Contact contact) {
+        busy.remove(contact.getId());
+        recurring.remove(contact.getId());
+    }
+
+    /**
+     * Marks the participants of a meeting as free again,
+     * e.g. because it was cancelled.
+     *
+     * @param meeting the meeting
+     */
+    public void remove(Meeting meeting) {
+        long start = meeting.getDate().getTimeInMillis();
+        for (Contact contact : meeting.getContacts()) {
+            TreeMap<Long, Integer> starts = busy.get(contact.getId());
+            Integer count = starts == null ? null : starts.get(start);
+            if (count == null) {
+                continue;
+            }
+            if (count > 1) {
+                starts.put(start, count - 1);
+            } else {
+                starts.remove(start);
+            }
+        }
+    }
+
+    /**
+     * Checks if a contact has a meeting at some time.
+     *
+     * @param contact the contact
+     * @param time the time in milliseconds since the epoch
+     * @return true if a meeting of the contact covers the time
+     */
+    public boolean isBusy(Contact contact, long time) {
+        TreeMap<Long, Integer> starts = busy.get(contact.getId());
+        if (starts != null
+            && starts.floorKey(time) != null
+            && starts.floorKey(time) > time - meetingMillis) {
+            return true;
+        }
+        List<RecurringMeeting> ofContact = recurring.get(contact.getId());
+        if (ofContact != null) {
+            for (RecurringMeeting series : ofContact) {
+                Iterator<Long> times = series.times(time - meetingMillis + 1);
+                if (times.hasNext() && times.next() <= time) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the earliest times when none of a set of contacts has a
+     * meeting for the given time. Slots do not overlap; a slot after
+     * another one starts when that one ends or later.
+     *
+     * @param contacts the contacts
+     * @param after the earliest start of a slot
+     * @param minutes the length of a slot in minutes
+     * @param count the number of slots
+     * @return the start times of the slots, in milliseconds since the
+     *         epoch, earliest first; fewer slots if recurring meetings
+     *         leave no more within SEARCH_YEARS
+     * @throws IllegalArgumentException if minutes or count is not positive
+     */
+    public long[] findFreeSlots(Set<Contact> contacts, long after,
+                                int minutes, int count) {
+        if (minutes <= 0 || count <= 0) {
+            throw new IllegalArgumentException(
+                      "Length and number of slots must be positive!");
+        }
+        long length = minutes * 60000L;
+        PriorityQueue<Cursor> cursors = new PriorityQueue<Cursor>();
+        Set<RecurringMeeting> series = new HashSet<RecurringMeeting>();
+        for (Contact contact : contacts) {
+            List<RecurringMeeting> ofContact = recurring.get(contact.getId());
+            if (ofContact != null) {
+                series.addAll(ofContact);
+            }
+            TreeMap<Long, Integer> starts = busy.get(contact.getId());
+            if (starts != null) {
+                // Includes the meeting still running at 'after'.
+                Cursor cursor = new Cursor(starts.tailMap(
+                    after - meetingMillis, false).keySet().iterator());
+                if (cursor.next()) {
+                    cursors.add(cursor);
+                }
+            }
+        }
+        for (RecurringMeeting each : series) {
+            // Each series only once, even if shared by several contacts.
+            Cursor cursor = new Cursor(each.times(after - meetingMillis + 1));
+            if (cursor.next()) {
+                cursors.add(cursor);
+            }
+        }
+
+        long[] slots = new long[count];
+        int found = 0;
+        long free = after;
+        long limit = after + SEARCH_YEARS * 366 * 24 * 3600000L;
+        while (found < count) {
+            if (free > limit) {
+                return Arrays.copyOf(slots, found);
+            }
+            Cursor cursor = cursors.poll();
+            long busyFrom = cursor == null ? Long.MAX_VALUE : cursor.start;
+            while (found < count && free + length <= busyFrom) {
+                slots[found++] = free;
+                free += length;
+            }
+            if (cursor != null) {
+                free = Math.max(free, cursor.start + meetingMillis);
+                if (cursor.next()) {
+                    cursors.add(cursor);
+                }
+            }
+        }
+        return slots;
+    }
+
+    /**
+     * A position in the meetings of one contact, ordered by the start
+     * of the current meeting.
+     */
+    private static class Cursor implements Comparable<Cursor> {
+        private final Iterator<Long> starts;
+        private long start;
+
+        private Cursor(Iterator<Long> starts) {
+            this.starts = starts;
+        }
+
+        private boolean next() {
+            if (!starts.hasNext()) {
+                return false;
+            }
+            start = starts.next();
+            return true;
+        }
+
+        @Override
+        public int compareTo(Cursor other) {
+            return Long.compare(start, other.start);
+        }
+    }
+}
@@ -0,0 +1,145 @@
+import static org.junit.Assert.*;
+import org.junit.*;
+import java.util.*;
+import java.io.*;
+
+/**
+ * The test class AvailabilityIndexTester.
+ *
+ * @author  Stefan E. Mayer
+ * @version 1.0
+ */
+public class AvailabilityIndexTester {
+    private final static File FILE = new File("availability.txt");
+    private final static long HOUR = 3600000L;
+    private final static long T = 1000 * HOUR;
+
+    private AvailabilityIndex index;
+    private Contact alice;
+    private Contact bob;
+    private Contact carol;
+    private int nextId;
+
+    /**
+     * Sets up the test fixture.
+     *
+     * Called before every test case method.
+     */
+    @Before
+    public void setUp() {
+        FILE.delete();
+        index = new AvailabilityIndex(60);
+        alice = new ContactImpl(1, "Alice", "");
+        bob = new ContactImpl(2, "Bob", "");
+        carol = new ContactImpl(3, "Carol", "");
+        // Alice: T+1h..T+2h, T+3h..T+4h; Bob: T+1h30..T+2h30.
+        index.add(meeting(T + HOUR, alice));
+        index.add(meeting(T + 3 * HOUR, alice));
+        index.add(meeting(T + HOUR + HOUR / 2, bob));
+    }
+
+    /**
+     * Tears down the test fixture.
+     *
+     * Called after every test case method.
+     */
+    @After
+    public void tearDown() {
+        index = null;
+        FILE.delete();
+    }
+
+    /**
+     * Tests if the gaps between the meetings of all contacts are found.
+     */
+    @Test
+    public void testFindFreeSlots() {
+        Set<Contact> both = contacts(alice, bob);
+        assertArrayEquals(new long[] {T, T + HOUR / 2,
+                                      T + 2 * HOUR + HOUR / 2, T + 4 * HOUR},
+                          index.findFreeSlots(both, T, 30, 4));
+        assertArrayEquals(new long[] {T, T + 4 * HOUR, T + 5 * HOUR},
+                          index.findFreeSlots(both, T, 60, 3));
+        // A meeting running at the start blocks until it ends.
+        assertArrayEquals(new long[] {T + 2 * HOUR + HOUR / 2},
+                          index.findFreeSlots(both, T + 2 * HOUR, 30, 1));
+        // Contacts without meetings are always free.
+        assertArrayEquals(new long[] {T + 7, T + 7 + HOUR},
+                          index.findFreeSlots(contacts(carol), T + 7, 60, 2));
+    }
+
+    /**
+     * Tests if removed meetings no longer block slots.
+     */
+    @Test
+    public void testRemove() {
+        Meeting meeting = meeting(T, carol);
+        index.add(meeting);
+        index.add(meeting(T, carol));
+        assertTrue(index.isBusy(carol, T + HOUR / 2));
+        index.remove(meeting);
+        assertTrue(index.isBusy(carol, T + HOUR / 2));
+        index.remove(meeting);
+        assertFalse(index.isBusy(carol, T + HOUR / 2));
+        assertFalse(index.isBusy(alice, T + 2 * HOUR));
+    }
+
+    /**
+     * Tests the slots found by the contact manager.
+     */
+    @Test
+    public void testContactManagerFreeSlots() {
+        ContactManagerImpl manager = new ContactManagerImpl(FILE);
+        manager.addNewContact("Alice", "");
+        manager.addNewContact("Bob", "");
+        Calendar start = new GregorianCalendar();
+        start.add(Calendar.YEAR, 1);
+        start.set(Calendar.MILLISECOND, 0);
+        manager.addFutureMeeting(manager.getContacts(1), start);
+        manager.setMeetingMinutes(30);
+        List<Calendar> slots =
+            manager.findFreeSlots(manager.getContacts(1, 2), start, 60, 1);
+        assertEquals(start.getTimeInMillis() + HOUR / 2,
+                     slots.get(0).getTimeInMillis());
+
+        // Meetings added later are taken into account as well.
+        Calendar later = (Calendar)start.clone();
+        later.add(Calendar.MINUTE, 30);
+        manager.addFutureMeeting(manager.getContacts(2), later);
+        slots = manager.findFreeSlots(manager.getContacts(1, 2), start, 60, 1);
+        assertEquals(start.getTimeInMillis() + HOUR,
+                     slots.get(0).getTimeInMillis());
+    }
+
+    /**
+     * Tests if unknown contacts are rejected.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownContact() {
+        ContactManagerImpl manager = new ContactManagerImpl(FILE);
+        manager.findFreeSlots(contacts(alice), new GregorianCalendar(), 60, 1);
+    }
+
+    /**
+     * Helper method that creates a meeting.
+     *
+     * @param start the start in milliseconds since the epoch
+     * @param contacts the participants
+     * @return the meeting
+     */
+    private Meeting meeting(long start, Contact... contacts) {
+        Calendar date = new GregorianCalendar();
+        date.setTimeInMillis(start);
+        return new FutureMeetingImpl(++nextId, contacts(contacts), date);
+    }
+
+    /**
+     * Helper method that creates a set of contacts.
+     *
+     * @param contacts the contacts
+     * @return the set
+     */
+    private static Set<Contact> contacts(Contact... contacts) {
+        return new HashSet<Contact>(Arrays.asList(contacts));
+    }
+}
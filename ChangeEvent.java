@@ -0,0 +1,351 @@
+import java.io.Serializable;
+import java.util.*;
+/**
+ * A change to the contacts or meetings of a contact manager.
+ *
+ * Events carry the changed values themselves (not references to the
+ * contact or meeting objects), so they can be stored, sent to other
+ * processes and applied to a replica. Events published by a ChangeFeed
+ * have a sequence number, starting at 1 and increasing by one with
+ * every event.
+ *
+ * @author Stefan E. Mayer
+ * @version 1.0
+ */
+public class ChangeEvent implements Serializable {
+    /**
+     * The kinds of changes.
+     */
+    public enum Type {
+        /** A new contact; has name and notes. */
+        CONTACT_ADDED,
+        /** New notes of a contact; has notes. */
+        CONTACT_NOTES_CHANGED,
+        /** A new future meeting; has date and contact IDs. */
+        FUTURE_MEETING_ADDED,
+        /** A new past meeting; has date, contact IDs and notes. */
+        PAST_MEETING_ADDED,
+        /** New notes of a meeting, which is now a past meeting. */
+        MEETING_NOTES_ADDED,
+        /** A new recurring meeting; has first date, contact IDs and rule. */
+        RECURRING_MEETING_ADDED,
+        /** A cancelled meeting or occurrence. */
+        MEETING_CANCELLED,
+        /** A meeting moved to a new date; has date and contact IDs. */
+        MEETING_RESCHEDULED,
+        /** A deleted contact. */
+        CONTACT_DELETED,
+        /** A recurring meeting ended early; has end date and new rule. */
+        RECURRING_MEETING_ENDED
+    }
+
+    // Fixed, so primaries and followers built separately understand
+    // each other's streams.
+    private static final long serialVersionUID = -1165587876201849048L;
+
+    private final long sequence;
+    private final Type type;
+    private final int id;
+    private final long timestamp;
+    private final String name;
+    private final String notes;
+    private final long date;
+    private final int[] contactIds;
+    private final RecurrenceRule rule;
+    // The occurrence IDs of a recurring meeting; 0 in events written
+    // before series had ranges.
+    private final int base;
+    private final int reserved;
+
+    private ChangeEvent(long sequence, Type type, int id, long timestamp,
+                        String name, String notes, long date,
+                        int[] contactIds, RecurrenceRule rule) {
+        this(sequence, type, id, timestamp, name, notes, date, contactIds,
+             rule, 0, 0);
+    }
+
+    private ChangeEvent(long sequence, Type type, int id, long timestamp,
+                        String name, String notes, long date,
+                        int[] contactIds, RecurrenceRule rule, int base,
+                        int reserved) {
+        this.sequence = sequence;
+        this.type = type;
+        this.id = id;
+        this.timestamp = timestamp;
+        this.name = name;
+        this.notes = notes;
+        this.date = date;
+        this.contactIds = contactIds;
+        this.rule = rule;
+        this.base = base;
+        this.reserved = reserved;
+    }
+
+    /**
+     * Creates the event of a new contact.
+     *
+     * @param contact the new contact
+     * @return the event, without a sequence number
+     */
+    public static ChangeEvent contactAdded(Contact contact) {
+        return new ChangeEvent(0, Type.CONTACT_ADDED, contact.getId(),
+                               System.currentTimeMillis(), contact.getName(),
+                               contact.getNotes(), 0, null, null);
+    }
+
+    /**
+     * Creates the event of new notes of a contact.
+     *
+     * @param contact the changed contact
+     * @return the event, without a sequence number
+     */
+    public static ChangeEvent contactNotesChanged(Contact contact) {
+        return new ChangeEvent(0, Type.CONTACT_NOTES_CHANGED, contact.getId(),
+                               System.currentTimeMillis(), null,
+                               contact.getNotes(), 0, null, null);
+    }
+
+    /**
+     * Creates the event of a deleted contact.
+     *
+     * @param id the ID of the deleted contact
+     * @return the event, without a sequence number
+     */
+    public static ChangeEvent contactDeleted(int id) {
+        return new ChangeEvent(0, Type.CONTACT_DELETED, id,
+                               System.currentTimeMillis(), null, null, 0,
+                               null, null);
+    }
+
+    /**
+     * Creates the event of a new future or past meeting.
+     *
+     * @param meeting the new meeting
+     * @return the event, without a sequence number
+     */
+    public static ChangeEvent meetingAdded(Meeting meeting) {
+        boolean past = meeting instanceof PastMeeting;
+        return new ChangeEvent(0, past ? Type.PAST_MEETING_ADDED
+                                       : Type.FUTURE_MEETING_ADDED,
+                               meeting.getId(), System.currentTimeMillis(),
+                               null,
+                               past ? ((PastMeeting)meeting).getNotes() : null,
+                               meeting.getDate().getTimeInMillis(),
+                               idsOf(meeting.getContacts()), null);
+    }
+
+    /**
+     * Creates the event of new notes of a meeting.
+     *
+     * @param meeting the changed meeting
+     * @return the event, without a sequence number
+     */
+    public static ChangeEvent meetingNotesAdded(PastMeeting meeting) {
+        return new ChangeEvent(0, Type.MEETING_NOTES_ADDED, meeting.getId(),
+                               System.currentTimeMillis(), null,
+                               meeting.getNotes(), 0, null, null);
+    }
+
+    /**
+     * Creates the event of a cancelled meeting.
+     *
+     * @param meeting the cancelled meeting
+     * @return the event, without a sequence number
+     */
+    public static ChangeEvent meetingCancelled(Meeting meeting) {
+        return new ChangeEvent(0, Type.MEETING_CANCELLED, meeting.getId(),
+                               System.currentTimeMillis(), null, null, 0,
+                               null, null);
+    }
+
+    /**
+     * Creates the event of a meeting moved to a new date or new
+     * participants.
+     *
+     * @param meeting the meeting as rescheduled
+     * @return the event, without a sequence number
+     */
+    public static ChangeEvent meetingRescheduled(Meeting meeting) {
+        return new ChangeEvent(0, Type.MEETING_RESCHEDULED, meeting.getId(),
+                               System.currentTimeMillis(), null, null,
+                               meeting.getDate().getTimeInMillis(),
+                               idsOf(meeting.getContacts()), null);
+    }
+
+    /**
+     * Creates the event of a new recurring meeting. Its ID is the ID
+     * of the series.
+     *
+     * @param series the new series
+     * @return the event, without a sequence number
+     */
+    public static ChangeEvent recurringMeetingAdded(RecurringMeeting series) {
+        return new ChangeEvent(0, Type.RECURRING_MEETING_ADDED,
+                               series.getId(), System.currentTimeMillis(),
+                               null, null,
+                               series.getStart().getTimeInMillis(),
+                               idsOf(series.getContacts()), series.getRule(),
+                               series.getOccurrenceBase(),
+                               series.getReservedOccurrences());
+    }
+
+    /**
+     * Creates the event of a recurring meeting ended early. Its ID is
+     * the ID of the series.
+     *
+     * @param series the series, as ended
+     * @param end the date from which on it has no occurrences
+     * @return the event, without a sequence number
+     */
+    public static ChangeEvent recurringMeetingEnded(RecurringMeeting series,
+                                                    Calendar end) {
+        return new ChangeEvent(0, Type.RECURRING_MEETING_ENDED,
+                               series.getId(), System.currentTimeMillis(),
+                               null, null, end.getTimeInMillis(), null,
+                               series.getRule(), series.getOccurrenceBase(),
+                               series.getReservedOccurrences());
+    }
+
+    /**
+     * Returns a copy of this event with a sequence number.
+     *
+     * @param sequence the sequence number
+     * @return the numbered event
+     */
+    ChangeEvent withSequence(long sequence) {
+        return new ChangeEvent(sequence, type, id, timestamp, name, notes,
+                               date, contactIds, rule, base, reserved);
+    }
+
+    /**
+     * Returns the sequence number of the event.
+     *
+     * @return the sequence number, or 0 if the event was not published
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * Returns the kind of change.
+     *
+     * @return the kind of change
+     */
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * Returns the ID of the changed contact or meeting.
+     *
+     * @return the ID of the changed contact or meeting
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * Returns when the change happened.
+     *
+     * @return the time in milliseconds since the epoch
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * Returns the name of a new contact.
+     *
+     * @return the name, or null for other changes
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the notes of the contact or meeting.
+     *
+     * @return the notes, or null for future meetings
+     */
+    public String getNotes() {
+        return notes;
+    }
+
+    /**
+     * Returns the recurrence rule of a new or ended recurring meeting.
+     *
+     * @return the rule, or null for other changes
+     */
+    public RecurrenceRule getRule() {
+        return rule;
+    }
+
+    /**
+     * Returns the first occurrence ID of a new or ended recurring
+     * meeting.
+     *
+     * @return the first occurrence ID, as a positive number,
+     *         or 0 for other changes
+     */
+    public int getOccurrenceBase() {
+        if (base == 0 && rule != null) {
+            // Written before series had ranges.
+            return RecurringMeeting.legacyBase(id);
+        }
+        return base;
+    }
+
+    /**
+     * Returns the number of occurrence IDs reserved for a new or ended
+     * recurring meeting.
+     *
+     * @return the number of IDs, or 0 for other changes
+     */
+    public int getReservedOccurrences() {
+        if (base == 0 && rule != null) {
+            return RecurringMeeting.MAX_OCCURRENCES;
+        }
+        return reserved;
+    }
+
+    /**
+     * Returns the date of a new meeting, or the end of a recurring
+     * meeting.
+     *
+     * @return the date in milliseconds since the epoch,
+     *         or 0 for other changes
+     */
+    public long getDate() {
+        return date;
+    }
+
+    /**
+     * Returns the IDs of the participants of a new meeting.
+     *
+     * @return the contact IDs, or null for other changes
+     */
+    public int[] getContactIds() {
+        return contactIds == null ? null : contactIds.clone();
+    }
+
+    @Override
+    public String toString() {
+        return "#" + sequence + " " + type + " " + id;
+    }
+
+    /**
+     * Helper method that returns the sorted IDs of a set of contacts.
+     *
+     * @param contacts the contacts
+     * @return the sorted IDs
+     */
+    private static int[] idsOf(Set<Contact> contacts) {
+        int[] ids = new int[contacts.size()];
+        int i = 0;
+        for (Contact contact : contacts) {
+            ids[i++] = contact.getId();
+        }
+        Arrays.sort(ids);
+        return ids;
+    }
+}
@@ -0,0 +1,292 @@
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+/**
+ * A feed of the changes to a contact manager, published to any number
+ * of subscribers through java.util.concurrent.Flow.
+ *
+ * Register the feed as a ChangeListener of a contact manager. Every
+ * change gets the next sequence number and is kept in a bounded log of
+ * the most recent events. Subscribers read from that log at their own
+ * pace: they only receive as many events as they have requested, and a
+ * subscriber may resume after the last sequence number it has seen, so
+ * a consumer that reconnects does not need to reload everything.
+ *
+ * IMPORTANT: Only the most recent events are retained. A subscriber
+ *            that resumes from, or falls behind to, a sequence number
+ *            that is no longer retained receives onError with an
+ *            IllegalStateException and has to resynchronize. Sequence
+ *            numbers start at 1 with every new feed.
+ *
+ * Events are delivered on the executor given to the feed, by default
+ * the common ForkJoin pool; calls to one subscriber never overlap.
+ *
+ * @author Stefan E. Mayer
+ * @version 1.0
+ */
+public class ChangeFeed implements Flow.Publisher<ChangeEvent>,
+                                   ChangeListener {
+    /**
+     * The default number of retained events.
+     */
+    public static final int DEFAULT_RETENTION = 100000;
+
+    private ChangeEvent[] log;
+    private long lastSequence;
+    private boolean closed;
+
+    private Executor executor;
+    private List<FeedSubscription> subscriptions;
+
+    /**
+     * Create a new change feed retaining the default number of events
+     * and delivering them on the common ForkJoin pool.
+     */
+    public ChangeFeed() {
+        this(DEFAULT_RETENTION, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Create a new change feed.
+     *
+     * @param retention the number of retained events
+     * @param executor the executor delivering events to subscribers
+     * @throws IllegalArgumentException if the retention is not positive
+     */
+    public ChangeFeed(int retention, Executor executor) {
+        if (retention <= 0) {
+            throw new IllegalArgumentException("Retention must be positive!");
+        }
+        this.log = new ChangeEvent[retention];
+        this.executor = executor;
+        this.subscriptions = new CopyOnWriteArrayList<FeedSubscription>();
+    }
+
+    /**
+     * Numbers an event, adds it to the log and signals all subscribers.
+     * Events published after the feed was closed are dropped.
+     *
+     * @param event the change
+     */
+    @Override
+    public void changed(ChangeEvent event) {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            lastSequence++;
+            log[(int)(lastSequence % log.length)] =
+                event.withSequence(lastSequence);
+        }
+        for (FeedSubscription subscription : subscriptions) {
+            subscription.signal();
+        }
+    }
+
+    /**
+     * Subscribes to all events published from now on.
+     *
+     * @param subscriber the subscriber
+     */
+    @Override
+    public void subscribe(Flow.Subscriber<? super ChangeEvent> subscriber) {
+        subscribe(subscriber, getLastSequence());
+    }
+
+    /**
+     * Subscribes to all events after the given sequence number,
+     * e.g. the last one a consumer has processed.
+     *
+     * @param subscriber the subscriber
+     * @param afterSequence the last sequence number not to receive,
+     *        0 for all events since the feed was created
+     * @throws NullPointerException if the subscriber is null
+     * @throws IllegalArgumentException if the sequence number is negative
+     *         or was not published yet
+     */
+    public void subscribe(Flow.Subscriber<? super ChangeEvent> subscriber,
+                          long afterSequence) {
+        if (subscriber == null) {
+            throw new NullPointerException("'null' is invalid as parameter!");
+        }
+        if (afterSequence < 0 || afterSequence > getLastSequence()) {
+            throw new IllegalArgumentException("Unknown sequence number!");
+        }
+        FeedSubscription subscription =
+            new FeedSubscription(subscriber, afterSequence);
+        subscriptions.add(subscription);
+        subscriber.onSubscribe(subscription);
+        // Completes the subscription at once if the feed is closed.
+        subscription.signal();
+    }
+
+    /**
+     * Completes all subscriptions once they have received all events.
+     * Events published afterwards are dropped.
+     */
+    public void close() {
+        synchronized (this) {
+            closed = true;
+        }
+        for (FeedSubscription subscription : subscriptions) {
+            subscription.signal();
+        }
+    }
+
+    /**
+     * Returns the sequence number of the last published event.
+     *
+     * @return the last sequence number, or 0 if there is none
+     */
+    public synchronized long getLastSequence() {
+        return lastSequence;
+    }
+
+    /**
+     * Returns the sequence number of the oldest retained event.
+     *
+     * @return the oldest retained sequence number
+     */
+    public synchronized long getFirstRetainedSequence() {
+        return Math.max(1, lastSequence - log.length + 1);
+    }
+
+    /**
+     * Returns the number of active subscriptions.
+     *
+     * @return the number of subscriptions
+     */
+    public int getSubscriberCount() {
+        return subscriptions.size();
+    }
+
+    /**
+     * Helper method that returns the event after a sequence number.
+     *
+     * @param sequence the last sequence number seen
+     * @return the next event, or null if there is none yet
+     * @throws IllegalStateException if the next event is not retained
+     */
+    private synchronized ChangeEvent next(long sequence) {
+        if (sequence >= lastSequence) {
+            return null;
+        }
+        if (sequence + 1 < getFirstRetainedSequence()) {
+            throw new IllegalStateException("Sequence " + (sequence + 1)
+                                            + " is no longer retained");
+        }
+        return log[(int)((sequence + 1) % log.length)];
+    }
+
+    /**
+     * Helper method that checks if a subscriber has seen every event
+     * of a closed feed.
+     *
+     * @param sequence the last sequence number seen
+     * @return true if the subscription can be completed
+     */
+    private synchronized boolean isComplete(long sequence) {
+        return closed && sequence >= lastSequence;
+    }
+
+    /**
+     * A subscription reading the log from its own position.
+     * Delivery runs as a task on the executor; a work counter makes
+     * sure that at most one task per subscription is running.
+     */
+    private class FeedSubscription implements Flow.Subscription, Runnable {
+        private final Flow.Subscriber<? super ChangeEvent> subscriber;
+        private final AtomicLong requested;
+        private final AtomicInteger work;
+        private long position;
+        private volatile boolean done;
+
+        private FeedSubscription(
+                    Flow.Subscriber<? super ChangeEvent> subscriber,
+                    long position) {
+            this.subscriber = subscriber;
+            this.requested = new AtomicLong();
+            this.work = new AtomicInteger();
+            this.position = position;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                finish(new IllegalArgumentException(
+                           "Request must be positive!"));
+                return;
+            }
+            long current;
+            long next;
+            do {
+                current = requested.get();
+                next = current + n < 0 ? Long.MAX_VALUE : current + n;
+            } while (!requested.compareAndSet(current, next));
+            signal();
+        }
+
+        @Override
+        public void cancel() {
+            done = true;
+            subscriptions.remove(this);
+        }
+
+        /**
+         * Schedules delivery unless it is already scheduled or running.
+         */
+        private void signal() {
+            if (work.getAndIncrement() == 0) {
+                try {
+                    executor.execute(this);
+                } catch (RejectedExecutionException rejected) {
+                    work.set(0);
+                    finish(rejected);
+                }
+            }
+        }
+
+        @Override
+        public void run() {
+            int missed = 1;
+            do {
+                while (!done && requested.get() > 0) {
+                    ChangeEvent event;
+                    try {
+                        event = next(position);
+                    } catch (IllegalStateException lost) {
+                        finish(lost);
+                        return;
+                    }
+                    if (event == null) {
+                        break;
+                    }
+                    position = event.getSequence();
+                    requested.decrementAndGet();
+                    try {
+                        subscriber.onNext(event);
+                    } catch (RuntimeException failed) {
+                        cancel();
+                        return;
+                    }
+                }
+                if (!done && isComplete(position)) {
+                    cancel();
+                    subscriber.onComplete();
+                }
+                missed = work.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        /**
+         * Cancels the subscription and reports an error to the subscriber.
+         */
+        private void finish(Throwable error) {
+            if (!done) {
+                cancel();
+                subscriber.onError(error);
+            }
+        }
+    }
+}
@@ -0,0 +1,193 @@
+import static org.junit.Assert.*;
+import org.junit.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.io.*;
+
+/**
+ * The test class ChangeFeedTester.
+ *
+ * @author  Stefan E. Mayer
+ * @version 1.0
+ */
+public class ChangeFeedTester {
+    private final static File FILE = new File("feed.txt");
+    // Delivers events on the calling thread, so tests need not wait.
+    private final static Executor DIRECT = new Executor() {
+        @Override
+        public void execute(Runnable task) {
+            task.run();
+        }
+    };
+
+    private ContactManagerImpl manager;
+    private ChangeFeed feed;
+    private Recorder recorder;
+
+    /**
+     * Sets up the test fixture.
+     *
+     * Called before every test case method.
+     */
+    @Before
+    public void setUp() {
+        FILE.delete();
+        manager = new ContactManagerImpl(FILE);
+        feed = new ChangeFeed(4, DIRECT);
+        manager.addChangeListener(feed);
+        recorder = new Recorder();
+    }
+
+    /**
+     * Tears down the test fixture.
+     *
+     * Called after every test case method.
+     */
+    @After
+    public void tearDown() {
+        manager = null;
+        feed = null;
+        recorder = null;
+        FILE.delete();
+    }
+
+    /**
+     * Tests if every kind of change is published with its sequence number.
+     */
+    @Test
+    public void testEvents() {
+        feed.subscribe(recorder);
+        recorder.subscription.request(Long.MAX_VALUE);
+        manager.addNewContact("c1", "notes1");
+        Contact c1 = manager.getContacts(1).iterator().next();
+        c1.addNotes("new notes");
+        Calendar earlier = new GregorianCalendar();
+        earlier.add(Calendar.HOUR_OF_DAY, -2);
+        manager.addNewPastMeeting(manager.getContacts(1), earlier, "text");
+        manager.addMeetingNotes(1, "more text");
+
+        assertEquals(4, recorder.events.size());
+        assertEquals(ChangeEvent.Type.CONTACT_ADDED,
+                     recorder.events.get(0).getType());
+        assertEquals("c1", recorder.events.get(0).getName());
+        assertEquals("new notes", recorder.events.get(1).getNotes());
+        assertArrayEquals(new int[] {1},
+                          recorder.events.get(2).getContactIds());
+        assertEquals(ChangeEvent.Type.MEETING_NOTES_ADDED,
+                     recorder.events.get(3).getType());
+        for (int i = 0; i < 4; i++) {
+            assertEquals(i + 1, recorder.events.get(i).getSequence());
+        }
+    }
+
+    /**
+     * Tests if subscribers only receive what they requested.
+     */
+    @Test
+    public void testBackpressure() {
+        feed.subscribe(recorder);
+        manager.addNewContact("c1", "notes1");
+        manager.addNewContact("c2", "notes2");
+        assertEquals(0, recorder.events.size());
+        recorder.subscription.request(1);
+        assertEquals(1, recorder.events.size());
+        recorder.subscription.request(5);
+        assertEquals(2, recorder.events.size());
+    }
+
+    /**
+     * Tests if a subscriber can resume after a sequence number,
+     * and gets an error if it is no longer retained.
+     */
+    @Test
+    public void testResume() {
+        for (int i = 1; i <= 5; i++) {
+            manager.addNewContact("c" + i, "notes" + i);
+        }
+        feed.subscribe(recorder, 3);
+        recorder.subscription.request(10);
+        assertEquals(2, recorder.events.size());
+        assertEquals(4, recorder.events.get(0).getSequence());
+
+        Recorder late = new Recorder();
+        feed.subscribe(late, 0);
+        late.subscription.request(10);
+        assertTrue(late.error instanceof IllegalStateException);
+    }
+
+    /**
+     * Tests if closing the feed completes the subscriptions.
+     */
+    @Test
+    public void testClose() {
+        feed.subscribe(recorder);
+        recorder.subscription.request(1);
+        feed.close();
+        assertTrue(recorder.completed);
+        assertEquals(0, feed.getSubscriberCount());
+    }
+
+    /**
+     * Tests if changes after closing the feed are dropped, and if a
+     * failing listener keeps neither the change nor the feed from
+     * happening.
+     */
+    @Test
+    public void testChangesAfterClose() {
+        manager.addChangeListener(new ChangeListener() {
+            @Override
+            public void changed(ChangeEvent event) {
+                throw new IllegalStateException("Listener failed!");
+            }
+        });
+        feed.subscribe(recorder);
+        recorder.subscription.request(10);
+        manager.addNewContact("Alice", "");
+        assertEquals(1, recorder.events.size());
+        feed.close();
+        manager.addNewContact("Bob", "");
+        assertEquals(1, manager.getContacts("Bob").size());
+        assertEquals(1, feed.getLastSequence());
+        assertTrue(recorder.completed);
+    }
+
+    /**
+     * Tests if a subscriber cannot resume after a sequence number that
+     * was not published yet.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testResumeAfterUnpublished() {
+        manager.addNewContact("Alice", "");
+        feed.subscribe(recorder, 2);
+    }
+
+    /**
+     * A subscriber that records everything it receives.
+     */
+    private static class Recorder implements Flow.Subscriber<ChangeEvent> {
+        private Flow.Subscription subscription;
+        private List<ChangeEvent> events = new ArrayList<ChangeEvent>();
+        private Throwable error;
+        private boolean completed;
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+        }
+
+        @Override
+        public void onNext(ChangeEvent event) {
+            events.add(event);
+        }
+
+        @Override
+        public void onError(Throwable error) {
+            this.error = error;
+        }
+
+        @Override
+        public void onComplete() {
+            completed = true;
+        }
+    }
+}
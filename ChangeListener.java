@@ -0,0 +1,21 @@
+/**
+ * A listener notified of every change to the contacts and meetings
+ * of a contact manager.
+ *
+ * IMPORTANT: Listeners are called synchronously by the thread making
+ *            the change, while the contact manager may be locked, so
+ *            they must return quickly and must not call back into the
+ *            contact manager. A ChangeFeed hands events to subscribers
+ *            on other threads.
+ *
+ * @author Stefan E. Mayer
+ * @version 1.0
+ */
+public interface ChangeListener {
+    /**
+     * Called after a contact or meeting was changed.
+     *
+     * @param event the change
+     */
+    void changed(ChangeEvent event);
+}
@@ -0,0 +1,127 @@
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+/**
+ * Removes deleted contacts from the meetings of a contact manager in the
+ * background, see ContactManagerImpl.compactContacts.
+ *
+ * Every so often a daemon thread checks for deleted contacts and, if
+ * there are any, purges them a batch of meetings at a time. It holds
+ * the write lock for one batch only, so queries and changes go on
+ * between batches instead of waiting for the whole pass.
+ *
+ * IMPORTANT: The contact manager must only be used while holding the
+ *            lock given to the compactor, e.g. through a
+ *            SynchronizedContactManager.
+ *
+ * @author Stefan E. Mayer
+ * @version 1.0
+ */
+public class ContactCompactor {
+    /**
+     * The default number of meetings purged while holding the lock.
+     */
+    public static final int DEFAULT_BATCH_SIZE = 1024;
+    /**
+     * The default milliseconds between checks for deleted contacts.
+     */
+    public static final long DEFAULT_PERIOD_MILLIS = 1000;
+
+    private ContactManagerImpl manager;
+    private ReadWriteLock lock;
+    private int batchSize;
+    private ScheduledExecutorService executor;
+    private AtomicLong batches;
+    private volatile boolean closed;
+
+    /**
+     * Create a new compactor with the default batch size and period.
+     *
+     * @param manager the contact manager to compact
+     * @param lock the lock guarding the contact manager
+     */
+    public ContactCompactor(ContactManagerImpl manager, ReadWriteLock lock) {
+        this(manager, lock, DEFAULT_BATCH_SIZE, DEFAULT_PERIOD_MILLIS);
+    }
+
+    /**
+     * Create a new compactor, which starts checking at once.
+     *
+     * @param manager the contact manager to compact
+     * @param lock the lock guarding the contact manager
+     * @param batchSize the number of meetings purged while holding
+     *        the lock
+     * @param periodMillis the milliseconds between checks
+     * @throws IllegalArgumentException if the batch size or the period
+     *         is not positive
+     */
+    public ContactCompactor(ContactManagerImpl manager, ReadWriteLock lock,
+                            int batchSize, long periodMillis) {
+        if (batchSize <= 0 || periodMillis <= 0) {
+            throw new IllegalArgumentException(
+                      "Batch size and period must be positive!");
+        }
+        this.manager = manager;
+        this.lock = lock;
+        this.batchSize = batchSize;
+        this.batches = new AtomicLong();
+        this.executor = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable task) {
+                    Thread thread = new Thread(task, "contact-compactor");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        executor.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                compact();
+            }
+        }, 0, periodMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Returns the number of batches purged so far.
+     *
+     * @return the number of batches
+     */
+    public long getBatchCount() {
+        return batches.get();
+    }
+
+    /**
+     * Stops compacting. A batch in progress is finished.
+     */
+    public void close() {
+        closed = true;
+        executor.shutdown();
+    }
+
+    /**
+     * Helper method that purges batches until no meeting refers to a
+     * deleted contact any more, or the compactor is closed.
+     */
+    private void compact() {
+        boolean done = false;
+        while (!done && !closed) {
+            lock.writeLock().lock();
+            try {
+                if (manager.getUncompactedContactCount() == 0) {
+                    return;
+                }
+                done = manager.compactContacts(batchSize);
+            } catch (RuntimeException failed) {
+                // Keeps the schedule alive; the next check tries again.
+                failed.printStackTrace();
+                return;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            batches.incrementAndGet();
+            // Lets waiting queries and changes take the lock in between.
+            Thread.yield();
+        }
+    }
+}
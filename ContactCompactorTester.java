@@ -0,0 +1,197 @@
+import static org.junit.Assert.*;
+import org.junit.*;
+import java.util.*;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+/**
+ * The test class ContactCompactorTester.
+ *
+ * @author  Stefan E. Mayer
+ * @version 1.0
+ */
+public class ContactCompactorTester {
+    private final static File FILE = new File("compactor.txt");
+    private final static String SECRET = "Retained until 2016-12-31";
+
+    private ContactManagerImpl manager;
+    private Contact alice;
+    private Contact bob;
+    private List<Integer> meetings;
+
+    /**
+     * Sets up the test fixture.
+     *
+     * Called before every test case method.
+     */
+    @Before
+    public void setUp() {
+        FILE.delete();
+        manager = new ContactManagerImpl(FILE);
+        manager.addNewContact("Alice Smith", "");
+        manager.addNewContact("Bob Jones", SECRET);
+        alice = manager.getContacts(1).iterator().next();
+        bob = manager.getContacts(2).iterator().next();
+        meetings = new ArrayList<Integer>();
+        for (int i = 1; i <= 5; i++) {
+            Calendar date = new GregorianCalendar();
+            date.add(Calendar.DATE, i);
+            meetings.add(manager.addFutureMeeting(
+                new HashSet<Contact>(Arrays.asList(alice, bob)), date));
+        }
+    }
+
+    /**
+     * Tears down the test fixture.
+     *
+     * Called after every test case method.
+     */
+    @After
+    public void tearDown() {
+        manager = null;
+        FILE.delete();
+    }
+
+    /**
+     * Tests if a deleted contact is hidden from all queries at once.
+     */
+    @Test
+    public void testDeleteHidesContact() {
+        manager.completeContacts("jo", 5);
+        manager.findContacts("bob", 1);
+        manager.searchContactNotes("retained");
+        manager.deleteContact(2);
+
+        assertEquals(1, manager.getContactCount());
+        assertFalse(manager.getContacts("").contains(bob));
+        assertEquals(0, manager.completeContacts("jo", 5).size());
+        assertEquals(0, manager.findContacts("bob", 1).size());
+        assertEquals(0, manager.searchContactNotes("retained").size());
+        try {
+            manager.getContacts(2);
+            fail("Deleted ID is still valid");
+        } catch (IllegalArgumentException expected) {
+            // Deleted IDs are invalid.
+        }
+        try {
+            manager.getFutureMeetingList(bob);
+            fail("Deleted contact is still known");
+        } catch (IllegalArgumentException expected) {
+            // Deleted contacts are unknown.
+        }
+        // Meetings are only changed by compaction.
+        assertEquals(1, manager.getUncompactedContactCount());
+        assertTrue(manager.getMeeting(meetings.get(0)).getContacts()
+                       .contains(bob));
+        assertEquals(5, manager.getFutureMeetingList(alice).size());
+    }
+
+    /**
+     * Tests if compaction purges the meetings a batch at a time, also
+     * when a cancelled meeting moves one behind the pass.
+     */
+    @Test
+    public void testCompactInBatches() {
+        manager.deleteContact(2);
+        assertFalse(manager.compactContacts(2));
+        manager.cancelMeeting(meetings.get(0));
+        assertTrue(manager.compactContacts(2));
+        assertEquals(0, manager.getUncompactedContactCount());
+        for (int id : meetings.subList(1, meetings.size())) {
+            assertEquals(Collections.singleton(alice),
+                         manager.getMeeting(id).getContacts());
+        }
+        assertEquals(4, manager.getFutureMeetingList(alice).size());
+        assertTrue(manager.compactContacts(1));
+    }
+
+    /**
+     * Tests if compaction leaves the sets of participants alone that
+     * callers passed in or were handed out, also of recurring meetings.
+     */
+    @Test
+    public void testCompactKeepsCallerSets() {
+        Set<Contact> both = new HashSet<Contact>(Arrays.asList(alice, bob));
+        Calendar date = new GregorianCalendar();
+        date.add(Calendar.DATE, 7);
+        int id = manager.addFutureMeeting(both, date);
+        int seriesId = manager.addRecurringMeeting(both, date,
+            RecurrenceRule.parse("FREQ=WEEKLY"));
+        Set<Contact> handedOut = manager.getMeeting(id).getContacts();
+        manager.deleteContact(2);
+        assertTrue(manager.compactContacts(10));
+
+        assertEquals(2, both.size());
+        assertEquals(2, handedOut.size());
+        assertEquals(Collections.singleton(alice),
+                     manager.getMeeting(id).getContacts());
+        assertEquals(Collections.singleton(alice),
+                     manager.getRecurringMeeting(seriesId).getContacts());
+    }
+
+    /**
+     * Tests if deletions survive flushing before and after compaction,
+     * and if the notes of the contact are gone from the file in the end.
+     */
+    @Test
+    public void testPersistence() throws IOException {
+        manager.deleteContact(2);
+        manager.flush();
+        manager = new ContactManagerImpl(FILE);
+        assertEquals(1, manager.getUncompactedContactCount());
+        assertEquals(1, manager.getContacts("").size());
+        while (!manager.compactContacts(2)) {
+            // One batch after the other.
+        }
+        manager.flush();
+        String file = new String(Files.readAllBytes(FILE.toPath()),
+                                 StandardCharsets.ISO_8859_1);
+        assertFalse(file.contains(SECRET));
+        manager = new ContactManagerImpl(FILE);
+        assertEquals(0, manager.getUncompactedContactCount());
+        try {
+            manager.getContacts(2);
+            fail("Deleted ID is valid again");
+        } catch (IllegalArgumentException expected) {
+            // Deleted IDs stay invalid.
+        }
+    }
+
+    /**
+     * Tests if the compactor purges the meetings in the background.
+     */
+    @Test
+    public void testBackgroundCompaction() throws InterruptedException {
+        SynchronizedContactManager shared =
+            new SynchronizedContactManager(manager);
+        ContactCompactor compactor =
+            new ContactCompactor(manager, shared.getLock(), 2, 10);
+        try {
+            shared.getLock().writeLock().lock();
+            try {
+                manager.deleteContact(2);
+            } finally {
+                shared.getLock().writeLock().unlock();
+            }
+            long deadline = System.currentTimeMillis() + 5000;
+            while (compactor.getBatchCount() < 3
+                   && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(3, compactor.getBatchCount());
+            assertEquals(Collections.singleton(alice),
+                         shared.getMeeting(meetings.get(4)).getContacts());
+        } finally {
+            compactor.close();
+        }
+    }
+
+    /**
+     * Tests if deleting an unknown contact throws an exception.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testDeleteUnknownContact() {
+        manager.deleteContact(3);
+    }
+}
@@ -0,0 +1,391 @@
+import java.util.*;
+/**
+ * Completes prefixes of contact names, e.g. for a contact picker,
+ * ranking the contacts by how often and how recently we meet them.
+ *
+ * Names are stored in a trie of lower case characters, once from the
+ * start and once from the start of every further word, so "smi" finds
+ * "John Smith". Every node keeps the K best ranked contacts below it,
+ * so completing a prefix only walks the prefix and copies that list,
+ * however many contacts there are.
+ *
+ * Contacts are ranked by their number of meetings, then by the date of
+ * their latest meeting, then by name.
+ *
+ * IMPORTANT: The lists of the nodes are updated when a contact gains a
+ *            meeting, on the path of each of its names only. When a
+ *            contact loses a meeting or is removed the lists on its
+ *            paths are rebuilt from the lists of the child nodes, as it
+ *            may have to make room for one that is not in the list yet.
+ *
+ * The completer is not thread-safe; completions may run concurrently
+ * with each other but not with changes.
+ *
+ * @author Stefan E. Mayer
+ * @version 1.0
+ */
+public class ContactCompleter {
+    /**
+     * The default number of contacts kept per prefix.
+     */
+    public static final int DEFAULT_K = 10;
+
+    private int k;
+    private Node root;
+    private Map<Integer, Entry> entries;
+
+    /**
+     * Create a new completer keeping the default number of contacts
+     * per prefix.
+     */
+    public ContactCompleter() {
+        this(DEFAULT_K);
+    }
+
+    /**
+     * Create a new completer.
+     *
+     * @param k the number of contacts kept per prefix, which is the
+     *        largest number of completions returned
+     * @throws IllegalArgumentException if k is not positive
+     */
+    public ContactCompleter(int k) {
+        if (k <= 0) {
+            throw new IllegalArgumentException("K must be positive!");
+        }
+        this.k = k;
+        this.root = new Node(k);
+        this.entries = new HashMap<Integer, Entry>();
+    }
+
+    /**
+     * Returns the number of contacts kept per prefix.
+     *
+     * @return K
+     */
+    public int getK() {
+        return k;
+    }
+
+    /**
+     * Adds a contact without meetings.
+     *
+     * @param contact the contact
+     */
+    public void add(Contact contact) {
+        if (entries.containsKey(contact.getId())) {
+            return;
+        }
+        Entry entry = new Entry(contact);
+        entries.put(contact.getId(), entry);
+        for (String key : keys(contact.getName())) {
+            Node node = root;
+            node.offer(entry);
+            for (int i = 0; i < key.length(); i++) {
+                node = node.child(key.charAt(i), true);
+                node.offer(entry);
+            }
+            node.addTerminal(entry);
+        }
+    }
+
+    /**
+     * Removes a contact, e.g. because it was deleted. The lists on the
+     * paths of its names are rebuilt without it.
+     *
+     * @param contact the contact
+     */
+    public void remove(Contact contact) {
+        Entry entry = entries.remove(contact.getId());
+        if (entry == null) {
+            return;
+        }
+        List<Node> path = path(entry);
+        for (String key : keys(contact.getName())) {
+            Node node = root;
+            for (int i = 0; i < key.length(); i++) {
+                node = node.child(key.charAt(i), false);
+            }
+            node.removeTerminal(entry);
+        }
+        for (int i = path.size() - 1; i >= 0; i--) {
+            path.get(i).rebuild();
+        }
+    }
+
+    /**
+     * Counts a meeting for all of its participants.
+     *
+     * @param meeting the meeting
+     */
+    public void addMeeting(Meeting meeting) {
+        long date = meeting.getDate().getTimeInMillis();
+        for (Contact contact : meeting.getContacts()) {
+            Entry entry = entries.get(contact.getId());
+            if (entry != null) {
+                entry.meetings++;
+                entry.latest = Math.max(entry.latest, date);
+                for (Node node : path(entry)) {
+                    node.offer(entry);
+                }
+            }
+        }
+    }
+
+    /**
+     * Stops counting a meeting for its participants, e.g. because it
+     * was cancelled. The date of their latest meeting is kept.
+     *
+     * @param meeting the meeting
+     */
+    public void removeMeeting(Meeting meeting) {
+        for (Contact contact : meeting.getContacts()) {
+            Entry entry = entries.get(contact.getId());
+            if (entry != null && entry.meetings > 0) {
+                entry.meetings--;
+                List<Node> path = path(entry);
+                // Rebuilds from the deepest node up, which only
+                // depends on its children.
+                for (int i = path.size() - 1; i >= 0; i--) {
+                    path.get(i).rebuild();
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the best ranked contacts whose name, or a word of it,
+     * starts with a prefix, regardless of case.
+     *
+     * @param prefix the prefix, or an empty string for all contacts
+     * @param limit the largest number of contacts to return
+     * @return the contacts, best ranked first (maybe empty)
+     * @throws NullPointerException if the prefix is null
+     * @throws IllegalArgumentException if the limit is not between 1 and K
+     */
+    public List<Contact> complete(String prefix, int limit) {
+        if (prefix == null) {
+            throw new NullPointerException("'null' is invalid as prefix!");
+        }
+        if (limit <= 0 || limit > k) {
+            throw new IllegalArgumentException("Limit must be 1 to " + k
+                                               + "!");
+        }
+        String key = prefix.toLowerCase();
+        Node node = root;
+        for (int i = 0; i < key.length() && node != null; i++) {
+            node = node.child(key.charAt(i), false);
+        }
+        List<Contact> completions = new ArrayList<Contact>();
+        if (node != null) {
+            for (int i = 0; i < node.size && i < limit; i++) {
+                completions.add(node.top[i].contact);
+            }
+        }
+        return completions;
+    }
+
+    /**
+     * Returns the number of meetings counted for a contact.
+     *
+     * @param contact the contact
+     * @return the number of meetings, or 0 for unknown contacts
+     */
+    public int getMeetingCount(Contact contact) {
+        Entry entry = entries.get(contact.getId());
+        return entry == null ? 0 : entry.meetings;
+    }
+
+    /**
+     * Helper method that returns the lower case name and each suffix
+     * of it starting with a word.
+     *
+     * @param name the name of a contact
+     * @return the keys of the name in the trie
+     */
+    private static List<String> keys(String name) {
+        String lower = name.toLowerCase().trim();
+        List<String> keys = new ArrayList<String>();
+        for (int i = 0; i < lower.length(); i++) {
+            if (!Character.isWhitespace(lower.charAt(i))
+                && (i == 0 || Character.isWhitespace(lower.charAt(i - 1)))) {
+                keys.add(lower.substring(i));
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * Helper method that returns the nodes of all keys of a contact,
+     * parents before children and without duplicates.
+     *
+     * @param entry the contact
+     * @return the nodes
+     */
+    private List<Node> path(Entry entry) {
+        Set<Node> nodes = new LinkedHashSet<Node>();
+        nodes.add(root);
+        for (String key : keys(entry.contact.getName())) {
+            Node node = root;
+            for (int i = 0; i < key.length(); i++) {
+                node = node.child(key.charAt(i), false);
+                nodes.add(node);
+            }
+        }
+        List<Node> path = new ArrayList<Node>(nodes);
+        Collections.sort(path, new Comparator<Node>() {
+            @Override
+            public int compare(Node one, Node other) {
+                return Integer.compare(one.depth, other.depth);
+            }
+        });
+        return path;
+    }
+
+    /**
+     * Helper method that compares two contacts by rank.
+     *
+     * @return a negative number if the first one ranks higher
+     */
+    private static int compare(Entry one, Entry other) {
+        if (one.meetings != other.meetings) {
+            return Integer.compare(other.meetings, one.meetings);
+        }
+        if (one.latest != other.latest) {
+            return Long.compare(other.latest, one.latest);
+        }
+        int result = one.contact.getName().compareTo(other.contact.getName());
+        return result != 0
+               ? result
+               : Integer.compare(one.contact.getId(), other.contact.getId());
+    }
+
+    /**
+     * A contact with its ranking.
+     */
+    private static class Entry {
+        private final Contact contact;
+        private int meetings;
+        private long latest = Long.MIN_VALUE;
+
+        private Entry(Contact contact) {
+            this.contact = contact;
+        }
+    }
+
+    /**
+     * A node of the trie, with its children in arrays sorted by
+     * character and the best ranked contacts below it.
+     */
+    private static class Node {
+        private final int depth;
+        private char[] keys = new char[0];
+        private Node[] children = new Node[0];
+        private Entry[] top;
+        private int size;
+        // Contacts with a name ending here, needed to rebuild the list.
+        private Entry[] terminals = new Entry[0];
+
+        private Node(int k) {
+            this(k, 0);
+        }
+
+        private Node(int k, int depth) {
+            this.top = new Entry[k];
+            this.depth = depth;
+        }
+
+        private Node child(char key, boolean create) {
+            int index = Arrays.binarySearch(keys, key);
+            if (index >= 0) {
+                return children[index];
+            }
+            if (!create) {
+                return null;
+            }
+            index = -index - 1;
+            Node child = new Node(top.length, depth + 1);
+            keys = insert(keys, index, key);
+            Node[] grown = new Node[children.length + 1];
+            System.arraycopy(children, 0, grown, 0, index);
+            grown[index] = child;
+            System.arraycopy(children, index, grown, index + 1,
+                             children.length - index);
+            children = grown;
+            return child;
+        }
+
+        private void addTerminal(Entry entry) {
+            terminals = Arrays.copyOf(terminals, terminals.length + 1);
+            terminals[terminals.length - 1] = entry;
+        }
+
+        private void removeTerminal(Entry entry) {
+            for (int i = 0; i < terminals.length; i++) {
+                if (terminals[i] == entry) {
+                    terminals[i] = terminals[terminals.length - 1];
+                    terminals = Arrays.copyOf(terminals,
+                                              terminals.length - 1);
+                    return;
+                }
+            }
+        }
+
+        /**
+         * Adds a contact whose rank went up, or moves it up the list.
+         */
+        private void offer(Entry entry) {
+            int index = indexOf(entry);
+            if (index < 0) {
+                if (size == top.length) {
+                    if (compare(entry, top[size - 1]) >= 0) {
+                        return;
+                    }
+                    size--;
+                }
+                index = size++;
+                top[index] = entry;
+            }
+            while (index > 0 && compare(top[index], top[index - 1]) < 0) {
+                Entry swapped = top[index - 1];
+                top[index - 1] = top[index];
+                top[index] = swapped;
+                index--;
+            }
+        }
+
+        /**
+         * Computes the list from the contacts ending here and the
+         * lists of the children.
+         */
+        private void rebuild() {
+            size = 0;
+            for (Entry entry : terminals) {
+                offer(entry);
+            }
+            for (Node child : children) {
+                for (int i = 0; i < child.size; i++) {
+                    offer(child.top[i]);
+                }
+            }
+        }
+
+        private int indexOf(Entry entry) {
+            for (int i = 0; i < size; i++) {
+                if (top[i] == entry) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private static char[] insert(char[] array, int index, char key) {
+            char[] grown = new char[array.length + 1];
+            System.arraycopy(array, 0, grown, 0, index);
+            grown[index] = key;
+            System.arraycopy(array, index, grown, index + 1,
+                             array.length - index);
+            return grown;
+        }
+    }
+}
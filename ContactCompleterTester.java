@@ -0,0 +1,173 @@
+import static org.junit.Assert.*;
+import org.junit.*;
+import java.util.*;
+import java.io.*;
+
+/**
+ * The test class ContactCompleterTester.
+ *
+ * @author  Stefan E. Mayer
+ * @version 1.0
+ */
+public class ContactCompleterTester {
+    private final static File FILE = new File("completer.txt");
+
+    private ContactCompleter completer;
+    private Contact anna;
+    private Contact andrew;
+    private Contact annabel;
+    private Contact bob;
+
+    /**
+     * Sets up the test fixture.
+     *
+     * Called before every test case method.
+     */
+    @Before
+    public void setUp() {
+        FILE.delete();
+        completer = new ContactCompleter(2);
+        anna = new ContactImpl(1, "Anna Smith", "");
+        andrew = new ContactImpl(2, "Andrew Smithers", "");
+        annabel = new ContactImpl(3, "Annabel Jones", "");
+        bob = new ContactImpl(4, "Bob Anderson", "");
+        for (Contact contact : Arrays.asList(anna, andrew, annabel, bob)) {
+            completer.add(contact);
+        }
+    }
+
+    /**
+     * Tears down the test fixture.
+     *
+     * Called after every test case method.
+     */
+    @After
+    public void tearDown() {
+        completer = null;
+        FILE.delete();
+    }
+
+    /**
+     * Tests if contacts without meetings are ranked by name.
+     */
+    @Test
+    public void testCompleteByName() {
+        assertEquals(Arrays.asList(anna, annabel),
+                     completer.complete("ANN", 2));
+        assertEquals(Arrays.asList(anna), completer.complete("ann", 1));
+        // Later words of a name are completed as well.
+        assertEquals(Arrays.asList(andrew, anna),
+                     completer.complete("smi", 2));
+        assertEquals(Arrays.asList(bob), completer.complete("bob a", 2));
+        assertTrue(completer.complete("x", 2).isEmpty());
+    }
+
+    /**
+     * Tests if contacts with more meetings, then more recent ones,
+     * come first.
+     */
+    @Test
+    public void testRanking() {
+        completer.addMeeting(meeting(2010, bob));
+        completer.addMeeting(meeting(2011, bob, andrew));
+        completer.addMeeting(meeting(2012, andrew));
+        completer.addMeeting(meeting(2009, annabel));
+        assertEquals(Arrays.asList(andrew, bob), completer.complete("an", 2));
+        assertEquals(Arrays.asList(annabel, anna),
+                     completer.complete("ann", 2));
+        completer.addMeeting(meeting(2013, anna));
+        assertEquals(Arrays.asList(anna, annabel),
+                     completer.complete("ann", 2));
+        assertEquals(2, completer.getMeetingCount(andrew));
+    }
+
+    /**
+     * Tests if a contact losing a meeting makes room for another one.
+     */
+    @Test
+    public void testRemoveMeeting() {
+        Meeting meeting = meeting(2010, anna, annabel);
+        completer.addMeeting(meeting);
+        completer.addMeeting(meeting(2008, andrew));
+        assertEquals(Arrays.asList(anna, annabel), completer.complete("", 2));
+        completer.removeMeeting(meeting);
+        assertEquals(Arrays.asList(andrew, anna), completer.complete("", 2));
+    }
+
+    /**
+     * Tests if the limit must not exceed K.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testLimitTooLarge() {
+        completer.complete("a", 3);
+    }
+
+    /**
+     * Tests if the contact manager keeps its completer up to date.
+     */
+    @Test
+    public void testContactManagerCompletion() {
+        ContactManagerImpl manager = new ContactManagerImpl(FILE);
+        manager.addNewContact("Carla Diaz", "");
+        manager.addNewContact("Carl Weber", "");
+        assertEquals("Carl Weber",
+                     manager.completeContacts("car", 2).get(0).getName());
+        Calendar date = new GregorianCalendar();
+        date.add(Calendar.YEAR, 1);
+        manager.addFutureMeeting(manager.getContacts(1), date);
+        manager.addNewContact("Carlos", "");
+        assertEquals(Arrays.asList("Carla Diaz", "Carl Weber", "Carlos"),
+                     names(manager.completeContacts("CARL", 3)));
+        assertEquals(Arrays.asList("Carl Weber"),
+                     names(manager.completeContacts("web", 10)));
+    }
+
+    /**
+     * Tests if cancelled and rescheduled meetings of the contact manager
+     * change the ranking of their participants.
+     */
+    @Test
+    public void testContactManagerCancellation() {
+        ContactManagerImpl manager = new ContactManagerImpl(FILE);
+        manager.addNewContact("Carla Diaz", "");
+        manager.addNewContact("Carl Weber", "");
+        Calendar date = new GregorianCalendar();
+        date.add(Calendar.YEAR, 1);
+        int id = manager.addFutureMeeting(manager.getContacts(2), date);
+        assertEquals(Arrays.asList("Carl Weber", "Carla Diaz"),
+                     names(manager.completeContacts("carl", 2)));
+        manager.rescheduleMeeting(id, date, manager.getContacts(1));
+        assertEquals(Arrays.asList("Carla Diaz", "Carl Weber"),
+                     names(manager.completeContacts("carl", 2)));
+        manager.cancelMeeting(id);
+        assertEquals(Arrays.asList("Carl Weber", "Carla Diaz"),
+                     names(manager.completeContacts("carl", 2)));
+    }
+
+    /**
+     * Helper method that creates a meeting.
+     *
+     * @param year the year of the meeting
+     * @param contacts the participants
+     * @return the meeting
+     */
+    private static Meeting meeting(int year, Contact... contacts) {
+        return new PastMeetingImpl(year, new HashSet<Contact>(
+                                       Arrays.asList(contacts)),
+                                   new GregorianCalendar(year, 0, 1), "");
+    }
+
+    /**
+     * Helper method that returns the names of contacts.
+     *
+     * @param contacts the contacts
+     * @return the names, in order
+     */
+    private static List<String> names(List<Contact> contacts) {
+        List<String> names = new ArrayList<String>();
+        for (Contact contact : contacts) {
+            names.add(contact.getName());
+        }
+        return names;
+    }
+}
@@ -9,9 +9,15 @@ import java.io.Serializable;
  * @version 1.0
  */
 public class ContactImpl implements Contact, Serializable {
+    // The value computed for the first version, so older files load.
+    private static final long serialVersionUID = 8893405641094001866L;
+
     private int id;
     private String name;
     private String notes;
+    // Set by the contact manager storing this contact, not persisted.
+    private transient StringDictionary dictionary;
+    private transient ChangeListener listener;
     
     /**
      * Create a new contact with the specified name and notes.
@@ -25,6 +31,23 @@ public class ContactImpl implements Contact, Serializable {
         this.name = name;
         this.notes = notes;
     }
+
+    /**
+     * Create a new contact whose name and notes
+     * are stored in a shared string dictionary.
+     *
+     * @param id the id of the contact.
+     * @param name the name of the contact.
+     * @param notes notes to be added about the contact.
+     * @param dictionary the dictionary used for name and notes.
+     */
+    public ContactImpl(int id, String name, String notes,
+                       StringDictionary dictionary) {
+        this.id = id;
+        this.name = dictionary.intern(name);
+        this.notes = dictionary.intern(notes);
+        this.dictionary = dictionary;
+    }
     
     /**
      * {@inheritDoc}
@@ -60,6 +83,52 @@ public class ContactImpl implements Contact, Serializable {
      */
     @Override
     public void addNotes(String note) {
+        if (dictionary != null) {
+            dictionary.release(notes);
+            note = dictionary.intern(note);
+        }
         this.notes = note;
+        ChangeListener current = listener;
+        if (current != null) {
+            current.changed(ChangeEvent.contactNotesChanged(this));
+        }
+    }
+
+    /**
+     * Sets the listener told about new notes of this contact.
+     *
+     * @param listener the listener, or null
+     */
+    void setChangeListener(ChangeListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Stores the name and notes in a dictionary from now on, e.g. after
+     * loading this contact.
+     *
+     * @param dictionary the dictionary of the contact manager
+     * @param intern true to register the name and notes with the
+     *        dictionary, false if it counts them already
+     */
+    void attach(StringDictionary dictionary, boolean intern) {
+        if (intern) {
+            name = dictionary.intern(name);
+            notes = dictionary.intern(notes);
+        }
+        this.dictionary = dictionary;
+    }
+
+    /**
+     * Releases the name and notes from the dictionary and stops
+     * reporting new notes, e.g. because the contact was deleted.
+     */
+    void detach() {
+        if (dictionary != null) {
+            dictionary.release(name);
+            dictionary.release(notes);
+            dictionary = null;
+        }
+        listener = null;
     }
 }
\ No newline at end of file
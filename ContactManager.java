@@ -109,6 +109,28 @@ public interface ContactManager {
      */
     void addMeetingNotes(int id, String text);
 
+    /**
+     * Cancel a meeting, which is removed together with any notes.
+     *
+     * @param id the ID of the meeting
+     * @throws IllegalArgumentException if the meeting does not exist
+     */
+    void cancelMeeting(int id);
+
+    /**
+     * Move a future meeting to a new date and/or new participants.
+     * The meeting keeps its ID.
+     *
+     * @param id the ID of the meeting
+     * @param date the new date of the meeting
+     * @param contacts the new participants
+     * @throws IllegalArgumentException if the meeting does not exist, the
+     * new date is in the past, the list of contacts is empty, or any of the contacts does not exist
+     * @throws IllegalStateException if the meeting already has notes
+     * @throws NullPointerException if any of the arguments is null
+     */
+    void rescheduleMeeting(int id, Calendar date, Set<Contact> contacts);
+
     /**
      * Create a new contact with the specified name and notes.
      *
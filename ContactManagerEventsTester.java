@@ -0,0 +1,88 @@
+import static org.junit.Assert.*;
+import org.junit.*;
+import java.util.*;
+import java.io.*;
+import java.time.Duration;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+/**
+ * The test class ContactManagerEventsTester.
+ *
+ * @author  Stefan E. Mayer
+ * @version 1.0
+ */
+public class ContactManagerEventsTester {
+    private final static File FILE = new File("events.txt");
+    private final static File RECORDING = new File("events.jfr");
+
+    private Recording recording;
+
+    /**
+     * Sets up the test fixture.
+     *
+     * Called before every test case method.
+     */
+    @Before
+    public void setUp() {
+        FILE.delete();
+        recording = new Recording();
+        recording.enable("cw4.Query").withThreshold(Duration.ZERO);
+        recording.enable("cw4.Mutation").withThreshold(Duration.ZERO);
+        recording.enable("cw4.Persistence");
+    }
+
+    /**
+     * Tears down the test fixture.
+     *
+     * Called after every test case method.
+     */
+    @After
+    public void tearDown() {
+        recording.close();
+        recording = null;
+        FILE.delete();
+        RECORDING.delete();
+    }
+
+    /**
+     * Tests if queries, mutations and flushes are recorded.
+     */
+    @Test
+    public void testEventsAreRecorded() throws IOException {
+        recording.start();
+        ContactManagerImpl manager = new ContactManagerImpl(FILE);
+        manager.addNewContact("c1", "notes1");
+        manager.addNewContact("c2", "notes2");
+        assertEquals(2, manager.getContacts("c").size());
+        manager.flush();
+        recording.stop();
+        recording.dump(RECORDING.toPath());
+
+        int queries = 0;
+        int mutations = 0;
+        int flushes = 0;
+        for (RecordedEvent event : RecordingFile.readAllEvents(
+                                       RECORDING.toPath())) {
+            String name = event.getEventType().getName();
+            if (name.equals("cw4.Query")) {
+                assertEquals("getContacts(String)", event.getString("query"));
+                assertEquals(2, event.getInt("rowsScanned"));
+                assertEquals(2, event.getInt("rowsReturned"));
+                queries++;
+            } else if (name.equals("cw4.Mutation")) {
+                assertEquals("addNewContact", event.getString("mutation"));
+                mutations++;
+            } else if (name.equals("cw4.Persistence")
+                       && event.getString("operation").equals("flush")) {
+                assertEquals(FILE.length(), event.getLong("bytes"));
+                assertEquals(2, event.getInt("contacts"));
+                flushes++;
+            }
+        }
+        assertEquals(1, queries);
+        assertEquals(2, mutations);
+        assertEquals(1, flushes);
+    }
+}
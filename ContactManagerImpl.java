@@ -1,18 +1,111 @@
 import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.RecursiveTask;
 import java.io.*;
 /**
  * A class to manage your contacts and meetings.
+ *
+ * Queries, mutations, loading and flushing are reported as Java Flight
+ * Recorder events (QueryEvent, MutationEvent and PersistenceEvent).
+ * Event fields are only filled in when a recording has the event
+ * enabled, so there is no extra work on the hot path otherwise.
+ *
+ * Queries slower than a threshold can also be written to a
+ * SlowQueryLog, see setSlowQueryLog.
+ *
+ * Every change, including new notes added to a contact directly, is
+ * reported to the registered ChangeListeners, e.g. a ChangeFeed.
+ *
+ * The notes of past meetings and contacts can be searched by words and
+ * phrases, see searchMeetingNotes and searchContactNotes. The full-text
+ * indexes are built by the first search and kept up to date afterwards.
+ * Likewise, completeContacts completes prefixes of contact names and
+ * findContacts finds contacts by misspelled names. findFreeSlots finds
+ * times when a set of contacts has no meetings. getContactStats returns
+ * meeting statistics of a contact and getMeetingRollups the meetings
+ * per period, both kept up to date by every change.
+ *
+ * Recurring meetings are stored once, as a rule, and their occurrences
+ * are only created for the time window a query asks for, see
+ * addRecurringMeeting.
+ *
+ * Deleted contacts are hidden at once but only removed from the
+ * participants of meetings by compactContacts, a batch of meetings at
+ * a time, e.g. in the background by a ContactCompactor.
  * 
  * @author Stefan E. Mayer
  * @version 1.0
  */
 public class ContactManagerImpl implements ContactManager {
+    /**
+     * The order of meetings found by searchMeetingNotes.
+     */
+    public enum SearchOrder {
+        /** Most relevant first. */
+        RELEVANCE,
+        /** Earliest first. */
+        CHRONOLOGICAL
+    }
+
+    /**
+     * The number of days from now within which getFutureMeetingList
+     * lists the occurrences of recurring meetings with a contact.
+     */
+    public static final int RECURRENCE_HORIZON_DAYS = 366;
+
     private Set<Contact> allContacts;
     private int lastContactId;
 
     private List<Meeting> allMeetings;
     private int lastMeetingId;
 
+    private List<RecurringMeeting> allSeries;
+    private int lastSeriesId;
+
+    // IDs of deleted contacts, and of those meetings may still refer to.
+    private Set<Integer> deletedContacts;
+    private Set<Integer> unpurgedContacts;
+
+    private StringDictionary dictionary;
+
+    // Indexes derived from the data, rebuilt whenever data is loaded.
+    private Map<Integer, Meeting> meetingsById;
+    // Meeting ID -> index in allMeetings.
+    private Map<Integer, Integer> meetingPositions;
+    private Map<Integer, Contact> contactsById;
+    private MeetingColumns columns;
+    private List<Contact> contactList;
+    // Contact ID -> index in contactList.
+    private Map<Integer, Integer> contactPositions;
+    private Map<Integer, RecurringMeeting> seriesById;
+    private Map<Integer, List<RecurringMeeting>> seriesByContact;
+    // First occurrence ID -> series, of the series with reserved IDs.
+    private TreeMap<Integer, RecurringMeeting> seriesByBase;
+    // Built by the first search, null until then.
+    private volatile FullTextIndex meetingText;
+    private volatile FullTextIndex contactText;
+    private volatile ContactCompleter completer;
+    private volatile FuzzyNameIndex fuzzyNames;
+    private volatile AvailabilityIndex availability;
+    private volatile ContactStatsIndex contactStats;
+    private volatile MeetingRollups rollups;
+    private int meetingMinutes = AvailabilityIndex.DEFAULT_MEETING_MINUTES;
+    // The contacts removed by the current compaction pass, and the
+    // position in allMeetings it has reached; null between passes.
+    private Set<Integer> purging;
+    private int purgePosition;
+
+    private QueryCache cache;
+    private int parallelThreshold;
+    private volatile SlowQueryLog slowQueryLog;
+    private List<ChangeListener> listeners;
+    private ChangeListener contactObserver;
+
+    // IDs are handed out as firstId, firstId + idStep, ... so that
+    // several managers (e.g. shards) can share one ID space.
+    private int firstId;
+    private int idStep;
+
     private File config;
 
     /**
@@ -21,15 +114,94 @@ public class ContactManagerImpl implements ContactManager {
      * otherwise it creates new objects.
      */
     public ContactManagerImpl() {
-        config = new File("contacts.txt");
-        if (config.exists()) {
+        this(new File("contacts.txt"));
+    }
+
+    /**
+     * Create a new contact manager that stores its data in the given file.
+     * If the file exists, it loads data from it,
+     * otherwise it creates new objects.
+     *
+     * @param config the file used to store the data
+     */
+    public ContactManagerImpl(File config) {
+        this(config, 1, 1);
+    }
+
+    /**
+     * Create a new contact manager that only hands out every
+     * idStep-th ID, starting at firstId. This is used by
+     * ShardedContactManager to keep IDs unique across shards.
+     *
+     * @param config the file used to store the data
+     * @param firstId the first contact and meeting ID
+     * @param idStep the difference between consecutive IDs
+     */
+    ContactManagerImpl(File config, int firstId, int idStep) {
+        this(config, firstId, idStep, true);
+    }
+
+    /**
+     * Create a new contact manager, which may start out empty even if
+     * its file exists. This is used for replicas, whose data is sent
+     * by the primary and which only write the file when promoted.
+     *
+     * @param config the file used to store the data
+     * @param firstId the first contact and meeting ID
+     * @param idStep the difference between consecutive IDs
+     * @param load true to load the data from the file if it exists
+     */
+    ContactManagerImpl(File config, int firstId, int idStep, boolean load) {
+        this.config = config;
+        this.firstId = firstId;
+        this.idStep = idStep;
+        this.parallelThreshold = MeetingColumns.DEFAULT_PARALLEL_THRESHOLD;
+        this.cache = new QueryCache();
+        this.listeners = new CopyOnWriteArrayList<ChangeListener>();
+        this.contactObserver = new ChangeListener() {
+            @Override
+            public void changed(ChangeEvent event) {
+                FullTextIndex index = contactText;
+                if (index != null) {
+                    index.put(event.getId(), event.getNotes());
+                }
+                fire(event);
+            }
+        };
+        PersistenceEvent event = new PersistenceEvent();
+        event.begin();
+        if (load && config.exists()) {
             try (FileInputStream fis = new FileInputStream(config)) {
                 ObjectInputStream in = new ObjectInputStream(fis);
                 allContacts = (HashSet)in.readObject();
                 lastContactId = (int)in.readObject();
                 allMeetings = (ArrayList)in.readObject();
                 lastMeetingId = (int)in.readObject();
+                dictionary = null;
+                allSeries = new ArrayList<RecurringMeeting>();
+                lastSeriesId = 0;
+                deletedContacts = new HashSet<Integer>();
+                unpurgedContacts = new HashSet<Integer>();
+                try {
+                    dictionary = (StringDictionary)in.readObject();
+                    @SuppressWarnings("unchecked")
+                    List<RecurringMeeting> series =
+                        (List<RecurringMeeting>)in.readObject();
+                    allSeries = series;
+                    lastSeriesId = (int)in.readObject();
+                    @SuppressWarnings("unchecked")
+                    Set<Integer> deleted = (Set<Integer>)in.readObject();
+                    @SuppressWarnings("unchecked")
+                    Set<Integer> unpurged = (Set<Integer>)in.readObject();
+                    deletedContacts = deleted;
+                    unpurgedContacts = unpurged;
+                } catch (EOFException olderFile) {
+                    // Files written by older versions end earlier.
+                }
                 in.close();
+                if (dictionary == null) {
+                    internAll();
+                }
             } catch (FileNotFoundException fileNotFound) {
                 fileNotFound.printStackTrace();
             } catch (IOException io) {
@@ -42,7 +214,14 @@ public class ContactManagerImpl implements ContactManager {
             lastContactId = 0;
             allMeetings = new ArrayList<Meeting>();
             lastMeetingId = 0;
+            allSeries = new ArrayList<RecurringMeeting>();
+            lastSeriesId = 0;
+            deletedContacts = new HashSet<Integer>();
+            unpurgedContacts = new HashSet<Integer>();
+            dictionary = new StringDictionary();
         }
+        buildIndexes();
+        commitPersistence(event, "load");
     }
 
     /**
@@ -50,6 +229,8 @@ public class ContactManagerImpl implements ContactManager {
      */
     @Override
     public int addFutureMeeting(Set<Contact> contacts, Calendar date) {
+        MutationEvent event = new MutationEvent();
+        event.begin();
         Calendar now = new GregorianCalendar();
         if (date.before(now)) {
             throw new IllegalArgumentException("Date is in the past!");
@@ -59,12 +240,121 @@ public class ContactManagerImpl implements ContactManager {
         }
         // Meeting ID is calculated here in order to avoid
         // static variables in the MeetingImpl class.
-        lastMeetingId++;
+        lastMeetingId = nextId(lastMeetingId);
 
-        allMeetings.add(new FutureMeetingImpl(lastMeetingId, contacts, date));
+        // A copy, so later changes to the caller's set do not leak in.
+        Meeting meeting = new FutureMeetingImpl(lastMeetingId,
+                              new HashSet<Contact>(contacts), date);
+        addMeeting(meeting);
+        if (!listeners.isEmpty()) {
+            fire(ChangeEvent.meetingAdded(meeting));
+        }
+        commitMutation(event, "addFutureMeeting", lastMeetingId,
+                       contacts.size());
         return lastMeetingId;
     }
 
+    /**
+     * Adds a meeting that recurs according to a rule, e.g. a weekly
+     * stand-up. The series is stored once; its occurrences are listed
+     * like future meetings, within the time window of each query, and
+     * can be looked up by their (negative) IDs. Adding notes to an
+     * occurrence turns it into a past meeting of its own.
+     *
+     * @param contacts the participants of every occurrence
+     * @param start the date of the first occurrence
+     * @param rule when the meeting recurs
+     * @return the ID of the series
+     * @throws IllegalArgumentException if the first date is in the past,
+     *         the set of contacts is empty or any contact is unknown
+     * @throws NullPointerException if any of the arguments is null
+     * @throws IllegalStateException if no range of occurrence IDs is
+     *         free for the series
+     */
+    public int addRecurringMeeting(Set<Contact> contacts, Calendar start,
+                                   RecurrenceRule rule) {
+        MutationEvent event = new MutationEvent();
+        event.begin();
+        if (contacts == null || start == null || rule == null) {
+            throw new NullPointerException("Illegal 'null' argument(s)!");
+        }
+        if (start.before(new GregorianCalendar())) {
+            throw new IllegalArgumentException("Date is in the past!");
+        }
+        if (contacts.size() == 0) {
+            throw new IllegalArgumentException("Contact list is empty!");
+        }
+        if (hasUnknownContact(contacts)) {
+            throw new IllegalArgumentException("Unknown contact(s) present!");
+        }
+        int reserved = RecurringMeeting.countOccurrences(start, rule);
+        int base = reserveOccurrences(reserved);
+        lastSeriesId++;
+
+        RecurringMeeting series = new RecurringMeeting(lastSeriesId, base,
+                                      reserved, contacts, start, rule);
+        addSeries(series);
+        if (!listeners.isEmpty()) {
+            fire(ChangeEvent.recurringMeetingAdded(series));
+        }
+        commitMutation(event, "addRecurringMeeting", lastSeriesId,
+                       contacts.size());
+        return lastSeriesId;
+    }
+
+    /**
+     * Ends a recurring meeting early: occurrences from a date on are no
+     * longer listed and their IDs are no longer valid, except those
+     * stored on their own, which stay as they are. The IDs given up
+     * can be used by new series.
+     *
+     * @param id the ID of the series
+     * @param end the date from which on the series has no occurrences
+     * @throws IllegalArgumentException if the date is in the past or
+     *         the ID is not valid
+     * @throws NullPointerException if the date is null
+     */
+    public void endRecurringMeeting(int id, Calendar end) {
+        MutationEvent event = new MutationEvent();
+        event.begin();
+        if (end == null) {
+            throw new NullPointerException("Illegal 'null' argument(s)!");
+        }
+        if (end.before(new GregorianCalendar())) {
+            throw new IllegalArgumentException("Date is in the past!");
+        }
+        RecurringMeeting series = seriesById.get(id);
+        if (series == null) {
+            throw new IllegalArgumentException("ID is not valid");
+        }
+        RecurrenceRule rule =
+            series.getRule().endingBefore(end.getTimeInMillis());
+        int reserved = RecurringMeeting.countOccurrences(series.getStart(),
+                                                         rule);
+        for (int index : series.getExceptions()) {
+            if (index >= reserved
+                && meetingsById.containsKey(series.getOccurrenceId(index))) {
+                reserved = index + 1;
+            }
+        }
+        endSeries(series, rule, reserved);
+        if (!listeners.isEmpty()) {
+            fire(ChangeEvent.recurringMeetingEnded(series, end));
+        }
+        commitMutation(event, "endRecurringMeeting", id,
+                       series.getContacts().size());
+    }
+
+    /**
+     * Returns a recurring meeting.
+     *
+     * @param id the ID of the series
+     * @return the series, or null if there is none with that ID
+     */
+    public RecurringMeeting getRecurringMeeting(int id) {
+        return seriesById.get(id);
+    }
+
     /**
      * Returns the PAST meeting with the requested ID,
      * or null if it there is none.
@@ -122,12 +412,14 @@ public class ContactManagerImpl implements ContactManager {
      */
     @Override
     public Meeting getMeeting(int id) {
-        for (Meeting meeting : allMeetings) {
-            if (meeting.getId() == id) {
-                return meeting;
-            } 
+        Meeting meeting = meetingsById.get(id);
+        if (meeting == null) {
+            RecurringMeeting series = seriesOf(id);
+            if (series != null) {
+                meeting = series.getOccurrence(series.indexOf(id));
+            }
         }
-        return null;
+        return meeting;
     }
 
     /**
@@ -141,6 +433,10 @@ public class ContactManagerImpl implements ContactManager {
      * the list will be chronologically sorted and will not contain any
      * duplicates.
      *
+     * IMPORTANT: Recurring meetings may never end, so only their
+     *            occurrences from now on and within the next
+     *            RECURRENCE_HORIZON_DAYS days are listed.
+     *
      * @param contact one of the user’s contacts
      * @return the list of future meeting(s) scheduled
      *         with this contact (maybe empty).
@@ -148,23 +444,40 @@ public class ContactManagerImpl implements ContactManager {
      */
     @Override
     public List<Meeting> getFutureMeetingList(Contact contact) {
-        if (!allContacts.contains(contact)) {
+        QueryEvent event = new QueryEvent();
+        event.begin();
+        long start = System.nanoTime();
+        if (!isKnownContact(contact)) {
             throw new IllegalArgumentException("Contact is unknown!");
         }
-        List<Meeting> searchedMeetings = new ArrayList<Meeting>();
-        for (Meeting meeting : allMeetings) {
-            if (meeting.getContacts().contains(contact) &&
-                meeting.getClass().equals(FutureMeetingImpl.class)) {
-                // This block inserts meetings in a chronological fashion.
-                int i = 0;
-                while (i < searchedMeetings.size() &&
-                       meeting.getDate().after(searchedMeetings.get(i)
-                                                               .getDate())) {
-                    i++;
-                }
-                searchedMeetings.add(i, meeting);
-            }
+        List<Meeting> searchedMeetings =
+            cache.get(QueryCache.Query.FUTURE_BY_CONTACT, contact.getId());
+        if (searchedMeetings != null) {
+            queryDone(event, start, "getFutureMeetingList(Contact)", contact,
+                      0, searchedMeetings.size(), null, true);
+            return searchedMeetings;
+        }
+        long version = cache.getVersion(QueryCache.Query.FUTURE_BY_CONTACT,
+                                        contact.getId());
+        searchedMeetings = new ArrayList<Meeting>();
+        // The column store returns the ids in a chronological fashion.
+        MeetingColumns.ScanStats stats = new MeetingColumns.ScanStats();
+        for (int id : columns.findIds(contact.getId(), false, stats)) {
+            searchedMeetings.add(meetingsById.get(id));
         }
+        List<RecurringMeeting> series = seriesByContact.get(contact.getId());
+        if (series == null) {
+            cache.put(QueryCache.Query.FUTURE_BY_CONTACT, contact.getId(),
+                      version, searchedMeetings);
+        } else {
+            // Not cached, as the window moves with the current time.
+            long now = System.currentTimeMillis();
+            addOccurrences(searchedMeetings, series, now,
+                           now + RECURRENCE_HORIZON_DAYS * 86400000L);
+        }
+        queryDone(event, start, "getFutureMeetingList(Contact)", contact,
+                  (int)stats.getRowsExamined(), searchedMeetings.size(),
+                  stats, false);
         return searchedMeetings;
     }
 
@@ -185,19 +498,31 @@ public class ContactManagerImpl implements ContactManager {
      */
     @Override
     public List<Meeting> getFutureMeetingList(Calendar date) {
-        List<Meeting> searchedMeetings = new ArrayList<Meeting>();
-        for (Meeting meeting : allMeetings) {
-            if (isSameDay(meeting.getDate(), date)) {
-                // This block inserts meetings in a chronological fashion.
-                int i = 0;
-                while (i < searchedMeetings.size() &&
-                       meeting.getDate().after(searchedMeetings.get(i)
-                                                               .getDate())) {
-                    i++;
-                }
-                searchedMeetings.add(i, meeting);
-            }
+        QueryEvent event = new QueryEvent();
+        event.begin();
+        long start = System.nanoTime();
+        int day = QueryCache.dayOf(date);
+        List<Meeting> searchedMeetings =
+            cache.get(QueryCache.Query.BY_DAY, day);
+        if (searchedMeetings != null) {
+            queryDone(event, start, "getFutureMeetingList(Calendar)", date,
+                      0, searchedMeetings.size(), null, true);
+            return searchedMeetings;
         }
+        long version = cache.getVersion(QueryCache.Query.BY_DAY, day);
+        Calendar dayStart = (Calendar)date.clone();
+        dayStart.set(Calendar.HOUR_OF_DAY, 0);
+        dayStart.set(Calendar.MINUTE, 0);
+        dayStart.set(Calendar.SECOND, 0);
+        dayStart.set(Calendar.MILLISECOND, 0);
+        Calendar dayEnd = (Calendar)dayStart.clone();
+        dayEnd.add(Calendar.DATE, 1);
+        MeetingColumns.ScanStats stats = new MeetingColumns.ScanStats();
+        searchedMeetings = getMeetingList(dayStart, dayEnd, stats);
+        cache.put(QueryCache.Query.BY_DAY, day, version, searchedMeetings);
+        queryDone(event, start, "getFutureMeetingList(Calendar)", date,
+                  (int)stats.getRowsExamined(), searchedMeetings.size(),
+                  stats, false);
         return searchedMeetings;
     }
 
@@ -218,23 +543,32 @@ public class ContactManagerImpl implements ContactManager {
      */
     @Override
     public List<PastMeeting> getPastMeetingList(Contact contact) {
-        if (!allContacts.contains(contact)) {
+        QueryEvent event = new QueryEvent();
+        event.begin();
+        long start = System.nanoTime();
+        if (!isKnownContact(contact)) {
             throw new IllegalArgumentException("Contact is unknown!");
         }
-        List<PastMeeting> searchedMeetings = new ArrayList<PastMeeting>();
-        for (Meeting meeting : allMeetings) {
-            if (meeting.getContacts().contains(contact) &&
-                meeting.getClass().equals(PastMeetingImpl.class)) {
-                // This block inserts meetings in a chronological fashion.
-                int i = 0;
-                while (i < searchedMeetings.size() &&
-                       meeting.getDate().after(searchedMeetings.get(i)
-                                                               .getDate())) {
-                    i++;
-                }
-                searchedMeetings.add(i, (PastMeeting)meeting);
-            }
+        List<PastMeeting> searchedMeetings =
+            cache.get(QueryCache.Query.PAST_BY_CONTACT, contact.getId());
+        if (searchedMeetings != null) {
+            queryDone(event, start, "getPastMeetingList", contact,
+                      0, searchedMeetings.size(), null, true);
+            return searchedMeetings;
+        }
+        long version = cache.getVersion(QueryCache.Query.PAST_BY_CONTACT,
+                                        contact.getId());
+        searchedMeetings = new ArrayList<PastMeeting>();
+        // The column store returns the ids in a chronological fashion.
+        MeetingColumns.ScanStats stats = new MeetingColumns.ScanStats();
+        for (int id : columns.findIds(contact.getId(), true, stats)) {
+            searchedMeetings.add((PastMeeting)meetingsById.get(id));
         }
+        cache.put(QueryCache.Query.PAST_BY_CONTACT, contact.getId(),
+                  version, searchedMeetings);
+        queryDone(event, start, "getPastMeetingList", contact,
+                  (int)stats.getRowsExamined(), searchedMeetings.size(),
+                  stats, false);
         return searchedMeetings;
     }
 
@@ -244,6 +578,8 @@ public class ContactManagerImpl implements ContactManager {
     @Override
     public void addNewPastMeeting(Set<Contact> contacts,
                                   Calendar date, String text) {
+        MutationEvent event = new MutationEvent();
+        event.begin();
         if (contacts.size() == 0) {
             throw new IllegalArgumentException("Contact list is empty!");
         }
@@ -255,10 +591,17 @@ public class ContactManagerImpl implements ContactManager {
         }
         // Meeting ID is calculated here in order to avoid
         // static variables in the MeetingImpl class.
-        lastMeetingId++;
+        lastMeetingId = nextId(lastMeetingId);
 
-        allMeetings.add(new PastMeetingImpl(lastMeetingId,
-                                            contacts, date, text));
+        Meeting meeting = new PastMeetingImpl(lastMeetingId,
+                              new HashSet<Contact>(contacts), date,
+                              dictionary.intern(text));
+        addMeeting(meeting);
+        if (!listeners.isEmpty()) {
+            fire(ChangeEvent.meetingAdded(meeting));
+        }
+        commitMutation(event, "addNewPastMeeting", lastMeetingId,
+                       contacts.size());
     }
 
     /**
@@ -272,6 +615,8 @@ public class ContactManagerImpl implements ContactManager {
      * then converted to a past meeting (with notes).
      *
      * It can be also used to add notes to a past meeting at a later date.
+     * An occurrence of a recurring meeting becomes a past meeting of its
+     * own, with the same ID, which the series skips from then on.
      *
      * @param id the ID of the meeting
      * @param text messages to be added about the meeting.
@@ -282,6 +627,8 @@ public class ContactManagerImpl implements ContactManager {
      */
     @Override
     public void addMeetingNotes(int id, String text) {
+        MutationEvent event = new MutationEvent();
+        event.begin();
         Meeting meeting = getMeeting(id);
         if (meeting == null) {
             throw new IllegalArgumentException("ID is not valid");
@@ -296,10 +643,99 @@ public class ContactManagerImpl implements ContactManager {
                       "'null' is invalid as text parameter!");
         }
 
-        Set<Contact> contacts = meeting.getContacts();
-        Calendar date = meeting.getDate();
-        allMeetings.remove(meeting);
-        allMeetings.add(id - 1, new PastMeetingImpl(id, contacts, date, text));
+        PastMeeting pastMeeting;
+        if (meetingsById.containsKey(id)) {
+            pastMeeting = replaceNotes(meeting, text);
+            if (!listeners.isEmpty()) {
+                fire(ChangeEvent.meetingNotesAdded(pastMeeting));
+            }
+        } else {
+            // An occurrence of a recurring meeting is stored on its own.
+            pastMeeting = new PastMeetingImpl(id, meeting.getContacts(),
+                                              meeting.getDate(),
+                                              dictionary.intern(text));
+            addMeeting(pastMeeting);
+            if (!listeners.isEmpty()) {
+                fire(ChangeEvent.meetingAdded(pastMeeting));
+            }
+        }
+        commitMutation(event, "addMeetingNotes", id,
+                       pastMeeting.getContacts().size());
+    }
+
+    /**
+     * Cancels a meeting, which is removed together with any notes.
+     * An occurrence of a recurring meeting is skipped by its series
+     * from then on.
+     *
+     * @param id the ID of the meeting
+     * @throws IllegalArgumentException if the meeting does not exist
+     */
+    @Override
+    public void cancelMeeting(int id) {
+        MutationEvent event = new MutationEvent();
+        event.begin();
+        Meeting meeting = getMeeting(id);
+        if (meeting == null) {
+            throw new IllegalArgumentException("ID is not valid");
+        }
+        cancel(meeting);
+        if (!listeners.isEmpty()) {
+            fire(ChangeEvent.meetingCancelled(meeting));
+        }
+        commitMutation(event, "cancelMeeting", id,
+                       meeting.getContacts().size());
+    }
+
+    /**
+     * Moves a future meeting to a new date and/or new participants.
+     * An occurrence of a recurring meeting becomes a future meeting of
+     * its own, with the same ID, which the series skips from then on.
+     *
+     * IMPORTANT: Since there are separate classes for past and
+     *            future meetings, meetings with notes are classified
+     *            as past meetings and cannot be rescheduled.
+     *
+     * @param id the ID of the meeting
+     * @param date the new date of the meeting
+     * @param contacts the new participants
+     * @throws IllegalArgumentException if the meeting does not exist,
+     *         the new date is in the past, the set of contacts is empty
+     *         or any contact is unknown
+     * @throws IllegalStateException if the meeting is a past meeting
+     * @throws NullPointerException if any of the arguments is null
+     */
+    @Override
+    public void rescheduleMeeting(int id, Calendar date,
+                                  Set<Contact> contacts) {
+        MutationEvent event = new MutationEvent();
+        event.begin();
+        if (date == null || contacts == null) {
+            throw new NullPointerException("Illegal 'null' argument(s)!");
+        }
+        Meeting meeting = getMeeting(id);
+        if (meeting == null) {
+            throw new IllegalArgumentException("ID is not valid");
+        }
+        if (meeting instanceof PastMeeting) {
+            throw new IllegalStateException(
+                      "Meeting with that ID is a past meeting!");
+        }
+        if (date.before(new GregorianCalendar())) {
+            throw new IllegalArgumentException("Date is in the past!");
+        }
+        if (contacts.size() == 0) {
+            throw new IllegalArgumentException("Contact list is empty!");
+        }
+        if (hasUnknownContact(contacts)) {
+            throw new IllegalArgumentException("Unknown contact(s) present!");
+        }
+
+        Meeting moved = reschedule(meeting, date, contacts);
+        if (!listeners.isEmpty()) {
+            fire(ChangeEvent.meetingRescheduled(moved));
+        }
+        commitMutation(event, "rescheduleMeeting", id, contacts.size());
     }
 
     /**
@@ -307,16 +743,98 @@ public class ContactManagerImpl implements ContactManager {
      */
     @Override
     public void addNewContact(String name, String notes) {
+        MutationEvent event = new MutationEvent();
+        event.begin();
         if (name == null || notes == null) {
             throw new NullPointerException(
                       "'null' is invalid for either parameter!");
         }
         // Contact ID is calculated here in order to avoid
         // static variables in the ContactImpl class.
-        lastContactId++;
+        lastContactId = nextId(lastContactId);
+
+        Contact newGuy = new ContactImpl(lastContactId, name,
+                                         notes, dictionary);
+        addContact(newGuy);
+        if (!listeners.isEmpty()) {
+            fire(ChangeEvent.contactAdded(newGuy));
+        }
+        commitMutation(event, "addNewContact", lastContactId, 0);
+    }
+
+    /**
+     * Deletes a contact, e.g. under data-retention rules. The contact is
+     * hidden from all queries at once, its ID is no longer valid and its
+     * name and notes are released from the dictionary.
+     *
+     * IMPORTANT: Meetings still list the contact as a participant until
+     *            compactContacts has reached them.
+     *
+     * @param id the ID of the contact
+     * @throws IllegalArgumentException if there is no contact with that ID
+     */
+    public void deleteContact(int id) {
+        MutationEvent event = new MutationEvent();
+        event.begin();
+        Contact contact = contactsById.get(id);
+        if (contact == null) {
+            throw new IllegalArgumentException("ID is not valid");
+        }
+        removeContact(contact);
+        if (!listeners.isEmpty()) {
+            fire(ChangeEvent.contactDeleted(id));
+        }
+        commitMutation(event, "deleteContact", id, 0);
+    }
+
+    /**
+     * Removes deleted contacts from the participants of a batch of
+     * meetings. Every call goes on where the last one stopped. A pass
+     * over all meetings ends with the recurring meetings, after which
+     * no meeting refers to the contacts deleted before the pass began.
+     *
+     * @param maxMeetings the largest number of meetings to examine
+     * @return true if no meeting refers to a deleted contact any more
+     * @throws IllegalArgumentException if maxMeetings is not positive
+     */
+    public boolean compactContacts(int maxMeetings) {
+        if (maxMeetings <= 0) {
+            throw new IllegalArgumentException(
+                      "Number of meetings must be positive!");
+        }
+        if (purging == null) {
+            if (unpurgedContacts.isEmpty()) {
+                return true;
+            }
+            purging = new HashSet<Integer>(unpurgedContacts);
+            purgePosition = 0;
+        }
+        int end = Math.min(allMeetings.size(), purgePosition + maxMeetings);
+        while (purgePosition < end) {
+            purge(purgePosition++);
+        }
+        if (purgePosition < allMeetings.size()) {
+            return false;
+        }
+        for (RecurringMeeting series : allSeries) {
+            Set<Contact> remaining = withoutDeleted(series.getContacts());
+            if (remaining != null) {
+                series.setContacts(remaining);
+            }
+        }
+        unpurgedContacts.removeAll(purging);
+        purging = null;
+        return unpurgedContacts.isEmpty();
+    }
 
-        Contact newGuy = new ContactImpl(lastContactId, name, notes);
-        allContacts.add(newGuy);
+    /**
+     * Returns the number of deleted contacts that meetings may still
+     * refer to.
+     *
+     * @return the number of contacts compactContacts has yet to remove
+     */
+    public int getUncompactedContactCount() {
+        return unpurgedContacts.size();
     }
 
     /**
@@ -324,34 +842,56 @@ public class ContactManagerImpl implements ContactManager {
      */
     @Override
     public Set<Contact> getContacts(int... ids) {
+        QueryEvent event = new QueryEvent();
+        event.begin();
+        long start = System.nanoTime();
         Set<Contact> searched = new HashSet<Contact>();
         for (int id : ids) {
-            if (id <= 0 || id > lastContactId) {
+            if (id <= 0 || id > lastContactId
+                || deletedContacts.contains(id)) {
                 throw new IllegalArgumentException("ID is not valid");
             }
-            for (Contact member : allContacts) {
-                if (member.getId() == id) {
-                    searched.add(member);
-                }
+            Contact member = contactsById.get(id);
+            if (member != null) {
+                searched.add(member);
             }
         }
+        queryDone(event, start, "getContacts(int...)", ids,
+                  ids.length, searched.size(), null, true);
         return searched;
     }
 
     /**
-     * {@inheritDoc}
+     * Returns a list with the contacts whose name contains that string.
+     *
+     * If there are more contacts than the parallel threshold, the
+     * contacts are searched in chunks by ForkJoin tasks.
+     *
+     * @param name the string to search for
+     * @return a list with the contacts whose name contains that string.
+     * @throws NullPointerException if the parameter is null
      */
     @Override
     public Set<Contact> getContacts(String name) {
         if (name == null) {
             throw new NullPointerException("'null' is invalid as parameter!");
         }
-        Set<Contact> searched = new HashSet<Contact>();
-        for (Contact member : allContacts) {
-            if (member.getName().contains(name)) {
-                searched.add(member);
+        QueryEvent event = new QueryEvent();
+        event.begin();
+        long start = System.nanoTime();
+        Set<Contact> searched;
+        if (contactList.size() > parallelThreshold) {
+            searched = new ContactSearch(name, 0, contactList.size()).invoke();
+        } else {
+            searched = new HashSet<Contact>();
+            for (Contact member : allContacts) {
+                if (member.getName().contains(name)) {
+                    searched.add(member);
+                }
             }
         }
+        queryDone(event, start, "getContacts(String)", name,
+                  allContacts.size(), searched.size(), null, false);
         return searched;
     }
 
@@ -360,6 +900,8 @@ public class ContactManagerImpl implements ContactManager {
      */
     @Override
     public void flush() {
+        PersistenceEvent event = new PersistenceEvent();
+        event.begin();
         if (config.exists()) {
             config.delete();
         }
@@ -369,6 +911,11 @@ public class ContactManagerImpl implements ContactManager {
             out.writeObject(lastContactId);
             out.writeObject(allMeetings);
             out.writeObject(lastMeetingId);
+            out.writeObject(dictionary);
+            out.writeObject(allSeries);
+            out.writeObject(lastSeriesId);
+            out.writeObject(deletedContacts);
+            out.writeObject(unpurgedContacts);
             out.close();
         } catch (FileNotFoundException fileNotFound) {
             System.out.println("Config file cannot be created");
@@ -376,39 +923,1397 @@ public class ContactManagerImpl implements ContactManager {
         } catch (IOException io) {
             io.printStackTrace();
         }
+        commitPersistence(event, "flush");
     }
 
     /**
-     * Helper method that checks if a set of
-     * contacts contains an unknown contact.
-     * 
-     * @param contacts a set of contacts
-     * @return true if one contact is unknown, false otherwise
+     * Returns the list of meetings that are scheduled for, or that took
+     * place within, the specified time window.
+     *
+     * The list will be chronologically sorted and will not contain any
+     * duplicates. It is answered from the column store, so no meeting
+     * or calendar object is touched while filtering.
+     *
+     * @param from the start of the window (inclusive)
+     * @param to the end of the window (exclusive)
+     * @return the list of meetings within the window (maybe empty)
+     * @throws NullPointerException if any of the arguments is null
      */
-    private boolean hasUnknownContact(Set<Contact> contacts) {
-        for (Contact member : contacts) {
-            if (!allContacts.contains(member)) {
-                return true;
-            }
+    public List<Meeting> getMeetingList(Calendar from, Calendar to) {
+        return getMeetingList(from, to, null);
+    }
+
+    /**
+     * Returns the past meetings whose notes match a query.
+     *
+     * The query consists of words and "quoted phrases", which all have
+     * to occur in the notes, regardless of case. A leading - excludes
+     * meetings containing a word or phrase, and OR separates
+     * alternatives, e.g. budget "next quarter" -draft OR forecast.
+     *
+     * @param query the words and phrases to search for
+     * @param order the order of the meetings
+     * @return the list of matching meetings (maybe empty)
+     * @throws NullPointerException if any of the arguments is null
+     */
+    public List<PastMeeting> searchMeetingNotes(String query,
+                                                SearchOrder order) {
+        QueryEvent event = new QueryEvent();
+        event.begin();
+        long start = System.nanoTime();
+        if (order == null) {
+            throw new NullPointerException("'null' is invalid as order!");
         }
-        return false;
+        List<FullTextIndex.Hit> hits = textIndexes()[0].search(query);
+        List<PastMeeting> searchedMeetings =
+            new ArrayList<PastMeeting>(hits.size());
+        for (FullTextIndex.Hit hit : hits) {
+            searchedMeetings.add((PastMeeting)meetingsById.get(hit.getId()));
+        }
+        if (order == SearchOrder.CHRONOLOGICAL) {
+            Collections.sort(searchedMeetings, new Comparator<Meeting>() {
+                @Override
+                public int compare(Meeting one, Meeting other) {
+                    int result = one.getDate().compareTo(other.getDate());
+                    return result != 0
+                           ? result
+                           : Integer.compare(one.getId(), other.getId());
+                }
+            });
+        }
+        queryDone(event, start, "searchMeetingNotes", query,
+                  hits.size(), searchedMeetings.size(), null, true);
+        return searchedMeetings;
     }
 
     /**
-     * Helper method that checks if two calendars share the same date.
-     * 
-     * @param one the first calendar object
-     * @param two the second calendar object
-     * @return true if the dates of both calendar objects match, false otherwise
+     * Returns the contacts whose notes match a query, most relevant
+     * first. The query is written as for searchMeetingNotes.
+     *
+     * @param query the words and phrases to search for
+     * @return the list of matching contacts (maybe empty)
+     * @throws NullPointerException if the query is null
      */
-    private boolean isSameDay(Calendar one, Calendar two) {
-        if (one.get(Calendar.YEAR) != two.get(Calendar.YEAR)) {
-            return false;
-        } else if (one.get(Calendar.MONTH) != two.get(Calendar.MONTH)) {
-            return false;
-        } else if (one.get(Calendar.DATE) != two.get(Calendar.DATE)) {
-            return false;
+    public List<Contact> searchContactNotes(String query) {
+        QueryEvent event = new QueryEvent();
+        event.begin();
+        long start = System.nanoTime();
+        List<FullTextIndex.Hit> hits = textIndexes()[1].search(query);
+        List<Contact> searched = new ArrayList<Contact>(hits.size());
+        for (FullTextIndex.Hit hit : hits) {
+            searched.add(contactsById.get(hit.getId()));
+        }
+        queryDone(event, start, "searchContactNotes", query,
+                  hits.size(), searched.size(), null, true);
+        return searched;
+    }
+
+    /**
+     * Returns the contacts whose name, or a word of it, starts with a
+     * prefix, regardless of case, e.g. for a contact picker. Contacts
+     * we meet more often come first, then those met more recently.
+     *
+     * This takes about the same time however many contacts there are.
+     *
+     * @param prefix the start of the name or of a word of it
+     * @param limit the largest number of contacts to return,
+     *        at most ContactCompleter.DEFAULT_K
+     * @return the list of contacts (maybe empty)
+     * @throws NullPointerException if the prefix is null
+     * @throws IllegalArgumentException if the limit is out of range
+     */
+    public List<Contact> completeContacts(String prefix, int limit) {
+        QueryEvent event = new QueryEvent();
+        event.begin();
+        long start = System.nanoTime();
+        List<Contact> completions = completer().complete(prefix, limit);
+        queryDone(event, start, "completeContacts", prefix,
+                  completions.size(), completions.size(), null, true);
+        return completions;
+    }
+
+    /**
+     * Returns the contacts whose name, or a word of it, differs from a
+     * name in at most a few inserted, deleted or replaced characters,
+     * regardless of case, e.g. to find a contact despite a typo.
+     *
+     * Unlike getContacts(String) this does not compare the name with
+     * every contact; most contacts are ruled out without comparing.
+     *
+     * @param name the name, maybe misspelled
+     * @param maxDistance the largest number of differing characters
+     * @return the list of contacts, closest first (maybe empty)
+     * @throws NullPointerException if the name is null
+     * @throws IllegalArgumentException if the distance is negative
+     */
+    public List<Contact> findContacts(String name, int maxDistance) {
+        QueryEvent event = new QueryEvent();
+        event.begin();
+        long start = System.nanoTime();
+        List<Contact> searched = fuzzyNames().find(name, maxDistance);
+        queryDone(event, start, "findContacts", name,
+                  searched.size(), searched.size(), null, true);
+        return searched;
+    }
+
+    /**
+     * Returns the earliest times when none of a set of contacts has a
+     * meeting, e.g. to schedule a new meeting with all of them. Every
+     * meeting is taken to last as long as set by setMeetingMinutes.
+     *
+     * @param contacts the contacts
+     * @param after the earliest start of a slot
+     * @param minutes the length of a slot in minutes
+     * @param count the number of slots
+     * @return the start times of the slots, earliest first;
+     *         the slots do not overlap; fewer slots if recurring
+     *         meetings leave no more for AvailabilityIndex.SEARCH_YEARS
+     * @throws NullPointerException if any of the arguments is null
+     * @throws IllegalArgumentException if any contact is unknown,
+     *         or minutes or count is not positive
+     */
+    public List<Calendar> findFreeSlots(Set<Contact> contacts,
+                                        Calendar after, int minutes,
+                                        int count) {
+        QueryEvent event = new QueryEvent();
+        event.begin();
+        long start = System.nanoTime();
+        if (hasUnknownContact(contacts)) {
+            throw new IllegalArgumentException("Unknown contact(s) present!");
+        }
+        long[] slots = availability().findFreeSlots(
+                           contacts, after.getTimeInMillis(), minutes, count);
+        List<Calendar> free = new ArrayList<Calendar>(slots.length);
+        for (long slot : slots) {
+            Calendar date = new GregorianCalendar();
+            date.setTimeInMillis(slot);
+            free.add(date);
+        }
+        queryDone(event, start, "findFreeSlots", contacts.size(),
+                  free.size(), free.size(), null, true);
+        return free;
+    }
+
+    /**
+     * Returns the meeting statistics of a contact, e.g. for a dashboard:
+     * the numbers of past and upcoming meetings, the dates of the last
+     * and the next meeting and the number of meetings per month.
+     *
+     * The statistics are kept up to date by every change, so this does
+     * not list the meetings of the contact; it takes about the same time
+     * however many meetings the contact has.
+     *
+     * @param contact one of the user's contacts
+     * @return the statistics
+     * @throws IllegalArgumentException if the contact does not exist
+     */
+    public ContactStats getContactStats(Contact contact) {
+        QueryEvent event = new QueryEvent();
+        event.begin();
+        long start = System.nanoTime();
+        if (!isKnownContact(contact)) {
+            throw new IllegalArgumentException("Contact is unknown!");
+        }
+        ContactStats stats =
+            contactStats().getStats(contact, System.currentTimeMillis());
+        queryDone(event, start, "getContactStats", contact,
+                  1, stats.getTotalMeetings(), null, true);
+        return stats;
+    }
+
+    /**
+     * Returns the number of meetings and the estimated number of distinct
+     * contacts met per hour, day, week or month, e.g. for a histogram.
+     *
+     * The counts are kept up to date by every change, so this only reads
+     * one entry per period, however many meetings there are.
+     *
+     * IMPORTANT: Occurrences of recurring meetings are only counted once
+     *            they are stored on their own, as a series may never end.
+     *
+     * @param granularity the length of the periods
+     * @param from the start of the range (inclusive)
+     * @param to the end of the range (exclusive)
+     * @return the periods overlapping the range that have meetings,
+     *         earliest first
+     * @throws NullPointerException if any of the arguments is null
+     */
+    public List<MeetingRollups.Rollup> getMeetingRollups(
+                                   MeetingRollups.Granularity granularity,
+                                   Calendar from, Calendar to) {
+        QueryEvent event = new QueryEvent();
+        event.begin();
+        long start = System.nanoTime();
+        if (granularity == null || from == null || to == null) {
+            throw new NullPointerException("Illegal 'null' argument(s)!");
+        }
+        List<MeetingRollups.Rollup> periods =
+            new ArrayList<MeetingRollups.Rollup>();
+        if (from.before(to)) {
+            periods = rollups().getRollups(granularity,
+                                           from.getTimeInMillis(),
+                                           to.getTimeInMillis());
+        }
+        queryDone(event, start, "getMeetingRollups", granularity,
+                  periods.size(), periods.size(), null, true);
+        return periods;
+    }
+
+    /**
+     * Sets how long every meeting is taken to last by findFreeSlots.
+     *
+     * @param minutes the length of a meeting in minutes
+     * @throws IllegalArgumentException if the length is not positive
+     */
+    public synchronized void setMeetingMinutes(int minutes) {
+        if (minutes <= 0) {
+            throw new IllegalArgumentException(
+                      "Meeting length must be positive!");
+        }
+        meetingMinutes = minutes;
+        availability = null;
+    }
+
+    /**
+     * Returns how long every meeting is taken to last by findFreeSlots.
+     *
+     * @return the length of a meeting in minutes
+     */
+    public synchronized int getMeetingMinutes() {
+        return meetingMinutes;
+    }
+
+    /**
+     * Sets the log of slow queries, which also records how many rows
+     * each slow query examined and how long it spent sorting.
+     *
+     * @param slowQueryLog the slow query log, or null to disable it
+     */
+    public void setSlowQueryLog(SlowQueryLog slowQueryLog) {
+        this.slowQueryLog = slowQueryLog;
+    }
+
+    /**
+     * Returns the log of slow queries.
+     *
+     * @return the slow query log, or null if it is disabled
+     */
+    public SlowQueryLog getSlowQueryLog() {
+        return slowQueryLog;
+    }
+
+    /**
+     * Registers a listener that is told about every change.
+     *
+     * @param listener the listener
+     * @throws NullPointerException if the listener is null
+     */
+    public void addChangeListener(ChangeListener listener) {
+        if (listener == null) {
+            throw new NullPointerException("'null' is invalid as parameter!");
+        }
+        listeners.add(listener);
+    }
+
+    /**
+     * Removes a listener registered with addChangeListener.
+     *
+     * @param listener the listener
+     */
+    public void removeChangeListener(ChangeListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Returns the number of contacts.
+     *
+     * @return the number of contacts
+     */
+    public int getContactCount() {
+        return allContacts.size();
+    }
+
+    /**
+     * Returns the number of past and future meetings.
+     *
+     * @return the number of meetings
+     */
+    public int getMeetingCount() {
+        return allMeetings.size();
+    }
+
+    /**
+     * Sets the number of contacts or meetings above which full scans
+     * are split into ForkJoin tasks and run in parallel.
+     *
+     * @param threshold the minimum number of elements for parallel scans
+     * @throws IllegalArgumentException if the threshold is not positive
+     */
+    public void setParallelThreshold(int threshold) {
+        columns.setParallelThreshold(threshold);
+        parallelThreshold = threshold;
+    }
+
+    /**
+     * Returns the cache for per-contact and per-day meeting lists,
+     * e.g. to read its hit and miss counters.
+     *
+     * @return the query cache of this contact manager
+     */
+    public QueryCache getQueryCache() {
+        return cache;
+    }
+
+    /**
+     * Returns the dictionary that stores the names and notes of
+     * contacts and the notes of past meetings, e.g. to report how
+     * much memory and disk space is saved by deduplication.
+     *
+     * @return the string dictionary of this contact manager
+     */
+    public StringDictionary getDictionary() {
+        return dictionary;
+    }
+
+    /**
+     * Checks if a contact is known to this contact manager.
+     *
+     * Shards override this method to check the contact
+     * against the shard that owns it.
+     *
+     * @param contact the contact to check
+     * @return true if the contact is known, false otherwise
+     */
+    protected boolean isKnownContact(Contact contact) {
+        return containsContact(contact);
+    }
+
+    /**
+     * Checks if a contact is stored in this contact manager.
+     *
+     * @param contact the contact to check
+     * @return true if the contact is stored here, false otherwise
+     */
+    final boolean containsContact(Contact contact) {
+        return allContacts.contains(contact);
+    }
+
+    /**
+     * Returns the last contact ID handed out by this contact manager.
+     *
+     * @return the last contact ID, or 0 if there is none
+     */
+    int getLastContactId() {
+        return lastContactId;
+    }
+
+    /**
+     * Returns the last meeting ID handed out by this contact manager.
+     *
+     * @return the last meeting ID, or 0 if there is none
+     */
+    int getLastMeetingId() {
+        return lastMeetingId;
+    }
+
+    /**
+     * Returns all past and future meetings. They are in the order they
+     * were added, except that cancelling a meeting moves the last one
+     * into its place.
+     *
+     * @return all meetings, as an unmodifiable list
+     */
+    List<Meeting> getMeetings() {
+        return Collections.unmodifiableList(allMeetings);
+    }
+
+    /**
+     * Returns all recurring meetings, in the order they were added.
+     *
+     * @return all series, as an unmodifiable list
+     */
+    List<RecurringMeeting> getRecurringMeetings() {
+        return Collections.unmodifiableList(allSeries);
+    }
+
+    /**
+     * Returns the IDs of all deleted contacts.
+     *
+     * @return the IDs, as an unmodifiable set
+     */
+    Set<Integer> getDeletedContacts() {
+        return Collections.unmodifiableSet(deletedContacts);
+    }
+
+    /**
+     * Applies a change made to another contact manager, e.g. by the
+     * primary of a replica. Contacts and meetings keep their IDs.
+     * Changes that were already applied are ignored, so applying a
+     * change more than once does no harm.
+     *
+     * @param change the change
+     */
+    void apply(ChangeEvent change) {
+        int id = change.getId();
+        switch (change.getType()) {
+            case CONTACT_ADDED:
+                if (!contactsById.containsKey(id)) {
+                    lastContactId = Math.max(lastContactId, id);
+                    Contact contact = new ContactImpl(id, change.getName(),
+                                                      change.getNotes(),
+                                                      dictionary);
+                    addContact(contact);
+                    if (!listeners.isEmpty()) {
+                        fire(ChangeEvent.contactAdded(contact));
+                    }
+                }
+                break;
+            case CONTACT_DELETED:
+                if (contactsById.containsKey(id)) {
+                    removeContact(contactsById.get(id));
+                    if (!listeners.isEmpty()) {
+                        fire(ChangeEvent.contactDeleted(id));
+                    }
+                } else {
+                    // Deleted before it was sent, e.g. in a snapshot.
+                    lastContactId = Math.max(lastContactId, id);
+                    deletedContacts.add(id);
+                }
+                break;
+            case CONTACT_NOTES_CHANGED:
+                if (contactsById.containsKey(id)) {
+                    // The contact tells the listeners itself.
+                    contactsById.get(id).addNotes(change.getNotes());
+                }
+                break;
+            case FUTURE_MEETING_ADDED:
+            case PAST_MEETING_ADDED:
+                if (!meetingsById.containsKey(id)) {
+                    Set<Contact> contacts = contactsOf(change);
+                    Calendar date = new GregorianCalendar();
+                    date.setTimeInMillis(change.getDate());
+                    Meeting meeting;
+                    if (change.getType()
+                        == ChangeEvent.Type.PAST_MEETING_ADDED) {
+                        meeting = new PastMeetingImpl(id, contacts, date,
+                            dictionary.intern(change.getNotes()));
+                    } else {
+                        meeting = new FutureMeetingImpl(id, contacts, date);
+                    }
+                    lastMeetingId = Math.max(lastMeetingId, id);
+                    addMeeting(meeting);
+                    if (!listeners.isEmpty()) {
+                        fire(ChangeEvent.meetingAdded(meeting));
+                    }
+                }
+                break;
+            case RECURRING_MEETING_ADDED:
+                if (!seriesById.containsKey(id)) {
+                    Set<Contact> contacts = contactsOf(change);
+                    Calendar start = new GregorianCalendar();
+                    start.setTimeInMillis(change.getDate());
+                    RecurringMeeting series = new RecurringMeeting(id,
+                        change.getOccurrenceBase(),
+                        change.getReservedOccurrences(), contacts, start,
+                        change.getRule());
+                    lastSeriesId = Math.max(lastSeriesId, id);
+                    addSeries(series);
+                    if (!listeners.isEmpty()) {
+                        fire(ChangeEvent.recurringMeetingAdded(series));
+                    }
+                }
+                break;
+            case RECURRING_MEETING_ENDED:
+                if (seriesById.containsKey(id)) {
+                    RecurringMeeting series = seriesById.get(id);
+                    endSeries(series, change.getRule(),
+                              change.getReservedOccurrences());
+                    if (!listeners.isEmpty()) {
+                        Calendar end = new GregorianCalendar();
+                        end.setTimeInMillis(change.getDate());
+                        fire(ChangeEvent.recurringMeetingEnded(series, end));
+                    }
+                }
+                break;
+            case MEETING_CANCELLED:
+                if (getMeeting(id) != null) {
+                    Meeting meeting = getMeeting(id);
+                    cancel(meeting);
+                    if (!listeners.isEmpty()) {
+                        fire(ChangeEvent.meetingCancelled(meeting));
+                    }
+                }
+                break;
+            case MEETING_RESCHEDULED:
+                if (getMeeting(id) != null) {
+                    Calendar date = new GregorianCalendar();
+                    date.setTimeInMillis(change.getDate());
+                    Meeting moved = reschedule(getMeeting(id), date,
+                                               contactsOf(change));
+                    if (!listeners.isEmpty()) {
+                        fire(ChangeEvent.meetingRescheduled(moved));
+                    }
+                }
+                break;
+            case MEETING_NOTES_ADDED:
+                if (meetingsById.containsKey(id)) {
+                    PastMeeting meeting = replaceNotes(meetingsById.get(id),
+                                                       change.getNotes());
+                    if (!listeners.isEmpty()) {
+                        fire(ChangeEvent.meetingNotesAdded(meeting));
+                    }
+                }
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown change!");
+        }
+    }
+
+    /**
+     * Helper method that looks up the participants of a change.
+     * Unknown contacts are left out.
+     *
+     * @param change the change of a meeting
+     * @return the participants
+     */
+    private Set<Contact> contactsOf(ChangeEvent change) {
+        Set<Contact> contacts = new HashSet<Contact>();
+        for (int contactId : change.getContactIds()) {
+            Contact contact = contactsById.get(contactId);
+            if (contact != null) {
+                contacts.add(contact);
+            }
+        }
+        return contacts;
+    }
+
+    /**
+     * Replaces meeting participants by the given instances of the same
+     * contacts. Shards store their meetings in separate files, so after
+     * loading, participants owned by other shards are copies and need
+     * to be linked to the actual contacts again.
+     *
+     * @param contactsById all known contacts, by ID
+     */
+    void relinkContacts(Map<Integer, Contact> contactsById) {
+        for (Meeting meeting : allMeetings) {
+            Set<Contact> participants = meeting.getContacts();
+            List<Contact> loaded = new ArrayList<Contact>(participants);
+            participants.clear();
+            for (Contact contact : loaded) {
+                Contact linked = contactsById.get(contact.getId());
+                participants.add(linked == null ? contact : linked);
+            }
+        }
+        cache.clear();
+    }
+
+    /**
+     * Helper method that calculates the next contact or meeting ID.
+     *
+     * @param lastId the last ID handed out, or 0 if there is none
+     * @return the next ID
+     */
+    private int nextId(int lastId) {
+        return lastId == 0 ? firstId : lastId + idStep;
+    }
+
+    /**
+     * Helper method that checks if a set of
+     * contacts contains an unknown contact.
+     * 
+     * @param contacts a set of contacts
+     * @return true if one contact is unknown, false otherwise
+     */
+    private boolean hasUnknownContact(Set<Contact> contacts) {
+        for (Contact member : contacts) {
+            if (!isKnownContact(member)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Helper method that returns the meetings within a time window
+     * from the column store.
+     *
+     * @param from the start of the window (inclusive)
+     * @param to the end of the window (exclusive)
+     * @param stats the scan statistics to add to, or null
+     * @return the list of meetings within the window (maybe empty)
+     */
+    private List<Meeting> getMeetingList(Calendar from, Calendar to,
+                                         MeetingColumns.ScanStats stats) {
+        List<Meeting> searchedMeetings = new ArrayList<Meeting>();
+        for (int id : columns.findIds(from.getTimeInMillis(),
+                                      to.getTimeInMillis(), stats)) {
+            searchedMeetings.add(meetingsById.get(id));
+        }
+        addOccurrences(searchedMeetings, allSeries, from.getTimeInMillis(),
+                       to.getTimeInMillis());
+        return searchedMeetings;
+    }
+
+    /**
+     * Helper method that adds the occurrences of recurring meetings
+     * within a time window to a chronologically sorted list of meetings,
+     * keeping it sorted.
+     *
+     * @param meetings the sorted list of meetings
+     * @param series the recurring meetings
+     * @param from the start of the window (inclusive)
+     * @param to the end of the window (exclusive)
+     */
+    private static void addOccurrences(List<Meeting> meetings,
+                                       Collection<RecurringMeeting> series,
+                                       long from, long to) {
+        int size = meetings.size();
+        for (RecurringMeeting each : series) {
+            meetings.addAll(each.getOccurrences(from, to));
+        }
+        if (meetings.size() > size) {
+            // Stable, so meetings at the same time keep their order.
+            Collections.sort(meetings, new Comparator<Meeting>() {
+                @Override
+                public int compare(Meeting one, Meeting other) {
+                    return one.getDate().compareTo(other.getDate());
+                }
+            });
+        }
+    }
+
+    /**
+     * Helper method that reports a finished query to Java Flight
+     * Recorder and to the slow query log.
+     *
+     * @param event the event, begun before the query
+     * @param start the value of System.nanoTime() before the query
+     * @param query the name of the query
+     * @param argument the contact, date, name or IDs queried
+     * @param rowsScanned the number of meetings or contacts examined,
+     *        0 if the result came from the query cache
+     * @param rowsReturned the number of meetings or contacts returned
+     * @param stats the scan statistics, or null
+     * @param indexUsed true if the query cache or the ID index
+     *        answered the query
+     */
+    private void queryDone(QueryEvent event, long start, String query,
+                           Object argument, int rowsScanned,
+                           int rowsReturned, MeetingColumns.ScanStats stats,
+                           boolean indexUsed) {
+        int arguments = argument instanceof int[]
+                        ? ((int[])argument).length : 1;
+        commitQuery(event, query, arguments, rowsScanned, rowsReturned);
+        SlowQueryLog log = slowQueryLog;
+        if (log != null) {
+            log.record(query, argument, start, rowsScanned, rowsReturned,
+                       stats == null ? 0 : stats.getSortNanos(), indexUsed);
+        }
+    }
+
+    /**
+     * Helper method that commits a query event if it is enabled.
+     * The event fields are only filled in when the event is recorded.
+     *
+     * @param event the event, begun before the query
+     * @param query the name of the query
+     * @param arguments the number of IDs, contacts or dates queried
+     * @param rowsScanned the number of meetings or contacts examined
+     * @param rowsReturned the number of meetings or contacts returned
+     */
+    private static void commitQuery(QueryEvent event, String query,
+                                    int arguments, int rowsScanned,
+                                    int rowsReturned) {
+        if (event.shouldCommit()) {
+            event.query = query;
+            event.arguments = arguments;
+            event.rowsScanned = rowsScanned;
+            event.rowsReturned = rowsReturned;
+            event.commit();
+        }
+    }
+
+    /**
+     * Helper method that commits a mutation event if it is enabled.
+     *
+     * @param event the event, begun before the mutation
+     * @param mutation the name of the mutation
+     * @param id the ID of the new or changed contact or meeting
+     * @param participants the number of participants of the meeting
+     */
+    private static void commitMutation(MutationEvent event, String mutation,
+                                       int id, int participants) {
+        if (event.shouldCommit()) {
+            event.mutation = mutation;
+            event.id = id;
+            event.participants = participants;
+            event.commit();
+        }
+    }
+
+    /**
+     * Helper method that commits a load or flush event if it is enabled.
+     *
+     * @param event the event, begun before reading or writing the file
+     * @param operation either load or flush
+     */
+    private void commitPersistence(PersistenceEvent event, String operation) {
+        if (event.shouldCommit()) {
+            event.operation = operation;
+            event.file = config.getPath();
+            event.bytes = config.length();
+            event.contacts = allContacts.size();
+            event.meetings = allMeetings.size();
+            event.commit();
+        }
+    }
+
+    /**
+     * Helper method that tells all listeners about a change.
+     *
+     * @param event the change
+     */
+    private void fire(ChangeEvent event) {
+        for (ChangeListener listener : listeners) {
+            try {
+                listener.changed(event);
+            } catch (RuntimeException failed) {
+                // The change is done; a failing listener must neither
+                // keep the others from hearing of it nor undo it.
+                failed.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Helper method that makes a contact report new notes
+     * to the listeners of this contact manager.
+     *
+     * @param contact the contact
+     */
+    private void observe(Contact contact) {
+        if (contact instanceof ContactImpl) {
+            ((ContactImpl)contact).setChangeListener(contactObserver);
+        }
+    }
+
+    /**
+     * Helper method that stores a new contact and adds it to the indexes.
+     *
+     * @param contact the new contact
+     */
+    private void addContact(Contact contact) {
+        allContacts.add(contact);
+        contactPositions.put(contact.getId(), contactList.size());
+        contactList.add(contact);
+        contactsById.put(contact.getId(), contact);
+        observe(contact);
+        FullTextIndex index = contactText;
+        if (index != null) {
+            index.put(contact.getId(), contact.getNotes());
+        }
+        ContactCompleter names = completer;
+        if (names != null) {
+            names.add(contact);
+        }
+        FuzzyNameIndex fuzzy = fuzzyNames;
+        if (fuzzy != null) {
+            fuzzy.add(contact);
+        }
+    }
+
+    /**
+     * Helper method that deletes a contact and removes it from the
+     * contact indexes. Meetings are left to compactContacts.
+     *
+     * @param contact the contact
+     */
+    private void removeContact(Contact contact) {
+        int id = contact.getId();
+        deletedContacts.add(id);
+        unpurgedContacts.add(id);
+        allContacts.remove(contact);
+        contactsById.remove(id);
+        int position = contactPositions.remove(id);
+        Contact last = contactList.remove(contactList.size() - 1);
+        if (position < contactList.size()) {
+            contactList.set(position, last);
+            contactPositions.put(last.getId(), position);
+        }
+        seriesByContact.remove(id);
+        if (contact instanceof ContactImpl) {
+            ((ContactImpl)contact).detach();
+        }
+        FullTextIndex index = contactText;
+        if (index != null) {
+            index.remove(id);
+        }
+        ContactCompleter names = completer;
+        if (names != null) {
+            names.remove(contact);
+        }
+        FuzzyNameIndex fuzzy = fuzzyNames;
+        if (fuzzy != null) {
+            fuzzy.remove(contact);
+        }
+        AvailabilityIndex busy = availability;
+        if (busy != null) {
+            busy.removeContact(contact);
+        }
+        ContactStatsIndex stats = contactStats;
+        if (stats != null) {
+            stats.removeContact(contact);
+        }
+    }
+
+    /**
+     * Helper method that replaces a meeting by one without the contacts
+     * of the current compaction pass, if it has any of them.
+     *
+     * @param position the position of the meeting in allMeetings
+     */
+    private void purge(int position) {
+        Meeting meeting = allMeetings.get(position);
+        Set<Contact> remaining = withoutDeleted(meeting.getContacts());
+        if (remaining == null) {
+            return;
+        }
+        // A new meeting with a new set, as the old set may be shared,
+        // e.g. with a meeting handed out to a caller.
+        Meeting purged;
+        if (meeting instanceof PastMeeting) {
+            purged = new PastMeetingImpl(meeting.getId(), remaining,
+                                         meeting.getDate(),
+                                         ((PastMeeting)meeting).getNotes());
+        } else {
+            purged = new FutureMeetingImpl(meeting.getId(), remaining,
+                                           meeting.getDate());
+        }
+        allMeetings.set(position, purged);
+        meetingsById.put(purged.getId(), purged);
+        columns.remove(purged.getId());
+        columns.add(purged);
+        cache.invalidate(purged);
+        MeetingRollups periods = rollups;
+        if (periods != null) {
+            periods.remove(meeting);
+            periods.add(purged);
+        }
+    }
+
+    /**
+     * Helper method that returns the participants without the contacts
+     * of the current compaction pass. The given set is left unchanged.
+     *
+     * @param contacts the participants
+     * @return the remaining participants, or null if none was removed
+     */
+    private Set<Contact> withoutDeleted(Set<Contact> contacts) {
+        Set<Contact> remaining = null;
+        for (Contact contact : contacts) {
+            if (purging.contains(contact.getId())) {
+                if (remaining == null) {
+                    remaining = new HashSet<Contact>(contacts);
+                }
+                remaining.remove(contact);
+            }
+        }
+        return remaining;
+    }
+
+    /**
+     * Helper method that replaces a meeting by a past meeting with
+     * new notes and updates the indexes.
+     *
+     * @param meeting the past or future meeting
+     * @param text the new notes
+     * @return the past meeting that replaced the meeting
+     */
+    private PastMeeting replaceNotes(Meeting meeting, String text) {
+        if (meeting instanceof PastMeeting) {
+            dictionary.release(((PastMeeting)meeting).getNotes());
+        }
+        int id = meeting.getId();
+        PastMeeting pastMeeting = new PastMeetingImpl(id,
+                                      meeting.getContacts(),
+                                      meeting.getDate(),
+                                      dictionary.intern(text));
+        allMeetings.set(meetingPositions.get(id), pastMeeting);
+        meetingsById.put(id, pastMeeting);
+        columns.markPast(id);
+        cache.invalidate(pastMeeting);
+        FullTextIndex index = meetingText;
+        if (index != null) {
+            index.put(id, text);
+        }
+        ContactStatsIndex stats = contactStats;
+        if (stats != null) {
+            stats.remove(meeting);
+            stats.add(pastMeeting);
+        }
+        MeetingRollups periods = rollups;
+        if (periods != null && !(meeting instanceof PastMeeting)) {
+            periods.markPast(meeting);
+        }
+        return pastMeeting;
+    }
+
+    /**
+     * Helper method that stores a new meeting and adds it to the indexes.
+     *
+     * @param meeting the new meeting
+     */
+    private void addMeeting(Meeting meeting) {
+        if (meeting.getId() < 0) {
+            // A former occurrence, which its series skips from now on.
+            RecurringMeeting series = seriesOf(meeting.getId());
+            if (series != null) {
+                series.addException(series.indexOf(meeting.getId()));
+            }
+        }
+        meetingPositions.put(meeting.getId(), allMeetings.size());
+        allMeetings.add(meeting);
+        meetingsById.put(meeting.getId(), meeting);
+        columns.add(meeting);
+        cache.invalidate(meeting);
+        FullTextIndex index = meetingText;
+        if (index != null && meeting instanceof PastMeeting) {
+            index.put(meeting.getId(), ((PastMeeting)meeting).getNotes());
+        }
+        ContactCompleter names = completer;
+        if (names != null) {
+            names.addMeeting(meeting);
+        }
+        AvailabilityIndex busy = availability;
+        if (busy != null) {
+            busy.add(meeting);
+        }
+        ContactStatsIndex stats = contactStats;
+        if (stats != null) {
+            stats.add(meeting);
+        }
+        MeetingRollups periods = rollups;
+        if (periods != null) {
+            periods.add(meeting);
+        }
+    }
+
+    /**
+     * Helper method that removes a meeting from allMeetings and the
+     * indexes. The last meeting takes its place, so nothing is shifted.
+     *
+     * @param meeting the stored meeting
+     */
+    private void removeMeeting(Meeting meeting) {
+        int id = meeting.getId();
+        int position = meetingPositions.remove(id);
+        Meeting last = allMeetings.remove(allMeetings.size() - 1);
+        if (position < allMeetings.size()) {
+            allMeetings.set(position, last);
+            meetingPositions.put(last.getId(), position);
+            if (purging != null && position < purgePosition) {
+                // Moved behind the compaction pass, which would miss it.
+                purge(position);
+            }
+        }
+        meetingsById.remove(id);
+        columns.remove(id);
+        cache.invalidate(meeting);
+        if (meeting instanceof PastMeeting) {
+            dictionary.release(((PastMeeting)meeting).getNotes());
+        }
+        FullTextIndex index = meetingText;
+        if (index != null) {
+            index.remove(id);
+        }
+        ContactCompleter names = completer;
+        if (names != null) {
+            names.removeMeeting(meeting);
+        }
+        AvailabilityIndex busy = availability;
+        if (busy != null) {
+            busy.remove(meeting);
+        }
+        ContactStatsIndex stats = contactStats;
+        if (stats != null) {
+            stats.remove(meeting);
+        }
+        MeetingRollups periods = rollups;
+        if (periods != null) {
+            periods.remove(meeting);
+        }
+    }
+
+    /**
+     * Helper method that cancels a stored meeting or an occurrence of
+     * a recurring meeting.
+     *
+     * @param meeting the meeting
+     */
+    private void cancel(Meeting meeting) {
+        int id = meeting.getId();
+        if (meetingsById.containsKey(id)) {
+            removeMeeting(meeting);
+        } else {
+            cache.invalidate(meeting);
+        }
+        RecurringMeeting series = seriesOf(id);
+        if (series != null) {
+            series.addException(series.indexOf(id));
+        }
+    }
+
+    /**
+     * Helper method that replaces a meeting by a future meeting with the
+     * same ID at a new date and/or with new participants.
+     *
+     * @param meeting the meeting
+     * @param date the new date
+     * @param contacts the new participants
+     * @return the future meeting that replaced the meeting
+     */
+    private Meeting reschedule(Meeting meeting, Calendar date,
+                               Set<Contact> contacts) {
+        Meeting moved = new FutureMeetingImpl(meeting.getId(),
+                            new HashSet<Contact>(contacts), date);
+        cancel(meeting);
+        addMeeting(moved);
+        return moved;
+    }
+
+    /**
+     * Helper method that stores a new recurring meeting and adds it to
+     * the indexes.
+     *
+     * @param series the new series
+     */
+    private void addSeries(RecurringMeeting series) {
+        allSeries.add(series);
+        indexSeries(series);
+        // Its occurrences may belong to any cached list.
+        cache.clear();
+        AvailabilityIndex busy = availability;
+        if (busy != null) {
+            busy.addSeries(series);
+        }
+        ContactStatsIndex stats = contactStats;
+        if (stats != null) {
+            stats.addSeries(series);
+        }
+    }
+
+    /**
+     * Helper method that ends a recurring meeting early and gives up
+     * the occurrence IDs it no longer needs.
+     *
+     * @param series the series
+     * @param rule the rule ending before the first occurrence dropped
+     * @param reserved the number of occurrence IDs the series keeps
+     */
+    private void endSeries(RecurringMeeting series, RecurrenceRule rule,
+                           int reserved) {
+        if (series.getReservedOccurrences() > 0) {
+            seriesByBase.remove(series.getOccurrenceBase());
+        }
+        series.end(rule, reserved);
+        if (reserved > 0) {
+            seriesByBase.put(series.getOccurrenceBase(), series);
+        }
+        // Its occurrences may belong to any cached list; the other
+        // indexes ask the series itself.
+        cache.clear();
+    }
+
+    /**
+     * Helper method that returns the recurring meeting an occurrence
+     * ID is reserved for.
+     *
+     * @param id the meeting ID
+     * @return the series, or null if the ID is no occurrence ID
+     */
+    private RecurringMeeting seriesOf(int id) {
+        if (id >= 0) {
+            return null;
+        }
+        Map.Entry<Integer, RecurringMeeting> floor =
+            seriesByBase.floorEntry(-id);
+        if (floor == null || floor.getValue().indexOf(id) < 0) {
+            return null;
+        }
+        return floor.getValue();
+    }
+
+    /**
+     * Helper method that finds a free range of occurrence IDs, after
+     * the highest range if it fits there and in the first gap between
+     * reserved ranges otherwise.
+     *
+     * @param size the number of IDs
+     * @return the first ID of the range, as a positive number
+     * @throws IllegalStateException if there is no such range
+     */
+    private int reserveOccurrences(int size) {
+        long base = 1;
+        if (!seriesByBase.isEmpty()) {
+            RecurringMeeting highest = seriesByBase.lastEntry().getValue();
+            base = (long)highest.getOccurrenceBase()
+                   + highest.getReservedOccurrences();
+        }
+        if (base + size <= RecurringMeeting.MAX_OCCURRENCE_ID) {
+            return (int)base;
+        }
+        base = 1;
+        for (RecurringMeeting series : seriesByBase.values()) {
+            if (base + size <= series.getOccurrenceBase()) {
+                return (int)base;
+            }
+            base = (long)series.getOccurrenceBase()
+                   + series.getReservedOccurrences();
+        }
+        throw new IllegalStateException("Too many recurring meetings!");
+    }
+
+    /**
+     * Helper method that adds a recurring meeting to the series indexes.
+     *
+     * @param series the series
+     */
+    private void indexSeries(RecurringMeeting series) {
+        seriesById.put(series.getId(), series);
+        if (series.getReservedOccurrences() > 0) {
+            seriesByBase.put(series.getOccurrenceBase(), series);
+        }
+        for (Contact contact : series.getContacts()) {
+            List<RecurringMeeting> ofContact =
+                seriesByContact.get(contact.getId());
+            if (ofContact == null) {
+                ofContact = new ArrayList<RecurringMeeting>();
+                seriesByContact.put(contact.getId(), ofContact);
+            }
+            ofContact.add(series);
+        }
+    }
+
+    /**
+     * Helper method that builds a new dictionary from the names and notes
+     * loaded from a file written before there was one.
+     */
+    private void internAll() {
+        dictionary = new StringDictionary();
+        for (Contact contact : allContacts) {
+            if (contact instanceof ContactImpl) {
+                ((ContactImpl)contact).attach(dictionary, true);
+            }
+        }
+        for (int i = 0; i < allMeetings.size(); i++) {
+            Meeting meeting = allMeetings.get(i);
+            if (meeting instanceof PastMeeting) {
+                allMeetings.set(i, new PastMeetingImpl(meeting.getId(),
+                    meeting.getContacts(), meeting.getDate(),
+                    dictionary.intern(((PastMeeting)meeting).getNotes())));
+            }
+        }
+    }
+
+    /**
+     * Helper method that builds the meeting indexes from allMeetings.
+     */
+    private void buildIndexes() {
+        contactList = new ArrayList<Contact>(allContacts);
+        contactPositions = new HashMap<Integer, Integer>();
+        for (int i = 0; i < contactList.size(); i++) {
+            contactPositions.put(contactList.get(i).getId(), i);
+        }
+        contactsById = new HashMap<Integer, Contact>();
+        for (Contact contact : allContacts) {
+            contactsById.put(contact.getId(), contact);
+            // Observers and the dictionary are not persisted, so they are
+            // attached again after loading.
+            observe(contact);
+            if (contact instanceof ContactImpl) {
+                ((ContactImpl)contact).attach(dictionary, false);
+            }
+        }
+        meetingsById = new HashMap<Integer, Meeting>();
+        meetingPositions = new HashMap<Integer, Integer>();
+        columns = new MeetingColumns();
+        columns.setParallelThreshold(parallelThreshold);
+        for (Meeting meeting : allMeetings) {
+            meetingPositions.put(meeting.getId(), meetingPositions.size());
+            meetingsById.put(meeting.getId(), meeting);
+            columns.add(meeting);
+        }
+        seriesById = new HashMap<Integer, RecurringMeeting>();
+        seriesByContact = new HashMap<Integer, List<RecurringMeeting>>();
+        seriesByBase = new TreeMap<Integer, RecurringMeeting>();
+        for (RecurringMeeting series : allSeries) {
+            indexSeries(series);
+        }
+        purging = null;
+        meetingText = null;
+        contactText = null;
+        completer = null;
+        fuzzyNames = null;
+        availability = null;
+        contactStats = null;
+        rollups = null;
+    }
+
+    /**
+     * Helper method that returns the busy times of contacts,
+     * building them on first use.
+     *
+     * @return the availability index
+     */
+    private synchronized AvailabilityIndex availability() {
+        if (availability == null) {
+            AvailabilityIndex busy = new AvailabilityIndex(meetingMinutes);
+            for (Meeting meeting : allMeetings) {
+                busy.add(meeting);
+            }
+            for (RecurringMeeting series : allSeries) {
+                busy.addSeries(series);
+            }
+            availability = busy;
+        }
+        return availability;
+    }
+
+    /**
+     * Helper method that returns the meeting statistics of contacts,
+     * building them on first use.
+     *
+     * @return the statistics index
+     */
+    private synchronized ContactStatsIndex contactStats() {
+        if (contactStats == null) {
+            ContactStatsIndex stats = new ContactStatsIndex();
+            for (Meeting meeting : allMeetings) {
+                stats.add(meeting);
+            }
+            for (RecurringMeeting series : allSeries) {
+                stats.addSeries(series);
+            }
+            contactStats = stats;
+        }
+        return contactStats;
+    }
+
+    /**
+     * Helper method that returns the meetings per period, building them
+     * on first use.
+     *
+     * @return the rollups
+     */
+    private synchronized MeetingRollups rollups() {
+        if (rollups == null) {
+            MeetingRollups periods = new MeetingRollups();
+            for (Meeting meeting : allMeetings) {
+                periods.add(meeting);
+            }
+            rollups = periods;
+        }
+        return rollups;
+    }
+
+    /**
+     * Helper method that returns the fuzzy index of contact names,
+     * building it on first use.
+     *
+     * @return the fuzzy name index
+     */
+    private synchronized FuzzyNameIndex fuzzyNames() {
+        if (fuzzyNames == null) {
+            FuzzyNameIndex names = new FuzzyNameIndex();
+            for (Contact contact : allContacts) {
+                names.add(contact);
+            }
+            fuzzyNames = names;
+        }
+        return fuzzyNames;
+    }
+
+    /**
+     * Helper method that returns the completer of contact names,
+     * building it on first use.
+     *
+     * @return the completer
+     */
+    private synchronized ContactCompleter completer() {
+        if (completer == null) {
+            ContactCompleter names = new ContactCompleter();
+            for (Contact contact : allContacts) {
+                names.add(contact);
+            }
+            for (Meeting meeting : allMeetings) {
+                names.addMeeting(meeting);
+            }
+            completer = names;
+        }
+        return completer;
+    }
+
+    /**
+     * Helper method that returns the full-text indexes of meeting and
+     * contact notes, building them on first use.
+     *
+     * @return the meeting index and the contact index
+     */
+    private synchronized FullTextIndex[] textIndexes() {
+        if (meetingText == null) {
+            FullTextIndex meetings = new FullTextIndex();
+            for (Meeting meeting : allMeetings) {
+                if (meeting instanceof PastMeeting) {
+                    meetings.put(meeting.getId(),
+                                 ((PastMeeting)meeting).getNotes());
+                }
+            }
+            FullTextIndex contacts = new FullTextIndex();
+            for (Contact contact : allContacts) {
+                contacts.put(contact.getId(), contact.getNotes());
+            }
+            contactText = contacts;
+            meetingText = meetings;
+        }
+        return new FullTextIndex[] {meetingText, contactText};
+    }
+
+    /**
+     * A ForkJoin task that searches a chunk of contacts by name,
+     * splitting it in halves down to the parallel threshold.
+     */
+    private class ContactSearch extends RecursiveTask<Set<Contact>> {
+        private static final long serialVersionUID = 1L;
+
+        private final String name;
+        private final int first;
+        private final int last;
+
+        private ContactSearch(String name, int first, int last) {
+            this.name = name;
+            this.first = first;
+            this.last = last;
+        }
+
+        @Override
+        protected Set<Contact> compute() {
+            if (last - first <= parallelThreshold) {
+                Set<Contact> searched = new HashSet<Contact>();
+                for (Contact member : contactList.subList(first, last)) {
+                    if (member.getName().contains(name)) {
+                        searched.add(member);
+                    }
+                }
+                return searched;
+            }
+            int middle = (first + last) >>> 1;
+            ContactSearch left = new ContactSearch(name, first, middle);
+            left.fork();
+            Set<Contact> searched = new ContactSearch(name, middle, last)
+                                        .compute();
+            searched.addAll(left.join());
+            return searched;
         }
-        return true;
     }
-}
\ No newline at end of file
+}
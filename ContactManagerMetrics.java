@@ -0,0 +1,220 @@
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.lang.management.ManagementFactory;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+/**
+ * Latency histograms and counters for every contact manager operation,
+ * plus gauges for the number of contacts and meetings and the duration
+ * of the last flush. The metrics are recorded by InstrumentedContactManager
+ * and can be published as a platform MBean.
+ *
+ * @author Stefan E. Mayer
+ * @version 1.0
+ */
+public class ContactManagerMetrics implements ContactManagerMetricsMXBean {
+    private ContactManager manager;
+    private volatile boolean enabled;
+    private volatile long lastFlushNanos;
+
+    private LatencyHistogram[] latencies;
+    private LongAdder[] calls;
+    private LongAdder[] errors;
+    private LongAdder[] resultSizes;
+
+    private ObjectName name;
+
+    /**
+     * Create new, enabled metrics for a contact manager.
+     *
+     * @param manager the measured contact manager, used for the gauges
+     */
+    public ContactManagerMetrics(ContactManager manager) {
+        this.manager = manager;
+        this.enabled = true;
+        int operations = InstrumentedContactManager.Operation.values().length;
+        latencies = new LatencyHistogram[operations];
+        calls = new LongAdder[operations];
+        errors = new LongAdder[operations];
+        resultSizes = new LongAdder[operations];
+        for (int i = 0; i < operations; i++) {
+            latencies[i] = new LatencyHistogram();
+            calls[i] = new LongAdder();
+            errors[i] = new LongAdder();
+            resultSizes[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Records a successful call.
+     *
+     * @param operation the operation
+     * @param startNanos the value of System.nanoTime() before the call
+     * @param resultSize the number of contacts or meetings returned
+     */
+    public void record(InstrumentedContactManager.Operation operation,
+                       long startNanos, int resultSize) {
+        long nanos = System.nanoTime() - startNanos;
+        int index = operation.ordinal();
+        latencies[index].record(nanos);
+        calls[index].increment();
+        resultSizes[index].add(resultSize);
+        if (operation == InstrumentedContactManager.Operation.FLUSH) {
+            lastFlushNanos = nanos;
+        }
+    }
+
+    /**
+     * Records a call that threw an exception.
+     *
+     * @param operation the operation
+     * @param startNanos the value of System.nanoTime() before the call
+     */
+    public void recordError(InstrumentedContactManager.Operation operation,
+                            long startNanos) {
+        int index = operation.ordinal();
+        latencies[index].record(System.nanoTime() - startNanos);
+        calls[index].increment();
+        errors[index].increment();
+    }
+
+    /**
+     * Returns the latency histogram of an operation.
+     *
+     * @param operation the operation
+     * @return the latency histogram of the operation
+     */
+    public LatencyHistogram getLatencies(
+               InstrumentedContactManager.Operation operation) {
+        return latencies[operation.ordinal()];
+    }
+
+    /**
+     * Returns the number of calls of an operation.
+     *
+     * @param operation the operation
+     * @return the number of calls
+     */
+    public long getCalls(InstrumentedContactManager.Operation operation) {
+        return calls[operation.ordinal()].sum();
+    }
+
+    /**
+     * Publishes the metrics through the platform MBean server,
+     * as cw4:type=ContactManager,name=<name>.
+     *
+     * @param mbeanName the name of the MBean
+     * @throws IllegalStateException if the MBean cannot be registered
+     */
+    public void register(String mbeanName) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            name = new ObjectName("cw4:type=ContactManager,name="
+                                  + ObjectName.quote(mbeanName));
+            server.registerMBean(this, name);
+        } catch (JMException jmx) {
+            throw new IllegalStateException("MBean cannot be registered", jmx);
+        }
+    }
+
+    /**
+     * Removes the metrics from the platform MBean server.
+     */
+    public void unregister() {
+        if (name == null) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+        } catch (JMException jmx) {
+            jmx.printStackTrace();
+        }
+        name = null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getContactCount() {
+        if (manager instanceof ContactManagerImpl) {
+            return ((ContactManagerImpl)manager).getContactCount();
+        } else if (manager instanceof ShardedContactManager) {
+            return ((ShardedContactManager)manager).getContactCount();
+        }
+        return -1;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getMeetingCount() {
+        if (manager instanceof ContactManagerImpl) {
+            return ((ContactManagerImpl)manager).getMeetingCount();
+        } else if (manager instanceof ShardedContactManager) {
+            return ((ShardedContactManager)manager).getMeetingCount();
+        }
+        return -1;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getLastFlushMicros() {
+        return lastFlushNanos / 1000;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<OperationStats> getOperations() {
+        List<OperationStats> operations = new ArrayList<OperationStats>();
+        for (InstrumentedContactManager.Operation operation
+                 : InstrumentedContactManager.Operation.values()) {
+            int i = operation.ordinal();
+            LatencyHistogram histogram = latencies[i];
+            operations.add(new OperationStats(operation.name(),
+                calls[i].sum(), errors[i].sum(), resultSizes[i].sum(),
+                histogram.getMean() / 1000.0,
+                histogram.getValueAtPercentile(50) / 1000.0,
+                histogram.getValueAtPercentile(99) / 1000.0,
+                histogram.getValueAtPercentile(99.9) / 1000.0,
+                histogram.getMax() / 1000.0));
+        }
+        return operations;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void reset() {
+        for (int i = 0; i < latencies.length; i++) {
+            latencies[i].reset();
+            calls[i].reset();
+            errors[i].reset();
+            resultSizes[i].reset();
+        }
+        lastFlushNanos = 0;
+    }
+}
@@ -0,0 +1,56 @@
+import java.util.List;
+/**
+ * The management interface of the metrics of a contact manager,
+ * published through the platform MBean server.
+ *
+ * @author Stefan E. Mayer
+ * @version 1.0
+ */
+public interface ContactManagerMetricsMXBean {
+    /**
+     * Returns true if operations are measured.
+     *
+     * @return true if instrumentation is enabled
+     */
+    boolean isEnabled();
+
+    /**
+     * Turns measuring operations on or off.
+     *
+     * @param enabled true to enable instrumentation
+     */
+    void setEnabled(boolean enabled);
+
+    /**
+     * Returns the number of contacts, or -1 if it is unknown.
+     *
+     * @return the number of contacts
+     */
+    int getContactCount();
+
+    /**
+     * Returns the number of meetings, or -1 if it is unknown.
+     *
+     * @return the number of meetings
+     */
+    int getMeetingCount();
+
+    /**
+     * Returns how long the last flush() took.
+     *
+     * @return the duration of the last flush in microseconds
+     */
+    long getLastFlushMicros();
+
+    /**
+     * Returns the statistics of every operation.
+     *
+     * @return the statistics of every operation
+     */
+    List<OperationStats> getOperations();
+
+    /**
+     * Clears all counters and histograms.
+     */
+    void reset();
+}
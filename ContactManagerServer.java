@@ -0,0 +1,475 @@
+import java.util.*;
+import java.util.concurrent.*;
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.text.ParsePosition;
+import java.text.SimpleDateFormat;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+/**
+ * An embedded HTTP server answering contact manager queries with JSON.
+ *
+ * Resources (GET only):
+ *   /contacts?name=text                    contacts whose name contains text
+ *   /contacts/{id}                         a contact
+ *   /contacts/{id}/meetings?when=future    future meetings of a contact
+ *   /contacts/{id}/meetings?when=past      past meetings of a contact
+ *   /meetings/{id}                         a meeting
+ *   /meetings?date=yyyy-MM-dd              meetings on a day
+ *
+ * Lists are paged with the offset and limit parameters (default 0 and
+ * 100, at most 1000) and answered as
+ *   {"offset":0,"limit":100,"total":n,"items":[...]}
+ * Responses are streamed with chunked encoding, one item at a time,
+ * so large pages are never built as a single string.
+ *
+ * Every request runs on its own virtual thread if the JDK provides
+ * Executors.newVirtualThreadPerTaskExecutor(), so blocked requests do
+ * not tie up platform threads. On older JDKs a cached thread pool is
+ * used instead.
+ *
+ * IMPORTANT: Requests are answered concurrently, so the contact
+ *            manager must be thread-safe, e.g. a
+ *            SynchronizedContactManager.
+ *
+ * IMPORTANT: Start the JVM with -Dsun.net.httpserver.nodelay=true, as
+ *            main does. Otherwise Nagle's algorithm holds back the last
+ *            chunk of a response until the client's delayed ACK, adding
+ *            about 40 ms to every request on a kept-alive connection.
+ *            The JDK reads the property once, when the first HTTP
+ *            server of the JVM is created.
+ *
+ * @author Stefan E. Mayer
+ * @version 1.0
+ */
+public class ContactManagerServer {
+    /**
+     * The default number of items per page.
+     */
+    public static final int DEFAULT_LIMIT = 100;
+    /**
+     * The largest number of items per page.
+     */
+    public static final int MAX_LIMIT = 1000;
+    private static final int BACKLOG = 1024;
+    private static final String NO_DELAY = "sun.net.httpserver.nodelay";
+    private static final String DAY_FORMAT = "yyyy-MM-dd";
+
+    private ContactManager manager;
+    private HttpServer server;
+    private ExecutorService executor;
+
+    /**
+     * Create a new server for a contact manager. The server
+     * does not accept requests before it is started.
+     *
+     * @param manager a thread-safe contact manager
+     * @param port the port to listen on, or 0 for any free port
+     * @throws IOException if the port cannot be bound
+     */
+    public ContactManagerServer(ContactManager manager, int port)
+                                throws IOException {
+        this.manager = manager;
+        this.server = HttpServer.create(new InetSocketAddress(port), BACKLOG);
+        this.executor = newRequestExecutor();
+        this.server.setExecutor(executor);
+        this.server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                try {
+                    dispatch(exchange);
+                } finally {
+                    exchange.close();
+                }
+            }
+        });
+    }
+
+    /**
+     * Starts accepting requests.
+     */
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * Stops accepting requests and waits up to the given
+     * time for running requests to finish.
+     *
+     * @param delaySeconds the longest time to wait
+     */
+    public void stop(int delaySeconds) {
+        server.stop(delaySeconds);
+        executor.shutdown();
+    }
+
+    /**
+     * Returns the port the server listens on.
+     *
+     * @return the port
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Starts a server for the contacts in contacts.txt.
+     *
+     * @param args optionally the port (default 8080)
+     * @throws IOException if the port cannot be bound
+     */
+    public static void main(String[] args) throws IOException {
+        // Before the first server is created, see the class comment.
+        if (System.getProperty(NO_DELAY) == null) {
+            System.setProperty(NO_DELAY, "true");
+        }
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 8080;
+        ContactManagerServer server = new ContactManagerServer(
+            new SynchronizedContactManager(new ContactManagerImpl()), port);
+        server.start();
+        System.out.println("Listening on port " + server.getPort());
+    }
+
+    /**
+     * Helper method that creates the executor running the requests,
+     * one virtual thread per request if the JDK supports them.
+     *
+     * @return the executor running the requests
+     */
+    private static ExecutorService newRequestExecutor() {
+        try {
+            return (ExecutorService)Executors.class
+                .getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException noVirtualThreads) {
+            return Executors.newCachedThreadPool(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable task) {
+                    Thread thread = new Thread(task, "contact-http");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+    }
+
+    /**
+     * Helper method that routes a request to its resource and turns
+     * exceptions into error responses: 400 for invalid parameters,
+     * 500 for everything else.
+     *
+     * @param exchange the request and response
+     */
+    private void dispatch(HttpExchange exchange) throws IOException {
+        if (!exchange.getRequestMethod().equals("GET")) {
+            sendError(exchange, 405, "Only GET is supported");
+            return;
+        }
+        String[] path = exchange.getRequestURI().getPath().split("/");
+        Map<String, String> query =
+            parseQuery(exchange.getRequestURI().getRawQuery());
+        try {
+            if (path.length == 2 && path[1].equals("contacts")) {
+                String name = query.get("name");
+                List<Contact> found = new ArrayList<Contact>(
+                    manager.getContacts(name == null ? "" : name));
+                Collections.sort(found, new Comparator<Contact>() {
+                    @Override
+                    public int compare(Contact c1, Contact c2) {
+                        return Integer.compare(c1.getId(), c2.getId());
+                    }
+                });
+                sendPage(exchange, query, found);
+            } else if (path.length == 3 && path[1].equals("contacts")) {
+                Contact contact = findContact(parseId(path[2]));
+                if (contact == null) {
+                    sendError(exchange, 404, "Contact not found");
+                } else {
+                    sendItem(exchange, contact);
+                }
+            } else if (path.length == 4 && path[1].equals("contacts")
+                       && path[3].equals("meetings")) {
+                Contact contact = findContact(parseId(path[2]));
+                String when = query.get("when");
+                if (when != null && !when.equals("past")
+                    && !when.equals("future")) {
+                    sendError(exchange, 400,
+                              "Parameter when must be past or future");
+                } else if (contact == null) {
+                    sendError(exchange, 404, "Contact not found");
+                } else if ("past".equals(when)) {
+                    sendPage(exchange, query,
+                             manager.getPastMeetingList(contact));
+                } else {
+                    sendPage(exchange, query,
+                             manager.getFutureMeetingList(contact));
+                }
+            } else if (path.length == 2 && path[1].equals("meetings")) {
+                String date = query.get("date");
+                if (date == null) {
+                    sendError(exchange, 400, "Parameter date is missing");
+                    return;
+                }
+                Calendar day = parseDay(date);
+                if (day == null) {
+                    sendError(exchange, 400, "Date must be " + DAY_FORMAT);
+                    return;
+                }
+                sendPage(exchange, query, manager.getFutureMeetingList(day));
+            } else if (path.length == 3 && path[1].equals("meetings")) {
+                int id = parseId(path[2]);
+                Meeting meeting = manager.getMeeting(id);
+                if (meeting == null) {
+                    sendError(exchange, 404, "Meeting not found");
+                } else {
+                    sendItem(exchange, meeting);
+                }
+            } else {
+                sendError(exchange, 404, "Unknown resource");
+            }
+        } catch (IllegalArgumentException badRequest) {
+            // Invalid parameters, rejected by the helpers below or by
+            // the contact manager.
+            sendError(exchange, 400, badRequest.getMessage());
+        } catch (RuntimeException failed) {
+            failed.printStackTrace();
+            // Too late for an error once a response is being streamed.
+            if (exchange.getResponseCode() == -1) {
+                sendError(exchange, 500, "Internal error");
+            }
+        }
+    }
+
+    /**
+     * Helper method that looks up a contact by its ID.
+     *
+     * @param id the ID of the contact
+     * @return the contact, or null if there is none
+     */
+    private Contact findContact(int id) {
+        try {
+            Set<Contact> found = manager.getContacts(id);
+            return found.isEmpty() ? null : found.iterator().next();
+        } catch (IllegalArgumentException unknown) {
+            return null;
+        }
+    }
+
+    /**
+     * Helper method that streams a page of a list.
+     *
+     * @param exchange the request and response
+     * @param query the query parameters, with offset and limit
+     * @param items the complete list
+     */
+    private static void sendPage(HttpExchange exchange,
+                                 Map<String, String> query,
+                                 List<?> items) throws IOException {
+        int offset = parseInt(query.get("offset"), 0);
+        int limit = Math.min(parseInt(query.get("limit"), DEFAULT_LIMIT),
+                             MAX_LIMIT);
+        if (offset < 0 || limit < 0) {
+            throw new IllegalArgumentException("Offset and limit "
+                                               + "must not be negative");
+        }
+        Writer out = openResponse(exchange, 200);
+        out.write("{\"offset\":" + offset + ",\"limit\":" + limit
+                  + ",\"total\":" + items.size() + ",\"items\":[");
+        int end = (int)Math.min((long)offset + limit, items.size());
+        for (int i = offset; i < end; i++) {
+            if (i > offset) {
+                out.write(',');
+            }
+            writeItem(out, items.get(i));
+        }
+        out.write("]}");
+        out.close();
+    }
+
+    /**
+     * Helper method that sends a single contact or meeting.
+     *
+     * @param exchange the request and response
+     * @param item the contact or meeting
+     */
+    private static void sendItem(HttpExchange exchange, Object item)
+                                 throws IOException {
+        Writer out = openResponse(exchange, 200);
+        writeItem(out, item);
+        out.close();
+    }
+
+    /**
+     * Helper method that sends an error.
+     *
+     * @param exchange the request and response
+     * @param status the HTTP status code
+     * @param message the error message
+     */
+    private static void sendError(HttpExchange exchange, int status,
+                                  String message) throws IOException {
+        Writer out = openResponse(exchange, status);
+        out.write("{\"error\":");
+        writeString(out, message == null ? "" : message);
+        out.write('}');
+        out.close();
+    }
+
+    /**
+     * Helper method that sends the response headers and returns
+     * a buffered writer for a chunked JSON body.
+     *
+     * @param exchange the request and response
+     * @param status the HTTP status code
+     * @return the writer for the body
+     */
+    private static Writer openResponse(HttpExchange exchange, int status)
+                                       throws IOException {
+        exchange.getResponseHeaders().set("Content-Type",
+                                          "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, 0);
+        return new BufferedWriter(new OutputStreamWriter(
+            exchange.getResponseBody(), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Helper method that writes a contact or meeting as JSON.
+     *
+     * @param out the writer
+     * @param item the contact or meeting
+     */
+    private static void writeItem(Writer out, Object item) throws IOException {
+        if (item instanceof Contact) {
+            Contact contact = (Contact)item;
+            out.write("{\"id\":" + contact.getId() + ",\"name\":");
+            writeString(out, contact.getName());
+            out.write(",\"notes\":");
+            writeString(out, contact.getNotes());
+            out.write('}');
+            return;
+        }
+        Meeting meeting = (Meeting)item;
+        SimpleDateFormat format =
+            new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss");
+        out.write("{\"id\":" + meeting.getId() + ",\"date\":\""
+                  + format.format(meeting.getDate().getTime()) + "\"");
+        if (meeting instanceof PastMeeting) {
+            out.write(",\"notes\":");
+            writeString(out, ((PastMeeting)meeting).getNotes());
+        }
+        out.write(",\"contacts\":[");
+        boolean first = true;
+        for (Contact contact : meeting.getContacts()) {
+            if (!first) {
+                out.write(',');
+            }
+            out.write(Integer.toString(contact.getId()));
+            first = false;
+        }
+        out.write("]}");
+    }
+
+    /**
+     * Helper method that writes a JSON string literal.
+     *
+     * @param out the writer
+     * @param text the string
+     */
+    private static void writeString(Writer out, String text)
+                                    throws IOException {
+        out.write('"');
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '"' || c == '\\') {
+                out.write('\\');
+                out.write(c);
+            } else if (c < 0x20) {
+                out.write(String.format("\\u%04x", (int)c));
+            } else {
+                out.write(c);
+            }
+        }
+        out.write('"');
+    }
+
+    /**
+     * Helper method that splits a raw query string into its parameters.
+     *
+     * @param rawQuery the query string, or null
+     * @return the decoded parameters
+     */
+    private static Map<String, String> parseQuery(String rawQuery) {
+        Map<String, String> parameters = new HashMap<String, String>();
+        if (rawQuery == null) {
+            return parameters;
+        }
+        for (String parameter : rawQuery.split("&")) {
+            int equals = parameter.indexOf('=');
+            if (equals > 0) {
+                parameters.put(
+                    URLDecoder.decode(parameter.substring(0, equals),
+                                      StandardCharsets.UTF_8),
+                    URLDecoder.decode(parameter.substring(equals + 1),
+                                      StandardCharsets.UTF_8));
+            }
+        }
+        return parameters;
+    }
+
+    /**
+     * Helper method that parses an optional number.
+     *
+     * @param value the number, or null
+     * @param defaultValue the value used if the number is missing
+     * @return the number
+     * @throws IllegalArgumentException if the value is not a number
+     */
+    private static int parseInt(String value, int defaultValue) {
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException notNumber) {
+            throw new IllegalArgumentException("Offset and limit "
+                                               + "must be numbers");
+        }
+    }
+
+    /**
+     * Helper method that parses the ID in a path.
+     *
+     * @param value the ID
+     * @return the ID
+     * @throws IllegalArgumentException if the value is not a number
+     */
+    private static int parseId(String value) {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException notNumber) {
+            throw new IllegalArgumentException("ID must be a number");
+        }
+    }
+
+    /**
+     * Helper method that parses a day, rejecting invalid dates such as
+     * 2015-02-30 and trailing text.
+     *
+     * @param value the day as yyyy-MM-dd
+     * @return the start of the day, or null if the value is invalid
+     */
+    private static Calendar parseDay(String value) {
+        SimpleDateFormat format = new SimpleDateFormat(DAY_FORMAT);
+        format.setLenient(false);
+        ParsePosition position = new ParsePosition(0);
+        Date date = format.parse(value, position);
+        if (date == null || position.getIndex() != value.length()) {
+            return null;
+        }
+        Calendar day = new GregorianCalendar();
+        day.setTime(date);
+        return day;
+    }
+}
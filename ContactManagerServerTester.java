@@ -0,0 +1,138 @@
+import static org.junit.Assert.*;
+import org.junit.*;
+import java.util.*;
+import java.io.*;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The test class ContactManagerServerTester.
+ *
+ * @author  Stefan E. Mayer
+ * @version 1.0
+ */
+public class ContactManagerServerTester {
+    private final static File FILE = new File("server.txt");
+
+    private ContactManagerServer server;
+
+    /**
+     * Sets up the test fixture.
+     *
+     * Called before every test case method.
+     */
+    @Before
+    public void setUp() throws IOException {
+        FILE.delete();
+        ContactManager manager = new ContactManagerImpl(FILE);
+        manager.addNewContact("c1", "notes \"1\"");
+        manager.addNewContact("c2", "notes2");
+        manager.addNewContact("c3", "notes3");
+        Calendar later = new GregorianCalendar();
+        later.add(Calendar.HOUR_OF_DAY, 2);
+        manager.addFutureMeeting(manager.getContacts(1, 2), later);
+        server = new ContactManagerServer(
+                     new SynchronizedContactManager(manager), 0);
+        server.start();
+    }
+
+    /**
+     * Tears down the test fixture.
+     *
+     * Called after every test case method.
+     */
+    @After
+    public void tearDown() {
+        server.stop(0);
+        server = null;
+        FILE.delete();
+    }
+
+    /**
+     * Tests if a contact is returned as escaped JSON.
+     */
+    @Test
+    public void testContact() throws IOException {
+        assertEquals("{\"id\":1,\"name\":\"c1\",\"notes\":\"notes \\\"1\\\"\"}",
+                     get("/contacts/1", 200));
+        get("/contacts/7", 404);
+        get("/contacts/x", 400);
+    }
+
+    /**
+     * Tests if lists are paged.
+     */
+    @Test
+    public void testPagination() throws IOException {
+        String page = get("/contacts?name=c&offset=1&limit=1", 200);
+        assertTrue(page.startsWith(
+            "{\"offset\":1,\"limit\":1,\"total\":3,\"items\":[{\"id\":2,"));
+        assertTrue(get("/contacts?name=c&offset=5", 200)
+                   .endsWith("\"items\":[]}"));
+    }
+
+    /**
+     * Tests if the meetings of a contact are returned.
+     */
+    @Test
+    public void testMeetings() throws IOException {
+        String meetings = get("/contacts/2/meetings?when=future", 200);
+        assertTrue(meetings.contains("\"total\":1"));
+        assertTrue(meetings.contains("\"id\":1,\"date\":"));
+        assertTrue(get("/meetings/1", 200).contains("\"contacts\":["));
+        get("/meetings/2", 404);
+        get("/meetings", 400);
+    }
+
+    /**
+     * Tests if missing and ill-typed parameters are rejected.
+     */
+    @Test
+    public void testBadRequests() throws IOException {
+        get("/contacts?limit=ten", 400);
+        get("/contacts?offset=-1", 400);
+        get("/contacts/2/meetings?when=soon", 400);
+        get("/meetings/x", 400);
+        get("/meetings?date=tomorrow", 400);
+        get("/meetings?date=2015-02-30", 400);
+        get("/meetings?date=2015-05-25T10:00", 400);
+        assertTrue(get("/meetings?date=2015-05-25", 200)
+                   .contains("\"total\":0"));
+    }
+
+    /**
+     * Tests if unexpected failures are answered as internal errors.
+     */
+    @Test
+    public void testInternalError() throws IOException {
+        server.stop(0);
+        ContactManager broken = new ContactManagerImpl(FILE) {
+            @Override
+            public Meeting getMeeting(int id) {
+                throw new IllegalStateException("Broken!");
+            }
+        };
+        server = new ContactManagerServer(
+                     new SynchronizedContactManager(broken), 0);
+        server.start();
+        assertEquals("{\"error\":\"Internal error\"}",
+                     get("/meetings/1", 500));
+    }
+
+    /**
+     * Helper method that sends a GET request and checks the status.
+     */
+    private String get(String path, int status) throws IOException {
+        URL url = new URL("http://localhost:" + server.getPort() + path);
+        HttpURLConnection connection = (HttpURLConnection)url.openConnection();
+        assertEquals(status, connection.getResponseCode());
+        InputStream in = status == 200 ? connection.getInputStream()
+                                       : connection.getErrorStream();
+        try {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        } finally {
+            in.close();
+        }
+    }
+}
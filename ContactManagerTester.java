@@ -543,6 +543,20 @@ public class ContactManagerTester {
                      manager.getPastMeeting(TWO_HOURS_EARLIER_ID).getNotes());
     }
 
+    /**
+     * Test if parallel scans return the same results as sequential ones.
+     */
+    @Test
+    public void testParallelScans() {
+        for (int i = 0; i < 50; i++) {
+            manager.addNewContact("parallel" + i, NOTES);
+        }
+        List<Meeting> sequential = manager.getFutureMeetingList(twoHoursLater);
+        ((ContactManagerImpl)manager).setParallelThreshold(3);
+        assertEquals(50, manager.getContacts("parallel").size());
+        assertEquals(sequential, manager.getFutureMeetingList(twoHoursLater));
+    }
+
     /**
      * Test if a config file is created when there isn't one.
      */
@@ -596,6 +610,72 @@ public class ContactManagerTester {
         assertNull(anotherEmpty.getMeeting(0));
     }
 
+    /**
+     * Tests if cancelled meetings are gone from all lists and files.
+     */
+    @Test
+    public void testCancelMeeting() {
+        manager.cancelMeeting(TWO_HOURS_LATER_ID);
+        manager.cancelMeeting(TWO_HOURS_EARLIER_ID);
+        assertNull(manager.getMeeting(TWO_HOURS_LATER_ID));
+        for (Contact contact : allContacts) {
+            assertEquals(0, manager.getFutureMeetingList(contact).size());
+            assertEquals(0, manager.getPastMeetingList(contact).size());
+        }
+        assertEquals(0, manager.getFutureMeetingList(twoHoursLater).size()
+                        + manager.getFutureMeetingList(twoHoursEarlier)
+                              .size());
+
+        int id = manager.addFutureMeeting(onlyOneContact, threeHoursLater);
+        manager.flush();
+        ContactManager loaded = new ContactManagerImpl();
+        assertNull(loaded.getMeeting(TWO_HOURS_EARLIER_ID));
+        assertEquals(id, loaded.getFutureMeeting(id).getId());
+    }
+
+    /**
+     * Tests if cancelling an unknown meeting throws an exception.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testCancelInvalidMeeting() {
+        manager.cancelMeeting(INVALID_ID);
+    }
+
+    /**
+     * Tests if a rescheduled meeting keeps its ID and moves
+     * between the lists.
+     */
+    @Test
+    public void testRescheduleMeeting() {
+        manager.rescheduleMeeting(TWO_HOURS_LATER_ID, threeHoursLater,
+                                  onlyLazy);
+        FutureMeeting moved = manager.getFutureMeeting(TWO_HOURS_LATER_ID);
+        assertEquals(threeHoursLater, moved.getDate());
+        assertEquals(onlyLazy, moved.getContacts());
+        Contact lazy = onlyLazy.iterator().next();
+        assertEquals(1, manager.getFutureMeetingList(lazy).size());
+        Contact c2 = onlyOneContact.iterator().next();
+        assertEquals(0, manager.getFutureMeetingList(c2).size());
+    }
+
+    /**
+     * Tests if rescheduling a past meeting throws an exception.
+     */
+    @Test(expected = IllegalStateException.class)
+    public void testReschedulePastMeeting() {
+        manager.rescheduleMeeting(TWO_HOURS_EARLIER_ID, threeHoursLater,
+                                  allContacts);
+    }
+
+    /**
+     * Tests if rescheduling into the past throws an exception.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testRescheduleIntoPast() {
+        manager.rescheduleMeeting(TWO_HOURS_LATER_ID, threeHoursEarlier,
+                                  allContacts);
+    }
+
     /**
      * Helper method to find contacts in sets via name.
      */
@@ -0,0 +1,113 @@
+import java.util.*;
+/**
+ * A snapshot of the meeting statistics of one contact, e.g. for a
+ * dashboard. See ContactManagerImpl.getContactStats.
+ *
+ * Like getPastMeetingList and getFutureMeetingList, past meetings are
+ * those with notes and upcoming meetings are all others. Occurrences of
+ * recurring meetings are only counted once they are stored on their
+ * own, but they are taken into account for the next meeting.
+ *
+ * @author Stefan E. Mayer
+ * @version 1.0
+ */
+public class ContactStats {
+    private final int contactId;
+    private final int pastMeetings;
+    private final int upcomingMeetings;
+    private final Calendar lastMet;
+    private final Calendar nextMeeting;
+    private final SortedMap<Integer, Integer> meetingsPerMonth;
+
+    /**
+     * Create a new snapshot.
+     *
+     * @param contactId the ID of the contact
+     * @param pastMeetings the number of past meetings
+     * @param upcomingMeetings the number of upcoming meetings
+     * @param lastMet the date of the latest past meeting, or null
+     * @param nextMeeting the date of the earliest meeting from now on,
+     *        or null
+     * @param meetingsPerMonth the number of meetings per month, keyed
+     *        by year * 100 + month (1 to 12), e.g. 201603
+     */
+    public ContactStats(int contactId, int pastMeetings,
+                        int upcomingMeetings, Calendar lastMet,
+                        Calendar nextMeeting,
+                        SortedMap<Integer, Integer> meetingsPerMonth) {
+        this.contactId = contactId;
+        this.pastMeetings = pastMeetings;
+        this.upcomingMeetings = upcomingMeetings;
+        this.lastMet = lastMet == null ? null : (Calendar)lastMet.clone();
+        this.nextMeeting = nextMeeting == null
+                           ? null : (Calendar)nextMeeting.clone();
+        this.meetingsPerMonth = Collections.unmodifiableSortedMap(
+            new TreeMap<Integer, Integer>(meetingsPerMonth));
+    }
+
+    /**
+     * Returns the ID of the contact.
+     *
+     * @return the ID of the contact
+     */
+    public int getContactId() {
+        return contactId;
+    }
+
+    /**
+     * Returns the number of meetings with the contact.
+     *
+     * @return the number of past and upcoming meetings
+     */
+    public int getTotalMeetings() {
+        return pastMeetings + upcomingMeetings;
+    }
+
+    /**
+     * Returns the number of past meetings with the contact.
+     *
+     * @return the number of past meetings
+     */
+    public int getPastMeetings() {
+        return pastMeetings;
+    }
+
+    /**
+     * Returns the number of upcoming meetings with the contact.
+     *
+     * @return the number of upcoming meetings
+     */
+    public int getUpcomingMeetings() {
+        return upcomingMeetings;
+    }
+
+    /**
+     * Returns the date of the latest past meeting with the contact.
+     *
+     * @return the date, or null if there is no past meeting
+     */
+    public Calendar getLastMet() {
+        return lastMet == null ? null : (Calendar)lastMet.clone();
+    }
+
+    /**
+     * Returns the date of the earliest meeting with the contact from the
+     * time of the snapshot on, including recurring meetings.
+     *
+     * @return the date, or null if there is no such meeting
+     */
+    public Calendar getNextMeeting() {
+        return nextMeeting == null ? null : (Calendar)nextMeeting.clone();
+    }
+
+    /**
+     * Returns the number of meetings with the contact per month.
+     * Months without meetings are left out.
+     *
+     * @return the numbers of meetings, keyed by year * 100 + month
+     *         (1 to 12), e.g. 201603 for March 2016
+     */
+    public SortedMap<Integer, Integer> getMeetingsPerMonth() {
+        return meetingsPerMonth;
+    }
+}
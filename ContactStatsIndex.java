@@ -0,0 +1,222 @@
+import java.util.*;
+/**
+ * Keeps the meeting statistics of every contact up to date, so they can
+ * be read without listing the meetings of the contact.
+ *
+ * For every contact the index counts its past and upcoming meetings and
+ * its meetings per month, and keeps the dates of its past and upcoming
+ * meetings in sorted maps for the last and the next meeting. Adding or
+ * removing a meeting with c participants costs O(c log n) for contacts
+ * with n meetings. Reading the statistics of a contact costs O(log n)
+ * plus the number of months with meetings and of recurring meetings of
+ * the contact.
+ *
+ * The index is not thread-safe; reads may run concurrently with each
+ * other but not with changes.
+ *
+ * @author Stefan E. Mayer
+ * @version 1.0
+ */
+public class ContactStatsIndex {
+    // Per contact ID: the statistics of its meetings.
+    private Map<Integer, Aggregate> aggregates;
+    // Per contact ID: the recurring meetings of the contact.
+    private Map<Integer, List<RecurringMeeting>> recurring;
+
+    /**
+     * Create a new, empty index.
+     */
+    public ContactStatsIndex() {
+        this.aggregates = new HashMap<Integer, Aggregate>();
+        this.recurring = new HashMap<Integer, List<RecurringMeeting>>();
+    }
+
+    /**
+     * Counts a meeting for all of its participants.
+     *
+     * @param meeting the meeting
+     */
+    public void add(Meeting meeting) {
+        Calendar date = meeting.getDate();
+        int month = monthOf(date);
+        boolean past = meeting instanceof PastMeeting;
+        for (Contact contact : meeting.getContacts()) {
+            Aggregate aggregate = aggregates.get(contact.getId());
+            if (aggregate == null) {
+                aggregate = new Aggregate();
+                aggregates.put(contact.getId(), aggregate);
+            }
+            aggregate.add(date.getTimeInMillis(), month, past);
+        }
+    }
+
+    /**
+     * Stops counting a meeting, e.g. because it was cancelled.
+     *
+     * @param meeting the meeting, as it was added
+     */
+    public void remove(Meeting meeting) {
+        Calendar date = meeting.getDate();
+        int month = monthOf(date);
+        boolean past = meeting instanceof PastMeeting;
+        for (Contact contact : meeting.getContacts()) {
+            Aggregate aggregate = aggregates.get(contact.getId());
+            if (aggregate != null) {
+                aggregate.remove(date.getTimeInMillis(), month, past);
+            }
+        }
+    }
+
+    /**
+     * Takes a recurring meeting into account for the next meeting of
+     * its participants.
+     *
+     * @param series the recurring meeting
+     */
+    public void addSeries(RecurringMeeting series) {
+        for (Contact contact : series.getContacts()) {
+            List<RecurringMeeting> ofContact = recurring.get(contact.getId());
+            if (ofContact == null) {
+                ofContact = new ArrayList<RecurringMeeting>();
+                recurring.put(contact.getId(), ofContact);
+            }
+            ofContact.add(series);
+        }
+    }
+
+    /**
+     * Forgets all meetings of a contact, e.g. because it was deleted.
+     *
+     * @param contact the contact
+     */
+    public void removeContact(Contact contact) {
+        aggregates.remove(contact.getId());
+        recurring.remove(contact.getId());
+    }
+
+    /**
+     * Returns the statistics of a contact.
+     *
+     * @param contact the contact
+     * @param now the current time in milliseconds since the epoch, from
+     *        which on the next meeting is looked for
+     * @return the statistics
+     */
+    public ContactStats getStats(Contact contact, long now) {
+        Aggregate aggregate = aggregates.get(contact.getId());
+        if (aggregate == null) {
+            aggregate = new Aggregate();
+        }
+        Long next = aggregate.upcomingDates.ceilingKey(now);
+        List<RecurringMeeting> ofContact = recurring.get(contact.getId());
+        if (ofContact != null) {
+            for (RecurringMeeting series : ofContact) {
+                Iterator<Long> times = series.times(now);
+                if (times.hasNext()) {
+                    long time = times.next();
+                    if (next == null || time < next) {
+                        next = time;
+                    }
+                }
+            }
+        }
+        Long last = aggregate.pastDates.isEmpty()
+                    ? null : aggregate.pastDates.lastKey();
+        return new ContactStats(contact.getId(), aggregate.past,
+                                aggregate.upcoming, toCalendar(last),
+                                toCalendar(next), aggregate.months);
+    }
+
+    /**
+     * Helper method that returns the month of a date.
+     *
+     * @param date the date
+     * @return year * 100 + month (1 to 12)
+     */
+    private static int monthOf(Calendar date) {
+        return date.get(Calendar.YEAR) * 100 + date.get(Calendar.MONTH) + 1;
+    }
+
+    /**
+     * Helper method that turns a time into a date.
+     *
+     * @param time the time in milliseconds since the epoch, or null
+     * @return the date, or null
+     */
+    private static Calendar toCalendar(Long time) {
+        if (time == null) {
+            return null;
+        }
+        Calendar date = new GregorianCalendar();
+        date.setTimeInMillis(time);
+        return date;
+    }
+
+    /**
+     * Helper method that adds one to a count in a map.
+     *
+     * @param counts the counts
+     * @param key the key of the count
+     */
+    private static <K> void increment(Map<K, Integer> counts, K key) {
+        Integer count = counts.get(key);
+        counts.put(key, count == null ? 1 : count + 1);
+    }
+
+    /**
+     * Helper method that subtracts one from a count in a map and removes
+     * counts that reach zero.
+     *
+     * @param counts the counts
+     * @param key the key of the count
+     */
+    private static <K> void decrement(Map<K, Integer> counts, K key) {
+        Integer count = counts.get(key);
+        if (count == null) {
+            return;
+        }
+        if (count > 1) {
+            counts.put(key, count - 1);
+        } else {
+            counts.remove(key);
+        }
+    }
+
+    /**
+     * The statistics of the meetings of one contact.
+     */
+    private static class Aggregate {
+        private int past;
+        private int upcoming;
+        // Start time of meetings -> number of meetings.
+        private TreeMap<Long, Integer> pastDates =
+            new TreeMap<Long, Integer>();
+        private TreeMap<Long, Integer> upcomingDates =
+            new TreeMap<Long, Integer>();
+        // Year * 100 + month -> number of meetings.
+        private TreeMap<Integer, Integer> months =
+            new TreeMap<Integer, Integer>();
+
+        private void add(long time, int month, boolean isPast) {
+            if (isPast) {
+                past++;
+                increment(pastDates, time);
+            } else {
+                upcoming++;
+                increment(upcomingDates, time);
+            }
+            increment(months, month);
+        }
+
+        private void remove(long time, int month, boolean isPast) {
+            if (isPast) {
+                past--;
+                decrement(pastDates, time);
+            } else {
+                upcoming--;
+                decrement(upcomingDates, time);
+            }
+            decrement(months, month);
+        }
+    }
+}
@@ -0,0 +1,206 @@
+import static org.junit.Assert.*;
+import org.junit.*;
+import java.util.*;
+import java.io.*;
+
+/**
+ * The test class ContactStatsTester.
+ *
+ * @author  Stefan E. Mayer
+ * @version 1.0
+ */
+public class ContactStatsTester {
+    private final static File FILE = new File("stats.txt");
+
+    private ContactManagerImpl manager;
+    private Contact alice;
+    private Contact bob;
+
+    /**
+     * Sets up the test fixture.
+     *
+     * Called before every test case method.
+     */
+    @Before
+    public void setUp() {
+        FILE.delete();
+        manager = new ContactManagerImpl(FILE);
+        manager.addNewContact("Alice", "");
+        manager.addNewContact("Bob", "");
+        alice = manager.getContacts(1).iterator().next();
+        bob = manager.getContacts(2).iterator().next();
+    }
+
+    /**
+     * Tears down the test fixture.
+     *
+     * Called after every test case method.
+     */
+    @After
+    public void tearDown() {
+        manager = null;
+        FILE.delete();
+    }
+
+    /**
+     * Tests if the statistics follow new meetings, notes, cancellations
+     * and rescheduling.
+     */
+    @Test
+    public void testUpdates() {
+        ContactStats stats = manager.getContactStats(alice);
+        assertEquals(0, stats.getTotalMeetings());
+        assertNull(stats.getLastMet());
+        assertNull(stats.getNextMeeting());
+        assertTrue(stats.getMeetingsPerMonth().isEmpty());
+
+        Calendar past = new GregorianCalendar(2016, Calendar.MARCH, 1, 9, 0);
+        manager.addNewPastMeeting(manager.getContacts(1, 2), past, "Kickoff");
+        Calendar next = new GregorianCalendar();
+        next.add(Calendar.DATE, 2);
+        Calendar later = new GregorianCalendar();
+        later.add(Calendar.DATE, 5);
+        int first = manager.addFutureMeeting(manager.getContacts(1), later);
+        int second = manager.addFutureMeeting(manager.getContacts(1), next);
+
+        stats = manager.getContactStats(alice);
+        assertEquals(3, stats.getTotalMeetings());
+        assertEquals(1, stats.getPastMeetings());
+        assertEquals(2, stats.getUpcomingMeetings());
+        assertEquals(past, stats.getLastMet());
+        assertEquals(next.getTimeInMillis(),
+                     stats.getNextMeeting().getTimeInMillis());
+        assertEquals(Integer.valueOf(1),
+                     stats.getMeetingsPerMonth().get(201603));
+        assertEquals(1, manager.getContactStats(bob).getTotalMeetings());
+
+        manager.cancelMeeting(second);
+        assertEquals(later.getTimeInMillis(), manager.getContactStats(alice)
+                                                  .getNextMeeting()
+                                                  .getTimeInMillis());
+        manager.rescheduleMeeting(first, next, manager.getContacts(2));
+        stats = manager.getContactStats(alice);
+        assertEquals(1, stats.getTotalMeetings());
+        assertNull(stats.getNextMeeting());
+        assertEquals(1, manager.getContactStats(bob).getUpcomingMeetings());
+    }
+
+    /**
+     * Tests if a meeting with notes counts as past from then on.
+     */
+    @Test
+    public void testNotes() {
+        manager.getContactStats(alice);
+        // A future meeting whose date has passed, e.g. from a replica.
+        Calendar date = new GregorianCalendar(2016, Calendar.MAY, 3, 9, 0);
+        manager.apply(ChangeEvent.meetingAdded(
+            new FutureMeetingImpl(7, manager.getContacts(1), date)));
+        ContactStats stats = manager.getContactStats(alice);
+        assertEquals(0, stats.getPastMeetings());
+        assertEquals(1, stats.getUpcomingMeetings());
+        assertNull(stats.getNextMeeting());
+
+        manager.addMeetingNotes(7, "Done");
+        stats = manager.getContactStats(alice);
+        assertEquals(1, stats.getPastMeetings());
+        assertEquals(0, stats.getUpcomingMeetings());
+        assertEquals(date, stats.getLastMet());
+        assertEquals(Integer.valueOf(1),
+                     stats.getMeetingsPerMonth().get(201605));
+    }
+
+    /**
+     * Tests if recurring meetings count for the next meeting only.
+     */
+    @Test
+    public void testRecurringMeeting() {
+        Calendar start = tomorrow(new GregorianCalendar());
+        manager.addRecurringMeeting(manager.getContacts(1), start,
+                                    RecurrenceRule.parse("FREQ=DAILY"));
+        Calendar later = (Calendar)start.clone();
+        later.add(Calendar.DATE, 3);
+        manager.addFutureMeeting(manager.getContacts(1), later);
+
+        ContactStats stats = manager.getContactStats(alice);
+        assertEquals(1, stats.getTotalMeetings());
+        assertEquals(start.getTimeInMillis(),
+                     stats.getNextMeeting().getTimeInMillis());
+    }
+
+    /**
+     * Tests if the statistics match the meeting lists after random
+     * changes and after loading.
+     */
+    @Test
+    public void testMatchesMeetingLists() {
+        Random random = new Random(42);
+        manager.getContactStats(alice);
+        List<Integer> ids = new ArrayList<Integer>();
+        for (int i = 0; i < 300; i++) {
+            Calendar date = new GregorianCalendar();
+            date.add(Calendar.DATE, random.nextInt(1000) + 1);
+            Set<Contact> contacts = random.nextBoolean()
+                                    ? manager.getContacts(1, 2)
+                                    : manager.getContacts(1 + i % 2);
+            int choice = random.nextInt(4);
+            if (choice == 0 && !ids.isEmpty()) {
+                manager.cancelMeeting(ids.remove(random.nextInt(ids.size())));
+            } else if (choice == 1) {
+                date.add(Calendar.DATE, -2000);
+                manager.addNewPastMeeting(contacts, date, "Notes " + i);
+            } else {
+                ids.add(manager.addFutureMeeting(contacts, date));
+            }
+        }
+        assertMatches(alice);
+        assertMatches(bob);
+        manager.flush();
+        manager = new ContactManagerImpl(FILE);
+        assertMatches(manager.getContacts(1).iterator().next());
+        assertMatches(manager.getContacts(2).iterator().next());
+    }
+
+    /**
+     * Tests if unknown contacts are rejected.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownContact() {
+        manager.deleteContact(2);
+        manager.getContactStats(bob);
+    }
+
+    /**
+     * Helper method that checks the statistics of a contact against its
+     * meeting lists.
+     *
+     * @param contact the contact
+     */
+    private void assertMatches(Contact contact) {
+        ContactStats stats = manager.getContactStats(contact);
+        List<PastMeeting> past = manager.getPastMeetingList(contact);
+        List<Meeting> future = manager.getFutureMeetingList(contact);
+        assertEquals(past.size(), stats.getPastMeetings());
+        assertEquals(future.size(), stats.getUpcomingMeetings());
+        assertEquals(past.get(past.size() - 1).getDate(),
+                     stats.getLastMet());
+        assertEquals(future.get(0).getDate().getTimeInMillis(),
+                     stats.getNextMeeting().getTimeInMillis());
+        int total = 0;
+        for (int count : stats.getMeetingsPerMonth().values()) {
+            total += count;
+        }
+        assertEquals(stats.getTotalMeetings(), total);
+    }
+
+    /**
+     * Helper method that returns the day after a date.
+     *
+     * @param date the date
+     * @return the next day
+     */
+    private static Calendar tomorrow(Calendar date) {
+        Calendar day = (Calendar)date.clone();
+        day.add(Calendar.DATE, 1);
+        return day;
+    }
+}
@@ -0,0 +1,406 @@
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.function.Consumer;
+import java.text.Normalizer;
+/**
+ * Finds clusters of contacts that are probably duplicates of each
+ * other, without comparing every contact with every other one.
+ *
+ * Each contact is turned into a set of shingles: the three letter
+ * sequences of its normalized name (lower case, without accents and
+ * punctuation) and the words of its notes. The similarity of two
+ * contacts is the Jaccard similarity of their shingles, which is
+ * estimated by MinHash signatures: the fraction of hash functions for
+ * which both contacts have the same smallest shingle hash.
+ *
+ * Locality-sensitive hashing finds the candidate pairs: signatures are
+ * cut into bands, and contacts whose signatures agree on all rows of
+ * some band land in the same bucket. Only contacts sharing a bucket
+ * are compared, so the work grows about linearly with the number of
+ * contacts. Pairs whose estimated similarity reaches the threshold are
+ * joined in a union-find structure; its sets are the clusters.
+ *
+ * IMPORTANT: Within a bucket, every contact is compared with the first
+ *            and the previous contact of the bucket only, so a cluster
+ *            may occasionally be split where a complete comparison
+ *            would have joined it. Results are candidates for a user
+ *            to review, not certain duplicates.
+ *
+ * Signatures and bands are computed in parallel on a ForkJoin pool.
+ * Clusters are handed to a consumer one at a time; no list of pairs
+ * is ever built.
+ *
+ * @author Stefan E. Mayer
+ * @version 1.0
+ */
+public class DuplicateDetector {
+    /**
+     * The default number of bands.
+     */
+    public static final int DEFAULT_BANDS = 16;
+    /**
+     * The default number of rows per band.
+     */
+    public static final int DEFAULT_ROWS = 4;
+    /**
+     * The default estimated similarity of duplicates.
+     */
+    public static final double DEFAULT_THRESHOLD = 0.5;
+    // The number of contacts per parallel task.
+    private static final int CHUNK = 4096;
+
+    private int bands;
+    private int rows;
+    private double threshold;
+    private long[] seeds;
+    private ForkJoinPool pool;
+
+    /**
+     * Create a new detector with the default bands, rows and threshold,
+     * running on the common ForkJoin pool.
+     */
+    public DuplicateDetector() {
+        this(DEFAULT_BANDS, DEFAULT_ROWS, DEFAULT_THRESHOLD,
+             ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Create a new detector. Pairs with a similarity of about
+     * (1 / bands) ^ (1 / rows) have an even chance to be compared;
+     * more bands find more pairs at a higher cost.
+     *
+     * @param bands the number of bands
+     * @param rows the number of hash functions per band
+     * @param threshold the estimated similarity of duplicates, 0 to 1
+     * @param pool the pool running the parallel tasks
+     * @throws IllegalArgumentException if an argument is out of range
+     */
+    public DuplicateDetector(int bands, int rows, double threshold,
+                             ForkJoinPool pool) {
+        if (bands <= 0 || rows <= 0) {
+            throw new IllegalArgumentException(
+                      "Bands and rows must be positive!");
+        }
+        if (threshold < 0 || threshold > 1) {
+            throw new IllegalArgumentException(
+                      "Threshold must be between 0 and 1!");
+        }
+        this.bands = bands;
+        this.rows = rows;
+        this.threshold = threshold;
+        this.pool = pool;
+        this.seeds = new long[bands * rows];
+        Random random = new Random(42);
+        for (int i = 0; i < seeds.length; i++) {
+            seeds[i] = random.nextLong() | 1;
+        }
+    }
+
+    /**
+     * Finds the clusters of probable duplicates.
+     *
+     * @param contacts the contacts to check
+     * @param clusters receives each cluster of two or more contacts
+     * @return the number of clusters
+     */
+    public int detect(Collection<Contact> contacts,
+                      Consumer<Set<Contact>> clusters) {
+        Contact[] all = contacts.toArray(new Contact[0]);
+        final int[][] signatures = new int[all.length][];
+        pool.invoke(new SignatureTask(all, signatures, 0, all.length));
+
+        final UnionFind sets = new UnionFind(all.length);
+        List<ForkJoinTask<?>> tasks = new ArrayList<ForkJoinTask<?>>();
+        for (int band = 0; band < bands; band++) {
+            final int current = band;
+            tasks.add(pool.submit(new Runnable() {
+                @Override
+                public void run() {
+                    joinBand(current, signatures, sets);
+                }
+            }));
+        }
+        for (ForkJoinTask<?> task : tasks) {
+            task.join();
+        }
+
+        // Sorting by root puts the members of each cluster next to
+        // each other, so clusters can be handed out one at a time.
+        long[] byRoot = new long[all.length];
+        for (int i = 0; i < all.length; i++) {
+            byRoot[i] = ((long)sets.find(i) << 32) | i;
+        }
+        Arrays.sort(byRoot);
+        int count = 0;
+        int start = 0;
+        while (start < byRoot.length) {
+            int end = start + 1;
+            while (end < byRoot.length
+                   && byRoot[end] >>> 32 == byRoot[start] >>> 32) {
+                end++;
+            }
+            if (end - start > 1) {
+                Set<Contact> cluster = new LinkedHashSet<Contact>();
+                for (int i = start; i < end; i++) {
+                    cluster.add(all[(int)byRoot[i]]);
+                }
+                clusters.accept(cluster);
+                count++;
+            }
+            start = end;
+        }
+        return count;
+    }
+
+    /**
+     * Finds the clusters of probable duplicates.
+     *
+     * @param contacts the contacts to check
+     * @return the clusters of two or more contacts
+     */
+    public List<Set<Contact>> detect(Collection<Contact> contacts) {
+        final List<Set<Contact>> clusters = new ArrayList<Set<Contact>>();
+        detect(contacts, new Consumer<Set<Contact>>() {
+            @Override
+            public void accept(Set<Contact> cluster) {
+                clusters.add(cluster);
+            }
+        });
+        return clusters;
+    }
+
+    /**
+     * Estimates the similarity of two contacts from their signatures.
+     *
+     * @param one a contact
+     * @param other another contact
+     * @return the estimated Jaccard similarity of their shingles
+     */
+    public double similarity(Contact one, Contact other) {
+        return similarity(signature(one), signature(other));
+    }
+
+    /**
+     * Prints the clusters of probable duplicates in contacts.txt.
+     *
+     * @param args not used
+     */
+    public static void main(String[] args) {
+        ContactManagerImpl manager = new ContactManagerImpl();
+        long start = System.nanoTime();
+        int clusters = new DuplicateDetector().detect(
+                           manager.getContacts(""),
+                           new Consumer<Set<Contact>>() {
+            @Override
+            public void accept(Set<Contact> cluster) {
+                StringBuilder line = new StringBuilder();
+                for (Contact contact : cluster) {
+                    line.append(line.length() == 0 ? "" : " | ")
+                        .append(contact.getId()).append(' ')
+                        .append(contact.getName());
+                }
+                System.out.println(line);
+            }
+        });
+        System.out.printf("%d clusters in %d ms%n", clusters,
+                          (System.nanoTime() - start) / 1000000);
+    }
+
+    /**
+     * Helper method that joins the contacts of one band's buckets.
+     *
+     * @param band the band
+     * @param signatures the signatures of all contacts
+     * @param sets the union-find structure
+     */
+    private void joinBand(int band, int[][] signatures, UnionFind sets) {
+        long[] buckets = new long[signatures.length];
+        for (int i = 0; i < signatures.length; i++) {
+            int hash = 17;
+            for (int row = 0; row < rows; row++) {
+                hash = 31 * hash + signatures[i][band * rows + row];
+            }
+            buckets[i] = ((long)hash << 32) | i;
+        }
+        Arrays.sort(buckets);
+        int first = 0;
+        for (int i = 1; i < buckets.length; i++) {
+            if ((int)(buckets[i] >>> 32) != (int)(buckets[first] >>> 32)) {
+                first = i;
+                continue;
+            }
+            int index = (int)buckets[i];
+            int head = (int)buckets[first];
+            int previous = (int)buckets[i - 1];
+            if (similarity(signatures[index], signatures[head]) >= threshold) {
+                sets.union(index, head);
+            } else if (previous != head
+                       && similarity(signatures[index], signatures[previous])
+                          >= threshold) {
+                sets.union(index, previous);
+            }
+        }
+    }
+
+    /**
+     * Helper method that computes the MinHash signature of a contact.
+     *
+     * @param contact the contact
+     * @return the smallest hash of its shingles for every hash function
+     */
+    private int[] signature(Contact contact) {
+        int[] signature = new int[seeds.length];
+        Arrays.fill(signature, Integer.MAX_VALUE);
+        for (int shingle : shingles(contact)) {
+            for (int i = 0; i < seeds.length; i++) {
+                int hash = mix(shingle * seeds[i]);
+                if (hash < signature[i]) {
+                    signature[i] = hash;
+                }
+            }
+        }
+        return signature;
+    }
+
+    /**
+     * Helper method that returns the fraction of equal entries of two
+     * signatures.
+     */
+    private static double similarity(int[] one, int[] other) {
+        int equal = 0;
+        for (int i = 0; i < one.length; i++) {
+            if (one[i] == other[i]) {
+                equal++;
+            }
+        }
+        return (double)equal / one.length;
+    }
+
+    /**
+     * Helper method that returns the hashes of the shingles of a
+     * contact: the trigrams of its normalized name and the words of
+     * its notes.
+     *
+     * @param contact the contact
+     * @return the distinct shingle hashes
+     */
+    private static Set<Integer> shingles(Contact contact) {
+        Set<Integer> shingles = new HashSet<Integer>();
+        String name = " " + normalize(contact.getName()) + " ";
+        for (int i = 0; i + 3 <= name.length(); i++) {
+            shingles.add(name.substring(i, i + 3).hashCode());
+        }
+        String notes = contact.getNotes();
+        if (notes != null) {
+            for (String word : FullTextIndex.tokenize(notes)) {
+                // Keeps words apart from trigrams of the same letters.
+                shingles.add(("#" + word).hashCode());
+            }
+        }
+        return shingles;
+    }
+
+    /**
+     * Helper method that lower cases a name, removes accents and
+     * punctuation and collapses spaces.
+     *
+     * @param name the name
+     * @return the normalized name
+     */
+    static String normalize(String name) {
+        String plain = Normalizer.normalize(name, Normalizer.Form.NFD)
+                                 .replaceAll("\\p{M}", "");
+        return String.join(" ", FullTextIndex.tokenize(plain));
+    }
+
+    /**
+     * Helper method that mixes the bits of a hash (the finalizer of
+     * MurmurHash3), giving one hash function per seed.
+     */
+    private static int mix(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return (int)hash;
+    }
+
+    /**
+     * A ForkJoin task computing the signatures of a range of contacts,
+     * splitting it in halves down to a chunk.
+     */
+    private class SignatureTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Contact[] contacts;
+        private final int[][] signatures;
+        private final int first;
+        private final int last;
+
+        private SignatureTask(Contact[] contacts, int[][] signatures,
+                              int first, int last) {
+            this.contacts = contacts;
+            this.signatures = signatures;
+            this.first = first;
+            this.last = last;
+        }
+
+        @Override
+        protected void compute() {
+            if (last - first <= CHUNK) {
+                for (int i = first; i < last; i++) {
+                    signatures[i] = signature(contacts[i]);
+                }
+                return;
+            }
+            int middle = (first + last) >>> 1;
+            invokeAll(new SignatureTask(contacts, signatures, first, middle),
+                      new SignatureTask(contacts, signatures, middle, last));
+        }
+    }
+
+    /**
+     * A union-find structure that bands may update concurrently.
+     * Roots are only ever linked to smaller roots with a compare and
+     * set, so concurrent unions cannot create cycles.
+     */
+    private static class UnionFind {
+        private final AtomicIntegerArray parents;
+
+        private UnionFind(int size) {
+            parents = new AtomicIntegerArray(size);
+            for (int i = 0; i < size; i++) {
+                parents.set(i, i);
+            }
+        }
+
+        private int find(int element) {
+            int parent = parents.get(element);
+            while (parent != element) {
+                // Path halving: skips every other parent on the way.
+                int grandparent = parents.get(parent);
+                parents.compareAndSet(element, parent, grandparent);
+                element = grandparent;
+                parent = parents.get(element);
+            }
+            return element;
+        }
+
+        private void union(int one, int other) {
+            while (true) {
+                one = find(one);
+                other = find(other);
+                if (one == other) {
+                    return;
+                }
+                int larger = Math.max(one, other);
+                int smaller = Math.min(one, other);
+                if (parents.compareAndSet(larger, larger, smaller)) {
+                    return;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,129 @@
+import static org.junit.Assert.*;
+import org.junit.*;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * The test class DuplicateDetectorTester.
+ *
+ * @author  Stefan E. Mayer
+ * @version 1.0
+ */
+public class DuplicateDetectorTester {
+    private DuplicateDetector detector;
+
+    /**
+     * Sets up the test fixture.
+     *
+     * Called before every test case method.
+     */
+    @Before
+    public void setUp() {
+        detector = new DuplicateDetector();
+    }
+
+    /**
+     * Tears down the test fixture.
+     *
+     * Called after every test case method.
+     */
+    @After
+    public void tearDown() {
+        detector = null;
+    }
+
+    /**
+     * Tests if names are compared without case, accents and punctuation.
+     */
+    @Test
+    public void testNormalize() {
+        assertEquals("jose garcia lopez",
+                     DuplicateDetector.normalize(
+                         " Jos\u00e9  Garc\u00eda-L\u00f3pez "));
+        Contact one = new ContactImpl(1, "Jos\u00e9 Garc\u00eda", "");
+        Contact other = new ContactImpl(2, "jose garcia", "");
+        assertEquals(1.0, detector.similarity(one, other), 0.0);
+    }
+
+    /**
+     * Tests if similar names form clusters and different ones do not.
+     */
+    @Test
+    public void testClusters() {
+        List<Contact> contacts = new ArrayList<Contact>();
+        contacts.add(new ContactImpl(1, "Margaret Hamilton", "NASA"));
+        contacts.add(new ContactImpl(2, "Grace Hopper", "Navy"));
+        contacts.add(new ContactImpl(3, "Margaret  Hamilton.", "NASA"));
+        contacts.add(new ContactImpl(4, "Alan Turing", ""));
+        contacts.add(new ContactImpl(5, "margaret hamilton", "NASA"));
+        contacts.add(new ContactImpl(6, "Grace Hopper", "Navy"));
+        List<Set<Contact>> clusters = detector.detect(contacts);
+        assertEquals(2, clusters.size());
+        Set<Set<Integer>> ids = new HashSet<Set<Integer>>();
+        for (Set<Contact> cluster : clusters) {
+            Set<Integer> members = new HashSet<Integer>();
+            for (Contact contact : cluster) {
+                members.add(contact.getId());
+            }
+            ids.add(members);
+        }
+        assertTrue(ids.contains(
+                       new HashSet<Integer>(Arrays.asList(1, 3, 5))));
+        assertTrue(ids.contains(new HashSet<Integer>(Arrays.asList(2, 6))));
+    }
+
+    /**
+     * Tests if most planted duplicates among many distinct contacts
+     * are found, on several threads, and few false ones.
+     */
+    @Test
+    public void testManyContacts() {
+        Random random = new Random(7);
+        List<Contact> contacts = new ArrayList<Contact>();
+        int id = 0;
+        for (int i = 0; i < 20000; i++) {
+            contacts.add(new ContactImpl(++id, name(random), ""));
+        }
+        for (int i = 0; i < 200; i++) {
+            String name = contacts.get(random.nextInt(20000)).getName();
+            contacts.add(new ContactImpl(++id, name.toUpperCase(), ""));
+        }
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            DuplicateDetector parallel = new DuplicateDetector(
+                DuplicateDetector.DEFAULT_BANDS,
+                DuplicateDetector.DEFAULT_ROWS, 0.8, pool);
+            List<Set<Contact>> clusters = parallel.detect(contacts);
+            int found = 0;
+            for (Set<Contact> cluster : clusters) {
+                for (Contact contact : cluster) {
+                    if (contact.getId() > 20000) {
+                        found++;
+                    }
+                }
+            }
+            assertTrue("Found " + found, found >= 190);
+            assertTrue("Clusters " + clusters.size(), clusters.size() < 250);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Helper method that creates a random name of two words.
+     *
+     * @param random the random numbers
+     * @return the name
+     */
+    private static String name(Random random) {
+        StringBuilder name = new StringBuilder();
+        for (int word = 0; word < 2; word++) {
+            name.append(word == 0 ? "" : " ");
+            int length = 4 + random.nextInt(6);
+            for (int i = 0; i < length; i++) {
+                name.append((char)('a' + random.nextInt(26)));
+            }
+        }
+        return name.toString();
+    }
+}
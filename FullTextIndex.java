@@ -0,0 +1,701 @@
+import java.util.*;
+/**
+ * An inverted index for searching the words of short texts, e.g. the
+ * notes of meetings and contacts, each stored under an integer ID.
+ *
+ * Texts are split into lower case words of letters and digits. For
+ * every word the index keeps a posting list of the documents containing
+ * it, with the positions of the word in each document. Posting lists
+ * are compressed: document numbers and positions are stored as deltas
+ * to the previous one, each written as a variable length integer of
+ * seven bits per byte, so most entries take one or two bytes.
+ *
+ * Queries are words and "quoted phrases". All of them must match,
+ * a leading - excludes documents matching a word or phrase, and OR
+ * separates alternatives:
+ *
+ *   budget "next quarter" -draft OR forecast
+ *
+ * Matches are ranked by TF-IDF: the number of times each word occurs
+ * in a document, weighted by how rare the word is in the index and
+ * divided by the square root of the length of the document.
+ *
+ * IMPORTANT: Posting lists are only ever appended to. A document that
+ *            is indexed again or removed is marked as deleted and
+ *            skipped by queries; the posting lists are compacted once
+ *            most documents are deleted. Word rarity is computed over
+ *            all documents not compacted yet, so scores may change a
+ *            little after compaction.
+ *
+ * The index is not thread-safe; queries may run concurrently with
+ * each other but not with changes.
+ *
+ * @author Stefan E. Mayer
+ * @version 1.0
+ */
+public class FullTextIndex {
+    // Compacts only once this many documents are deleted.
+    private static final int MIN_COMPACTION = 1024;
+
+    private Map<String, Postings> terms;
+    // Document numbers are assigned in order and never reused, so
+    // posting lists stay sorted by document number.
+    private int[] ids;
+    private int[] lengths;
+    private int documents;
+    private BitSet deleted;
+    private Map<Integer, Integer> documentsById;
+
+    /**
+     * Create a new empty index.
+     */
+    public FullTextIndex() {
+        this.terms = new HashMap<String, Postings>();
+        this.ids = new int[16];
+        this.lengths = new int[16];
+        this.deleted = new BitSet();
+        this.documentsById = new HashMap<Integer, Integer>();
+    }
+
+    /**
+     * Indexes a text, replacing any text indexed under the same ID.
+     *
+     * @param id the ID of the text, e.g. a meeting ID
+     * @param text the text
+     * @throws NullPointerException if the text is null
+     */
+    public void put(int id, String text) {
+        if (text == null) {
+            throw new NullPointerException("'null' is invalid as text!");
+        }
+        remove(id);
+        List<String> words = tokenize(text);
+        if (documents == ids.length) {
+            ids = Arrays.copyOf(ids, documents * 2);
+            lengths = Arrays.copyOf(lengths, documents * 2);
+        }
+        int document = documents++;
+        ids[document] = id;
+        lengths[document] = words.size();
+        documentsById.put(id, document);
+
+        Map<String, List<Integer>> positions =
+            new HashMap<String, List<Integer>>();
+        for (int i = 0; i < words.size(); i++) {
+            List<Integer> list = positions.get(words.get(i));
+            if (list == null) {
+                list = new ArrayList<Integer>();
+                positions.put(words.get(i), list);
+            }
+            list.add(i);
+        }
+        for (Map.Entry<String, List<Integer>> entry : positions.entrySet()) {
+            Postings postings = terms.get(entry.getKey());
+            if (postings == null) {
+                postings = new Postings();
+                terms.put(entry.getKey(), postings);
+            }
+            postings.add(document, entry.getValue());
+        }
+    }
+
+    /**
+     * Removes the text indexed under an ID.
+     *
+     * @param id the ID of the text
+     */
+    public void remove(int id) {
+        Integer document = documentsById.remove(id);
+        if (document != null) {
+            deleted.set(document);
+            if (deleted.cardinality() >= MIN_COMPACTION
+                && deleted.cardinality() > documentsById.size()) {
+                compact();
+            }
+        }
+    }
+
+    /**
+     * Checks if a text is indexed under an ID.
+     *
+     * @param id the ID
+     * @return true if there is a text with that ID
+     */
+    public boolean contains(int id) {
+        return documentsById.containsKey(id);
+    }
+
+    /**
+     * Returns the number of indexed texts.
+     *
+     * @return the number of texts
+     */
+    public int size() {
+        return documentsById.size();
+    }
+
+    /**
+     * Returns the number of distinct words in the posting lists.
+     *
+     * @return the number of words
+     */
+    public int getTermCount() {
+        return terms.size();
+    }
+
+    /**
+     * Returns the size of all posting lists.
+     *
+     * @return the number of bytes used by posting lists
+     */
+    public long getPostingBytes() {
+        long bytes = 0;
+        for (Postings postings : terms.values()) {
+            bytes += postings.size;
+        }
+        return bytes;
+    }
+
+    /**
+     * Searches the index.
+     *
+     * @param query words, "quoted phrases", -excluded words and OR
+     * @return the matching texts, most relevant first
+     * @throws NullPointerException if the query is null
+     */
+    public List<Hit> search(String query) {
+        if (query == null) {
+            throw new NullPointerException("'null' is invalid as query!");
+        }
+        Matches result = new Matches(0);
+        for (List<Clause> alternative : parse(query)) {
+            result = result.or(evaluate(alternative));
+        }
+        List<Hit> hits = new ArrayList<Hit>(result.size);
+        for (int i = 0; i < result.size; i++) {
+            int document = result.documents[i];
+            hits.add(new Hit(ids[document], result.scores[i]
+                             / Math.sqrt(Math.max(1, lengths[document]))));
+        }
+        Collections.sort(hits);
+        return hits;
+    }
+
+    /**
+     * Splits a text into lower case words of letters and digits.
+     *
+     * @param text the text
+     * @return the words, in order
+     */
+    public static List<String> tokenize(String text) {
+        List<String> words = new ArrayList<String>();
+        StringBuilder word = new StringBuilder();
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                word.append(Character.toLowerCase(c));
+            } else if (word.length() > 0) {
+                words.add(word.toString());
+                word.setLength(0);
+            }
+        }
+        if (word.length() > 0) {
+            words.add(word.toString());
+        }
+        return words;
+    }
+
+    /**
+     * Helper method that splits a query into alternatives of clauses.
+     *
+     * @param query the query
+     * @return the alternatives
+     */
+    private static List<List<Clause>> parse(String query) {
+        List<List<Clause>> alternatives = new ArrayList<List<Clause>>();
+        List<Clause> clauses = new ArrayList<Clause>();
+        int i = 0;
+        while (i < query.length()) {
+            char c = query.charAt(i);
+            if (Character.isWhitespace(c)) {
+                i++;
+                continue;
+            }
+            boolean excluded = c == '-';
+            if (excluded) {
+                i++;
+            }
+            int end;
+            String text;
+            if (i < query.length() && query.charAt(i) == '"') {
+                end = query.indexOf('"', i + 1);
+                if (end < 0) {
+                    end = query.length();
+                }
+                text = query.substring(i + 1, end);
+                end++;
+            } else {
+                end = i;
+                while (end < query.length()
+                       && !Character.isWhitespace(query.charAt(end))) {
+                    end++;
+                }
+                text = query.substring(i, end);
+            }
+            i = end;
+            if (!excluded && text.equals("OR")) {
+                alternatives.add(clauses);
+                clauses = new ArrayList<Clause>();
+            } else if (excluded || !text.equals("AND")) {
+                // A word like "follow-up" is the phrase "follow up".
+                List<String> words = tokenize(text);
+                if (!words.isEmpty()) {
+                    clauses.add(new Clause(words, excluded));
+                }
+            }
+        }
+        alternatives.add(clauses);
+        return alternatives;
+    }
+
+    /**
+     * Helper method that finds the documents matching all clauses.
+     *
+     * @param clauses the clauses
+     * @return the matches, nothing if there are only excluded clauses
+     */
+    private Matches evaluate(List<Clause> clauses) {
+        Matches result = null;
+        for (Clause clause : clauses) {
+            if (!clause.excluded) {
+                Matches matches = find(clause.words);
+                result = result == null ? matches : result.and(matches);
+            }
+        }
+        if (result == null) {
+            return new Matches(0);
+        }
+        for (Clause clause : clauses) {
+            if (clause.excluded && result.size > 0) {
+                result = result.not(find(clause.words));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Helper method that finds the documents containing a phrase,
+     * scored by the TF-IDF of its words.
+     *
+     * @param words the words of the phrase, or a single word
+     * @return the matches
+     */
+    private Matches find(List<String> words) {
+        Postings[] postings = new Postings[words.size()];
+        for (int i = 0; i < postings.length; i++) {
+            postings[i] = terms.get(words.get(i));
+            if (postings[i] == null) {
+                return new Matches(0);
+            }
+        }
+        double idf = 0;
+        for (Postings list : postings) {
+            idf += Math.log(1 + (double)documents / list.documents);
+        }
+        if (postings.length == 1) {
+            Matches matches = new Matches(postings[0].documents);
+            Reader reader = postings[0].reader();
+            while (reader.next()) {
+                if (!deleted.get(reader.document)) {
+                    matches.add(reader.document, reader.frequency * idf);
+                }
+                reader.skipPositions();
+            }
+            return matches;
+        }
+
+        // Walks all posting lists in step and compares the positions
+        // of the words in the documents that contain all of them.
+        Reader[] readers = new Reader[postings.length];
+        for (int i = 0; i < readers.length; i++) {
+            readers[i] = postings[i].reader();
+        }
+        Matches matches = new Matches(0);
+        int document = 0;
+        while (true) {
+            boolean aligned = true;
+            for (Reader reader : readers) {
+                if (!reader.advance(document)) {
+                    return matches;
+                }
+                if (reader.document > document) {
+                    document = reader.document;
+                    aligned = false;
+                }
+            }
+            if (!aligned) {
+                continue;
+            }
+            if (!deleted.get(document)) {
+                int occurrences = countPhrase(readers);
+                if (occurrences > 0) {
+                    matches.add(document, occurrences * idf);
+                }
+            }
+            document++;
+        }
+    }
+
+    /**
+     * Helper method that counts the occurrences of a phrase in the
+     * document all readers are positioned at.
+     *
+     * @param readers the readers of the words of the phrase
+     * @return the number of occurrences
+     */
+    private static int countPhrase(Reader[] readers) {
+        List<Set<Integer>> positions = new ArrayList<Set<Integer>>();
+        for (int i = 1; i < readers.length; i++) {
+            Set<Integer> set = new HashSet<Integer>();
+            for (int position : readers[i].positions()) {
+                set.add(position - i);
+            }
+            positions.add(set);
+        }
+        int occurrences = 0;
+        for (int position : readers[0].positions()) {
+            boolean found = true;
+            for (Set<Integer> set : positions) {
+                if (!set.contains(position)) {
+                    found = false;
+                    break;
+                }
+            }
+            if (found) {
+                occurrences++;
+            }
+        }
+        return occurrences;
+    }
+
+    /**
+     * Helper method that drops deleted documents from all posting
+     * lists and numbers the remaining documents from 0 again.
+     */
+    private void compact() {
+        int[] renumbered = new int[documents];
+        int next = 0;
+        for (int document = 0; document < documents; document++) {
+            if (deleted.get(document)) {
+                renumbered[document] = -1;
+            } else {
+                renumbered[document] = next;
+                ids[next] = ids[document];
+                lengths[next] = lengths[document];
+                documentsById.put(ids[next], next);
+                next++;
+            }
+        }
+        Iterator<Postings> iterator = terms.values().iterator();
+        while (iterator.hasNext()) {
+            Postings postings = iterator.next();
+            Postings compacted = new Postings();
+            Reader reader = postings.reader();
+            while (reader.next()) {
+                int[] positions = reader.positions();
+                if (renumbered[reader.document] >= 0) {
+                    List<Integer> list = new ArrayList<Integer>();
+                    for (int position : positions) {
+                        list.add(position);
+                    }
+                    compacted.add(renumbered[reader.document], list);
+                }
+            }
+            if (compacted.documents == 0) {
+                iterator.remove();
+            } else {
+                postings.replaceWith(compacted);
+            }
+        }
+        documents = next;
+        deleted.clear();
+    }
+
+    /**
+     * A text matching a query, with its relevance score.
+     */
+    public static class Hit implements Comparable<Hit> {
+        private final int id;
+        private final double score;
+
+        private Hit(int id, double score) {
+            this.id = id;
+            this.score = score;
+        }
+
+        /**
+         * Returns the ID of the text.
+         *
+         * @return the ID
+         */
+        public int getId() {
+            return id;
+        }
+
+        /**
+         * Returns the relevance score; higher is more relevant.
+         *
+         * @return the score
+         */
+        public double getScore() {
+            return score;
+        }
+
+        @Override
+        public int compareTo(Hit other) {
+            int order = Double.compare(other.score, score);
+            return order != 0 ? order : Integer.compare(id, other.id);
+        }
+
+        @Override
+        public String toString() {
+            return id + ":" + score;
+        }
+    }
+
+    /**
+     * A word or phrase of a query.
+     */
+    private static class Clause {
+        private final List<String> words;
+        private final boolean excluded;
+
+        private Clause(List<String> words, boolean excluded) {
+            this.words = words;
+            this.excluded = excluded;
+        }
+    }
+
+    /**
+     * The documents matching part of a query, sorted by document
+     * number, with their scores.
+     */
+    private static class Matches {
+        private int[] documents;
+        private double[] scores;
+        private int size;
+
+        private Matches(int capacity) {
+            this.documents = new int[Math.max(capacity, 4)];
+            this.scores = new double[documents.length];
+        }
+
+        private void add(int document, double score) {
+            if (size == documents.length) {
+                documents = Arrays.copyOf(documents, size * 2);
+                scores = Arrays.copyOf(scores, size * 2);
+            }
+            documents[size] = document;
+            scores[size] = score;
+            size++;
+        }
+
+        /**
+         * Documents in both, with the sum of their scores.
+         */
+        private Matches and(Matches other) {
+            Matches result = new Matches(Math.min(size, other.size));
+            int i = 0;
+            int j = 0;
+            while (i < size && j < other.size) {
+                if (documents[i] < other.documents[j]) {
+                    i++;
+                } else if (documents[i] > other.documents[j]) {
+                    j++;
+                } else {
+                    result.add(documents[i], scores[i] + other.scores[j]);
+                    i++;
+                    j++;
+                }
+            }
+            return result;
+        }
+
+        /**
+         * Documents in either, with the sum of their scores.
+         */
+        private Matches or(Matches other) {
+            Matches result = new Matches(size + other.size);
+            int i = 0;
+            int j = 0;
+            while (i < size || j < other.size) {
+                if (j == other.size
+                    || i < size && documents[i] < other.documents[j]) {
+                    result.add(documents[i], scores[i]);
+                    i++;
+                } else if (i == size || documents[i] > other.documents[j]) {
+                    result.add(other.documents[j], other.scores[j]);
+                    j++;
+                } else {
+                    result.add(documents[i], scores[i] + other.scores[j]);
+                    i++;
+                    j++;
+                }
+            }
+            return result;
+        }
+
+        /**
+         * Documents in this but not in the other.
+         */
+        private Matches not(Matches other) {
+            Matches result = new Matches(size);
+            int j = 0;
+            for (int i = 0; i < size; i++) {
+                while (j < other.size && other.documents[j] < documents[i]) {
+                    j++;
+                }
+                if (j == other.size || other.documents[j] != documents[i]) {
+                    result.add(documents[i], scores[i]);
+                }
+            }
+            return result;
+        }
+    }
+
+    /**
+     * The compressed posting list of a word: for every document the
+     * delta to the previous document number, the number of occurrences
+     * and the deltas between the positions, all as variable length
+     * integers.
+     */
+    private static class Postings {
+        private byte[] data = new byte[8];
+        private int size;
+        private int documents;
+        private int lastDocument = -1;
+
+        private void add(int document, List<Integer> positions) {
+            write(document - lastDocument);
+            write(positions.size());
+            int last = 0;
+            for (int position : positions) {
+                write(position - last);
+                last = position;
+            }
+            lastDocument = document;
+            documents++;
+        }
+
+        private void replaceWith(Postings other) {
+            data = Arrays.copyOf(other.data, other.size);
+            size = other.size;
+            documents = other.documents;
+            lastDocument = other.lastDocument;
+        }
+
+        private Reader reader() {
+            return new Reader(this);
+        }
+
+        /**
+         * Appends an unsigned integer, seven bits per byte, with the
+         * high bit set on all bytes but the last.
+         */
+        private void write(int value) {
+            if (size + 5 > data.length) {
+                data = Arrays.copyOf(data, data.length * 2);
+            }
+            while ((value & ~0x7F) != 0) {
+                data[size++] = (byte)((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            data[size++] = (byte)value;
+        }
+    }
+
+    /**
+     * A cursor over a posting list.
+     */
+    private static class Reader {
+        private final Postings postings;
+        private int offset;
+        private int document = -1;
+        private int frequency;
+        // True while the positions of the current document are unread.
+        private boolean pending;
+        private int[] positions;
+
+        private Reader(Postings postings) {
+            this.postings = postings;
+        }
+
+        /**
+         * Moves to the next document.
+         *
+         * @return false if there are no more documents
+         */
+        private boolean next() {
+            skipPositions();
+            if (offset >= postings.size) {
+                return false;
+            }
+            document += read();
+            frequency = read();
+            pending = true;
+            return true;
+        }
+
+        /**
+         * Moves to the first document not before the given one,
+         * unless already there.
+         *
+         * @return false if there are no more documents
+         */
+        private boolean advance(int target) {
+            while (document < target) {
+                if (!next()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Returns the positions of the word in the current document.
+         */
+        private int[] positions() {
+            if (pending) {
+                positions = new int[frequency];
+                int position = 0;
+                for (int i = 0; i < frequency; i++) {
+                    position += read();
+                    positions[i] = position;
+                }
+                pending = false;
+            }
+            return positions;
+        }
+
+        private void skipPositions() {
+            if (pending) {
+                for (int i = 0; i < frequency; i++) {
+                    read();
+                }
+                pending = false;
+            }
+        }
+
+        private int read() {
+            int value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = postings.data[offset++];
+                value |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            return value;
+        }
+    }
+}
@@ -0,0 +1,215 @@
+import static org.junit.Assert.*;
+import org.junit.*;
+import java.util.*;
+import java.io.*;
+
+/**
+ * The test class FullTextIndexTester.
+ *
+ * @author  Stefan E. Mayer
+ * @version 1.0
+ */
+public class FullTextIndexTester {
+    private final static File FILE = new File("search.txt");
+
+    private FullTextIndex index;
+
+    /**
+     * Sets up the test fixture.
+     *
+     * Called before every test case method.
+     */
+    @Before
+    public void setUp() {
+        FILE.delete();
+        index = new FullTextIndex();
+        index.put(1, "Budget review for the next quarter.");
+        index.put(2, "Draft budget, next steps: hire, budget again");
+        index.put(3, "Quarter results; next meeting in March");
+        index.put(4, "Forecast for 2016");
+    }
+
+    /**
+     * Tears down the test fixture.
+     *
+     * Called after every test case method.
+     */
+    @After
+    public void tearDown() {
+        index = null;
+        FILE.delete();
+    }
+
+    /**
+     * Tests if texts are split into lower case words.
+     */
+    @Test
+    public void testTokenize() {
+        assertEquals(Arrays.asList("follow", "up", "on", "q3", "caf\u00e9"),
+                     FullTextIndex.tokenize("  Follow-up on Q3 (Caf\u00c9)!"));
+    }
+
+    /**
+     * Tests if all words must match, regardless of case.
+     */
+    @Test
+    public void testAllWordsMatch() {
+        assertEquals(set(1, 2), set(ids(index.search("NEXT budget"))));
+        assertEquals(set(1, 2), set(ids(index.search("budget AND next"))));
+        assertTrue(index.search("budget unknown").isEmpty());
+        assertTrue(index.search("").isEmpty());
+    }
+
+    /**
+     * Tests if phrases only match words in that order.
+     */
+    @Test
+    public void testPhrase() {
+        assertEquals(Arrays.asList(1),
+                     ids(index.search("\"next quarter\"")));
+        assertEquals(Arrays.asList(3),
+                     ids(index.search("\"quarter results\"")));
+        assertTrue(index.search("\"quarter next\"").isEmpty());
+        // A hyphenated word is a phrase as well.
+        assertEquals(Arrays.asList(1), ids(index.search("next-quarter")));
+    }
+
+    /**
+     * Tests excluded words and alternatives.
+     */
+    @Test
+    public void testBooleanQueries() {
+        assertEquals(Arrays.asList(1), ids(index.search("budget -draft")));
+        assertEquals(Arrays.asList(3),
+                     ids(index.search("next -\"next quarter\" -budget")));
+        assertEquals(set(1, 4),
+                     set(ids(index.search("review OR forecast"))));
+        assertTrue(index.search("-budget").isEmpty());
+    }
+
+    /**
+     * Tests if frequent occurrences of a word rank higher.
+     */
+    @Test
+    public void testRanking() {
+        List<FullTextIndex.Hit> hits = index.search("budget");
+        assertEquals(Arrays.asList(2, 1), ids(hits));
+        assertTrue(hits.get(0).getScore() > hits.get(1).getScore());
+    }
+
+    /**
+     * Tests if replaced and removed texts are no longer found.
+     */
+    @Test
+    public void testUpdate() {
+        index.put(1, "Cancelled");
+        index.remove(2);
+        assertTrue(index.search("budget").isEmpty());
+        assertEquals(Arrays.asList(1), ids(index.search("cancelled")));
+        assertEquals(3, index.size());
+        assertFalse(index.contains(2));
+    }
+
+    /**
+     * Tests if compaction keeps the remaining texts searchable.
+     */
+    @Test
+    public void testCompaction() {
+        for (int i = 100; i < 5000; i++) {
+            index.put(i, "note " + i + " about budget");
+        }
+        for (int i = 100; i < 4900; i++) {
+            index.remove(i);
+        }
+        assertEquals(104, index.size());
+        assertEquals(102, index.search("budget").size());
+        assertEquals(Arrays.asList(4950),
+                     ids(index.search("\"note 4950 about\"")));
+        assertEquals(Arrays.asList(1), ids(index.search("review")));
+        assertTrue(index.search("\"note 200\"").isEmpty());
+    }
+
+    /**
+     * Tests if the contact manager finds meetings and contacts by their
+     * notes and keeps the indexes up to date.
+     */
+    @Test
+    public void testContactManagerSearch() {
+        ContactManagerImpl manager = new ContactManagerImpl(FILE);
+        manager.addNewContact("Alice", "Likes budget spreadsheets");
+        manager.addNewContact("Bob", "");
+        Set<Contact> both = manager.getContacts(1, 2);
+        manager.addNewPastMeeting(both, new GregorianCalendar(2014, 5, 1),
+                                  "Budget budget budget");
+        manager.addNewPastMeeting(both, new GregorianCalendar(2013, 5, 1),
+                                  "Budget, briefly");
+        assertEquals(Arrays.asList(1, 2), meetingIds(
+            manager.searchMeetingNotes("budget",
+                ContactManagerImpl.SearchOrder.RELEVANCE)));
+        assertEquals(Arrays.asList(2, 1), meetingIds(
+            manager.searchMeetingNotes("budget",
+                ContactManagerImpl.SearchOrder.CHRONOLOGICAL)));
+
+        // Changes after the first search update the indexes.
+        Calendar past = new GregorianCalendar();
+        past.add(Calendar.DATE, -1);
+        manager.addNewPastMeeting(both, past, "Roadmap");
+        manager.addMeetingNotes(1, "Roadmap and budget");
+        manager.getContacts(2).iterator().next().addNotes("Roadmap owner");
+        assertEquals(Arrays.asList(1, 3), meetingIds(
+            manager.searchMeetingNotes("roadmap",
+                ContactManagerImpl.SearchOrder.CHRONOLOGICAL)));
+        assertEquals(2, manager.searchContactNotes("roadmap OR budget")
+                               .size());
+        assertEquals("Alice", manager.searchContactNotes("spreadsheets")
+                                     .get(0).getName());
+    }
+
+    /**
+     * Helper method that returns the IDs of hits.
+     *
+     * @param hits the hits
+     * @return the IDs, in order
+     */
+    private static List<Integer> ids(List<FullTextIndex.Hit> hits) {
+        List<Integer> ids = new ArrayList<Integer>();
+        for (FullTextIndex.Hit hit : hits) {
+            ids.add(hit.getId());
+        }
+        return ids;
+    }
+
+    /**
+     * Helper method that returns the IDs of meetings.
+     *
+     * @param meetings the meetings
+     * @return the IDs, in order
+     */
+    private static List<Integer> meetingIds(List<PastMeeting> meetings) {
+        List<Integer> ids = new ArrayList<Integer>();
+        for (Meeting meeting : meetings) {
+            ids.add(meeting.getId());
+        }
+        return ids;
+    }
+
+    /**
+     * Helper method that creates a set of IDs.
+     *
+     * @param ids the IDs
+     * @return the set
+     */
+    private static Set<Integer> set(Integer... ids) {
+        return new HashSet<Integer>(Arrays.asList(ids));
+    }
+
+    /**
+     * Helper method that creates a set of IDs.
+     *
+     * @param ids the IDs
+     * @return the set
+     */
+    private static Set<Integer> set(List<Integer> ids) {
+        return new HashSet<Integer>(ids);
+    }
+}
@@ -0,0 +1,219 @@
+import java.util.*;
+/**
+ * Finds contacts by a misspelled name, within a maximum number of
+ * inserted, deleted or replaced characters (the Levenshtein distance).
+ *
+ * Names are stored in a BK-tree: every child of a node is filed under
+ * its distance to the node. As the distance is a metric, a search for
+ * names within distance k of a query that is d away from a node only
+ * needs to visit the children filed under d - k to d + k, so a search
+ * with a small k touches only a small part of the tree.
+ *
+ * Names are compared in lower case. Each contact is stored under its
+ * whole name and under every word of it, so "smiht" finds "John Smith"
+ * and "jon smith" finds it too.
+ *
+ * The index is not thread-safe; searches may run concurrently with
+ * each other but not with changes.
+ *
+ * @author Stefan E. Mayer
+ * @version 1.0
+ */
+public class FuzzyNameIndex {
+    private Node root;
+    private int size;
+
+    /**
+     * Adds a contact under its name and the words of its name.
+     *
+     * @param contact the contact
+     */
+    public void add(Contact contact) {
+        for (String key : keys(contact.getName())) {
+            if (root == null) {
+                root = new Node(key);
+                root.contacts.add(contact);
+                continue;
+            }
+            Node node = root;
+            while (true) {
+                int distance = distance(key, node.key);
+                if (distance == 0) {
+                    node.contacts.add(contact);
+                    break;
+                }
+                Node child = node.children.get(distance);
+                if (child == null) {
+                    child = new Node(key);
+                    child.contacts.add(contact);
+                    node.children.put(distance, child);
+                    break;
+                }
+                node = child;
+            }
+        }
+        size++;
+    }
+
+    /**
+     * Removes a contact, e.g. because it was deleted. The nodes of its
+     * names stay in the tree, as other names are filed below them.
+     *
+     * @param contact the contact
+     */
+    public void remove(Contact contact) {
+        boolean found = false;
+        for (String key : keys(contact.getName())) {
+            Node node = root;
+            while (node != null) {
+                int distance = distance(key, node.key);
+                if (distance == 0) {
+                    found |= node.contacts.remove(contact);
+                    break;
+                }
+                node = node.children.get(distance);
+            }
+        }
+        if (found) {
+            size--;
+        }
+    }
+
+    /**
+     * Returns the number of contacts added.
+     *
+     * @return the number of contacts
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the contacts whose name, or a word of it, is at most a
+     * number of edits away from a name, regardless of case.
+     *
+     * @param name the name, maybe misspelled
+     * @param maxDistance the largest number of edits
+     * @return the contacts, closest first and then by name (maybe empty)
+     * @throws NullPointerException if the name is null
+     * @throws IllegalArgumentException if the distance is negative
+     */
+    public List<Contact> find(String name, int maxDistance) {
+        if (name == null) {
+            throw new NullPointerException("'null' is invalid as name!");
+        }
+        if (maxDistance < 0) {
+            throw new IllegalArgumentException(
+                      "Distance must not be negative!");
+        }
+        String key = name.toLowerCase().trim();
+        final Map<Contact, Integer> found = new HashMap<Contact, Integer>();
+        if (root != null) {
+            Deque<Node> pending = new ArrayDeque<Node>();
+            pending.push(root);
+            while (!pending.isEmpty()) {
+                Node node = pending.pop();
+                int distance = distance(key, node.key);
+                if (distance <= maxDistance) {
+                    for (Contact contact : node.contacts) {
+                        Integer previous = found.get(contact);
+                        if (previous == null || previous > distance) {
+                            found.put(contact, distance);
+                        }
+                    }
+                }
+                for (Map.Entry<Integer, Node> child
+                         : node.children.entrySet()) {
+                    if (Math.abs(child.getKey() - distance) <= maxDistance) {
+                        pending.push(child.getValue());
+                    }
+                }
+            }
+        }
+        List<Contact> contacts = new ArrayList<Contact>(found.keySet());
+        Collections.sort(contacts, new Comparator<Contact>() {
+            @Override
+            public int compare(Contact one, Contact other) {
+                int result = Integer.compare(found.get(one),
+                                             found.get(other));
+                if (result == 0) {
+                    result = one.getName().compareTo(other.getName());
+                }
+                return result != 0
+                       ? result
+                       : Integer.compare(one.getId(), other.getId());
+            }
+        });
+        return contacts;
+    }
+
+    /**
+     * Computes the Levenshtein distance of two strings with two rows
+     * of the usual dynamic programming table.
+     *
+     * @param one a string
+     * @param other another string
+     * @return the least number of inserted, deleted or replaced
+     *         characters turning one string into the other
+     */
+    public static int distance(String one, String other) {
+        if (one.length() < other.length()) {
+            String swapped = one;
+            one = other;
+            other = swapped;
+        }
+        int[] previous = new int[other.length() + 1];
+        int[] current = new int[other.length() + 1];
+        for (int j = 0; j <= other.length(); j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= one.length(); i++) {
+            current[0] = i;
+            char c = one.charAt(i - 1);
+            for (int j = 1; j <= other.length(); j++) {
+                int replace = previous[j - 1]
+                              + (c == other.charAt(j - 1) ? 0 : 1);
+                current[j] = Math.min(replace,
+                                      Math.min(previous[j], current[j - 1])
+                                      + 1);
+            }
+            int[] swapped = previous;
+            previous = current;
+            current = swapped;
+        }
+        return previous[other.length()];
+    }
+
+    /**
+     * Helper method that returns the lower case name and its words.
+     *
+     * @param name the name of a contact
+     * @return the keys of the name, without duplicates
+     */
+    private static Set<String> keys(String name) {
+        String lower = name.toLowerCase().trim();
+        Set<String> keys = new LinkedHashSet<String>();
+        keys.add(lower);
+        for (String word : lower.split("\\s+")) {
+            if (!word.isEmpty()) {
+                keys.add(word);
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * A node of the BK-tree with the contacts stored under its key.
+     */
+    private static class Node {
+        private final String key;
+        // A set, as common names such as "john" have many contacts.
+        private final Set<Contact> contacts = new HashSet<Contact>(2);
+        private final Map<Integer, Node> children =
+            new HashMap<Integer, Node>(4);
+
+        private Node(String key) {
+            this.key = key;
+        }
+    }
+}
@@ -0,0 +1,133 @@
+import static org.junit.Assert.*;
+import org.junit.*;
+import java.util.*;
+import java.io.*;
+
+/**
+ * The test class FuzzyNameIndexTester.
+ *
+ * @author  Stefan E. Mayer
+ * @version 1.0
+ */
+public class FuzzyNameIndexTester {
+    private final static File FILE = new File("fuzzy.txt");
+
+    private FuzzyNameIndex index;
+    private Contact john;
+    private Contact jon;
+    private Contact joan;
+
+    /**
+     * Sets up the test fixture.
+     *
+     * Called before every test case method.
+     */
+    @Before
+    public void setUp() {
+        FILE.delete();
+        index = new FuzzyNameIndex();
+        john = new ContactImpl(1, "John Smith", "");
+        jon = new ContactImpl(2, "Jon Smyth", "");
+        joan = new ContactImpl(3, "Joan Baker", "");
+        index.add(john);
+        index.add(jon);
+        index.add(joan);
+    }
+
+    /**
+     * Tears down the test fixture.
+     *
+     * Called after every test case method.
+     */
+    @After
+    public void tearDown() {
+        index = null;
+        FILE.delete();
+    }
+
+    /**
+     * Tests the edit distance.
+     */
+    @Test
+    public void testDistance() {
+        assertEquals(0, FuzzyNameIndex.distance("smith", "smith"));
+        assertEquals(1, FuzzyNameIndex.distance("smith", "smyth"));
+        assertEquals(2, FuzzyNameIndex.distance("smith", "smiht"));
+        assertEquals(3, FuzzyNameIndex.distance("kitten", "sitting"));
+        assertEquals(5, FuzzyNameIndex.distance("", "smith"));
+    }
+
+    /**
+     * Tests if names and words of names are found, closest first.
+     */
+    @Test
+    public void testFind() {
+        assertEquals(Arrays.asList(john), index.find("smith", 0));
+        assertEquals(Arrays.asList(john, jon), index.find("SMITH", 1));
+        assertEquals(Arrays.asList(jon, joan, john), index.find("jon", 1));
+        assertEquals(Arrays.asList(john, jon), index.find("jhon smith", 2));
+        assertTrue(index.find("miller", 2).isEmpty());
+    }
+
+    /**
+     * Tests if a negative distance is rejected.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativeDistance() {
+        index.find("jon", -1);
+    }
+
+    /**
+     * Tests the index against comparing every name.
+     */
+    @Test
+    public void testAgainstBruteForce() {
+        Random random = new Random(42);
+        List<Contact> contacts = new ArrayList<Contact>();
+        FuzzyNameIndex large = new FuzzyNameIndex();
+        for (int id = 1; id <= 2000; id++) {
+            Contact contact = new ContactImpl(id, word(random), "");
+            contacts.add(contact);
+            large.add(contact);
+        }
+        for (int i = 0; i < 50; i++) {
+            String query = word(random);
+            Set<Contact> expected = new HashSet<Contact>();
+            for (Contact contact : contacts) {
+                if (FuzzyNameIndex.distance(query, contact.getName()) <= 2) {
+                    expected.add(contact);
+                }
+            }
+            assertEquals(expected,
+                         new HashSet<Contact>(large.find(query, 2)));
+        }
+    }
+
+    /**
+     * Tests if the contact manager finds new contacts as well.
+     */
+    @Test
+    public void testContactManagerFind() {
+        ContactManagerImpl manager = new ContactManagerImpl(FILE);
+        manager.addNewContact("Margaret Hamilton", "");
+        assertEquals(1, manager.findContacts("hamliton", 2).size());
+        manager.addNewContact("Grace Hopper", "");
+        assertEquals("Grace Hopper",
+                     manager.findContacts("Grace Hoper", 1).get(0).getName());
+        assertTrue(manager.findContacts("Hoper", 0).isEmpty());
+    }
+
+    /**
+     * Helper method that creates a random lower case word.
+     *
+     * @param random the random numbers
+     * @return a word of 3 to 7 letters
+     */
+    private static String word(Random random) {
+        char[] letters = new char[3 + random.nextInt(5)];
+        for (int i = 0; i < letters.length; i++) {
+            letters[i] = "abcdefgh".charAt(random.nextInt(8));
+        }
+        return new String(letters);
+    }
+}
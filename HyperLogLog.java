@@ -0,0 +1,225 @@
+import java.util.Arrays;
+/**
+ * Estimates the number of distinct values added to it, e.g. contact
+ * IDs, in a small, fixed amount of memory (HyperLogLog).
+ *
+ * Every value is hashed; the first bits of the hash pick one of 2^p
+ * registers, which keeps the longest run of leading zeros seen in the
+ * remaining bits. The standard error of the estimate is about
+ * 1.04 / sqrt(2^p), e.g. 2.3% for the default precision of 11. Two
+ * sketches of the same precision can be merged into a sketch of the
+ * union of their values.
+ *
+ * A sketch of only a few values keeps them in a sorted list of
+ * (register, run) pairs instead of all the registers, as most of them
+ * are still zero, and switches to the registers once the list would
+ * take more memory.
+ *
+ * IMPORTANT: Values cannot be removed. To remove values, build a new
+ *            sketch from the remaining ones.
+ *
+ * @author Stefan E. Mayer
+ * @version 1.0
+ */
+public class HyperLogLog {
+    /**
+     * The default precision, giving 2048 registers.
+     */
+    public static final int DEFAULT_PRECISION = 11;
+
+    private int precision;
+    // The registers, or null while the sketch is sparse.
+    private byte[] registers;
+    // Register << 8 | run, sorted by register; used while sparse.
+    private int[] sparse;
+    private int sparseSize;
+
+    /**
+     * Create a new, empty sketch with the default precision.
+     */
+    public HyperLogLog() {
+        this(DEFAULT_PRECISION);
+    }
+
+    /**
+     * Create a new, empty sketch.
+     *
+     * @param precision the number of hash bits that pick a register,
+     *        from 4 to 16
+     * @throws IllegalArgumentException if the precision is out of range
+     */
+    public HyperLogLog(int precision) {
+        if (precision < 4 || precision > 16) {
+            throw new IllegalArgumentException("Precision out of range!");
+        }
+        this.precision = precision;
+        this.sparse = new int[4];
+    }
+
+    /**
+     * Create a copy of a sketch.
+     *
+     * @param other the sketch to copy
+     */
+    public HyperLogLog(HyperLogLog other) {
+        this.precision = other.precision;
+        if (other.registers != null) {
+            this.registers = other.registers.clone();
+        } else {
+            this.sparse = other.sparse.clone();
+            this.sparseSize = other.sparseSize;
+        }
+    }
+
+    /**
+     * Returns the precision of the sketch.
+     *
+     * @return the number of hash bits that pick a register
+     */
+    public int getPrecision() {
+        return precision;
+    }
+
+    /**
+     * Adds a value.
+     *
+     * @param value the value
+     */
+    public void add(long value) {
+        long hash = mix(value);
+        int register = (int)(hash >>> (64 - precision));
+        // The sentinel bit limits the run to 64 - precision + 1.
+        long rest = (hash << precision) | (1L << (precision - 1));
+        update(register, Long.numberOfLeadingZeros(rest) + 1);
+    }
+
+    /**
+     * Adds all values of another sketch to this one.
+     *
+     * @param other the sketch, with the same precision
+     * @throws IllegalArgumentException if the precisions differ
+     */
+    public void merge(HyperLogLog other) {
+        if (other.precision != precision) {
+            throw new IllegalArgumentException("Precisions differ!");
+        }
+        if (other.registers != null) {
+            densify();
+            for (int i = 0; i < registers.length; i++) {
+                if (other.registers[i] > registers[i]) {
+                    registers[i] = other.registers[i];
+                }
+            }
+        } else {
+            for (int i = 0; i < other.sparseSize; i++) {
+                update(other.sparse[i] >>> 8, other.sparse[i] & 0xFF);
+            }
+        }
+    }
+
+    /**
+     * Returns the estimated number of distinct values added.
+     *
+     * @return the estimate
+     */
+    public long estimate() {
+        int m = 1 << precision;
+        double sum = 0;
+        int zeros = 0;
+        if (registers != null) {
+            for (byte run : registers) {
+                sum += Math.scalb(1.0, -run);
+                if (run == 0) {
+                    zeros++;
+                }
+            }
+        } else {
+            zeros = m - sparseSize;
+            sum = zeros;
+            for (int i = 0; i < sparseSize; i++) {
+                sum += Math.scalb(1.0, -(sparse[i] & 0xFF));
+            }
+        }
+        double alpha = 0.7213 / (1 + 1.079 / m);
+        double estimate = alpha * m * m / sum;
+        if (estimate <= 2.5 * m && zeros > 0) {
+            // Linear counting is more accurate for few values.
+            estimate = m * Math.log((double)m / zeros);
+        }
+        return Math.round(estimate);
+    }
+
+    /**
+     * Helper method that raises a register to a run if it is lower.
+     *
+     * @param register the number of the register
+     * @param run the run of leading zeros plus one
+     */
+    private void update(int register, int run) {
+        if (registers != null) {
+            if (run > registers[register]) {
+                registers[register] = (byte)run;
+            }
+            return;
+        }
+        int low = 0;
+        int high = sparseSize - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int found = sparse[middle] >>> 8;
+            if (found < register) {
+                low = middle + 1;
+            } else if (found > register) {
+                high = middle - 1;
+            } else {
+                if (run > (sparse[middle] & 0xFF)) {
+                    sparse[middle] = register << 8 | run;
+                }
+                return;
+            }
+        }
+        // An int per pair takes as much memory as four registers.
+        if (sparseSize >= (1 << precision) / 4) {
+            densify();
+            update(register, run);
+            return;
+        }
+        if (sparseSize == sparse.length) {
+            sparse = Arrays.copyOf(sparse, sparseSize * 2);
+        }
+        System.arraycopy(sparse, low, sparse, low + 1, sparseSize - low);
+        sparse[low] = register << 8 | run;
+        sparseSize++;
+    }
+
+    /**
+     * Helper method that switches from the sparse list to the registers.
+     */
+    private void densify() {
+        if (registers != null) {
+            return;
+        }
+        registers = new byte[1 << precision];
+        for (int i = 0; i < sparseSize; i++) {
+            registers[sparse[i] >>> 8] = (byte)(sparse[i] & 0xFF);
+        }
+        sparse = null;
+        sparseSize = 0;
+    }
+
+    /**
+     * Helper method that mixes the bits of a value (the finalizer of
+     * MurmurHash3), so that every bit of the hash is equally random.
+     *
+     * @param value the value
+     * @return the hash
+     */
+    private static long mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        value *= 0xc4ceb9fe1a85ec53L;
+        value ^= value >>> 33;
+        return value;
+    }
+}
@@ -0,0 +1,84 @@
+import static org.junit.Assert.*;
+import org.junit.*;
+
+/**
+ * The test class HyperLogLogTester.
+ *
+ * @author  Stefan E. Mayer
+ * @version 1.0
+ */
+public class HyperLogLogTester {
+    /**
+     * Tests if few values are counted exactly, duplicates only once.
+     */
+    @Test
+    public void testFewValues() {
+        HyperLogLog sketch = new HyperLogLog();
+        assertEquals(0, sketch.estimate());
+        for (int i = 1; i <= 20; i++) {
+            sketch.add(i);
+            sketch.add(i);
+        }
+        assertEquals(20, sketch.estimate());
+    }
+
+    /**
+     * Tests if many values are estimated within the expected error,
+     * also after switching from the sparse list to the registers.
+     */
+    @Test
+    public void testManyValues() {
+        HyperLogLog sketch = new HyperLogLog();
+        for (int count : new int[] {400, 5000, 100000}) {
+            for (int i = 0; i < count; i++) {
+                sketch.add(i + 1);
+            }
+            assertEquals(count, sketch.estimate(), count * 0.07);
+        }
+    }
+
+    /**
+     * Tests if a merged sketch estimates the union of the values.
+     */
+    @Test
+    public void testMerge() {
+        HyperLogLog odd = new HyperLogLog(12);
+        HyperLogLog even = new HyperLogLog(12);
+        HyperLogLog all = new HyperLogLog(12);
+        for (int i = 1; i <= 30000; i++) {
+            (i % 2 == 0 ? even : odd).add(i);
+            all.add(i);
+        }
+        HyperLogLog union = new HyperLogLog(odd);
+        union.merge(even);
+        assertEquals(all.estimate(), union.estimate());
+        // Merging again changes nothing; the copy left the original alone.
+        union.merge(odd);
+        assertEquals(all.estimate(), union.estimate());
+        assertEquals(15000, odd.estimate(), 15000 * 0.06);
+
+        HyperLogLog few = new HyperLogLog(12);
+        few.add(1);
+        few.add(30001);
+        few.merge(new HyperLogLog(12));
+        union.merge(few);
+        assertEquals(all.estimate() + 1, union.estimate(), 30);
+        assertEquals(2, few.estimate());
+    }
+
+    /**
+     * Tests if sketches of different precisions are not merged.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testMergeDifferentPrecision() {
+        new HyperLogLog(10).merge(new HyperLogLog(11));
+    }
+
+    /**
+     * Tests if a precision out of range is rejected.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidPrecision() {
+        new HyperLogLog(3);
+    }
+}
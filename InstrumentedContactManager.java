@@ -0,0 +1,350 @@
+import java.util.*;
+/**
+ * A contact manager that measures every call to another contact manager.
+ *
+ * The latency, the number of calls and errors and the number of
+ * contacts or meetings returned are recorded in ContactManagerMetrics,
+ * which can be published over JMX. When the metrics are disabled, a
+ * call costs a single volatile read on top of the actual operation.
+ *
+ * @author Stefan E. Mayer
+ * @version 1.0
+ */
+public class InstrumentedContactManager implements ContactManager {
+    /**
+     * The measured operations, one per ContactManager method.
+     */
+    public enum Operation {
+        ADD_FUTURE_MEETING, GET_PAST_MEETING, GET_FUTURE_MEETING,
+        GET_MEETING, GET_FUTURE_MEETING_LIST_BY_CONTACT,
+        GET_FUTURE_MEETING_LIST_BY_DATE, GET_PAST_MEETING_LIST,
+        ADD_NEW_PAST_MEETING, ADD_MEETING_NOTES, CANCEL_MEETING,
+        RESCHEDULE_MEETING, ADD_NEW_CONTACT, GET_CONTACTS_BY_ID,
+        GET_CONTACTS_BY_NAME, FLUSH
+    }
+
+    private ContactManager manager;
+    private ContactManagerMetrics metrics;
+
+    /**
+     * Create a new instrumented view of a contact manager.
+     *
+     * @param manager the measured contact manager
+     */
+    public InstrumentedContactManager(ContactManager manager) {
+        this.manager = manager;
+        this.metrics = new ContactManagerMetrics(manager);
+    }
+
+    /**
+     * Returns the metrics of this contact manager, e.g. to
+     * register them as an MBean or to disable them.
+     *
+     * @return the metrics of this contact manager
+     */
+    public ContactManagerMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int addFutureMeeting(Set<Contact> contacts, Calendar date) {
+        if (!metrics.isEnabled()) {
+            return manager.addFutureMeeting(contacts, date);
+        }
+        long start = System.nanoTime();
+        int result;
+        try {
+            result = manager.addFutureMeeting(contacts, date);
+        } catch (RuntimeException failed) {
+            metrics.recordError(Operation.ADD_FUTURE_MEETING, start);
+            throw failed;
+        }
+        metrics.record(Operation.ADD_FUTURE_MEETING, start, 1);
+        return result;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public PastMeeting getPastMeeting(int id) {
+        if (!metrics.isEnabled()) {
+            return manager.getPastMeeting(id);
+        }
+        long start = System.nanoTime();
+        PastMeeting result;
+        try {
+            result = manager.getPastMeeting(id);
+        } catch (RuntimeException failed) {
+            metrics.recordError(Operation.GET_PAST_MEETING, start);
+            throw failed;
+        }
+        metrics.record(Operation.GET_PAST_MEETING, start,
+                       result == null ? 0 : 1);
+        return result;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public FutureMeeting getFutureMeeting(int id) {
+        if (!metrics.isEnabled()) {
+            return manager.getFutureMeeting(id);
+        }
+        long start = System.nanoTime();
+        FutureMeeting result;
+        try {
+            result = manager.getFutureMeeting(id);
+        } catch (RuntimeException failed) {
+            metrics.recordError(Operation.GET_FUTURE_MEETING, start);
+            throw failed;
+        }
+        metrics.record(Operation.GET_FUTURE_MEETING, start,
+                       result == null ? 0 : 1);
+        return result;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Meeting getMeeting(int id) {
+        if (!metrics.isEnabled()) {
+            return manager.getMeeting(id);
+        }
+        long start = System.nanoTime();
+        Meeting result;
+        try {
+            result = manager.getMeeting(id);
+        } catch (RuntimeException failed) {
+            metrics.recordError(Operation.GET_MEETING, start);
+            throw failed;
+        }
+        metrics.record(Operation.GET_MEETING, start, result == null ? 0 : 1);
+        return result;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<Meeting> getFutureMeetingList(Contact contact) {
+        if (!metrics.isEnabled()) {
+            return manager.getFutureMeetingList(contact);
+        }
+        long start = System.nanoTime();
+        List<Meeting> result;
+        try {
+            result = manager.getFutureMeetingList(contact);
+        } catch (RuntimeException failed) {
+            metrics.recordError(
+                Operation.GET_FUTURE_MEETING_LIST_BY_CONTACT, start);
+            throw failed;
+        }
+        metrics.record(Operation.GET_FUTURE_MEETING_LIST_BY_CONTACT, start,
+                       result.size());
+        return result;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<Meeting> getFutureMeetingList(Calendar date) {
+        if (!metrics.isEnabled()) {
+            return manager.getFutureMeetingList(date);
+        }
+        long start = System.nanoTime();
+        List<Meeting> result;
+        try {
+            result = manager.getFutureMeetingList(date);
+        } catch (RuntimeException failed) {
+            metrics.recordError(
+                Operation.GET_FUTURE_MEETING_LIST_BY_DATE, start);
+            throw failed;
+        }
+        metrics.record(Operation.GET_FUTURE_MEETING_LIST_BY_DATE, start,
+                       result.size());
+        return result;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<PastMeeting> getPastMeetingList(Contact contact) {
+        if (!metrics.isEnabled()) {
+            return manager.getPastMeetingList(contact);
+        }
+        long start = System.nanoTime();
+        List<PastMeeting> result;
+        try {
+            result = manager.getPastMeetingList(contact);
+        } catch (RuntimeException failed) {
+            metrics.recordError(Operation.GET_PAST_MEETING_LIST, start);
+            throw failed;
+        }
+        metrics.record(Operation.GET_PAST_MEETING_LIST, start, result.size());
+        return result;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void addNewPastMeeting(Set<Contact> contacts,
+                                  Calendar date, String text) {
+        if (!metrics.isEnabled()) {
+            manager.addNewPastMeeting(contacts, date, text);
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            manager.addNewPastMeeting(contacts, date, text);
+        } catch (RuntimeException failed) {
+            metrics.recordError(Operation.ADD_NEW_PAST_MEETING, start);
+            throw failed;
+        }
+        metrics.record(Operation.ADD_NEW_PAST_MEETING, start, 0);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void addMeetingNotes(int id, String text) {
+        if (!metrics.isEnabled()) {
+            manager.addMeetingNotes(id, text);
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            manager.addMeetingNotes(id, text);
+        } catch (RuntimeException failed) {
+            metrics.recordError(Operation.ADD_MEETING_NOTES, start);
+            throw failed;
+        }
+        metrics.record(Operation.ADD_MEETING_NOTES, start, 0);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void cancelMeeting(int id) {
+        if (!metrics.isEnabled()) {
+            manager.cancelMeeting(id);
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            manager.cancelMeeting(id);
+        } catch (RuntimeException failed) {
+            metrics.recordError(Operation.CANCEL_MEETING, start);
+            throw failed;
+        }
+        metrics.record(Operation.CANCEL_MEETING, start, 0);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void rescheduleMeeting(int id, Calendar date,
+                                  Set<Contact> contacts) {
+        if (!metrics.isEnabled()) {
+            manager.rescheduleMeeting(id, date, contacts);
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            manager.rescheduleMeeting(id, date, contacts);
+        } catch (RuntimeException failed) {
+            metrics.recordError(Operation.RESCHEDULE_MEETING, start);
+            throw failed;
+        }
+        metrics.record(Operation.RESCHEDULE_MEETING, start, 0);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void addNewContact(String name, String notes) {
+        if (!metrics.isEnabled()) {
+            manager.addNewContact(name, notes);
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            manager.addNewContact(name, notes);
+        } catch (RuntimeException failed) {
+            metrics.recordError(Operation.ADD_NEW_CONTACT, start);
+            throw failed;
+        }
+        metrics.record(Operation.ADD_NEW_CONTACT, start, 0);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Set<Contact> getContacts(int... ids) {
+        if (!metrics.isEnabled()) {
+            return manager.getContacts(ids);
+        }
+        long start = System.nanoTime();
+        Set<Contact> result;
+        try {
+            result = manager.getContacts(ids);
+        } catch (RuntimeException failed) {
+            metrics.recordError(Operation.GET_CONTACTS_BY_ID, start);
+            throw failed;
+        }
+        metrics.record(Operation.GET_CONTACTS_BY_ID, start, result.size());
+        return result;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Set<Contact> getContacts(String name) {
+        if (!metrics.isEnabled()) {
+            return manager.getContacts(name);
+        }
+        long start = System.nanoTime();
+        Set<Contact> result;
+        try {
+            result = manager.getContacts(name);
+        } catch (RuntimeException failed) {
+            metrics.recordError(Operation.GET_CONTACTS_BY_NAME, start);
+            throw failed;
+        }
+        metrics.record(Operation.GET_CONTACTS_BY_NAME, start, result.size());
+        return result;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void flush() {
+        if (!metrics.isEnabled()) {
+            manager.flush();
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            manager.flush();
+        } catch (RuntimeException failed) {
+            metrics.recordError(Operation.FLUSH, start);
+            throw failed;
+        }
+        metrics.record(Operation.FLUSH, start, 0);
+    }
+}
@@ -0,0 +1,99 @@
+import static org.junit.Assert.*;
+import org.junit.*;
+import java.util.*;
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import javax.management.*;
+
+/**
+ * The test class InstrumentedContactManagerTester.
+ *
+ * @author  Stefan E. Mayer
+ * @version 1.0
+ */
+public class InstrumentedContactManagerTester {
+    private final static File FILE = new File("instrumented.txt");
+
+    private InstrumentedContactManager manager;
+
+    /**
+     * Sets up the test fixture.
+     *
+     * Called before every test case method.
+     */
+    @Before
+    public void setUp() {
+        FILE.delete();
+        manager = new InstrumentedContactManager(new ContactManagerImpl(FILE));
+        manager.addNewContact("c1", "notes1");
+        manager.addNewContact("c2", "notes2");
+    }
+
+    /**
+     * Tears down the test fixture.
+     *
+     * Called after every test case method.
+     */
+    @After
+    public void tearDown() {
+        manager.getMetrics().unregister();
+        manager = null;
+        FILE.delete();
+    }
+
+    /**
+     * Tests if calls, errors and result sizes are counted.
+     */
+    @Test
+    public void testCallsAreCounted() {
+        ContactManagerMetrics metrics = manager.getMetrics();
+        assertEquals(2, metrics.getCalls(
+            InstrumentedContactManager.Operation.ADD_NEW_CONTACT));
+        assertEquals(2, manager.getContacts("c").size());
+        try {
+            manager.getContacts(3);
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+        assertEquals(2, metrics.getContactCount());
+        assertEquals(0, metrics.getMeetingCount());
+        for (OperationStats stats : metrics.getOperations()) {
+            if (stats.getOperation().equals("GET_CONTACTS_BY_NAME")) {
+                assertEquals(1, stats.getCalls());
+                assertEquals(2, stats.getResultSize());
+            } else if (stats.getOperation().equals("GET_CONTACTS_BY_ID")) {
+                assertEquals(1, stats.getCalls());
+                assertEquals(1, stats.getErrors());
+            }
+        }
+        metrics.reset();
+        assertEquals(0, metrics.getCalls(
+            InstrumentedContactManager.Operation.ADD_NEW_CONTACT));
+    }
+
+    /**
+     * Tests if nothing is recorded while the metrics are disabled.
+     */
+    @Test
+    public void testDisabled() {
+        manager.getMetrics().setEnabled(false);
+        manager.getContacts("c");
+        assertEquals(0, manager.getMetrics().getCalls(
+            InstrumentedContactManager.Operation.GET_CONTACTS_BY_NAME));
+    }
+
+    /**
+     * Tests if the metrics can be read through the platform MBean server.
+     */
+    @Test
+    public void testMBean() throws Exception {
+        manager.getMetrics().register("test");
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName("cw4:type=ContactManager,name="
+                                         + ObjectName.quote("test"));
+        assertEquals(2, server.getAttribute(name, "ContactCount"));
+        assertEquals(true, server.getAttribute(name, "Enabled"));
+        manager.getMetrics().unregister();
+        assertFalse(server.isRegistered(name));
+    }
+}
@@ -0,0 +1,81 @@
+import static org.junit.Assert.*;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * The test class LatencyHistogramTester.
+ *
+ * @author  Stefan E. Mayer
+ * @version 1.0
+ */
+public class LatencyHistogramTester {
+    LatencyHistogram histogram;
+
+    /**
+     * Sets up the test fixture.
+     *
+     * Called before every test case method.
+     */
+    @Before
+    public void setUp() {
+        histogram = new LatencyHistogram();
+    }
+
+    /**
+     * Tears down the test fixture.
+     *
+     * Called after every test case method.
+     */
+    @After
+    public void tearDown() {
+        histogram = null;
+    }
+
+    /**
+     * Tests if percentiles of small values are exact.
+     */
+    @Test
+    public void testSmallValuesAreExact() {
+        for (int i = 1; i <= 100; i++) {
+            histogram.record(i);
+        }
+        assertEquals(100, histogram.getCount());
+        assertEquals(50, histogram.getValueAtPercentile(50));
+        assertEquals(99, histogram.getValueAtPercentile(99));
+        assertEquals(100, histogram.getValueAtPercentile(100));
+        assertEquals(50.5, histogram.getMean(), 0.001);
+    }
+
+    /**
+     * Tests if percentiles of large values are within the precision.
+     */
+    @Test
+    public void testLargeValuesArePrecise() {
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i * 1000000L);
+        }
+        long median = histogram.getValueAtPercentile(50);
+        assertTrue(median >= 500000000L);
+        assertTrue(median <= 500000000L * 1.016);
+        assertEquals(1000000000L, histogram.getValueAtPercentile(100));
+        assertEquals(1000000000L, histogram.getMax());
+    }
+
+    /**
+     * Tests adding and resetting histograms.
+     */
+    @Test
+    public void testAddAndReset() {
+        LatencyHistogram other = new LatencyHistogram();
+        other.record(5000);
+        histogram.record(10);
+        histogram.add(other);
+        assertEquals(2, histogram.getCount());
+        assertEquals(5000, histogram.getMax());
+
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getValueAtPercentile(99));
+    }
+}
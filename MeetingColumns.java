@@ -0,0 +1,536 @@
+import java.util.*;
+import java.util.concurrent.RecursiveTask;
+/**
+ * A column store of all meetings, used to answer date and
+ * participant filters without touching meeting or calendar objects.
+ *
+ * Every meeting is a row in a set of parallel primitive arrays:
+ * its time in milliseconds, its id and a flag telling if it is a past
+ * meeting. Participants are stored in compressed sparse row format:
+ * the contact ids of row r are participantIds[offsets[r]] up to (but
+ * excluding) participantIds[offsets[r + 1]].
+ *
+ * Removing a meeting only marks its row as removed, which the scans
+ * skip, so nothing is shifted. Once more than half of the rows are
+ * removed, the live rows are moved together in one pass, keeping
+ * their order; this costs O(1) per removal on average.
+ *
+ * IMPORTANT: The scans are written as tight, branch-free loops over
+ *            primitive arrays so that the JIT can unroll and vectorize
+ *            them. The JDK Vector API is still an incubator module and
+ *            is not used, this keeps the class usable on any JDK.
+ *
+ * Stores with more rows than the parallel threshold are scanned by
+ * ForkJoin tasks, each filtering and sorting a chunk of rows. The
+ * sorted chunks are merged pairwise as the tasks are joined, so the
+ * results stay in chronological order.
+ *
+ * @author Stefan E. Mayer
+ * @version 1.0
+ */
+public class MeetingColumns {
+    private static final int INITIAL_CAPACITY = 16;
+    /**
+     * The default number of rows above which scans run in parallel.
+     */
+    public static final int DEFAULT_PARALLEL_THRESHOLD = 50000;
+
+    private long[] times;
+    private int[] ids;
+    private boolean[] past;
+    private boolean[] removed;
+    private int[] offsets;
+    private int[] participantIds;
+    private int rows;
+    private int removedRows;
+
+    private Map<Integer, Integer> rowOfId;
+
+    private int parallelThreshold;
+
+    /**
+     * Create a new, empty column store.
+     */
+    public MeetingColumns() {
+        times = new long[INITIAL_CAPACITY];
+        ids = new int[INITIAL_CAPACITY];
+        past = new boolean[INITIAL_CAPACITY];
+        removed = new boolean[INITIAL_CAPACITY];
+        offsets = new int[INITIAL_CAPACITY + 1];
+        participantIds = new int[INITIAL_CAPACITY];
+        rows = 0;
+        rowOfId = new HashMap<Integer, Integer>();
+        parallelThreshold = DEFAULT_PARALLEL_THRESHOLD;
+    }
+
+    /**
+     * Sets the number of rows above which scans are split into
+     * ForkJoin tasks. This is also the smallest chunk a task scans.
+     *
+     * @param threshold the minimum number of rows for parallel scans
+     * @throws IllegalArgumentException if the threshold is not positive
+     */
+    public void setParallelThreshold(int threshold) {
+        if (threshold <= 0) {
+            throw new IllegalArgumentException("Threshold must be positive!");
+        }
+        parallelThreshold = threshold;
+    }
+
+    /**
+     * Appends a meeting to the store.
+     *
+     * @param meeting the meeting to be added
+     */
+    public void add(Meeting meeting) {
+        if (rows == times.length) {
+            int capacity = rows * 2;
+            times = Arrays.copyOf(times, capacity);
+            ids = Arrays.copyOf(ids, capacity);
+            past = Arrays.copyOf(past, capacity);
+            removed = Arrays.copyOf(removed, capacity);
+            offsets = Arrays.copyOf(offsets, capacity + 1);
+        }
+        Set<Contact> contacts = meeting.getContacts();
+        int start = offsets[rows];
+        int end = start + contacts.size();
+        if (end > participantIds.length) {
+            participantIds = Arrays.copyOf(participantIds,
+                                 Math.max(end, participantIds.length * 2));
+        }
+        for (Contact contact : contacts) {
+            participantIds[start++] = contact.getId();
+        }
+        times[rows] = meeting.getDate().getTimeInMillis();
+        ids[rows] = meeting.getId();
+        past[rows] = meeting instanceof PastMeeting;
+        offsets[rows + 1] = end;
+        rowOfId.put(meeting.getId(), rows);
+        rows++;
+    }
+
+    /**
+     * Marks a meeting as a past meeting.
+     *
+     * @param id the id of the meeting
+     */
+    public void markPast(int id) {
+        Integer row = rowOfId.get(id);
+        if (row != null) {
+            past[row] = true;
+        }
+    }
+
+    /**
+     * Removes a meeting from the store, e.g. because it was cancelled.
+     *
+     * @param id the id of the meeting
+     */
+    public void remove(int id) {
+        Integer row = rowOfId.remove(id);
+        if (row == null) {
+            return;
+        }
+        removed[row] = true;
+        removedRows++;
+        if (removedRows > INITIAL_CAPACITY && removedRows > rows / 2) {
+            compact();
+        }
+    }
+
+    /**
+     * Returns the number of participants of a meeting.
+     *
+     * @param id the id of the meeting
+     * @return the number of participants, or -1 if there is no such
+     *         meeting
+     */
+    public int getParticipantCount(int id) {
+        Integer row = rowOfId.get(id);
+        return row == null ? -1 : offsets[row + 1] - offsets[row];
+    }
+
+    /**
+     * Returns the number of meetings in the store.
+     *
+     * @return the number of meetings
+     */
+    public int size() {
+        return rows - removedRows;
+    }
+
+    /**
+     * Returns the ids of all meetings within a time window,
+     * sorted chronologically.
+     *
+     * @param from the start of the window in milliseconds (inclusive)
+     * @param to the end of the window in milliseconds (exclusive)
+     * @return the ids of the meetings in the window
+     */
+    public int[] findIds(final long from, final long to) {
+        return findIds(from, to, null);
+    }
+
+    /**
+     * Returns the ids of all meetings within a time window,
+     * sorted chronologically, and adds the rows examined and the
+     * time spent sorting to the given statistics.
+     *
+     * @param from the start of the window in milliseconds (inclusive)
+     * @param to the end of the window in milliseconds (exclusive)
+     * @param stats the statistics to add to, or null
+     * @return the ids of the meetings in the window
+     */
+    public int[] findIds(final long from, final long to, ScanStats stats) {
+        return find(stats, new RowFilter() {
+            @Override
+            public int select(int first, int last, int[] selected) {
+                int found = 0;
+                for (int row = first; row < last; row++) {
+                    long time = times[row];
+                    // Always write, only advance on a match (no branch).
+                    selected[found] = row;
+                    found += (time >= from & time < to
+                              & !removed[row]) ? 1 : 0;
+                }
+                return found;
+            }
+        });
+    }
+
+    /**
+     * Returns the ids of all meetings within a time window that have
+     * a given number of participants and are past or future meetings,
+     * sorted chronologically.
+     *
+     * @param from the start of the window in milliseconds (inclusive)
+     * @param to the end of the window in milliseconds (exclusive)
+     * @param minParticipants the minimum number of participants
+     * @param maxParticipants the maximum number of participants
+     * @param pastMeetings true for past meetings, false for future ones
+     * @return the ids of the matching meetings
+     */
+    public int[] findIds(final long from, final long to,
+                         final int minParticipants, final int maxParticipants,
+                         final boolean pastMeetings) {
+        return find(null, new RowFilter() {
+            @Override
+            public int select(int first, int last, int[] selected) {
+                int found = 0;
+                for (int row = first; row < last; row++) {
+                    long time = times[row];
+                    int participants = offsets[row + 1] - offsets[row];
+                    selected[found] = row;
+                    found += (time >= from & time < to
+                              & participants >= minParticipants
+                              & participants <= maxParticipants
+                              & past[row] == pastMeetings
+                              & !removed[row]) ? 1 : 0;
+                }
+                return found;
+            }
+        });
+    }
+
+    /**
+     * Returns the ids of all meetings a contact participates in,
+     * sorted chronologically.
+     *
+     * @param contactId the id of the contact
+     * @param pastMeetings true for past meetings, false for future ones
+     * @return the ids of the matching meetings
+     */
+    public int[] findIds(final int contactId, final boolean pastMeetings) {
+        return findIds(contactId, pastMeetings, null);
+    }
+
+    /**
+     * Returns the ids of all meetings a contact participates in,
+     * sorted chronologically, and adds the rows examined and the
+     * time spent sorting to the given statistics.
+     *
+     * @param contactId the id of the contact
+     * @param pastMeetings true for past meetings, false for future ones
+     * @param stats the statistics to add to, or null
+     * @return the ids of the matching meetings
+     */
+    public int[] findIds(final int contactId, final boolean pastMeetings,
+                         ScanStats stats) {
+        return find(stats, new RowFilter() {
+            @Override
+            public int select(int first, int last, int[] selected) {
+                int found = 0;
+                for (int row = first; row < last; row++) {
+                    if (past[row] != pastMeetings | removed[row]) {
+                        continue;
+                    }
+                    for (int i = offsets[row]; i < offsets[row + 1]; i++) {
+                        if (participantIds[i] == contactId) {
+                            selected[found++] = row;
+                            break;
+                        }
+                    }
+                }
+                return found;
+            }
+        });
+    }
+
+    /**
+     * Helper method that moves the live rows together, in order, and
+     * drops the removed ones.
+     */
+    private void compact() {
+        int live = 0;
+        int participants = 0;
+        for (int row = 0; row < rows; row++) {
+            if (removed[row]) {
+                continue;
+            }
+            int start = offsets[row];
+            int end = offsets[row + 1];
+            // Rows only move down, so nothing unread is overwritten.
+            offsets[live] = participants;
+            System.arraycopy(participantIds, start, participantIds,
+                             participants, end - start);
+            participants += end - start;
+            times[live] = times[row];
+            ids[live] = ids[row];
+            past[live] = past[row];
+            rowOfId.put(ids[live], live);
+            live++;
+        }
+        offsets[live] = participants;
+        Arrays.fill(removed, 0, rows, false);
+        rows = live;
+        removedRows = 0;
+    }
+
+    /**
+     * Helper method that runs a filter over all rows, in parallel if
+     * the store is large enough, and returns the ids of the selected
+     * rows in chronological order.
+     *
+     * @param stats the statistics to add to, or null
+     * @param filter the filter selecting the rows
+     * @return the meeting ids in chronological order
+     */
+    private int[] find(ScanStats stats, RowFilter filter) {
+        SortedRows sorted;
+        if (rows > parallelThreshold) {
+            sorted = new ScanTask(stats, filter, 0, rows).invoke();
+        } else {
+            sorted = scan(stats, filter, 0, rows);
+        }
+        int[] result = new int[sorted.size];
+        for (int i = 0; i < sorted.size; i++) {
+            result[i] = ids[sorted.rows[i]];
+        }
+        return result;
+    }
+
+    /**
+     * Helper method that filters a range of rows and sorts them by time.
+     *
+     * @param stats the statistics to add to, or null
+     * @param filter the filter selecting the rows
+     * @param first the first row (inclusive)
+     * @param last the last row (exclusive)
+     * @return the selected rows, sorted by time
+     */
+    private SortedRows scan(ScanStats stats, RowFilter filter,
+                            int first, int last) {
+        int[] selected = new int[last - first];
+        int found = filter.select(first, last, selected);
+        long sortStart = stats == null ? 0 : System.nanoTime();
+        long[] keys = new long[found];
+        for (int i = 0; i < found; i++) {
+            keys[i] = times[selected[i]];
+        }
+        sortRows(keys, selected, 0, found);
+        if (stats != null) {
+            stats.add(last - first, System.nanoTime() - sortStart);
+        }
+        return new SortedRows(keys, selected, found);
+    }
+
+    /**
+     * Helper method that merges two sets of sorted rows. Rows with
+     * equal times keep their order, left before right.
+     *
+     * @param left the rows of the lower row range
+     * @param right the rows of the upper row range
+     * @return all rows, sorted by time
+     */
+    private static SortedRows merge(SortedRows left, SortedRows right) {
+        int size = left.size + right.size;
+        long[] keys = new long[size];
+        int[] merged = new int[size];
+        int i = 0;
+        int j = 0;
+        for (int k = 0; k < size; k++) {
+            if (j == right.size
+                || (i < left.size && left.keys[i] <= right.keys[j])) {
+                keys[k] = left.keys[i];
+                merged[k] = left.rows[i++];
+            } else {
+                keys[k] = right.keys[j];
+                merged[k] = right.rows[j++];
+            }
+        }
+        return new SortedRows(keys, merged, size);
+    }
+
+    /**
+     * Helper method that sorts rows by their times, keeping rows with
+     * equal times in insertion order. Small ranges use insertion sort,
+     * larger ones are merged from two sorted halves.
+     *
+     * @param keys the times of the rows
+     * @param rowsToSort the rows, sorted along with the times
+     * @param from the first index to sort (inclusive)
+     * @param to the last index to sort (exclusive)
+     */
+    private static void sortRows(long[] keys, int[] rowsToSort, int from, int to) {
+        if (to - from <= 32) {
+            for (int i = from + 1; i < to; i++) {
+                long key = keys[i];
+                int row = rowsToSort[i];
+                int j = i - 1;
+                while (j >= from && keys[j] > key) {
+                    keys[j + 1] = keys[j];
+                    rowsToSort[j + 1] = rowsToSort[j];
+                    j--;
+                }
+                keys[j + 1] = key;
+                rowsToSort[j + 1] = row;
+            }
+            return;
+        }
+        int middle = (from + to) >>> 1;
+        sortRows(keys, rowsToSort, from, middle);
+        sortRows(keys, rowsToSort, middle, to);
+        long[] leftKeys = Arrays.copyOfRange(keys, from, middle);
+        int[] leftRows = Arrays.copyOfRange(rowsToSort, from, middle);
+        int i = 0;
+        int j = middle;
+        int k = from;
+        while (i < leftKeys.length && j < to) {
+            if (keys[j] < leftKeys[i]) {
+                keys[k] = keys[j];
+                rowsToSort[k++] = rowsToSort[j++];
+            } else {
+                keys[k] = leftKeys[i];
+                rowsToSort[k++] = leftRows[i++];
+            }
+        }
+        while (i < leftKeys.length) {
+            keys[k] = leftKeys[i];
+            rowsToSort[k++] = leftRows[i++];
+        }
+    }
+
+    /**
+     * Statistics of one or more scans: the number of rows examined
+     * and the time spent sorting the selected rows, including the
+     * merges of parallel scans. Chunks of a parallel scan add to the
+     * same statistics from several threads.
+     */
+    public static class ScanStats {
+        private long rowsExamined;
+        private long sortNanos;
+
+        /**
+         * Returns the number of rows examined.
+         *
+         * @return the number of rows examined
+         */
+        public synchronized long getRowsExamined() {
+            return rowsExamined;
+        }
+
+        /**
+         * Returns the time spent sorting.
+         *
+         * @return the time spent sorting in nanoseconds
+         */
+        public synchronized long getSortNanos() {
+            return sortNanos;
+        }
+
+        private synchronized void add(int rows, long nanos) {
+            rowsExamined += rows;
+            sortNanos += nanos;
+        }
+    }
+
+    /**
+     * A filter that selects rows with a tight loop over a row range.
+     */
+    private interface RowFilter {
+        /**
+         * Writes the selected rows of a range to an array.
+         *
+         * @param first the first row (inclusive)
+         * @param last the last row (exclusive)
+         * @param selected the array receiving the selected rows
+         * @return the number of selected rows
+         */
+        int select(int first, int last, int[] selected);
+    }
+
+    /**
+     * Selected rows and their times, sorted by time.
+     */
+    private static class SortedRows {
+        private final long[] keys;
+        private final int[] rows;
+        private final int size;
+
+        private SortedRows(long[] keys, int[] rows, int size) {
+            this.keys = keys;
+            this.rows = rows;
+            this.size = size;
+        }
+    }
+
+    /**
+     * A ForkJoin task that scans a range of rows, splitting it in halves
+     * until chunks are no larger than the parallel threshold.
+     */
+    private class ScanTask extends RecursiveTask<SortedRows> {
+        private static final long serialVersionUID = 1L;
+
+        private final ScanStats stats;
+        private final RowFilter filter;
+        private final int first;
+        private final int last;
+
+        private ScanTask(ScanStats stats, RowFilter filter,
+                         int first, int last) {
+            this.stats = stats;
+            this.filter = filter;
+            this.first = first;
+            this.last = last;
+        }
+
+        @Override
+        protected SortedRows compute() {
+            if (last - first <= parallelThreshold) {
+                return scan(stats, filter, first, last);
+            }
+            int middle = (first + last) >>> 1;
+            ScanTask left = new ScanTask(stats, filter, first, middle);
+            left.fork();
+            SortedRows right = new ScanTask(stats, filter, middle, last)
+                                   .compute();
+            SortedRows sortedLeft = left.join();
+            long mergeStart = stats == null ? 0 : System.nanoTime();
+            SortedRows merged = merge(sortedLeft, right);
+            if (stats != null) {
+                stats.add(0, System.nanoTime() - mergeStart);
+            }
+            return merged;
+        }
+    }
+}
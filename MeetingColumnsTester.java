@@ -0,0 +1,126 @@
+import static org.junit.Assert.*;
+import org.junit.*;
+import java.util.*;
+
+/**
+ * The test class MeetingColumnsTester.
+ *
+ * @author  Stefan E. Mayer
+ * @version 1.0
+ */
+public class MeetingColumnsTester {
+    MeetingColumns columns;
+    Set<Contact> one;
+    Set<Contact> two;
+
+    /**
+     * Sets up the test fixture.
+     *
+     * Called before every test case method.
+     */
+    @Before
+    public void setUp() {
+        columns = new MeetingColumns();
+        one = new HashSet<Contact>();
+        one.add(new ContactImpl(1, "c1", ""));
+        two = new HashSet<Contact>(one);
+        two.add(new ContactImpl(2, "c2", ""));
+
+        // Added out of order on purpose
+        columns.add(new FutureMeetingImpl(1, one,
+                        new GregorianCalendar(2015, 4, 25, 15, 0)));
+        columns.add(new PastMeetingImpl(2, two,
+                        new GregorianCalendar(2015, 4, 25, 9, 0), ""));
+        columns.add(new FutureMeetingImpl(3, two,
+                        new GregorianCalendar(2015, 4, 26, 9, 0)));
+    }
+
+    /**
+     * Tears down the test fixture.
+     *
+     * Called after every test case method.
+     */
+    @After
+    public void tearDown() {
+        columns = null;
+        one = null;
+        two = null;
+    }
+
+    /**
+     * Tests if a time window returns meetings chronologically.
+     */
+    @Test
+    public void testFindIdsInWindow() {
+        long from = new GregorianCalendar(2015, 4, 25).getTimeInMillis();
+        long to = new GregorianCalendar(2015, 4, 26).getTimeInMillis();
+        assertArrayEquals(new int[] {2, 1}, columns.findIds(from, to));
+    }
+
+    /**
+     * Tests filtering by participant count and past/future state.
+     */
+    @Test
+    public void testFindIdsWithFilters() {
+        assertArrayEquals(new int[] {3},
+            columns.findIds(0, Long.MAX_VALUE, 2, 2, false));
+        assertArrayEquals(new int[] {2},
+            columns.findIds(0, Long.MAX_VALUE, 1, 5, true));
+    }
+
+    /**
+     * Tests filtering by contact, including converted meetings.
+     */
+    @Test
+    public void testFindIdsByContact() {
+        assertArrayEquals(new int[] {1, 3}, columns.findIds(1, false));
+        columns.markPast(1);
+        assertArrayEquals(new int[] {2, 1}, columns.findIds(1, true));
+        assertArrayEquals(new int[] {3}, columns.findIds(2, false));
+    }
+
+    /**
+     * Tests if parallel scans return the same chronological results.
+     */
+    @Test
+    public void testParallelScan() {
+        for (int id = 4; id <= 100; id++) {
+            columns.add(new FutureMeetingImpl(id, one,
+                            new GregorianCalendar(2015, 4, 1 + id % 30)));
+        }
+        int[] sequential = columns.findIds(0, Long.MAX_VALUE);
+        int[] sequentialByContact = columns.findIds(1, false);
+        columns.setParallelThreshold(7);
+        assertArrayEquals(sequential, columns.findIds(0, Long.MAX_VALUE));
+        assertArrayEquals(sequentialByContact, columns.findIds(1, false));
+    }
+
+    /**
+     * Tests if removed meetings are skipped, also after compaction.
+     */
+    @Test
+    public void testRemove() {
+        columns.remove(2);
+        assertEquals(2, columns.size());
+        assertArrayEquals(new int[] {1, 3}, columns.findIds(0, Long.MAX_VALUE));
+        assertArrayEquals(new int[0],
+            columns.findIds(0, Long.MAX_VALUE, 1, 5, true));
+
+        // Removing most meetings compacts the store.
+        for (int id = 4; id <= 100; id++) {
+            columns.add(new FutureMeetingImpl(id, id % 2 == 0 ? one : two,
+                            new GregorianCalendar(2015, 4, 1 + id % 30)));
+        }
+        for (int id = 4; id <= 90; id++) {
+            columns.remove(id);
+        }
+        assertEquals(12, columns.size());
+        int[] byContact = columns.findIds(2, false);
+        assertEquals(6, byContact.length);
+        for (int id : byContact) {
+            assertTrue(id == 3 || id > 90 && id % 2 == 1);
+        }
+        columns.markPast(91);
+        assertEquals(91, columns.findIds(2, true)[0]);
+    }
+}
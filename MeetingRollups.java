@@ -0,0 +1,408 @@
+import java.util.*;
+/**
+ * Counts meetings and the distinct contacts met per hour, day and month,
+ * e.g. for histograms over several years, without reading the meetings.
+ *
+ * For every period with meetings there is a bucket holding the number
+ * of meetings, the number of past meetings and a HyperLogLog sketch of
+ * the participants. Adding a meeting updates one bucket per granularity.
+ * Weeks are derived from days when queried. A query only reads the
+ * buckets within its range, so it costs O(buckets), and the distinct
+ * contacts of a bucket are estimated within a few percent.
+ *
+ * Sketches cannot forget values, so removing a meeting rebuilds the
+ * sketch of its hour from the remaining meetings of that hour, and
+ * then those of its day and month from their hours and days.
+ *
+ * Periods start and end in the default time zone. Like getContactStats,
+ * a meeting counts as past once it has notes.
+ *
+ * The rollups are not thread-safe; queries may run concurrently with
+ * each other but not with changes.
+ *
+ * @author Stefan E. Mayer
+ * @version 1.0
+ */
+public class MeetingRollups {
+    /**
+     * The length of the periods of a rollup.
+     */
+    public enum Granularity {
+        /** One bucket per hour. */
+        HOUR,
+        /** One bucket per day. */
+        DAY,
+        /** One bucket per week, starting on the first day of the week. */
+        WEEK,
+        /** One bucket per month. */
+        MONTH
+    }
+
+    private int precision;
+    // Start of the period in milliseconds since the epoch -> bucket.
+    private TreeMap<Long, Bucket> hours;
+    private TreeMap<Long, Bucket> days;
+    private TreeMap<Long, Bucket> months;
+
+    /**
+     * Create new, empty rollups with sketches of the default precision.
+     */
+    public MeetingRollups() {
+        this(HyperLogLog.DEFAULT_PRECISION);
+    }
+
+    /**
+     * Create new, empty rollups.
+     *
+     * @param precision the precision of the sketches, see HyperLogLog
+     * @throws IllegalArgumentException if the precision is out of range
+     */
+    public MeetingRollups(int precision) {
+        if (precision < 4 || precision > 16) {
+            throw new IllegalArgumentException("Precision out of range!");
+        }
+        this.precision = precision;
+        this.hours = new TreeMap<Long, Bucket>();
+        this.days = new TreeMap<Long, Bucket>();
+        this.months = new TreeMap<Long, Bucket>();
+    }
+
+    /**
+     * Counts a meeting in its hour, day and month.
+     *
+     * @param meeting the meeting
+     */
+    public void add(Meeting meeting) {
+        long time = meeting.getDate().getTimeInMillis();
+        bucket(hours, start(Granularity.HOUR, time)).add(meeting, true);
+        bucket(days, start(Granularity.DAY, time)).add(meeting, false);
+        bucket(months, start(Granularity.MONTH, time)).add(meeting, false);
+    }
+
+    /**
+     * Counts a meeting as past from now on, as notes were added to it.
+     *
+     * @param meeting the meeting, which was added as a future meeting
+     */
+    public void markPast(Meeting meeting) {
+        long time = meeting.getDate().getTimeInMillis();
+        for (Granularity granularity : new Granularity[] {
+                 Granularity.HOUR, Granularity.DAY, Granularity.MONTH}) {
+            Bucket bucket = buckets(granularity).get(start(granularity,
+                                                           time));
+            if (bucket != null) {
+                bucket.past++;
+            }
+        }
+    }
+
+    /**
+     * Stops counting a meeting, e.g. because it was cancelled.
+     *
+     * @param meeting the meeting, with the date and participants it was
+     *        added with
+     */
+    public void remove(Meeting meeting) {
+        long time = meeting.getDate().getTimeInMillis();
+        long hour = start(Granularity.HOUR, time);
+        Bucket bucket = hours.get(hour);
+        if (bucket == null || !bucket.removeMember(meeting.getId())) {
+            return;
+        }
+        boolean past = meeting instanceof PastMeeting;
+        bucket.remove(past);
+        if (bucket.meetings == 0) {
+            hours.remove(hour);
+        } else {
+            bucket.contacts = new HyperLogLog(precision);
+            for (Meeting member : bucket.members) {
+                bucket.addContacts(member);
+            }
+        }
+        long day = start(Granularity.DAY, time);
+        resummarize(days, day, hours, next(Granularity.DAY, day), past);
+        long month = start(Granularity.MONTH, time);
+        resummarize(months, month, days, next(Granularity.MONTH, month),
+                    past);
+    }
+
+    /**
+     * Returns the meetings per period of the periods that overlap a time
+     * range. Periods without meetings are left out.
+     *
+     * @param granularity the length of the periods
+     * @param from the start of the range (inclusive)
+     * @param to the end of the range (exclusive)
+     * @return the periods, earliest first
+     */
+    public List<Rollup> getRollups(Granularity granularity, long from,
+                                   long to) {
+        List<Rollup> rollups = new ArrayList<Rollup>();
+        if (granularity == Granularity.WEEK) {
+            // Days by week; the days of a week are consecutive entries.
+            long week = 0;
+            Bucket merged = null;
+            for (Map.Entry<Long, Bucket> day : days.subMap(
+                     start(Granularity.WEEK, from), to).entrySet()) {
+                long start = start(Granularity.WEEK, day.getKey());
+                if (merged == null || start != week) {
+                    if (merged != null) {
+                        rollups.add(merged.toRollup(week));
+                    }
+                    week = start;
+                    merged = new Bucket(precision);
+                }
+                merged.merge(day.getValue());
+            }
+            if (merged != null) {
+                rollups.add(merged.toRollup(week));
+            }
+            return rollups;
+        }
+        for (Map.Entry<Long, Bucket> bucket : buckets(granularity).subMap(
+                 start(granularity, from), to).entrySet()) {
+            rollups.add(bucket.getValue().toRollup(bucket.getKey()));
+        }
+        return rollups;
+    }
+
+    /**
+     * Returns the start of the period a time lies in.
+     *
+     * @param granularity the length of the period
+     * @param time the time in milliseconds since the epoch
+     * @return the start of the period in milliseconds since the epoch
+     */
+    public static long start(Granularity granularity, long time) {
+        Calendar date = new GregorianCalendar();
+        date.setTimeInMillis(time);
+        date.set(Calendar.MINUTE, 0);
+        date.set(Calendar.SECOND, 0);
+        date.set(Calendar.MILLISECOND, 0);
+        if (granularity == Granularity.HOUR) {
+            return date.getTimeInMillis();
+        }
+        date.set(Calendar.HOUR_OF_DAY, 0);
+        if (granularity == Granularity.WEEK) {
+            while (date.get(Calendar.DAY_OF_WEEK) != date.getFirstDayOfWeek()) {
+                date.add(Calendar.DATE, -1);
+            }
+        } else if (granularity == Granularity.MONTH) {
+            date.set(Calendar.DAY_OF_MONTH, 1);
+        }
+        return date.getTimeInMillis();
+    }
+
+    /**
+     * Helper method that returns the start of the next period.
+     *
+     * @param granularity the length of the period
+     * @param start the start of a period in milliseconds since the epoch
+     * @return the start of the next period
+     */
+    private static long next(Granularity granularity, long start) {
+        Calendar date = new GregorianCalendar();
+        date.setTimeInMillis(start);
+        switch (granularity) {
+            case HOUR:
+                date.add(Calendar.HOUR_OF_DAY, 1);
+                break;
+            case DAY:
+                date.add(Calendar.DATE, 1);
+                break;
+            case WEEK:
+                date.add(Calendar.DATE, 7);
+                break;
+            default:
+                date.add(Calendar.MONTH, 1);
+        }
+        return date.getTimeInMillis();
+    }
+
+    /**
+     * Helper method that returns the buckets of a granularity other
+     * than weeks.
+     *
+     * @param granularity the granularity
+     * @return the buckets by start of their period
+     */
+    private TreeMap<Long, Bucket> buckets(Granularity granularity) {
+        switch (granularity) {
+            case HOUR:
+                return hours;
+            case DAY:
+                return days;
+            default:
+                return months;
+        }
+    }
+
+    /**
+     * Helper method that returns the bucket of a period, adding an empty
+     * one if there is none.
+     *
+     * @param buckets the buckets
+     * @param start the start of the period
+     * @return the bucket
+     */
+    private Bucket bucket(TreeMap<Long, Bucket> buckets, long start) {
+        Bucket bucket = buckets.get(start);
+        if (bucket == null) {
+            bucket = new Bucket(precision);
+            buckets.put(start, bucket);
+        }
+        return bucket;
+    }
+
+    /**
+     * Helper method that takes a removed meeting out of a bucket and
+     * rebuilds its sketch from the finer buckets of its period.
+     *
+     * @param buckets the buckets
+     * @param start the start of the period
+     * @param finer the buckets of the next finer granularity
+     * @param end the end of the period
+     * @param past true if the meeting was a past meeting
+     */
+    private void resummarize(TreeMap<Long, Bucket> buckets, long start,
+                             TreeMap<Long, Bucket> finer, long end,
+                             boolean past) {
+        Bucket bucket = buckets.get(start);
+        bucket.remove(past);
+        if (bucket.meetings == 0) {
+            buckets.remove(start);
+            return;
+        }
+        bucket.contacts = new HyperLogLog(precision);
+        for (Bucket part : finer.subMap(start, end).values()) {
+            bucket.contacts.merge(part.contacts);
+        }
+    }
+
+    /**
+     * The meetings of one period.
+     */
+    public static class Rollup {
+        private final long start;
+        private final int meetings;
+        private final int pastMeetings;
+        private final long distinctContacts;
+
+        /**
+         * Create a new rollup.
+         *
+         * @param start the start of the period
+         * @param meetings the number of meetings
+         * @param pastMeetings the number of past meetings
+         * @param distinctContacts the estimated number of contacts met
+         */
+        public Rollup(long start, int meetings, int pastMeetings,
+                      long distinctContacts) {
+            this.start = start;
+            this.meetings = meetings;
+            this.pastMeetings = pastMeetings;
+            this.distinctContacts = distinctContacts;
+        }
+
+        /**
+         * Returns the start of the period.
+         *
+         * @return the start of the period
+         */
+        public Calendar getStart() {
+            Calendar date = new GregorianCalendar();
+            date.setTimeInMillis(start);
+            return date;
+        }
+
+        /**
+         * Returns the number of meetings in the period.
+         *
+         * @return the number of meetings
+         */
+        public int getMeetings() {
+            return meetings;
+        }
+
+        /**
+         * Returns the number of past meetings in the period.
+         *
+         * @return the number of past meetings
+         */
+        public int getPastMeetings() {
+            return pastMeetings;
+        }
+
+        /**
+         * Returns the estimated number of distinct contacts met in the
+         * period.
+         *
+         * @return the estimated number of contacts
+         */
+        public long getDistinctContacts() {
+            return distinctContacts;
+        }
+    }
+
+    /**
+     * The counts and the sketch of one period.
+     */
+    private static class Bucket {
+        private int meetings;
+        private int past;
+        private HyperLogLog contacts;
+        // The meetings of an hour, to rebuild its sketch; null otherwise.
+        private List<Meeting> members;
+
+        private Bucket(int precision) {
+            this.contacts = new HyperLogLog(precision);
+        }
+
+        private void add(Meeting meeting, boolean keep) {
+            meetings++;
+            if (meeting instanceof PastMeeting) {
+                past++;
+            }
+            addContacts(meeting);
+            if (keep) {
+                if (members == null) {
+                    members = new ArrayList<Meeting>(1);
+                }
+                members.add(meeting);
+            }
+        }
+
+        private void addContacts(Meeting meeting) {
+            for (Contact contact : meeting.getContacts()) {
+                contacts.add(contact.getId());
+            }
+        }
+
+        private boolean removeMember(int id) {
+            for (int i = 0; i < members.size(); i++) {
+                if (members.get(i).getId() == id) {
+                    members.remove(i);
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private void remove(boolean wasPast) {
+            meetings--;
+            if (wasPast) {
+                past--;
+            }
+        }
+
+        private void merge(Bucket other) {
+            meetings += other.meetings;
+            past += other.past;
+            contacts.merge(other.contacts);
+        }
+
+        private Rollup toRollup(long start) {
+            return new Rollup(start, meetings, past, contacts.estimate());
+        }
+    }
+}
@@ -0,0 +1,211 @@
+import static org.junit.Assert.*;
+import org.junit.*;
+import java.util.*;
+import java.io.*;
+
+/**
+ * The test class MeetingRollupsTester.
+ *
+ * @author  Stefan E. Mayer
+ * @version 1.0
+ */
+public class MeetingRollupsTester {
+    private final static File FILE = new File("rollups.txt");
+
+    private ContactManagerImpl manager;
+
+    /**
+     * Sets up the test fixture.
+     *
+     * Called before every test case method.
+     */
+    @Before
+    public void setUp() {
+        FILE.delete();
+        manager = new ContactManagerImpl(FILE);
+        for (int i = 1; i <= 50; i++) {
+            manager.addNewContact("Contact " + i, "");
+        }
+    }
+
+    /**
+     * Tears down the test fixture.
+     *
+     * Called after every test case method.
+     */
+    @After
+    public void tearDown() {
+        manager = null;
+        FILE.delete();
+    }
+
+    /**
+     * Tests if meetings are counted per hour, day, week and month.
+     */
+    @Test
+    public void testGranularities() {
+        // Tuesday 1 March 2016, and Monday 7 March in the next week.
+        manager.addNewPastMeeting(manager.getContacts(1, 2),
+                                  date(2016, Calendar.MARCH, 1, 9), "A");
+        manager.addNewPastMeeting(manager.getContacts(2, 3),
+                                  date(2016, Calendar.MARCH, 1, 9), "B");
+        manager.addNewPastMeeting(manager.getContacts(1),
+                                  date(2016, Calendar.MARCH, 1, 14), "C");
+        manager.addNewPastMeeting(manager.getContacts(4),
+                                  date(2016, Calendar.MARCH, 7, 10), "D");
+        manager.addNewPastMeeting(manager.getContacts(5),
+                                  date(2016, Calendar.APRIL, 2, 10), "E");
+        Calendar from = date(2016, Calendar.JANUARY, 1, 0);
+        Calendar to = date(2017, Calendar.JANUARY, 1, 0);
+
+        List<MeetingRollups.Rollup> hours = manager.getMeetingRollups(
+            MeetingRollups.Granularity.HOUR, from, to);
+        assertEquals(4, hours.size());
+        assertEquals(date(2016, Calendar.MARCH, 1, 9), hours.get(0).getStart());
+        assertEquals(2, hours.get(0).getMeetings());
+        assertEquals(3, hours.get(0).getDistinctContacts());
+
+        List<MeetingRollups.Rollup> days = manager.getMeetingRollups(
+            MeetingRollups.Granularity.DAY, from, to);
+        assertEquals(3, days.size());
+        assertEquals(3, days.get(0).getMeetings());
+        assertEquals(3, days.get(0).getPastMeetings());
+        assertEquals(3, days.get(0).getDistinctContacts());
+
+        List<MeetingRollups.Rollup> months = manager.getMeetingRollups(
+            MeetingRollups.Granularity.MONTH, from, to);
+        assertEquals(2, months.size());
+        assertEquals(date(2016, Calendar.MARCH, 1, 0),
+                     months.get(0).getStart());
+        assertEquals(4, months.get(0).getMeetings());
+        assertEquals(4, months.get(0).getDistinctContacts());
+
+        List<MeetingRollups.Rollup> weeks = manager.getMeetingRollups(
+            MeetingRollups.Granularity.WEEK, from, to);
+        Calendar firstWeek = date(2016, Calendar.MARCH, 1, 0);
+        while (firstWeek.get(Calendar.DAY_OF_WEEK)
+               != firstWeek.getFirstDayOfWeek()) {
+            firstWeek.add(Calendar.DATE, -1);
+        }
+        assertEquals(firstWeek, weeks.get(0).getStart());
+        int total = 0;
+        for (MeetingRollups.Rollup week : weeks) {
+            total += week.getMeetings();
+        }
+        assertEquals(5, total);
+
+        // A range within a period still returns the whole period.
+        months = manager.getMeetingRollups(MeetingRollups.Granularity.MONTH,
+                                           date(2016, Calendar.MARCH, 5, 0),
+                                           date(2016, Calendar.MARCH, 6, 0));
+        assertEquals(1, months.size());
+        assertEquals(4, months.get(0).getMeetings());
+        assertEquals(0, manager.getMeetingRollups(
+                            MeetingRollups.Granularity.DAY, to, from).size());
+    }
+
+    /**
+     * Tests if cancelled meetings and new notes update the rollups.
+     */
+    @Test
+    public void testUpdates() {
+        Calendar date = new GregorianCalendar();
+        date.add(Calendar.DATE, 10);
+        Calendar from = (Calendar)date.clone();
+        from.add(Calendar.DATE, -1);
+        Calendar to = (Calendar)date.clone();
+        to.add(Calendar.DATE, 1);
+        manager.getMeetingRollups(MeetingRollups.Granularity.DAY, from, to);
+        int id = manager.addFutureMeeting(manager.getContacts(1, 2), date);
+        manager.addFutureMeeting(manager.getContacts(2), date);
+        List<MeetingRollups.Rollup> days = manager.getMeetingRollups(
+            MeetingRollups.Granularity.DAY, from, to);
+        assertEquals(2, days.get(0).getMeetings());
+        assertEquals(2, days.get(0).getDistinctContacts());
+
+        manager.cancelMeeting(id);
+        days = manager.getMeetingRollups(MeetingRollups.Granularity.DAY,
+                                         from, to);
+        assertEquals(1, days.get(0).getMeetings());
+        assertEquals(1, days.get(0).getDistinctContacts());
+        assertEquals(1, manager.getMeetingRollups(
+                            MeetingRollups.Granularity.MONTH, from, to)
+                            .get(0).getDistinctContacts());
+
+        // A future meeting whose date has passed, e.g. from a replica.
+        Calendar past = date(2016, Calendar.MAY, 3, 9);
+        manager.apply(ChangeEvent.meetingAdded(
+            new FutureMeetingImpl(100, manager.getContacts(3), past)));
+        manager.addMeetingNotes(100, "Done");
+        List<MeetingRollups.Rollup> hours = manager.getMeetingRollups(
+            MeetingRollups.Granularity.HOUR, past, to);
+        assertEquals(1, hours.get(0).getPastMeetings());
+        manager.cancelMeeting(100);
+        assertEquals(1, manager.getMeetingRollups(
+                            MeetingRollups.Granularity.HOUR, past, to)
+                            .size());
+    }
+
+    /**
+     * Tests if the rollups match counting the meetings one by one, over
+     * several years and after loading.
+     */
+    @Test
+    public void testMatchesScan() {
+        Random random = new Random(7);
+        for (int i = 0; i < 2000; i++) {
+            Calendar date = date(2014, Calendar.JANUARY, 1, 0);
+            date.add(Calendar.HOUR_OF_DAY, random.nextInt(3 * 365 * 24));
+            Set<Contact> contacts = manager.getContacts(
+                1 + random.nextInt(50), 1 + random.nextInt(50));
+            manager.addNewPastMeeting(contacts, date, "Notes");
+        }
+        manager.flush();
+        manager = new ContactManagerImpl(FILE);
+        Calendar from = date(2014, Calendar.JANUARY, 1, 0);
+        Calendar to = date(2017, Calendar.JANUARY, 1, 0);
+        List<Meeting> meetings = manager.getMeetingList(from, to);
+        assertEquals(2000, meetings.size());
+        for (MeetingRollups.Granularity granularity
+                 : MeetingRollups.Granularity.values()) {
+            Map<Long, Integer> counts = new TreeMap<Long, Integer>();
+            Map<Long, Set<Integer>> met = new HashMap<Long, Set<Integer>>();
+            for (Meeting meeting : meetings) {
+                long start = MeetingRollups.start(granularity,
+                                 meeting.getDate().getTimeInMillis());
+                Integer count = counts.get(start);
+                counts.put(start, count == null ? 1 : count + 1);
+                if (!met.containsKey(start)) {
+                    met.put(start, new HashSet<Integer>());
+                }
+                for (Contact contact : meeting.getContacts()) {
+                    met.get(start).add(contact.getId());
+                }
+            }
+            List<MeetingRollups.Rollup> rollups =
+                manager.getMeetingRollups(granularity, from, to);
+            assertEquals(counts.size(), rollups.size());
+            for (MeetingRollups.Rollup rollup : rollups) {
+                long start = rollup.getStart().getTimeInMillis();
+                assertEquals(counts.get(start).intValue(),
+                             rollup.getMeetings());
+                int distinct = met.get(start).size();
+                assertEquals(distinct, rollup.getDistinctContacts(),
+                             Math.max(1, distinct * 0.1));
+            }
+        }
+    }
+
+    /**
+     * Helper method that returns a date at the start of an hour.
+     *
+     * @param year the year
+     * @param month the month, starting with 0 for January
+     * @param day the day of the month
+     * @param hour the hour of the day
+     * @return the date
+     */
+    private static Calendar date(int year, int month, int day, int hour) {
+        return new GregorianCalendar(year, month, day, hour, 0);
+    }
+}
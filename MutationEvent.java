@@ -0,0 +1,23 @@
+import jdk.jfr.*;
+/**
+ * A Java Flight Recorder event for a change to a contact manager,
+ * i.e. a new contact, a new meeting or new meeting notes.
+ *
+ * @author Stefan E. Mayer
+ * @version 1.0
+ */
+@Name("cw4.Mutation")
+@Label("Contact Manager Mutation")
+@Category("Contact Manager")
+@StackTrace(false)
+public class MutationEvent extends Event {
+    @Label("Mutation")
+    String mutation;
+
+    @Label("ID")
+    @Description("The ID of the new or changed contact or meeting")
+    int id;
+
+    @Label("Participants")
+    int participants;
+}
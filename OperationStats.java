@@ -0,0 +1,130 @@
+import java.beans.ConstructorProperties;
+/**
+ * A snapshot of the statistics of one contact manager operation.
+ *
+ * @author Stefan E. Mayer
+ * @version 1.0
+ */
+public class OperationStats {
+    private final String operation;
+    private final long calls;
+    private final long errors;
+    private final long resultSize;
+    private final double meanMicros;
+    private final double p50Micros;
+    private final double p99Micros;
+    private final double p999Micros;
+    private final double maxMicros;
+
+    /**
+     * Create a new snapshot.
+     *
+     * @param operation the name of the operation
+     * @param calls the number of calls
+     * @param errors the number of calls that threw an exception
+     * @param resultSize the total number of contacts or meetings returned
+     * @param meanMicros the mean latency in microseconds
+     * @param p50Micros the median latency in microseconds
+     * @param p99Micros the 99th percentile latency in microseconds
+     * @param p999Micros the 99.9th percentile latency in microseconds
+     * @param maxMicros the maximum latency in microseconds
+     */
+    @ConstructorProperties({"operation", "calls", "errors", "resultSize",
+                            "meanMicros", "p50Micros", "p99Micros",
+                            "p999Micros", "maxMicros"})
+    public OperationStats(String operation, long calls, long errors,
+                          long resultSize, double meanMicros,
+                          double p50Micros, double p99Micros,
+                          double p999Micros, double maxMicros) {
+        this.operation = operation;
+        this.calls = calls;
+        this.errors = errors;
+        this.resultSize = resultSize;
+        this.meanMicros = meanMicros;
+        this.p50Micros = p50Micros;
+        this.p99Micros = p99Micros;
+        this.p999Micros = p999Micros;
+        this.maxMicros = maxMicros;
+    }
+
+    /**
+     * Returns the name of the operation.
+     *
+     * @return the name of the operation
+     */
+    public String getOperation() {
+        return operation;
+    }
+
+    /**
+     * Returns the number of calls.
+     *
+     * @return the number of calls
+     */
+    public long getCalls() {
+        return calls;
+    }
+
+    /**
+     * Returns the number of calls that threw an exception.
+     *
+     * @return the number of calls that threw an exception
+     */
+    public long getErrors() {
+        return errors;
+    }
+
+    /**
+     * Returns the total number of contacts or meetings returned.
+     *
+     * @return the total number of contacts or meetings returned
+     */
+    public long getResultSize() {
+        return resultSize;
+    }
+
+    /**
+     * Returns the mean latency in microseconds.
+     *
+     * @return the mean latency in microseconds
+     */
+    public double getMeanMicros() {
+        return meanMicros;
+    }
+
+    /**
+     * Returns the median latency in microseconds.
+     *
+     * @return the median latency in microseconds
+     */
+    public double getP50Micros() {
+        return p50Micros;
+    }
+
+    /**
+     * Returns the 99th percentile latency in microseconds.
+     *
+     * @return the 99th percentile latency in microseconds
+     */
+    public double getP99Micros() {
+        return p99Micros;
+    }
+
+    /**
+     * Returns the 99.9th percentile latency in microseconds.
+     *
+     * @return the 99.9th percentile latency in microseconds
+     */
+    public double getP999Micros() {
+        return p999Micros;
+    }
+
+    /**
+     * Returns the maximum latency in microseconds.
+     *
+     * @return the maximum latency in microseconds
+     */
+    public double getMaxMicros() {
+        return maxMicros;
+    }
+}
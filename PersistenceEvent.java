@@ -0,0 +1,30 @@
+import jdk.jfr.*;
+/**
+ * A Java Flight Recorder event for loading or flushing
+ * the data file of a contact manager.
+ *
+ * @author Stefan E. Mayer
+ * @version 1.0
+ */
+@Name("cw4.Persistence")
+@Label("Contact Manager Persistence")
+@Category("Contact Manager")
+@StackTrace(false)
+public class PersistenceEvent extends Event {
+    @Label("Operation")
+    @Description("Either load or flush")
+    String operation;
+
+    @Label("File")
+    String file;
+
+    @Label("Bytes")
+    @DataAmount
+    long bytes;
+
+    @Label("Contacts")
+    int contacts;
+
+    @Label("Meetings")
+    int meetings;
+}
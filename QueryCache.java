@@ -0,0 +1,325 @@
+import java.util.*;
+/**
+ * A bounded cache for the results of per-contact and per-day
+ * meeting queries, evicting the least recently used result.
+ *
+ * Every contact and every day has a version stamp. A cached result
+ * remembers the version of its key at the time the result was computed,
+ * and a mutation only bumps the versions of the contacts and the day
+ * it touches. Results of all other keys stay valid.
+ *
+ * Results must be computed by first reading the version of the key,
+ * then running the query and then storing the result with that version.
+ * If a mutation happens in between, the stored result is simply never
+ * returned.
+ *
+ * Versions are only stored for keys with cached results, so the cache
+ * stays bounded however many contacts and days are changed. All other
+ * keys share one version, which every change to any of them bumps.
+ *
+ * @author Stefan E. Mayer
+ * @version 1.0
+ */
+public class QueryCache {
+    /**
+     * The default maximum number of cached results.
+     */
+    public static final int DEFAULT_CAPACITY = 4096;
+
+    /**
+     * The kinds of queries whose results are cached.
+     */
+    public enum Query {
+        FUTURE_BY_CONTACT, PAST_BY_CONTACT, BY_DAY
+    }
+
+    private LinkedHashMap<Key, Result> results;
+    private Versions contactVersions;
+    private Versions dayVersions;
+    // Increased by every change, so versions never repeat.
+    private long clock;
+    private int capacity;
+    private long hits;
+    private long misses;
+
+    /**
+     * Create a new cache with the default capacity.
+     */
+    public QueryCache() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Create a new cache.
+     *
+     * @param capacity the maximum number of cached results
+     * @throws IllegalArgumentException if the capacity is negative
+     */
+    public QueryCache(int capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("Capacity is negative!");
+        }
+        this.capacity = capacity;
+        results = new LinkedHashMap<Key, Result>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Result> e) {
+                if (size() <= QueryCache.this.capacity) {
+                    return false;
+                }
+                release(e.getKey());
+                return true;
+            }
+        };
+        contactVersions = new Versions();
+        dayVersions = new Versions();
+    }
+
+    /**
+     * Returns the day key of a date, used for per-day queries.
+     *
+     * @param date the date
+     * @return the day as a number of the form yyyymmdd
+     */
+    public static int dayOf(Calendar date) {
+        return date.get(Calendar.YEAR) * 10000
+               + (date.get(Calendar.MONTH) + 1) * 100
+               + date.get(Calendar.DATE);
+    }
+
+    /**
+     * Returns the current version of a key. This must be read
+     * before computing a result that is to be cached.
+     *
+     * @param query the kind of query
+     * @param key the contact ID or the day key
+     * @return the current version of the key
+     */
+    public synchronized long getVersion(Query query, int key) {
+        return versionsOf(query).get(key);
+    }
+
+    /**
+     * Returns a cached result, or null if there is no valid one.
+     *
+     * @param query the kind of query
+     * @param key the contact ID or the day key
+     * @return a copy of the cached result, or null
+     */
+    public synchronized <T extends Meeting> List<T> get(Query query,
+                                                        int key) {
+        Key cacheKey = new Key(query, key);
+        Result result = results.get(cacheKey);
+        if (result != null && result.version != getVersion(query, key)) {
+            results.remove(cacheKey);
+            release(cacheKey);
+            result = null;
+        }
+        if (result == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        @SuppressWarnings("unchecked")
+        List<T> meetings = new ArrayList<T>((List<T>)result.meetings);
+        return meetings;
+    }
+
+    /**
+     * Caches a result.
+     *
+     * @param query the kind of query
+     * @param key the contact ID or the day key
+     * @param version the version of the key read before the query ran
+     * @param meetings the result of the query
+     */
+    public synchronized void put(Query query, int key, long version,
+                                 List<? extends Meeting> meetings) {
+        if (version == getVersion(query, key)) {
+            Key cacheKey = new Key(query, key);
+            // Counted before it is stored, as storing may evict it.
+            if (!results.containsKey(cacheKey)) {
+                versionsOf(query).retain(key);
+            }
+            results.put(cacheKey,
+                        new Result(version, new ArrayList<Meeting>(meetings)));
+        }
+    }
+
+    /**
+     * Invalidates the per-contact results of the participants of
+     * a meeting and the per-day results of the day of the meeting.
+     *
+     * @param meeting a meeting that was added or changed
+     */
+    public synchronized void invalidate(Meeting meeting) {
+        clock++;
+        for (Contact contact : meeting.getContacts()) {
+            contactVersions.bump(contact.getId(), clock);
+        }
+        dayVersions.bump(dayOf(meeting.getDate()), clock);
+    }
+
+    /**
+     * Removes all cached results. Results computed before are not
+     * cached either.
+     */
+    public synchronized void clear() {
+        results.clear();
+        clock++;
+        contactVersions.clear(clock);
+        dayVersions.clear(clock);
+    }
+
+    /**
+     * Returns the number of cached results.
+     *
+     * @return the number of cached results
+     */
+    public synchronized int size() {
+        return results.size();
+    }
+
+    /**
+     * Returns the number of contacts and days whose version is stored,
+     * at most one per cached result.
+     *
+     * @return the number of stored versions
+     */
+    public synchronized int getVersionCount() {
+        return contactVersions.stamps.size() + dayVersions.stamps.size();
+    }
+
+    /**
+     * Returns the number of queries answered from the cache.
+     *
+     * @return the number of cache hits
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * Returns the number of queries that had to be computed.
+     *
+     * @return the number of cache misses
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Helper method that returns the version stamps used by a query.
+     */
+    private Versions versionsOf(Query query) {
+        return query == Query.BY_DAY ? dayVersions : contactVersions;
+    }
+
+    /**
+     * Helper method that forgets the version of a key once no result
+     * of that key is cached any more.
+     */
+    private void release(Key cacheKey) {
+        versionsOf(cacheKey.query).release(cacheKey.key);
+    }
+
+    /**
+     * The key of a cached result.
+     */
+    private static class Key {
+        private final Query query;
+        private final int key;
+
+        private Key(Query query, int key) {
+            this.query = query;
+            this.key = key;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Key)) {
+                return false;
+            }
+            Key that = (Key)other;
+            return query == that.query && key == that.key;
+        }
+
+        @Override
+        public int hashCode() {
+            return query.hashCode() * 31 + key;
+        }
+    }
+
+    /**
+     * The versions of the contacts or of the days.
+     *
+     * A key's version never decreases: a key that is no longer stored
+     * gets the shared version, which is at least as high as its own.
+     */
+    private static class Versions {
+        private final Map<Integer, Stamp> stamps =
+            new HashMap<Integer, Stamp>();
+        // The version of all keys without a stamp.
+        private long untracked;
+
+        private long get(int key) {
+            Stamp stamp = stamps.get(key);
+            return stamp == null ? untracked : stamp.version;
+        }
+
+        private void bump(int key, long clock) {
+            Stamp stamp = stamps.get(key);
+            if (stamp == null) {
+                untracked = clock;
+            } else {
+                stamp.version = clock;
+            }
+        }
+
+        private void retain(int key) {
+            Stamp stamp = stamps.get(key);
+            if (stamp == null) {
+                stamp = new Stamp(untracked);
+                stamps.put(key, stamp);
+            }
+            stamp.results++;
+        }
+
+        private void release(int key) {
+            Stamp stamp = stamps.get(key);
+            if (stamp != null && --stamp.results == 0) {
+                stamps.remove(key);
+                untracked = Math.max(untracked, stamp.version);
+            }
+        }
+
+        private void clear(long clock) {
+            stamps.clear();
+            untracked = clock;
+        }
+    }
+
+    /**
+     * The version of a key and the number of its cached results.
+     */
+    private static class Stamp {
+        private long version;
+        private int results;
+
+        private Stamp(long version) {
+            this.version = version;
+        }
+    }
+
+    /**
+     * A cached result and the version of its key.
+     */
+    private static class Result {
+        private final long version;
+        private final List<Meeting> meetings;
+
+        private Result(long version, List<Meeting> meetings) {
+            this.version = version;
+            this.meetings = meetings;
+        }
+    }
+}
@@ -0,0 +1,147 @@
+import static org.junit.Assert.*;
+import org.junit.*;
+import java.util.*;
+
+/**
+ * The test class QueryCacheTester.
+ *
+ * @author  Stefan E. Mayer
+ * @version 1.0
+ */
+public class QueryCacheTester {
+    private final static int DAY = 20150525;
+
+    QueryCache cache;
+    Contact c1;
+    Contact c2;
+    List<Meeting> meetings;
+
+    /**
+     * Sets up the test fixture.
+     *
+     * Called before every test case method.
+     */
+    @Before
+    public void setUp() {
+        cache = new QueryCache(2);
+        c1 = new ContactImpl(1, "c1", "");
+        c2 = new ContactImpl(2, "c2", "");
+        meetings = new ArrayList<Meeting>();
+    }
+
+    /**
+     * Tears down the test fixture.
+     *
+     * Called after every test case method.
+     */
+    @After
+    public void tearDown() {
+        cache = null;
+        c1 = null;
+        c2 = null;
+        meetings = null;
+    }
+
+    /**
+     * Tests if hits and misses are counted.
+     */
+    @Test
+    public void testHitsAndMisses() {
+        assertNull(cache.get(QueryCache.Query.FUTURE_BY_CONTACT, 1));
+        cache.put(QueryCache.Query.FUTURE_BY_CONTACT, 1, 0, meetings);
+        assertEquals(meetings, cache.get(QueryCache.Query.FUTURE_BY_CONTACT, 1));
+        assertNull(cache.get(QueryCache.Query.PAST_BY_CONTACT, 1));
+        assertEquals(1, cache.getHits());
+        assertEquals(2, cache.getMisses());
+    }
+
+    /**
+     * Tests if a mutation only invalidates its contacts and its day.
+     */
+    @Test
+    public void testPreciseInvalidation() {
+        cache = new QueryCache();
+        cache.put(QueryCache.Query.FUTURE_BY_CONTACT, 1, 0, meetings);
+        cache.put(QueryCache.Query.FUTURE_BY_CONTACT, 2, 0, meetings);
+        cache.put(QueryCache.Query.BY_DAY, DAY, 0, meetings);
+        cache.put(QueryCache.Query.BY_DAY, DAY + 1, 0, meetings);
+
+        Set<Contact> onlyC1 = new HashSet<Contact>();
+        onlyC1.add(c1);
+        cache.invalidate(new FutureMeetingImpl(1, onlyC1,
+                             new GregorianCalendar(2015, 4, 25, 10, 0)));
+
+        assertNull(cache.get(QueryCache.Query.FUTURE_BY_CONTACT, 1));
+        assertNotNull(cache.get(QueryCache.Query.FUTURE_BY_CONTACT, 2));
+        assertNull(cache.get(QueryCache.Query.BY_DAY, DAY));
+        assertNotNull(cache.get(QueryCache.Query.BY_DAY, DAY + 1));
+    }
+
+    /**
+     * Tests if results computed before a mutation are not cached.
+     */
+    @Test
+    public void testStaleResultIsNotCached() {
+        long version = cache.getVersion(QueryCache.Query.PAST_BY_CONTACT, 1);
+        Set<Contact> onlyC1 = new HashSet<Contact>();
+        onlyC1.add(c1);
+        cache.invalidate(new PastMeetingImpl(1, onlyC1,
+                             new GregorianCalendar(2015, 4, 25), ""));
+        cache.put(QueryCache.Query.PAST_BY_CONTACT, 1, version, meetings);
+        assertNull(cache.get(QueryCache.Query.PAST_BY_CONTACT, 1));
+    }
+
+    /**
+     * Tests if the least recently used result is evicted.
+     */
+    @Test
+    public void testLeastRecentlyUsedIsEvicted() {
+        cache.put(QueryCache.Query.FUTURE_BY_CONTACT, 1, 0, meetings);
+        cache.put(QueryCache.Query.FUTURE_BY_CONTACT, 2, 0, meetings);
+        cache.get(QueryCache.Query.FUTURE_BY_CONTACT, 1);
+        cache.put(QueryCache.Query.FUTURE_BY_CONTACT, 3, 0, meetings);
+
+        assertEquals(2, cache.size());
+        assertNotNull(cache.get(QueryCache.Query.FUTURE_BY_CONTACT, 1));
+        assertNull(cache.get(QueryCache.Query.FUTURE_BY_CONTACT, 2));
+    }
+
+    /**
+     * Tests if versions are only kept for cached results, and if a
+     * result computed before a change is still not cached after the
+     * version of its key was dropped.
+     */
+    @Test
+    public void testVersionsAreBounded() {
+        for (int i = 1; i <= 1000; i++) {
+            Set<Contact> contacts = new HashSet<Contact>();
+            contacts.add(new ContactImpl(i, "c" + i, ""));
+            Calendar date = new GregorianCalendar(2015, 4, 25);
+            date.add(Calendar.DATE, i);
+            cache.invalidate(new FutureMeetingImpl(i, contacts, date));
+            cache.put(QueryCache.Query.FUTURE_BY_CONTACT, i,
+                cache.getVersion(QueryCache.Query.FUTURE_BY_CONTACT, i),
+                meetings);
+        }
+        assertEquals(2, cache.size());
+        assertEquals(2, cache.getVersionCount());
+
+        long version = cache.getVersion(QueryCache.Query.FUTURE_BY_CONTACT,
+                                        1000);
+        Set<Contact> onlyC1 = new HashSet<Contact>();
+        onlyC1.add(new ContactImpl(1000, "c1000", ""));
+        cache.invalidate(new FutureMeetingImpl(1, onlyC1,
+                             new GregorianCalendar(2015, 4, 25)));
+        // Evicts the results of contacts 999 and 1000.
+        for (int i = 1; i <= 2; i++) {
+            cache.put(QueryCache.Query.FUTURE_BY_CONTACT, i,
+                cache.getVersion(QueryCache.Query.FUTURE_BY_CONTACT, i),
+                meetings);
+        }
+        assertEquals(2, cache.getVersionCount());
+        cache.put(QueryCache.Query.FUTURE_BY_CONTACT, 1000, version,
+                  meetings);
+        assertNull(cache.get(QueryCache.Query.FUTURE_BY_CONTACT, 1000));
+        assertEquals(2, cache.getVersionCount());
+    }
+}
@@ -0,0 +1,29 @@
+import jdk.jfr.*;
+/**
+ * A Java Flight Recorder event for a contact manager query.
+ *
+ * The duration of the event is the duration of the query. Rows
+ * scanned counts the meetings or contacts that were examined, which
+ * is 0 if the result was served from the query cache.
+ *
+ * @author Stefan E. Mayer
+ * @version 1.0
+ */
+@Name("cw4.Query")
+@Label("Contact Manager Query")
+@Category("Contact Manager")
+@StackTrace(false)
+public class QueryEvent extends Event {
+    @Label("Query")
+    String query;
+
+    @Label("Arguments")
+    @Description("The number of IDs, contacts or dates queried")
+    int arguments;
+
+    @Label("Rows Scanned")
+    int rowsScanned;
+
+    @Label("Rows Returned")
+    int rowsReturned;
+}
@@ -0,0 +1,252 @@
+import java.io.Serializable;
+import java.util.*;
+/**
+ * When a recurring meeting takes place: every so many days, weeks or
+ * months from its first date, optionally a limited number of times or
+ * until some date.
+ *
+ * Rules can be written like a subset of the iCalendar RRULE, e.g.
+ * "FREQ=WEEKLY;INTERVAL=2;COUNT=10" or "FREQ=DAILY;UNTIL=20161231".
+ *
+ * IMPORTANT: Occurrences keep the time of day of the first date, also
+ *            across daylight saving time changes. A monthly meeting on
+ *            the 31st takes place on the last day of shorter months.
+ *
+ * @author Stefan E. Mayer
+ * @version 1.0
+ */
+public class RecurrenceRule implements Serializable {
+    /**
+     * How often a meeting recurs.
+     */
+    public enum Frequency {
+        DAILY(Calendar.DATE, 25 * 3600000L),
+        WEEKLY(Calendar.WEEK_OF_YEAR, 7 * 24 * 3600000L + 3600000L),
+        MONTHLY(Calendar.MONTH, 31 * 24 * 3600000L + 3600000L);
+
+        private final int field;
+        // The longest time between two occurrences, used to estimate
+        // the number of occurrences before some time from below.
+        private final long longestMillis;
+
+        private Frequency(int field, long longestMillis) {
+            this.field = field;
+            this.longestMillis = longestMillis;
+        }
+    }
+
+    private static final long serialVersionUID = -7630819864327205938L;
+
+    private Frequency frequency;
+    private int interval;
+    private int count;
+    private long until;
+
+    /**
+     * Create a new rule without an end.
+     *
+     * @param frequency how often the meeting recurs
+     * @param interval the number of days, weeks or months between two
+     *        occurrences
+     * @throws NullPointerException if the frequency is null
+     * @throws IllegalArgumentException if the interval is not positive
+     */
+    public RecurrenceRule(Frequency frequency, int interval) {
+        this(frequency, interval, 0, null);
+    }
+
+    /**
+     * Create a new rule.
+     *
+     * @param frequency how often the meeting recurs
+     * @param interval the number of days, weeks or months between two
+     *        occurrences
+     * @param count the number of occurrences, or 0 for no limit
+     * @param until the latest date of an occurrence, or null
+     * @throws NullPointerException if the frequency is null
+     * @throws IllegalArgumentException if the interval is not positive
+     *         or the count is negative
+     */
+    public RecurrenceRule(Frequency frequency, int interval, int count,
+                          Calendar until) {
+        if (frequency == null) {
+            throw new NullPointerException("'null' is invalid as frequency!");
+        }
+        if (interval <= 0) {
+            throw new IllegalArgumentException("Interval must be positive!");
+        }
+        if (count < 0) {
+            throw new IllegalArgumentException("Count must not be negative!");
+        }
+        this.frequency = frequency;
+        this.interval = interval;
+        this.count = count;
+        this.until = until == null ? Long.MAX_VALUE : until.getTimeInMillis();
+    }
+
+    /**
+     * Reads a rule of the form "FREQ=DAILY|WEEKLY|MONTHLY;INTERVAL=n;
+     * COUNT=n;UNTIL=yyyyMMdd", where only FREQ is required. An UNTIL
+     * date includes the whole day.
+     *
+     * @param rule the rule
+     * @return the rule
+     * @throws IllegalArgumentException if the rule cannot be read
+     */
+    public static RecurrenceRule parse(String rule) {
+        Frequency frequency = null;
+        int interval = 1;
+        int count = 0;
+        Calendar until = null;
+        try {
+            for (String part : rule.split(";")) {
+                String[] pair = part.trim().split("=", 2);
+                String name = pair[0].trim().toUpperCase();
+                String value = pair.length > 1 ? pair[1].trim() : "";
+                if (name.equals("FREQ")) {
+                    frequency = Frequency.valueOf(value.toUpperCase());
+                } else if (name.equals("INTERVAL")) {
+                    interval = Integer.parseInt(value);
+                } else if (name.equals("COUNT")) {
+                    count = Integer.parseInt(value);
+                } else if (name.equals("UNTIL") && value.length() == 8) {
+                    until = new GregorianCalendar(
+                        Integer.parseInt(value.substring(0, 4)),
+                        Integer.parseInt(value.substring(4, 6)) - 1,
+                        Integer.parseInt(value.substring(6, 8)),
+                        23, 59, 59);
+                } else {
+                    throw new IllegalArgumentException(
+                              "Unknown rule part " + part + "!");
+                }
+            }
+        } catch (NumberFormatException notANumber) {
+            throw new IllegalArgumentException("Invalid rule " + rule + "!");
+        }
+        if (frequency == null) {
+            throw new IllegalArgumentException("Rule has no FREQ!");
+        }
+        return new RecurrenceRule(frequency, interval, count, until);
+    }
+
+    /**
+     * Returns how often the meeting recurs.
+     *
+     * @return the frequency
+     */
+    public Frequency getFrequency() {
+        return frequency;
+    }
+
+    /**
+     * Returns the number of days, weeks or months between occurrences.
+     *
+     * @return the interval
+     */
+    public int getInterval() {
+        return interval;
+    }
+
+    /**
+     * Returns the number of occurrences.
+     *
+     * @return the number of occurrences, or 0 if there is no limit
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * Returns the number of occurrences from a first date on, counting
+     * no further than a limit.
+     *
+     * @param start the date of the first occurrence
+     * @param limit the largest number to return
+     * @return the number of occurrences, at most the limit
+     */
+    public int countOccurrences(Calendar start, int limit) {
+        int occurrences = count > 0 ? Math.min(count, limit) : limit;
+        if (occurrences > 0 && getDate(start, occurrences - 1) == null) {
+            // Ends earlier because of the UNTIL date.
+            occurrences = indexAtOrAfter(start, until + 1);
+        }
+        return occurrences;
+    }
+
+    /**
+     * Returns a copy of this rule that ends before some time, e.g. to
+     * end a recurring meeting early.
+     *
+     * @param time the time in milliseconds since the epoch
+     * @return the new rule, or this rule if it ends before anyway
+     */
+    public RecurrenceRule endingBefore(long time) {
+        if (until < time) {
+            return this;
+        }
+        RecurrenceRule rule = new RecurrenceRule(frequency, interval, count,
+                                                 null);
+        rule.until = time - 1;
+        return rule;
+    }
+
+    /**
+     * Returns the date of an occurrence.
+     *
+     * @param start the date of the first occurrence
+     * @param index the number of the occurrence, 0 for the first one
+     * @return the date, or null if the rule ends before the occurrence
+     */
+    public Calendar getDate(Calendar start, int index) {
+        if (index < 0 || count > 0 && index >= count) {
+            return null;
+        }
+        Calendar date = (Calendar)start.clone();
+        // Always adds to the first date, so short months do not move
+        // later occurrences of a monthly meeting.
+        date.add(frequency.field, index * interval);
+        return date.getTimeInMillis() > until ? null : date;
+    }
+
+    /**
+     * Returns the number of the first occurrence not before some time,
+     * which may be past the end of the rule.
+     *
+     * @param start the date of the first occurrence
+     * @param time the time in milliseconds since the epoch
+     * @return the number of the occurrence
+     */
+    public int indexAtOrAfter(Calendar start, long time) {
+        long offset = time - start.getTimeInMillis();
+        if (offset <= 0) {
+            return 0;
+        }
+        long estimate = offset / (frequency.longestMillis * interval);
+        int index = (int)Math.min(estimate, Integer.MAX_VALUE / 2);
+        while (true) {
+            Calendar date = (Calendar)start.clone();
+            date.add(frequency.field, index * interval);
+            if (date.getTimeInMillis() >= time) {
+                return index;
+            }
+            index++;
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder rule = new StringBuilder("FREQ=").append(frequency);
+        if (interval != 1) {
+            rule.append(";INTERVAL=").append(interval);
+        }
+        if (count > 0) {
+            rule.append(";COUNT=").append(count);
+        }
+        if (until != Long.MAX_VALUE) {
+            Calendar date = new GregorianCalendar();
+            date.setTimeInMillis(until);
+            rule.append(String.format(";UNTIL=%1$tY%1$tm%1$td", date));
+        }
+        return rule.toString();
+    }
+}
@@ -0,0 +1,330 @@
+import static org.junit.Assert.*;
+import org.junit.*;
+import java.util.*;
+import java.io.*;
+
+/**
+ * The test class RecurrenceTester.
+ *
+ * @author  Stefan E. Mayer
+ * @version 1.0
+ */
+public class RecurrenceTester {
+    private final static File FILE = new File("recurrence.txt");
+    private final static long HOUR = 3600000L;
+
+    private ContactManagerImpl manager;
+    private Contact alice;
+    private Calendar start;
+
+    /**
+     * Sets up the test fixture.
+     *
+     * Called before every test case method.
+     */
+    @Before
+    public void setUp() {
+        FILE.delete();
+        manager = new ContactManagerImpl(FILE);
+        manager.addNewContact("Alice", "");
+        manager.addNewContact("Bob", "");
+        alice = manager.getContacts(1).iterator().next();
+        start = new GregorianCalendar();
+        start.add(Calendar.DATE, 1);
+        start.set(Calendar.HOUR_OF_DAY, 12);
+        start.set(Calendar.MINUTE, 0);
+        start.set(Calendar.SECOND, 0);
+        start.set(Calendar.MILLISECOND, 0);
+    }
+
+    /**
+     * Tears down the test fixture.
+     *
+     * Called after every test case method.
+     */
+    @After
+    public void tearDown() {
+        manager = null;
+        FILE.delete();
+        new File("recurrence-replica.txt").delete();
+    }
+
+    /**
+     * Tests if rules are read and give the right dates.
+     */
+    @Test
+    public void testRule() {
+        RecurrenceRule rule =
+            RecurrenceRule.parse("FREQ=WEEKLY;INTERVAL=2;COUNT=3");
+        assertEquals(RecurrenceRule.Frequency.WEEKLY, rule.getFrequency());
+        assertEquals("FREQ=WEEKLY;INTERVAL=2;COUNT=3", rule.toString());
+        Calendar first = new GregorianCalendar(2016, Calendar.MARCH, 1, 9, 0);
+        assertEquals(new GregorianCalendar(2016, Calendar.MARCH, 29, 9, 0),
+                     rule.getDate(first, 2));
+        assertNull(rule.getDate(first, 3));
+        assertEquals(2, rule.indexAtOrAfter(first,
+                                            first.getTimeInMillis() + 1
+                                            + 14 * 24 * HOUR));
+
+        // Months without a 31st end on their last day.
+        rule = RecurrenceRule.parse("FREQ=MONTHLY;UNTIL=20160429");
+        first = new GregorianCalendar(2016, Calendar.JANUARY, 31, 9, 0);
+        assertEquals(new GregorianCalendar(2016, Calendar.FEBRUARY, 29, 9, 0),
+                     rule.getDate(first, 1));
+        assertEquals(new GregorianCalendar(2016, Calendar.MARCH, 31, 9, 0),
+                     rule.getDate(first, 2));
+        assertNull(rule.getDate(first, 3));
+    }
+
+    /**
+     * Tests if rules that cannot be read are rejected.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidRule() {
+        RecurrenceRule.parse("FREQ=YEARLY;COUNT=2");
+    }
+
+    /**
+     * Tests if occurrences are listed without being stored.
+     */
+    @Test
+    public void testLazyExpansion() {
+        int seriesId = manager.addRecurringMeeting(
+            manager.getContacts(1, 2), start,
+            new RecurrenceRule(RecurrenceRule.Frequency.DAILY, 1));
+        assertEquals(0, manager.getMeetingCount());
+
+        Calendar day = (Calendar)start.clone();
+        day.add(Calendar.DATE, 100);
+        List<Meeting> onDay = manager.getFutureMeetingList(day);
+        assertEquals(1, onDay.size());
+        int id = onDay.get(0).getId();
+        RecurringMeeting series = manager.getRecurringMeeting(seriesId);
+        assertEquals(series.getOccurrenceId(100), id);
+        assertEquals(day, manager.getFutureMeeting(id).getDate());
+
+        List<Meeting> ofAlice = manager.getFutureMeetingList(alice);
+        int days = ContactManagerImpl.RECURRENCE_HORIZON_DAYS;
+        assertTrue(ofAlice.size() >= days - 1 && ofAlice.size() <= days);
+
+        // Occurrences are merged with single meetings by date.
+        Calendar later = (Calendar)start.clone();
+        later.add(Calendar.HOUR_OF_DAY, 36);
+        int single = manager.addFutureMeeting(manager.getContacts(1), later);
+        ofAlice = manager.getFutureMeetingList(alice);
+        assertEquals(series.getOccurrenceId(1), ofAlice.get(1).getId());
+        assertEquals(single, ofAlice.get(2).getId());
+        assertEquals(series.getOccurrenceId(2), ofAlice.get(3).getId());
+    }
+
+    /**
+     * Tests if an occurrence with notes becomes a past meeting of its
+     * own, which survives flushing and loading.
+     */
+    @Test
+    public void testNotesMaterializeOccurrence() {
+        Calendar first = (Calendar)start.clone();
+        first.add(Calendar.DATE, -4);
+        RecurringMeeting series = new RecurringMeeting(1, 1, 10,
+            manager.getContacts(1), first,
+            RecurrenceRule.parse("FREQ=DAILY;COUNT=10"));
+        manager.apply(ChangeEvent.recurringMeetingAdded(series));
+        int id = series.getOccurrenceId(1);
+        manager.addMeetingNotes(id, "Retrospective");
+
+        assertEquals(1, manager.getMeetingCount());
+        assertEquals("Retrospective", manager.getPastMeeting(id).getNotes());
+        assertEquals(1, manager.getPastMeetingList(alice).size());
+        Calendar day = (Calendar)first.clone();
+        day.add(Calendar.DATE, 1);
+        List<Meeting> onDay = manager.getFutureMeetingList(day);
+        assertEquals(1, onDay.size());
+        assertTrue(onDay.get(0) instanceof PastMeeting);
+
+        manager.flush();
+        manager = new ContactManagerImpl(FILE);
+        assertTrue(manager.getRecurringMeeting(1).isException(1));
+        assertEquals("Retrospective", manager.getPastMeeting(id).getNotes());
+        assertEquals(1, manager.getFutureMeetingList(day).size());
+        assertEquals(10, manager.getMeetingList(first, day(first, 20)).size());
+    }
+
+    /**
+     * Tests if single occurrences can be cancelled and rescheduled.
+     */
+    @Test
+    public void testCancelAndRescheduleOccurrence() {
+        int seriesId = manager.addRecurringMeeting(manager.getContacts(1),
+            start, RecurrenceRule.parse("FREQ=WEEKLY;COUNT=4"));
+        RecurringMeeting series = manager.getRecurringMeeting(seriesId);
+        int second = series.getOccurrenceId(1);
+        int third = series.getOccurrenceId(2);
+        manager.cancelMeeting(second);
+        manager.rescheduleMeeting(third, day(start, 15),
+                                  manager.getContacts(1, 2));
+        assertNull(manager.getMeeting(second));
+        assertEquals(day(start, 15), manager.getMeeting(third).getDate());
+        assertEquals(3, manager.getFutureMeetingList(alice).size());
+        assertEquals(0, manager.getFutureMeetingList(day(start, 14)).size());
+
+        manager.flush();
+        manager = new ContactManagerImpl(FILE);
+        alice = manager.getContacts(1).iterator().next();
+        assertNull(manager.getMeeting(second));
+        assertEquals(3, manager.getFutureMeetingList(alice).size());
+    }
+
+    /**
+     * Tests if files written before recurring meetings still load.
+     */
+    @Test
+    public void testOlderFile() throws IOException {
+        try (ObjectOutputStream out =
+                 new ObjectOutputStream(new FileOutputStream(FILE))) {
+            out.writeObject(new HashSet<Contact>());
+            out.writeObject(0);
+            out.writeObject(new ArrayList<Meeting>());
+            out.writeObject(0);
+            out.writeObject(new StringDictionary());
+        }
+        manager = new ContactManagerImpl(FILE);
+        manager.addNewContact("Carol", "");
+        assertEquals(1, manager.addRecurringMeeting(
+                            manager.getContacts(1), start,
+                            RecurrenceRule.parse("FREQ=WEEKLY")));
+    }
+
+    /**
+     * Tests if recurring meetings block free slots.
+     */
+    @Test
+    public void testAvailability() {
+        manager.addRecurringMeeting(manager.getContacts(1), start,
+                                    RecurrenceRule.parse("FREQ=DAILY"));
+        Calendar day = day(start, 3);
+        Calendar morning = (Calendar)day.clone();
+        morning.add(Calendar.HOUR_OF_DAY, -1);
+        List<Calendar> slots =
+            manager.findFreeSlots(manager.getContacts(1, 2), morning, 60, 2);
+        assertEquals(morning, slots.get(0));
+        assertEquals(day.getTimeInMillis() + HOUR,
+                     slots.get(1).getTimeInMillis());
+
+        // A meeting that never leaves a long enough gap ends the search.
+        AvailabilityIndex index = new AvailabilityIndex(24 * 60);
+        index.addSeries(manager.getRecurringMeeting(1));
+        assertTrue(index.isBusy(alice, day.getTimeInMillis() + 1));
+        assertEquals(0, index.findFreeSlots(manager.getContacts(1),
+                                            day.getTimeInMillis(), 1, 1)
+                            .length);
+    }
+
+    /**
+     * Tests if a series ends early, also on a replica and after
+     * flushing and loading, keeping occurrences stored on their own.
+     */
+    @Test
+    public void testEndSeries() {
+        final List<ChangeEvent> changes = new ArrayList<ChangeEvent>();
+        manager.addChangeListener(new ChangeListener() {
+            @Override
+            public void changed(ChangeEvent event) {
+                changes.add(event);
+            }
+        });
+        int seriesId = manager.addRecurringMeeting(manager.getContacts(1),
+            start, RecurrenceRule.parse("FREQ=DAILY"));
+        RecurringMeeting series = manager.getRecurringMeeting(seriesId);
+        int moved = series.getOccurrenceId(5);
+        manager.rescheduleMeeting(moved, day(start, 30),
+                                  manager.getContacts(1));
+        manager.endRecurringMeeting(seriesId, day(start, 3));
+        assertNotNull(manager.getMeeting(series.getOccurrenceId(2)));
+        assertNull(manager.getMeeting(series.getOccurrenceId(3)));
+        assertEquals(day(start, 30), manager.getMeeting(moved).getDate());
+        assertEquals(6, series.getReservedOccurrences());
+        assertEquals(4, manager.getFutureMeetingList(alice).size());
+
+        ContactManagerImpl replica =
+            new ContactManagerImpl(new File("recurrence-replica.txt"));
+        replica.apply(ChangeEvent.contactAdded(alice));
+        for (ChangeEvent change : changes) {
+            replica.apply(change);
+        }
+        assertNull(replica.getMeeting(series.getOccurrenceId(3)));
+        assertEquals(6, replica.getRecurringMeeting(seriesId)
+                            .getReservedOccurrences());
+        assertEquals(4, replica.getFutureMeetingList(
+                            replica.getContacts(1).iterator().next())
+                        .size());
+
+        manager.flush();
+        manager = new ContactManagerImpl(FILE);
+        alice = manager.getContacts(1).iterator().next();
+        assertNull(manager.getMeeting(series.getOccurrenceId(3)));
+        assertEquals(4, manager.getFutureMeetingList(alice).size());
+    }
+
+    /**
+     * Tests if a series cannot end in the past or if it does not exist.
+     */
+    @Test
+    public void testInvalidEnd() {
+        int seriesId = manager.addRecurringMeeting(manager.getContacts(1),
+            start, RecurrenceRule.parse("FREQ=DAILY"));
+        try {
+            manager.endRecurringMeeting(seriesId, day(start, -2));
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+        try {
+            manager.endRecurringMeeting(seriesId + 1, day(start, 2));
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    /**
+     * Tests if the occurrence IDs given up by ended series are reserved
+     * for new ones once the other IDs are used up.
+     */
+    @Test
+    public void testReuseOccurrenceIds() {
+        Set<Contact> contacts = manager.getContacts(1);
+        RecurrenceRule weekly = RecurrenceRule.parse("FREQ=WEEKLY");
+        int series = 0;
+        try {
+            while (true) {
+                manager.addRecurringMeeting(contacts, start, weekly);
+                series++;
+            }
+        } catch (IllegalStateException expected) {
+        }
+        assertEquals((1 << 15) - 1, series);
+
+        // Ends before its first occurrence, so it keeps no IDs.
+        manager.endRecurringMeeting(1, start);
+        assertNull(manager.getRecurringMeeting(1).getOccurrence(0));
+        int id = manager.addRecurringMeeting(contacts, start, weekly);
+        assertEquals(series + 1, id);
+        assertEquals(1, manager.getRecurringMeeting(id).getOccurrenceBase());
+        assertEquals(start, manager.getMeeting(-1).getDate());
+
+        // Series with few occurrences reserve few IDs.
+        manager.addRecurringMeeting(contacts, start,
+                                    RecurrenceRule.parse("FREQ=DAILY;COUNT=2"));
+    }
+
+    /**
+     * Helper method that returns a date some days after another one.
+     *
+     * @param date the date
+     * @param days the number of days
+     * @return the new date
+     */
+    private static Calendar day(Calendar date, int days) {
+        Calendar day = (Calendar)date.clone();
+        day.add(Calendar.DATE, days);
+        return day;
+    }
+}
@@ -0,0 +1,334 @@
+import java.io.*;
+import java.util.*;
+/**
+ * A series of meetings with the same contacts, stored once as its first
+ * date and a recurrence rule instead of one meeting per occurrence.
+ *
+ * Occurrences are created on demand, only within the time window a
+ * query asks for. Each one is a future meeting with a negative ID taken
+ * from a range of IDs reserved for the series, so it can be looked up
+ * like any other meeting. When notes are added to an occurrence it
+ * becomes a past meeting stored on its own, under the same ID, and the
+ * series skips it from then on.
+ *
+ * IMPORTANT: A series has at most MAX_OCCURRENCES occurrences, and the
+ *            ranges of all series share the negative meeting IDs. A
+ *            series that ends early keeps only the IDs of the
+ *            occurrences before its end and of those stored on their
+ *            own; the rest can be reserved for another series.
+ *
+ * @author Stefan E. Mayer
+ * @version 1.0
+ */
+public class RecurringMeeting implements Serializable {
+    // Saved with the contacts; fixed so that changes keep files readable.
+    private static final long serialVersionUID = -2343163178752330894L;
+
+    /**
+     * The largest number of occurrences of a series.
+     */
+    public static final int MAX_OCCURRENCES = 1 << 16;
+    /**
+     * The end of the range of occurrence IDs (exclusive), as a positive
+     * number.
+     */
+    public static final long MAX_OCCURRENCE_ID = 1L << 31;
+
+    private int id;
+    // The occurrence with number i has the ID -(base + i), for i below
+    // reserved.
+    private int base;
+    private int reserved;
+    private Set<Contact> contacts;
+    private Calendar start;
+    private RecurrenceRule rule;
+    // Occurrences stored on their own, or cancelled.
+    private BitSet exceptions;
+
+    /**
+     * Create a new series.
+     *
+     * @param id the ID of the series
+     * @param base the first occurrence ID, as a positive number
+     * @param reserved the number of occurrence IDs reserved, at least
+     *        the number of occurrences
+     * @param contacts the participants of every occurrence
+     * @param start the date of the first occurrence
+     * @param rule when the meeting recurs
+     * @throws IllegalArgumentException if the ID or the range of
+     *         occurrence IDs is out of range
+     */
+    public RecurringMeeting(int id, int base, int reserved,
+                            Set<Contact> contacts, Calendar start,
+                            RecurrenceRule rule) {
+        if (id <= 0) {
+            throw new IllegalArgumentException("Series ID out of range!");
+        }
+        if (base <= 0 || reserved < 0
+            || (long)base + reserved > MAX_OCCURRENCE_ID) {
+            throw new IllegalArgumentException(
+                      "Occurrence IDs out of range!");
+        }
+        this.id = id;
+        this.base = base;
+        this.reserved = reserved;
+        this.contacts = new HashSet<Contact>(contacts);
+        this.start = (Calendar)start.clone();
+        this.rule = rule;
+        this.exceptions = new BitSet();
+    }
+
+    /**
+     * Returns the number of occurrence IDs a new series needs.
+     *
+     * @param start the date of the first occurrence
+     * @param rule when the meeting recurs
+     * @return the number of occurrences, at most MAX_OCCURRENCES
+     */
+    public static int countOccurrences(Calendar start, RecurrenceRule rule) {
+        return rule.countOccurrences(start, MAX_OCCURRENCES);
+    }
+
+    /**
+     * Returns the first occurrence ID of a series written before series
+     * had ranges, when the ID held the series and the occurrence number.
+     *
+     * @param id the ID of the series
+     * @return the first occurrence ID, as a positive number
+     */
+    static int legacyBase(int id) {
+        return id << 16;
+    }
+
+    /**
+     * Returns the ID of the series.
+     *
+     * @return the ID
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * Returns the participants of every occurrence.
+     *
+     * @return the contacts
+     */
+    public Set<Contact> getContacts() {
+        return contacts;
+    }
+
+    /**
+     * Returns the date of the first occurrence.
+     *
+     * @return the date
+     */
+    public Calendar getStart() {
+        return (Calendar)start.clone();
+    }
+
+    /**
+     * Returns when the meeting recurs.
+     *
+     * @return the rule
+     */
+    public RecurrenceRule getRule() {
+        return rule;
+    }
+
+    /**
+     * Returns the date of an occurrence, even if it is stored on its
+     * own or cancelled.
+     *
+     * @param index the number of the occurrence
+     * @return the date, or null if the series has no such occurrence
+     */
+    public Calendar getDate(int index) {
+        return index >= reserved ? null : rule.getDate(start, index);
+    }
+
+    /**
+     * Returns the first occurrence ID of the series.
+     *
+     * @return the first occurrence ID, as a positive number
+     */
+    public int getOccurrenceBase() {
+        return base;
+    }
+
+    /**
+     * Returns the number of occurrence IDs reserved for the series.
+     *
+     * @return the number of IDs
+     */
+    public int getReservedOccurrences() {
+        return reserved;
+    }
+
+    /**
+     * Returns the meeting ID of an occurrence.
+     *
+     * @param index the number of the occurrence, 0 for the first one
+     * @return the negative meeting ID
+     */
+    public int getOccurrenceId(int index) {
+        return -(base + index);
+    }
+
+    /**
+     * Returns the number of an occurrence in the series.
+     *
+     * @param meetingId the meeting ID of an occurrence
+     * @return the number of the occurrence, or -1 if the ID is not
+     *         reserved for the series
+     */
+    public int indexOf(int meetingId) {
+        long index = -(long)meetingId - base;
+        return index >= 0 && index < reserved ? (int)index : -1;
+    }
+
+    /**
+     * Returns an occurrence as a future meeting.
+     *
+     * @param index the number of the occurrence
+     * @return the meeting, or null if the series has no such occurrence
+     *         or it is stored on its own or cancelled
+     */
+    public FutureMeeting getOccurrence(int index) {
+        Calendar date = getDate(index);
+        if (date == null || exceptions.get(index)) {
+            return null;
+        }
+        return new FutureMeetingImpl(getOccurrenceId(index), contacts, date);
+    }
+
+    /**
+     * Returns the occurrences within a time window, except those stored
+     * on their own or cancelled.
+     *
+     * @param from the start of the window (inclusive)
+     * @param to the end of the window (exclusive)
+     * @return the meetings, in chronological order
+     */
+    public List<Meeting> getOccurrences(long from, long to) {
+        List<Meeting> occurrences = new ArrayList<Meeting>();
+        for (int index = rule.indexAtOrAfter(start, from);; index++) {
+            Calendar date = getDate(index);
+            if (date == null || date.getTimeInMillis() >= to) {
+                return occurrences;
+            }
+            if (!exceptions.get(index)) {
+                occurrences.add(new FutureMeetingImpl(getOccurrenceId(index),
+                                                      contacts, date));
+            }
+        }
+    }
+
+    /**
+     * Returns the times of the occurrences from some time on, except
+     * those stored on their own or cancelled. The times are computed
+     * as they are read, so the iterator may be endless.
+     *
+     * @param from the earliest time (inclusive)
+     * @return the times in milliseconds since the epoch, in order
+     */
+    public Iterator<Long> times(final long from) {
+        return new Iterator<Long>() {
+            private int index = rule.indexAtOrAfter(start, from);
+            private Calendar next = advance();
+
+            @Override
+            public boolean hasNext() {
+                return next != null;
+            }
+
+            @Override
+            public Long next() {
+                if (next == null) {
+                    throw new NoSuchElementException();
+                }
+                long time = next.getTimeInMillis();
+                next = advance();
+                return time;
+            }
+
+            private Calendar advance() {
+                while (true) {
+                    Calendar date = getDate(index);
+                    if (date == null || !exceptions.get(index++)) {
+                        return date;
+                    }
+                }
+            }
+        };
+    }
+
+    /**
+     * Checks if an occurrence is stored on its own or cancelled.
+     *
+     * @param index the number of the occurrence
+     * @return true if the series skips the occurrence
+     */
+    public boolean isException(int index) {
+        return exceptions.get(index);
+    }
+
+    /**
+     * Returns the occurrences that are stored on their own or cancelled.
+     *
+     * @return the numbers of the occurrences, in ascending order
+     */
+    public int[] getExceptions() {
+        int[] indexes = new int[exceptions.cardinality()];
+        int i = 0;
+        for (int index = exceptions.nextSetBit(0); index >= 0;
+             index = exceptions.nextSetBit(index + 1)) {
+            indexes[i++] = index;
+        }
+        return indexes;
+    }
+
+    /**
+     * Replaces the participants of every occurrence.
+     *
+     * @param contacts the new participants
+     */
+    void setContacts(Set<Contact> contacts) {
+        this.contacts = contacts;
+    }
+
+    /**
+     * Makes the series skip an occurrence.
+     *
+     * @param index the number of the occurrence
+     */
+    void addException(int index) {
+        exceptions.set(index);
+    }
+
+    /**
+     * Ends the series early.
+     *
+     * @param rule the rule ending before the first occurrence dropped
+     * @param reserved the number of occurrence IDs the series keeps
+     */
+    void end(RecurrenceRule rule, int reserved) {
+        this.rule = rule;
+        this.reserved = reserved;
+    }
+
+    /**
+     * Reads a series, giving one written before series had ranges the
+     * occurrence IDs it had then.
+     *
+     * @param in the stream
+     */
+    private void readObject(ObjectInputStream in)
+        throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        if (base == 0) {
+            base = legacyBase(id);
+            reserved = MAX_OCCURRENCES;
+        }
+    }
+}
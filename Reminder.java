@@ -0,0 +1,64 @@
+import java.util.*;
+/**
+ * A reminder of an upcoming meeting, delivered by a ReminderEngine.
+ *
+ * Like a ChangeEvent, a reminder carries the values of the meeting
+ * rather than the meeting object, as it is delivered on another thread
+ * than the one changing the contact manager.
+ *
+ * @author Stefan E. Mayer
+ * @version 1.0
+ */
+public class Reminder {
+    private final int meetingId;
+    private final long date;
+    private final int[] contactIds;
+
+    /**
+     * Create a new reminder.
+     *
+     * @param meetingId the ID of the meeting, negative for an
+     *        occurrence of a recurring meeting
+     * @param date the date of the meeting in milliseconds since the epoch
+     * @param contactIds the IDs of the participants
+     */
+    public Reminder(int meetingId, long date, int[] contactIds) {
+        this.meetingId = meetingId;
+        this.date = date;
+        this.contactIds = contactIds.clone();
+    }
+
+    /**
+     * Returns the ID of the meeting.
+     *
+     * @return the ID, negative for an occurrence of a recurring meeting
+     */
+    public int getMeetingId() {
+        return meetingId;
+    }
+
+    /**
+     * Returns the date of the meeting.
+     *
+     * @return the date
+     */
+    public Calendar getDate() {
+        Calendar calendar = new GregorianCalendar();
+        calendar.setTimeInMillis(date);
+        return calendar;
+    }
+
+    /**
+     * Returns the IDs of the participants of the meeting.
+     *
+     * @return the contact IDs
+     */
+    public int[] getContactIds() {
+        return contactIds.clone();
+    }
+
+    @Override
+    public String toString() {
+        return "Reminder of meeting " + meetingId + " at " + new Date(date);
+    }
+}
@@ -0,0 +1,526 @@
+import java.util.*;
+/**
+ * Reminds a listener of every future meeting of a contact manager a
+ * number of minutes before it starts, on a thread of its own.
+ *
+ * The engine listens to the changes of the contact manager, so new,
+ * cancelled and rescheduled meetings are taken into account at once,
+ * without polling the meeting lists. Pending reminders are kept in a
+ * hierarchical timing wheel: LEVELS wheels of SLOTS slots each, where
+ * a slot of the first wheel spans one tick and a slot of every further
+ * wheel spans a whole turn of the wheel before. A reminder goes into
+ * the slot of its tick on the finest wheel it fits, and moves down a
+ * wheel whenever the wheel below has turned to its slot. Slots are
+ * doubly linked lists and reminders are found by meeting ID, so
+ * adding and cancelling a reminder costs O(1) however many are
+ * pending, and a tick only touches the reminders that are due.
+ *
+ * Ticks are counted from the start of the engine rather than from the
+ * previous tick, so delays do not add up: a reminder is delivered in
+ * the first tick after it is due, unless the listener is still busy
+ * with earlier ones. A meeting that starts within the lead time when
+ * it is added is reminded of at the next tick; one that has started is
+ * not reminded of at all.
+ *
+ * Only the next occurrence of a recurring meeting is pending at any
+ * time. When its reminder is delivered, the one of the occurrence
+ * after it takes its place.
+ *
+ * IMPORTANT: The engine must be created while no other thread changes
+ *            the contact manager, e.g. while holding the lock of a
+ *            SynchronizedContactManager.
+ *
+ * @author Stefan E. Mayer
+ * @version 1.0
+ */
+public class ReminderEngine implements ChangeListener {
+    /**
+     * The default milliseconds per tick of the timing wheel.
+     */
+    public static final long DEFAULT_TICK_MILLIS = 100;
+    /**
+     * The number of slots of each wheel.
+     */
+    public static final int SLOTS = 64;
+    /**
+     * The number of wheels.
+     */
+    public static final int LEVELS = 6;
+
+    private static final int SLOT_BITS = 6;
+
+    private ContactManagerImpl manager;
+    private ReminderListener listener;
+    private long leadMillis;
+    private long tickMillis;
+    private long startTime;
+    // The ticks are guarded by this engine, as are the maps.
+    private long currentTick;
+    // Per wheel and slot: the first reminder of the slot, or null.
+    private Entry[][] wheels;
+    // Meeting ID -> pending reminder.
+    private Map<Integer, Entry> entries;
+    // First occurrence ID -> recurring meeting, of the series with
+    // reserved IDs.
+    private TreeMap<Integer, Series> series;
+    private Thread thread;
+    private volatile boolean closed;
+
+    /**
+     * Create a new engine with the default tick, which starts reminding
+     * at once.
+     *
+     * @param manager the contact manager
+     * @param minutesBefore the minutes before a meeting to remind of it
+     * @param listener the listener to remind
+     * @throws IllegalArgumentException if the minutes are negative
+     */
+    public ReminderEngine(ContactManagerImpl manager, int minutesBefore,
+                          ReminderListener listener) {
+        this(manager, minutesBefore, DEFAULT_TICK_MILLIS, listener);
+    }
+
+    /**
+     * Create a new engine, which starts reminding at once. The future
+     * meetings and recurring meetings stored so far are scheduled first.
+     *
+     * @param manager the contact manager
+     * @param minutesBefore the minutes before a meeting to remind of it
+     * @param tickMillis the milliseconds per tick, which is the largest
+     *        delay of a reminder if the listener keeps up
+     * @param listener the listener to remind
+     * @throws IllegalArgumentException if the minutes are negative or
+     *         the tick is not positive
+     * @throws NullPointerException if the listener is null
+     */
+    public ReminderEngine(ContactManagerImpl manager, int minutesBefore,
+                          long tickMillis, ReminderListener listener) {
+        if (minutesBefore < 0 || tickMillis <= 0) {
+            throw new IllegalArgumentException(
+                      "Negative lead time or tick not positive!");
+        }
+        if (listener == null) {
+            throw new NullPointerException("Listener is null!");
+        }
+        this.manager = manager;
+        this.listener = listener;
+        this.leadMillis = minutesBefore * 60000L;
+        this.tickMillis = tickMillis;
+        this.startTime = System.currentTimeMillis();
+        this.wheels = new Entry[LEVELS][SLOTS];
+        this.entries = new HashMap<Integer, Entry>();
+        this.series = new TreeMap<Integer, Series>();
+        for (RecurringMeeting each : manager.getRecurringMeetings()) {
+            Series recurring = new Series(each.getOccurrenceBase(),
+                                          each.getReservedOccurrences(),
+                                          each.getStart(), each.getRule(),
+                                          idsOf(each.getContacts()));
+            for (int index : each.getExceptions()) {
+                recurring.skipped.set(index);
+            }
+            addSeries(recurring);
+        }
+        for (Meeting meeting : manager.getMeetings()) {
+            if (!(meeting instanceof PastMeeting)) {
+                schedule(meeting.getId(),
+                         meeting.getDate().getTimeInMillis(),
+                         idsOf(meeting.getContacts()));
+            }
+        }
+        manager.addChangeListener(this);
+        this.thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                turn();
+            }
+        }, "reminder-engine");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Schedules, moves or cancels the reminders of changed meetings.
+     *
+     * @param event the change
+     */
+    @Override
+    public synchronized void changed(ChangeEvent event) {
+        switch (event.getType()) {
+            case FUTURE_MEETING_ADDED:
+            case MEETING_RESCHEDULED:
+                schedule(event.getId(), event.getDate(),
+                         event.getContactIds());
+                break;
+            case MEETING_CANCELLED:
+            case MEETING_NOTES_ADDED:
+            case PAST_MEETING_ADDED:
+                // Also skips an occurrence stored as a past meeting.
+                cancel(event.getId());
+                break;
+            case RECURRING_MEETING_ADDED:
+                Calendar start = new GregorianCalendar();
+                start.setTimeInMillis(event.getDate());
+                addSeries(new Series(event.getOccurrenceBase(),
+                                     event.getReservedOccurrences(), start,
+                                     event.getRule(), event.getContactIds()));
+                break;
+            case RECURRING_MEETING_ENDED:
+                endSeries(event.getOccurrenceBase(), event.getRule(),
+                          event.getReservedOccurrences());
+                break;
+            default:
+                // Contacts have no reminders.
+        }
+    }
+
+    /**
+     * Returns the number of reminders not delivered yet, counting one
+     * for each recurring meeting with occurrences to come.
+     *
+     * @return the number of pending reminders
+     */
+    public synchronized int getPendingCount() {
+        return entries.size();
+    }
+
+    /**
+     * Stops reminding. A reminder being delivered is finished.
+     */
+    public void close() {
+        manager.removeChangeListener(this);
+        closed = true;
+        synchronized (this) {
+            notifyAll();
+        }
+    }
+
+    /**
+     * Helper method run by the thread of the engine, which waits for
+     * each tick and delivers the reminders due.
+     */
+    private void turn() {
+        List<Entry> due = new ArrayList<Entry>();
+        while (!closed) {
+            synchronized (this) {
+                long now = System.currentTimeMillis();
+                long target = (now - startTime) / tickMillis;
+                while (currentTick < target) {
+                    advance(due);
+                }
+                if (due.isEmpty()) {
+                    long wait = startTime + (currentTick + 1) * tickMillis
+                                - now;
+                    try {
+                        wait(Math.max(wait, 1));
+                    } catch (InterruptedException interrupted) {
+                        return;
+                    }
+                    continue;
+                }
+            }
+            for (Entry entry : due) {
+                if (closed) {
+                    return;
+                }
+                try {
+                    listener.remind(new Reminder(entry.meetingId, entry.date,
+                                                 entry.contactIds));
+                } catch (RuntimeException failed) {
+                    // Keeps reminding of the other meetings.
+                    failed.printStackTrace();
+                }
+            }
+            due.clear();
+        }
+    }
+
+    /**
+     * Helper method that moves on by one tick: moves the reminders of
+     * the wheels that have turned to their slot down a wheel and takes
+     * the reminders due from the first wheel.
+     *
+     * @param due the list to add the reminders due to
+     */
+    private void advance(List<Entry> due) {
+        currentTick++;
+        for (int level = 1; level < LEVELS; level++) {
+            if ((currentTick & ((1L << (SLOT_BITS * level)) - 1)) != 0) {
+                break;
+            }
+            int slot = (int)((currentTick >>> (SLOT_BITS * level))
+                             & (SLOTS - 1));
+            Entry entry = wheels[level][slot];
+            wheels[level][slot] = null;
+            while (entry != null) {
+                Entry next = entry.next;
+                entry.previous = null;
+                entry.next = null;
+                insert(entry);
+                entry = next;
+            }
+        }
+        int slot = (int)(currentTick & (SLOTS - 1));
+        Entry entry = wheels[0][slot];
+        wheels[0][slot] = null;
+        while (entry != null) {
+            Entry next = entry.next;
+            entry.previous = null;
+            entry.next = null;
+            entries.remove(entry.meetingId);
+            due.add(entry);
+            if (entry.series != null) {
+                arm(entry.series, entry.index + 1);
+            }
+            entry = next;
+        }
+    }
+
+    /**
+     * Helper method that schedules the reminder of a future meeting,
+     * replacing any earlier one of the meeting.
+     *
+     * @param id the ID of the meeting
+     * @param date the date of the meeting
+     * @param contactIds the IDs of the participants
+     */
+    private void schedule(int id, long date, int[] contactIds) {
+        // An occurrence moved or stored on its own leaves its series.
+        cancel(id);
+        add(new Entry(id, date, contactIds, null, 0));
+    }
+
+    /**
+     * Helper method that cancels the reminder of a meeting, if any.
+     * For an occurrence, the series skips it from then on.
+     *
+     * @param id the ID of the meeting
+     */
+    private void cancel(int id) {
+        Entry entry = entries.remove(id);
+        if (entry != null) {
+            unlink(entry);
+        }
+        Map.Entry<Integer, Series> floor =
+            id < 0 ? series.floorEntry(-id) : null;
+        if (floor != null) {
+            Series recurring = floor.getValue();
+            long index = -(long)id - recurring.base;
+            if (index < recurring.reserved
+                && !recurring.skipped.get((int)index)) {
+                recurring.skipped.set((int)index);
+                if (recurring.armed == index) {
+                    arm(recurring, (int)index + 1);
+                }
+            }
+        }
+    }
+
+    /**
+     * Helper method that adds a recurring meeting and schedules the
+     * reminder of its next occurrence.
+     *
+     * @param recurring the recurring meeting
+     */
+    private void addSeries(Series recurring) {
+        if (recurring.reserved > 0) {
+            series.put(recurring.base, recurring);
+        }
+        arm(recurring, recurring.rule.indexAtOrAfter(
+                           recurring.start, System.currentTimeMillis()));
+    }
+
+    /**
+     * Helper method that ends a recurring meeting early, dropping the
+     * reminder of its pending occurrence if that is gone.
+     *
+     * @param base the first occurrence ID of the series
+     * @param rule the rule ending before the first occurrence dropped
+     * @param reserved the number of occurrence IDs the series keeps
+     */
+    private void endSeries(int base, RecurrenceRule rule, int reserved) {
+        Series recurring = series.get(base);
+        if (recurring == null) {
+            return;
+        }
+        recurring.rule = rule;
+        recurring.reserved = reserved;
+        if (reserved == 0) {
+            series.remove(base);
+        }
+        int index = recurring.armed;
+        if (index >= 0 && (index >= reserved
+                           || rule.getDate(recurring.start, index) == null)) {
+            recurring.armed = -1;
+            Entry entry = entries.remove(recurring.occurrenceId(index));
+            if (entry != null) {
+                unlink(entry);
+            }
+        }
+    }
+
+    /**
+     * Helper method that schedules the reminder of the next occurrence
+     * of a recurring meeting that has not started and is not skipped.
+     *
+     * @param recurring the recurring meeting
+     * @param index the number of the first occurrence to consider
+     */
+    private void arm(Series recurring, int index) {
+        recurring.armed = -1;
+        long now = System.currentTimeMillis();
+        for (; index < recurring.reserved; index++) {
+            Calendar date = recurring.rule.getDate(recurring.start, index);
+            if (date == null) {
+                return;
+            }
+            if (!recurring.skipped.get(index)
+                && date.getTimeInMillis() > now) {
+                recurring.armed = index;
+                add(new Entry(recurring.occurrenceId(index),
+                              date.getTimeInMillis(), recurring.contactIds,
+                              recurring, index));
+                return;
+            }
+        }
+    }
+
+    /**
+     * Helper method that adds a reminder for its tick, or for the next
+     * tick if it is due already. Meetings that have started are left
+     * out.
+     *
+     * @param entry the reminder
+     */
+    private void add(Entry entry) {
+        if (entry.date <= System.currentTimeMillis()) {
+            return;
+        }
+        long dueMillis = entry.date - leadMillis - startTime;
+        // Rounded up, so a reminder is never early.
+        long tick = dueMillis <= 0 ? 0
+                    : (dueMillis + tickMillis - 1) / tickMillis;
+        entry.deadline = Math.max(tick, currentTick + 1);
+        entries.put(entry.meetingId, entry);
+        insert(entry);
+    }
+
+    /**
+     * Helper method that links a reminder into the slot of its tick on
+     * the finest wheel that reaches it.
+     *
+     * @param entry the reminder
+     */
+    private void insert(Entry entry) {
+        long delta = entry.deadline - currentTick;
+        int level = 0;
+        while (level < LEVELS - 1
+               && delta >= 1L << (SLOT_BITS * (level + 1))) {
+            level++;
+        }
+        int slot;
+        if (delta >= 1L << (SLOT_BITS * LEVELS)) {
+            // Beyond the last wheel: the slot reached last, from where
+            // the reminder is inserted again.
+            slot = (int)(((currentTick >>> (SLOT_BITS * level)) - 1)
+                         & (SLOTS - 1));
+        } else {
+            slot = (int)((entry.deadline >>> (SLOT_BITS * level))
+                         & (SLOTS - 1));
+        }
+        entry.level = level;
+        entry.slot = slot;
+        entry.next = wheels[level][slot];
+        if (entry.next != null) {
+            entry.next.previous = entry;
+        }
+        wheels[level][slot] = entry;
+    }
+
+    /**
+     * Helper method that unlinks a reminder from its slot.
+     *
+     * @param entry the reminder
+     */
+    private void unlink(Entry entry) {
+        if (entry.previous != null) {
+            entry.previous.next = entry.next;
+        } else {
+            wheels[entry.level][entry.slot] = entry.next;
+        }
+        if (entry.next != null) {
+            entry.next.previous = entry.previous;
+        }
+        entry.previous = null;
+        entry.next = null;
+    }
+
+    /**
+     * Helper method that returns the IDs of a set of contacts.
+     *
+     * @param contacts the contacts
+     * @return the contact IDs
+     */
+    private static int[] idsOf(Set<Contact> contacts) {
+        int[] ids = new int[contacts.size()];
+        int i = 0;
+        for (Contact contact : contacts) {
+            ids[i++] = contact.getId();
+        }
+        return ids;
+    }
+
+    /**
+     * A pending reminder, linked into a slot.
+     */
+    private static class Entry {
+        private final int meetingId;
+        private final long date;
+        private final int[] contactIds;
+        // The recurring meeting of an occurrence and its number.
+        private final Series series;
+        private final int index;
+        private long deadline;
+        private int level;
+        private int slot;
+        private Entry previous;
+        private Entry next;
+
+        private Entry(int meetingId, long date, int[] contactIds,
+                      Series series, int index) {
+            this.meetingId = meetingId;
+            this.date = date;
+            this.contactIds = contactIds;
+            this.series = series;
+            this.index = index;
+        }
+    }
+
+    /**
+     * A recurring meeting and the occurrence whose reminder is pending.
+     */
+    private static class Series {
+        private final int base;
+        private final Calendar start;
+        private final int[] contactIds;
+        // Replaced when the series ends early.
+        private RecurrenceRule rule;
+        private int reserved;
+        // Occurrences cancelled, moved or stored on their own.
+        private final BitSet skipped = new BitSet();
+        // The number of the pending occurrence, or -1.
+        private int armed = -1;
+
+        private Series(int base, int reserved, Calendar start,
+                       RecurrenceRule rule, int[] contactIds) {
+            this.base = base;
+            this.reserved = reserved;
+            this.start = start;
+            this.rule = rule;
+            this.contactIds = contactIds;
+        }
+
+        private int occurrenceId(int index) {
+            return -(base + index);
+        }
+    }
+}
@@ -0,0 +1,253 @@
+import static org.junit.Assert.*;
+import org.junit.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.io.*;
+
+/**
+ * The test class ReminderEngineTester.
+ *
+ * @author  Stefan E. Mayer
+ * @version 1.0
+ */
+public class ReminderEngineTester {
+    private final static File FILE = new File("reminders.txt");
+    private final static long TICK = 5;
+
+    private ContactManagerImpl manager;
+    private ReminderEngine engine;
+    private BlockingQueue<Reminder> reminders;
+    private Map<Integer, Long> received;
+
+    /**
+     * Sets up the test fixture.
+     *
+     * Called before every test case method.
+     */
+    @Before
+    public void setUp() {
+        FILE.delete();
+        manager = new ContactManagerImpl(FILE);
+        manager.addNewContact("Alice", "");
+        manager.addNewContact("Bob", "");
+        reminders = new LinkedBlockingQueue<Reminder>();
+        received = new ConcurrentHashMap<Integer, Long>();
+    }
+
+    /**
+     * Tears down the test fixture.
+     *
+     * Called after every test case method.
+     */
+    @After
+    public void tearDown() {
+        if (engine != null) {
+            engine.close();
+        }
+        manager = null;
+        FILE.delete();
+    }
+
+    /**
+     * Tests if a reminder comes the lead time before the meeting, not
+     * earlier and at most a few ticks later.
+     */
+    @Test
+    public void testReminder() throws InterruptedException {
+        start(1);
+        Calendar date = inMillis(60000 + 300);
+        int id = manager.addFutureMeeting(manager.getContacts(1, 2), date);
+        assertEquals(1, engine.getPendingCount());
+
+        Reminder reminder = reminders.poll(5, TimeUnit.SECONDS);
+        assertNotNull(reminder);
+        assertEquals(id, reminder.getMeetingId());
+        assertEquals(date, reminder.getDate());
+        assertEquals(2, reminder.getContactIds().length);
+        long late = received.get(id) - (date.getTimeInMillis() - 60000);
+        assertTrue("Early by " + -late, late >= 0);
+        assertTrue("Late by " + late, late < 500);
+        assertEquals(0, engine.getPendingCount());
+    }
+
+    /**
+     * Tests if reminders of many meetings come in the order of the
+     * meetings, also those moved down from further wheels.
+     */
+    @Test
+    public void testOrder() throws InterruptedException {
+        start(0, 1);
+        Set<Integer> ids = new HashSet<Integer>();
+        List<Calendar> dates = new ArrayList<Calendar>();
+        for (int i = 0; i < 100; i++) {
+            // Spans ticks of the first and second wheel.
+            dates.add(inMillis(100 + (i * 37) % 1500));
+        }
+        // Starts on the third wheel.
+        dates.add(inMillis(ReminderEngine.SLOTS * ReminderEngine.SLOTS
+                           + 200));
+        for (Calendar date : dates) {
+            ids.add(manager.addFutureMeeting(manager.getContacts(1), date));
+        }
+        long last = 0;
+        for (int i = 0; i < dates.size(); i++) {
+            Reminder reminder = reminders.poll(30, TimeUnit.SECONDS);
+            assertNotNull(reminder);
+            assertTrue(ids.remove(reminder.getMeetingId()));
+            long date = reminder.getDate().getTimeInMillis();
+            assertTrue(date >= last);
+            assertTrue(received.get(reminder.getMeetingId()) >= date);
+            last = date;
+        }
+        assertEquals(0, engine.getPendingCount());
+    }
+
+    /**
+     * Tests if cancelled meetings are not reminded of and rescheduled
+     * ones at their new date.
+     */
+    @Test
+    public void testCancelAndReschedule() throws InterruptedException {
+        start(0);
+        int cancelled = manager.addFutureMeeting(manager.getContacts(1),
+                                                 inMillis(200));
+        int moved = manager.addFutureMeeting(manager.getContacts(1),
+                                             inMillis(250));
+        manager.addFutureMeeting(manager.getContacts(2), inMillis(100000));
+        assertEquals(3, engine.getPendingCount());
+        manager.cancelMeeting(cancelled);
+        Calendar later = inMillis(400);
+        manager.rescheduleMeeting(moved, later, manager.getContacts(2));
+        assertEquals(2, engine.getPendingCount());
+
+        Reminder reminder = reminders.poll(5, TimeUnit.SECONDS);
+        assertEquals(moved, reminder.getMeetingId());
+        assertEquals(later, reminder.getDate());
+        assertArrayEquals(new int[] {2}, reminder.getContactIds());
+        assertNull(reminders.poll(300, TimeUnit.MILLISECONDS));
+        assertEquals(1, engine.getPendingCount());
+    }
+
+    /**
+     * Tests if a meeting within the lead time is reminded of at once,
+     * and if stored meetings are scheduled when the engine starts.
+     */
+    @Test
+    public void testWithinLeadTime() throws InterruptedException {
+        Calendar soon = inMillis(30000);
+        int stored = manager.addFutureMeeting(manager.getContacts(1), soon);
+        manager.addFutureMeeting(manager.getContacts(1), inMillis(300000));
+        start(1);
+        assertEquals(2, engine.getPendingCount());
+        Reminder reminder = reminders.poll(1, TimeUnit.SECONDS);
+        assertEquals(stored, reminder.getMeetingId());
+        assertEquals(1, engine.getPendingCount());
+    }
+
+    /**
+     * Tests if the occurrences of a recurring meeting are reminded of
+     * one after the other, skipping cancelled ones, until it ends.
+     */
+    @Test
+    public void testRecurringMeeting() throws InterruptedException {
+        start(0);
+        Calendar first = inMillis(300);
+        // Every day, so the next occurrence is pending after a reminder.
+        int seriesId = manager.addRecurringMeeting(manager.getContacts(1),
+            first, RecurrenceRule.parse("FREQ=DAILY"));
+        RecurringMeeting series = manager.getRecurringMeeting(seriesId);
+        assertEquals(1, engine.getPendingCount());
+        manager.cancelMeeting(series.getOccurrenceId(0));
+        assertEquals(1, engine.getPendingCount());
+        assertNull(reminders.poll(500, TimeUnit.MILLISECONDS));
+
+        manager.rescheduleMeeting(series.getOccurrenceId(1),
+                                  inMillis(200), manager.getContacts(1, 2));
+        Reminder reminder = reminders.poll(5, TimeUnit.SECONDS);
+        assertEquals(series.getOccurrenceId(1), reminder.getMeetingId());
+        assertEquals(2, reminder.getContactIds().length);
+        // Occurrence 2 is pending now.
+        assertEquals(1, engine.getPendingCount());
+
+        Calendar end = (Calendar)first.clone();
+        end.add(Calendar.DATE, 2);
+        manager.endRecurringMeeting(seriesId, end);
+        assertEquals(0, engine.getPendingCount());
+    }
+
+    /**
+     * Tests if many reminders are added and cancelled quickly.
+     */
+    @Test
+    public void testManyReminders() {
+        start(0);
+        Calendar date = inMillis(3600000);
+        Set<Contact> contacts = manager.getContacts(1);
+        long start = System.nanoTime();
+        for (int i = 1; i <= 100000; i++) {
+            ChangeEvent added = ChangeEvent.meetingAdded(
+                new FutureMeetingImpl(i, contacts, date));
+            engine.changed(added);
+            date.add(Calendar.SECOND, 7);
+        }
+        assertEquals(100000, engine.getPendingCount());
+        for (int i = 1; i <= 100000; i++) {
+            engine.changed(ChangeEvent.meetingCancelled(
+                new FutureMeetingImpl(i, contacts, date)));
+        }
+        assertEquals(0, engine.getPendingCount());
+        assertTrue(System.nanoTime() - start < 5000000000L);
+    }
+
+    /**
+     * Tests if a negative lead time is rejected.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativeLeadTime() {
+        new ReminderEngine(manager, -1, new ReminderListener() {
+            @Override
+            public void remind(Reminder reminder) {
+                // Never called.
+            }
+        });
+    }
+
+    /**
+     * Helper method that starts an engine remembering its reminders.
+     *
+     * @param minutesBefore the minutes before a meeting to remind of it
+     */
+    private void start(int minutesBefore) {
+        start(minutesBefore, TICK);
+    }
+
+    /**
+     * Helper method that starts an engine remembering its reminders.
+     *
+     * @param minutesBefore the minutes before a meeting to remind of it
+     * @param tickMillis the milliseconds per tick
+     */
+    private void start(int minutesBefore, long tickMillis) {
+        engine = new ReminderEngine(manager, minutesBefore, tickMillis,
+                                    new ReminderListener() {
+            @Override
+            public void remind(Reminder reminder) {
+                received.put(reminder.getMeetingId(),
+                             System.currentTimeMillis());
+                reminders.add(reminder);
+            }
+        });
+    }
+
+    /**
+     * Helper method that returns the date some milliseconds from now.
+     *
+     * @param millis the milliseconds
+     * @return the date
+     */
+    private static Calendar inMillis(long millis) {
+        Calendar date = new GregorianCalendar();
+        date.setTimeInMillis(System.currentTimeMillis() + millis);
+        return date;
+    }
+}
@@ -0,0 +1,19 @@
+/**
+ * A listener notified when a meeting is about to start.
+ *
+ * IMPORTANT: Reminders are delivered one after the other by the thread
+ *            of the ReminderEngine, so listeners should return quickly
+ *            or hand the reminder to another thread; a slow listener
+ *            delays the reminders after it.
+ *
+ * @author Stefan E. Mayer
+ * @version 1.0
+ */
+public interface ReminderListener {
+    /**
+     * Called when a meeting starts within the lead time of the engine.
+     *
+     * @param reminder the reminder
+     */
+    void remind(Reminder reminder);
+}
@@ -0,0 +1,450 @@
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+/**
+ * A read-only replica of a contact manager, kept up to date by the
+ * changes a ReplicationPrimary streams to it.
+ *
+ * Queries run against the local replica under a shared read lock, so
+ * they never wait for the network; each change from the primary is
+ * applied under the write lock. If the connection is lost the follower
+ * reconnects and resumes after the last change it applied, or loads a
+ * new snapshot if the primary can no longer resume it.
+ *
+ * IMPORTANT: All mutations throw an UnsupportedOperationException and
+ *            flush() does nothing. The contacts returned must not be
+ *            changed either. Call promote() to turn the replica into
+ *            a writable contact manager, e.g. when the primary failed.
+ *
+ * @author Stefan E. Mayer
+ * @version 1.0
+ */
+public class ReplicationFollower implements ContactManager {
+    /**
+     * The milliseconds to wait before reconnecting to the primary.
+     */
+    public static final int RECONNECT_MILLIS = 1000;
+    // The primary is considered gone after missing a few heartbeats.
+    private static final int TIMEOUT_MILLIS =
+        3 * ReplicationPrimary.HEARTBEAT_MILLIS;
+
+    private String host;
+    private int port;
+    private File config;
+
+    private ContactManagerImpl replica;
+    private ReadWriteLock lock;
+
+    private Thread thread;
+    private volatile Socket socket;
+    private volatile boolean closed;
+
+    // Written by the replication thread only.
+    private volatile long epoch;
+    private volatile long appliedSequence;
+    private volatile long primarySequence;
+    private volatile long appliedTimestamp;
+    private volatile boolean connected;
+
+    /**
+     * Create a new follower and start replicating from a primary.
+     *
+     * @param host the host of the primary
+     * @param port the port of the primary
+     * @param config the file the replica is stored in once promoted
+     */
+    public ReplicationFollower(String host, int port, File config) {
+        this.host = host;
+        this.port = port;
+        this.config = config;
+        this.replica = new ContactManagerImpl(config, 1, 1, false);
+        this.lock = new ReentrantReadWriteLock();
+        this.thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                replicate();
+            }
+        }, "replication-follower");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Returns the sequence number of the last change applied.
+     *
+     * @return the last applied sequence number
+     */
+    public long getAppliedSequence() {
+        return appliedSequence;
+    }
+
+    /**
+     * Returns the last sequence number the primary reported.
+     *
+     * @return the last sequence number of the primary
+     */
+    public long getPrimarySequence() {
+        return primarySequence;
+    }
+
+    /**
+     * Returns how many changes of the primary are not applied yet.
+     *
+     * @return the lag in changes
+     */
+    public long getLagEvents() {
+        return Math.max(0, primarySequence - appliedSequence);
+    }
+
+    /**
+     * Returns how long ago the last applied change happened on the
+     * primary, if there are more changes to apply.
+     *
+     * @return the lag in milliseconds, or 0 if the replica is up to date
+     */
+    public long getLagMillis() {
+        if (getLagEvents() == 0) {
+            return 0;
+        }
+        return Math.max(0, System.currentTimeMillis() - appliedTimestamp);
+    }
+
+    /**
+     * Checks if the follower is connected to the primary.
+     *
+     * @return true if the follower is connected
+     */
+    public boolean isConnected() {
+        return connected;
+    }
+
+    /**
+     * Stops replicating and returns the replica as a writable contact
+     * manager. New IDs continue after the highest replicated ones.
+     *
+     * @return the replica
+     */
+    public ContactManager promote() {
+        close();
+        lock.writeLock().lock();
+        try {
+            return replica;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Disconnects from the primary and stops replicating.
+     */
+    public void close() {
+        closed = true;
+        closeSocket();
+        thread.interrupt();
+        try {
+            thread.join();
+        } catch (InterruptedException interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Runs a follower that prints its lag every second, to try out
+     * replication with a primary in another JVM.
+     *
+     * @param args the host (default localhost) and port (default 7070)
+     *        of the primary
+     * @throws InterruptedException if interrupted
+     */
+    public static void main(String[] args) throws InterruptedException {
+        String host = args.length > 0 ? args[0] : "localhost";
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : 7070;
+        ReplicationFollower follower =
+            new ReplicationFollower(host, port, new File("replica.txt"));
+        while (true) {
+            Thread.sleep(1000);
+            System.out.println((follower.isConnected() ? "connected"
+                                                       : "disconnected")
+                               + ", applied " + follower.getAppliedSequence()
+                               + " of " + follower.getPrimarySequence()
+                               + ", lag " + follower.getLagEvents()
+                               + " changes / " + follower.getLagMillis()
+                               + " ms, "
+                               + follower.getContacts("").size()
+                               + " contacts");
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int addFutureMeeting(Set<Contact> contacts, Calendar date) {
+        throw readOnly();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public PastMeeting getPastMeeting(int id) {
+        lock.readLock().lock();
+        try {
+            return replica.getPastMeeting(id);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public FutureMeeting getFutureMeeting(int id) {
+        lock.readLock().lock();
+        try {
+            return replica.getFutureMeeting(id);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Meeting getMeeting(int id) {
+        lock.readLock().lock();
+        try {
+            return replica.getMeeting(id);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<Meeting> getFutureMeetingList(Contact contact) {
+        lock.readLock().lock();
+        try {
+            return replica.getFutureMeetingList(contact);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<Meeting> getFutureMeetingList(Calendar date) {
+        lock.readLock().lock();
+        try {
+            return replica.getFutureMeetingList(date);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<PastMeeting> getPastMeetingList(Contact contact) {
+        lock.readLock().lock();
+        try {
+            return replica.getPastMeetingList(contact);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void addNewPastMeeting(Set<Contact> contacts,
+                                  Calendar date, String text) {
+        throw readOnly();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void addMeetingNotes(int id, String text) {
+        throw readOnly();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void cancelMeeting(int id) {
+        throw readOnly();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void rescheduleMeeting(int id, Calendar date,
+                                  Set<Contact> contacts) {
+        throw readOnly();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void addNewContact(String name, String notes) {
+        throw readOnly();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Set<Contact> getContacts(int... ids) {
+        lock.readLock().lock();
+        try {
+            return replica.getContacts(ids);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Set<Contact> getContacts(String name) {
+        lock.readLock().lock();
+        try {
+            return replica.getContacts(name);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Does nothing, the replica is only stored once promoted.
+     */
+    @Override
+    public void flush() {
+    }
+
+    /**
+     * Helper method that connects to the primary until closed.
+     */
+    private void replicate() {
+        while (!closed) {
+            try (Socket connection = new Socket()) {
+                socket = connection;
+                if (closed) {
+                    return;
+                }
+                connection.connect(new InetSocketAddress(host, port),
+                                   TIMEOUT_MILLIS);
+                connection.setTcpNoDelay(true);
+                connection.setSoTimeout(TIMEOUT_MILLIS);
+                receive(connection);
+            } catch (IOException | ClassNotFoundException lost) {
+                // Reconnects below.
+            } finally {
+                connected = false;
+            }
+            try {
+                Thread.sleep(RECONNECT_MILLIS);
+            } catch (InterruptedException interrupted) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Helper method that applies the changes sent by the primary.
+     *
+     * @param connection the connection to the primary
+     */
+    private void receive(Socket connection) throws IOException,
+                                                   ClassNotFoundException {
+        DataOutputStream out = new DataOutputStream(
+            new BufferedOutputStream(connection.getOutputStream()));
+        out.writeLong(epoch);
+        out.writeLong(appliedSequence);
+        out.flush();
+        ObjectInputStream in = new ObjectInputStream(
+            new BufferedInputStream(connection.getInputStream()));
+        long primaryEpoch = in.readLong();
+        boolean full = in.readBoolean();
+        primarySequence = in.readLong();
+        if (full) {
+            int count = in.readInt();
+            // Loads the snapshot while queries still see the old replica.
+            ContactManagerImpl snapshot =
+                new ContactManagerImpl(config, 1, 1, false);
+            for (int i = 0; i < count; i++) {
+                snapshot.apply((ChangeEvent)in.readObject());
+            }
+            lock.writeLock().lock();
+            try {
+                replica = snapshot;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            epoch = primaryEpoch;
+            appliedSequence = primarySequence;
+            appliedTimestamp = System.currentTimeMillis();
+        } else if (primaryEpoch != epoch) {
+            throw new IOException("Primary skipped the snapshot!");
+        }
+        connected = true;
+        while (!closed) {
+            Object next = in.readObject();
+            if (next instanceof Long) {
+                primarySequence = (Long)next;
+                continue;
+            }
+            ChangeEvent change = (ChangeEvent)next;
+            lock.writeLock().lock();
+            try {
+                replica.apply(change);
+            } finally {
+                lock.writeLock().unlock();
+            }
+            appliedTimestamp = change.getTimestamp();
+            appliedSequence = change.getSequence();
+            primarySequence = Math.max(primarySequence, appliedSequence);
+        }
+    }
+
+    /**
+     * Helper method that closes the connection to the primary,
+     * which makes the replication thread stop waiting for changes.
+     */
+    private void closeSocket() {
+        Socket current = socket;
+        if (current != null) {
+            try {
+                current.close();
+            } catch (IOException ignored) {
+                // Already closed.
+            }
+        }
+    }
+
+    /**
+     * Helper method that creates the exception thrown by mutations.
+     *
+     * @return the exception
+     */
+    private static UnsupportedOperationException readOnly() {
+        return new UnsupportedOperationException("Follower is read-only!");
+    }
+}
@@ -0,0 +1,386 @@
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.io.*;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+/**
+ * The primary of a replicated contact manager. It streams every change
+ * to the followers connected to its socket.
+ *
+ * A follower sends the epoch of the primary it last replicated from and
+ * the last sequence number it has applied. If that change is still in
+ * the change feed of this primary, the follower only receives the later
+ * changes. Otherwise it first receives a snapshot of all contacts and
+ * meetings, as changes, taken under the read lock together with the
+ * sequence number of the last change it contains.
+ *
+ * Protocol (Java serialization):
+ *   follower: epoch (long), last applied sequence (long)
+ *   primary:  epoch (long), snapshot (boolean), last sequence number
+ *             (long, also the one of the snapshot), and if a snapshot
+ *             follows: the number of changes (int) and the changes;
+ *             then any number of changes, each batch followed by the
+ *             last sequence number of the primary (Long), which is
+ *             also sent as a heartbeat when idle.
+ *
+ * IMPORTANT: The contact manager must only be changed while holding
+ *            the write lock given to the primary, e.g. through a
+ *            SynchronizedContactManager, so that snapshots are
+ *            consistent.
+ *
+ * @author Stefan E. Mayer
+ * @version 1.0
+ */
+public class ReplicationPrimary {
+    /**
+     * The milliseconds between heartbeats on an idle connection.
+     */
+    public static final int HEARTBEAT_MILLIS = 1000;
+    private static final int BATCH_SIZE = 1024;
+    // Clears the handle table of the object streams every few changes.
+    private static final int RESET_EVERY = 10000;
+
+    private ContactManagerImpl manager;
+    private ReadWriteLock lock;
+    private ChangeFeed feed;
+    private long epoch;
+
+    private ServerSocket serverSocket;
+    private ExecutorService executor;
+    private Set<Socket> followers;
+    private volatile boolean closed;
+
+    /**
+     * Create a new primary listening on a local port.
+     *
+     * @param manager the contact manager to replicate
+     * @param lock the lock held while the contact manager is changed
+     * @param port the port to listen on, or 0 for any free port
+     * @throws IOException if the port cannot be bound
+     */
+    public ReplicationPrimary(ContactManagerImpl manager, ReadWriteLock lock,
+                              int port) throws IOException {
+        this.manager = manager;
+        this.lock = lock;
+        // A new follower sends epoch 0, which must never match.
+        do {
+            this.epoch = new Random().nextLong();
+        } while (epoch == 0);
+        this.executor = Executors.newCachedThreadPool(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable task) {
+                Thread thread = new Thread(task, "replication-primary");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        this.feed = new ChangeFeed(ChangeFeed.DEFAULT_RETENTION, executor);
+        this.followers = ConcurrentHashMap.newKeySet();
+        this.serverSocket = new ServerSocket();
+        this.serverSocket.bind(new InetSocketAddress(
+                                   InetAddress.getLoopbackAddress(), port));
+        manager.addChangeListener(feed);
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                accept();
+            }
+        });
+    }
+
+    /**
+     * Returns the port the primary listens on.
+     *
+     * @return the port
+     */
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Returns the sequence number of the last change.
+     *
+     * @return the last sequence number
+     */
+    public long getLastSequence() {
+        return feed.getLastSequence();
+    }
+
+    /**
+     * Returns the number of connected followers.
+     *
+     * @return the number of followers
+     */
+    public int getFollowerCount() {
+        return followers.size();
+    }
+
+    /**
+     * Disconnects all followers and stops replicating.
+     */
+    public void close() {
+        closed = true;
+        manager.removeChangeListener(feed);
+        try {
+            serverSocket.close();
+        } catch (IOException io) {
+            io.printStackTrace();
+        }
+        for (Socket follower : followers) {
+            closeQuietly(follower);
+        }
+        feed.close();
+        executor.shutdown();
+    }
+
+    /**
+     * Runs a primary for contacts.txt that adds a future meeting with
+     * two random contacts every so often, to try out replication with
+     * a follower in another JVM.
+     *
+     * @param args the port (default 7070) and the number of new
+     *        meetings per second (default 10)
+     * @throws Exception if the port cannot be bound
+     */
+    public static void main(String[] args) throws Exception {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 7070;
+        int rate = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        ContactManagerImpl impl = new ContactManagerImpl();
+        SynchronizedContactManager manager =
+            new SynchronizedContactManager(impl);
+        ReplicationPrimary primary =
+            new ReplicationPrimary(impl, manager.getLock(), port);
+        System.out.println("Replicating on port " + primary.getPort());
+        if (manager.getContacts("").isEmpty()) {
+            for (int i = 1; i <= 100; i++) {
+                manager.addNewContact("Contact " + i, "");
+            }
+        }
+        Random random = new Random();
+        int contacts = manager.getContacts("").size();
+        while (rate > 0) {
+            Calendar date = new GregorianCalendar();
+            date.add(Calendar.MINUTE, 1 + random.nextInt(100000));
+            manager.addFutureMeeting(manager.getContacts(
+                1 + random.nextInt(contacts), 1 + random.nextInt(contacts)),
+                date);
+            Thread.sleep(1000 / rate);
+        }
+    }
+
+    /**
+     * Helper method that accepts followers until the primary is closed.
+     */
+    private void accept() {
+        while (!closed) {
+            try {
+                final Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                followers.add(socket);
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            serve(socket);
+                        } catch (IOException disconnected) {
+                            // The follower reconnects.
+                        } catch (InterruptedException interrupted) {
+                            Thread.currentThread().interrupt();
+                        } finally {
+                            followers.remove(socket);
+                            closeQuietly(socket);
+                        }
+                    }
+                });
+            } catch (IOException io) {
+                if (!closed) {
+                    io.printStackTrace();
+                }
+            }
+        }
+    }
+
+    /**
+     * Helper method that sends the changes to one follower.
+     *
+     * @param socket the connection to the follower
+     */
+    private void serve(Socket socket) throws IOException,
+                                             InterruptedException {
+        ObjectOutputStream out = new ObjectOutputStream(
+            new BufferedOutputStream(socket.getOutputStream()));
+        out.flush();
+        DataInputStream in = new DataInputStream(socket.getInputStream());
+        long followerEpoch = in.readLong();
+        long applied = in.readLong();
+
+        Forwarder forwarder = new Forwarder();
+        lock.readLock().lock();
+        try {
+            boolean snapshot = followerEpoch != epoch
+                               || applied > feed.getLastSequence()
+                               || applied + 1 < feed.getFirstRetainedSequence();
+            // No change can happen while the read lock is held.
+            long last = feed.getLastSequence();
+            out.writeLong(epoch);
+            out.writeBoolean(snapshot);
+            out.writeLong(last);
+            if (snapshot) {
+                applied = last;
+                writeSnapshot(out);
+            }
+            feed.subscribe(forwarder, applied);
+        } finally {
+            lock.readLock().unlock();
+        }
+        out.flush();
+
+        int sinceReset = 0;
+        try {
+            while (!closed) {
+                Object next = forwarder.queue.poll(HEARTBEAT_MILLIS,
+                                                   TimeUnit.MILLISECONDS);
+                if (next == null) {
+                    out.writeObject(feed.getLastSequence());
+                    out.flush();
+                    continue;
+                }
+                int sent = 0;
+                while (next != null) {
+                    if (next instanceof Throwable) {
+                        // Fell behind the retained changes; the follower
+                        // reconnects and gets a snapshot.
+                        return;
+                    }
+                    out.writeObject(next);
+                    sent++;
+                    if (++sinceReset == RESET_EVERY) {
+                        out.reset();
+                        sinceReset = 0;
+                    }
+                    next = forwarder.queue.poll();
+                }
+                // Lets the follower tell how far behind it still is.
+                out.writeObject(feed.getLastSequence());
+                out.flush();
+                forwarder.subscription.request(sent);
+            }
+        } finally {
+            forwarder.subscription.cancel();
+        }
+    }
+
+    /**
+     * Helper method that writes all contacts, deleted contacts,
+     * recurring meetings, meetings and cancelled occurrences as changes.
+     *
+     * @param out the stream to the follower
+     */
+    private void writeSnapshot(ObjectOutputStream out) throws IOException {
+        Set<Contact> contacts = manager.getContacts("");
+        List<RecurringMeeting> series = manager.getRecurringMeetings();
+        List<Meeting> meetings = manager.getMeetings();
+        // Occurrences skipped by their series but not stored on their own.
+        List<ChangeEvent> cancelled = new ArrayList<ChangeEvent>();
+        for (RecurringMeeting each : series) {
+            for (int index : each.getExceptions()) {
+                int id = each.getOccurrenceId(index);
+                Calendar date = each.getDate(index);
+                if (date != null && manager.getMeeting(id) == null) {
+                    cancelled.add(ChangeEvent.meetingCancelled(
+                        new FutureMeetingImpl(id, each.getContacts(), date)));
+                }
+            }
+        }
+        Set<Integer> deleted = manager.getDeletedContacts();
+        out.writeInt(contacts.size() + deleted.size() + series.size()
+                     + meetings.size() + cancelled.size());
+        int sinceReset = 0;
+        for (Contact contact : contacts) {
+            out.writeObject(ChangeEvent.contactAdded(contact));
+            if (++sinceReset == RESET_EVERY) {
+                out.reset();
+                sinceReset = 0;
+            }
+        }
+        // Keeps the IDs of deleted contacts invalid on the follower.
+        for (int id : deleted) {
+            out.writeObject(ChangeEvent.contactDeleted(id));
+            if (++sinceReset == RESET_EVERY) {
+                out.reset();
+                sinceReset = 0;
+            }
+        }
+        // Before the meetings, some of which are former occurrences.
+        for (RecurringMeeting each : series) {
+            out.writeObject(ChangeEvent.recurringMeetingAdded(each));
+            if (++sinceReset == RESET_EVERY) {
+                out.reset();
+                sinceReset = 0;
+            }
+        }
+        for (Meeting meeting : meetings) {
+            out.writeObject(ChangeEvent.meetingAdded(meeting));
+            if (++sinceReset == RESET_EVERY) {
+                out.reset();
+                sinceReset = 0;
+            }
+        }
+        for (ChangeEvent change : cancelled) {
+            out.writeObject(change);
+            if (++sinceReset == RESET_EVERY) {
+                out.reset();
+                sinceReset = 0;
+            }
+        }
+        out.reset();
+    }
+
+    /**
+     * Helper method that closes a socket, ignoring errors.
+     *
+     * @param socket the socket
+     */
+    private static void closeQuietly(Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException ignored) {
+            // Already closed.
+        }
+    }
+
+    /**
+     * A subscriber handing changes to the thread serving a follower.
+     * It requests a batch at first and then as many changes as the
+     * thread has sent, so the queue never holds more than one batch.
+     */
+    private static class Forwarder implements Flow.Subscriber<ChangeEvent> {
+        private final BlockingQueue<Object> queue =
+            new LinkedBlockingQueue<Object>();
+        private volatile Flow.Subscription subscription;
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(BATCH_SIZE);
+        }
+
+        @Override
+        public void onNext(ChangeEvent event) {
+            queue.add(event);
+        }
+
+        @Override
+        public void onError(Throwable error) {
+            queue.add(error);
+        }
+
+        @Override
+        public void onComplete() {
+            queue.add(new IllegalStateException("Primary is closed!"));
+        }
+    }
+}
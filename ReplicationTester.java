@@ -0,0 +1,322 @@
+import static org.junit.Assert.*;
+import org.junit.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.io.*;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+
+/**
+ * The test class ReplicationTester.
+ *
+ * @author  Stefan E. Mayer
+ * @version 1.0
+ */
+public class ReplicationTester {
+    private final static File FILE = new File("primary.txt");
+    private final static File REPLICA_FILE = new File("replica.txt");
+    private final static long TIMEOUT_MILLIS = 10000;
+
+    private ContactManagerImpl impl;
+    private SynchronizedContactManager manager;
+    private ReplicationPrimary primary;
+    private ReplicationFollower follower;
+
+    /**
+     * Sets up the test fixture.
+     *
+     * Called before every test case method.
+     */
+    @Before
+    public void setUp() throws IOException {
+        FILE.delete();
+        REPLICA_FILE.delete();
+        impl = new ContactManagerImpl(FILE);
+        manager = new SynchronizedContactManager(impl);
+        manager.addNewContact("Alice", "primary");
+        manager.addNewContact("Bob", "");
+        Calendar date = new GregorianCalendar(2010, 1, 1);
+        manager.addNewPastMeeting(manager.getContacts(1, 2), date, "Kickoff");
+        primary = new ReplicationPrimary(impl, manager.getLock(), 0);
+        follower = new ReplicationFollower("localhost", primary.getPort(),
+                                           REPLICA_FILE);
+    }
+
+    /**
+     * Tears down the test fixture.
+     *
+     * Called after every test case method.
+     */
+    @After
+    public void tearDown() {
+        follower.close();
+        primary.close();
+        FILE.delete();
+        REPLICA_FILE.delete();
+    }
+
+    /**
+     * Tests if a new follower receives the data present before.
+     */
+    @Test
+    public void testSnapshot() throws InterruptedException {
+        awaitContacts(2);
+        assertEquals("primary", follower.getContacts(1).iterator()
+                                        .next().getNotes());
+        PastMeeting meeting = follower.getPastMeeting(1);
+        assertNotNull(meeting);
+        assertEquals("Kickoff", meeting.getNotes());
+        assertEquals(2, meeting.getContacts().size());
+    }
+
+    /**
+     * Tests if changes after the snapshot are streamed to the follower.
+     */
+    @Test
+    public void testStreamedChanges() throws InterruptedException {
+        awaitContacts(2);
+        manager.addNewContact("Carol", "");
+        Calendar date = new GregorianCalendar();
+        date.add(Calendar.YEAR, 1);
+        int id = manager.addFutureMeeting(manager.getContacts(1, 3), date);
+        manager.getContacts(2).iterator().next().addNotes("changed");
+        manager.addMeetingNotes(1, "Kickoff, again");
+        await(primary.getLastSequence());
+
+        assertEquals(3, follower.getContacts("").size());
+        assertEquals(date, follower.getFutureMeeting(id).getDate());
+        assertEquals(1, follower.getFutureMeetingList(
+                            follower.getContacts(3).iterator().next()).size());
+        assertEquals("changed", follower.getContacts(2).iterator()
+                                        .next().getNotes());
+        assertEquals("Kickoff, again", follower.getPastMeeting(1).getNotes());
+        assertEquals(0, follower.getLagEvents());
+        assertTrue(follower.isConnected());
+    }
+
+    /**
+     * Tests if the follower reports a lag while it catches up after
+     * a reconnect.
+     */
+    @Test
+    public void testLagWhileCatchingUp() throws Exception {
+        follower.close();
+        Relay relay = new Relay(primary.getPort());
+        try {
+            follower = new ReplicationFollower("localhost", relay.getPort(),
+                                               REPLICA_FILE);
+            long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+            while (!follower.isConnected()) {
+                assertTrue("Follower did not connect",
+                           System.currentTimeMillis() < deadline);
+                Thread.sleep(10);
+            }
+            relay.setOpen(false);
+            while (follower.isConnected()) {
+                Thread.sleep(10);
+            }
+            for (int i = 0; i < 5000; i++) {
+                manager.addNewContact("Contact " + i, "");
+            }
+            long last = primary.getLastSequence();
+
+            relay.setOpen(true);
+            deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+            while (!follower.isConnected()) {
+                assertTrue("Follower did not reconnect",
+                           System.currentTimeMillis() < deadline);
+                Thread.yield();
+            }
+            while (follower.getAppliedSequence() < last) {
+                assertTrue("Follower reported no lag while behind",
+                           follower.getLagEvents() > 0);
+                assertTrue("Follower did not catch up",
+                           System.currentTimeMillis() < deadline);
+                Thread.yield();
+            }
+            assertEquals(0, follower.getLagEvents());
+            assertEquals(0, follower.getLagMillis());
+        } finally {
+            follower.close();
+            relay.close();
+        }
+    }
+
+    /**
+     * Tests if the follower rejects mutations.
+     */
+    @Test(expected = UnsupportedOperationException.class)
+    public void testReadOnly() {
+        follower.addNewContact("Mallory", "");
+    }
+
+    /**
+     * Tests if a promoted follower continues with the next IDs.
+     */
+    @Test
+    public void testPromote() throws InterruptedException {
+        manager.addNewContact("Carol", "");
+        await(primary.getLastSequence());
+        ContactManager promoted = follower.promote();
+        assertFalse(follower.isConnected());
+        promoted.addNewContact("Dave", "");
+        assertEquals("Dave", promoted.getContacts(4).iterator()
+                                     .next().getName());
+    }
+
+    /**
+     * Tests if applying a change twice has no further effect.
+     */
+    @Test
+    public void testApplyIsIdempotent() {
+        ContactManagerImpl replica =
+            new ContactManagerImpl(REPLICA_FILE, 1, 1, false);
+        Contact alice = manager.getContacts(1).iterator().next();
+        replica.apply(ChangeEvent.contactAdded(alice));
+        replica.apply(ChangeEvent.contactAdded(alice));
+        Meeting meeting = manager.getMeeting(1);
+        replica.apply(ChangeEvent.meetingAdded(meeting));
+        replica.apply(ChangeEvent.meetingAdded(meeting));
+        assertEquals(1, replica.getContacts("").size());
+        assertEquals(1, replica.getMeetings().size());
+        assertEquals(1, replica.getPastMeeting(1).getContacts().size());
+    }
+
+    /**
+     * Helper method that waits until the follower has some contacts.
+     *
+     * @param count the number of contacts
+     */
+    private void awaitContacts(int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (follower.getContacts("").size() < count) {
+            assertTrue("Follower did not catch up",
+                       System.currentTimeMillis() < deadline);
+            Thread.sleep(10);
+        }
+    }
+
+    /**
+     * Helper method that waits until the follower applied a change.
+     *
+     * @param sequence the sequence number of the change
+     */
+    private void await(long sequence) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (follower.getAppliedSequence() < sequence) {
+            assertTrue("Follower did not catch up",
+                       System.currentTimeMillis() < deadline);
+            Thread.sleep(10);
+        }
+    }
+
+    /**
+     * Relays connections to the primary, so that a test can cut them.
+     * While closed, it drops new connections at once. It passes the
+     * changes on slowly, so that catching up takes a while.
+     */
+    private static class Relay {
+        private final ServerSocket serverSocket;
+        private final int target;
+        private final Set<Socket> sockets = ConcurrentHashMap.newKeySet();
+        private volatile boolean open = true;
+
+        Relay(int target) throws IOException {
+            this.target = target;
+            this.serverSocket = new ServerSocket(
+                0, 50, InetAddress.getLoopbackAddress());
+            Thread acceptor = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    accept();
+                }
+            }, "relay");
+            acceptor.setDaemon(true);
+            acceptor.start();
+        }
+
+        int getPort() {
+            return serverSocket.getLocalPort();
+        }
+
+        /**
+         * Opens the relay, or closes it and cuts all connections.
+         */
+        void setOpen(boolean open) {
+            this.open = open;
+            if (!open) {
+                cut();
+            }
+        }
+
+        void close() throws IOException {
+            serverSocket.close();
+            cut();
+        }
+
+        private void cut() {
+            for (Socket socket : sockets) {
+                try {
+                    socket.close();
+                } catch (IOException ignored) {
+                    // Already closed.
+                }
+            }
+            sockets.clear();
+        }
+
+        private void accept() {
+            while (!serverSocket.isClosed()) {
+                try {
+                    Socket client = serverSocket.accept();
+                    if (!open) {
+                        client.close();
+                        continue;
+                    }
+                    Socket server = new Socket();
+                    server.connect(new InetSocketAddress(
+                        InetAddress.getLoopbackAddress(), target));
+                    sockets.add(client);
+                    sockets.add(server);
+                    pump(client, server, false);
+                    pump(server, client, true);
+                } catch (IOException closed) {
+                    // Stops when the relay is closed.
+                }
+            }
+        }
+
+        private void pump(final Socket from, final Socket to,
+                          final boolean slow) {
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    byte[] buffer = new byte[slow ? 1024 : 8192];
+                    try {
+                        InputStream in = from.getInputStream();
+                        OutputStream out = to.getOutputStream();
+                        int read;
+                        while ((read = in.read(buffer)) >= 0) {
+                            out.write(buffer, 0, read);
+                            if (slow) {
+                                Thread.sleep(1);
+                            }
+                        }
+                    } catch (IOException | InterruptedException cut) {
+                        // Closes both sides below.
+                    }
+                    try {
+                        from.close();
+                        to.close();
+                    } catch (IOException ignored) {
+                        // Already closed.
+                    }
+                }
+            }, "relay-pump");
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+}
@@ -0,0 +1,569 @@
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+/**
+ * An asynchronous contact manager with a single writer thread.
+ *
+ * Mutations are published to a ring buffer in the style of the LMAX
+ * Disruptor: any number of producers claim a slot with one atomic
+ * increment and publish their operation into it, and one writer thread
+ * consumes the published operations in batches. A whole batch is
+ * applied while holding the write lock once, so writers never contend
+ * with each other and readers are only held up once per batch.
+ *
+ * Queries run concurrently on an executor (by default the common
+ * ForkJoin pool) while holding the read lock. Flushing runs on the
+ * writer thread with only the read lock, as the writer is the only
+ * thread that changes data, so queries are not stalled by flush().
+ *
+ * IMPORTANT: ContactManagerImpl updates its collections and indexes in
+ *            place, so queries still need the read lock to see them in
+ *            a consistent state. Lock-free reads would require the
+ *            contact manager to publish immutable (persistent) data
+ *            structures instead.
+ *
+ * Operations are applied in the order their slots were claimed, and a
+ * query submitted after a mutation's future completed sees its effect.
+ * Futures of mutations are completed by the writer thread after it has
+ * released the lock; dependent stages that do real work should use the
+ * *Async variants so that they do not delay the next batch.
+ *
+ * @author Stefan E. Mayer
+ * @version 1.0
+ */
+public class RingBufferContactManager implements AsyncContactManager {
+    /**
+     * The default number of slots of the ring buffer.
+     */
+    public static final int DEFAULT_CAPACITY = 1024;
+    /**
+     * The default maximum number of mutations applied under one lock.
+     */
+    public static final int DEFAULT_BATCH_SIZE = 256;
+    private static final long PARK_NANOS = 1000000;
+
+    private ContactManager manager;
+    private ReadWriteLock lock;
+    private Executor readers;
+
+    private AtomicReferenceArray<Operation<?>> slots;
+    private int mask;
+    private int batchSize;
+    private AtomicLong claimed;
+    private volatile long consumed;
+
+    private Thread writer;
+    private volatile boolean writerWaiting;
+    private volatile boolean closed;
+
+    /**
+     * Create a new asynchronous contact manager with the default
+     * ring buffer capacity and batch size, running queries on the
+     * common ForkJoin pool.
+     *
+     * The contact manager must not be used directly any more.
+     *
+     * @param manager the contact manager
+     */
+    public RingBufferContactManager(ContactManager manager) {
+        this(manager, DEFAULT_CAPACITY, DEFAULT_BATCH_SIZE,
+             ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Create a new asynchronous contact manager.
+     *
+     * The contact manager must not be used directly any more.
+     *
+     * @param manager the contact manager
+     * @param capacity the number of slots of the ring buffer,
+     *        a power of two
+     * @param batchSize the maximum number of mutations applied under
+     *        one lock
+     * @param readers the executor running queries
+     * @throws IllegalArgumentException if the capacity is not a power
+     *         of two or the batch size is not positive
+     */
+    public RingBufferContactManager(ContactManager manager, int capacity,
+                                    int batchSize, Executor readers) {
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException(
+                      "Capacity must be a power of two!");
+        }
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("Batch size must be positive!");
+        }
+        this.manager = manager;
+        this.lock = new ReentrantReadWriteLock();
+        this.readers = readers;
+        this.slots = new AtomicReferenceArray<Operation<?>>(capacity);
+        this.mask = capacity - 1;
+        this.batchSize = Math.min(batchSize, capacity);
+        this.claimed = new AtomicLong();
+        this.writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    consume();
+                } catch (Throwable fatal) {
+                    // Operations catch their own failures, so this is
+                    // the writer itself failing; nothing may wait for
+                    // it any more.
+                    fatal.printStackTrace();
+                    abort(fatal);
+                }
+            }
+        }, "contact-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CompletableFuture<Integer> addFutureMeeting(
+                                          final Set<Contact> contacts,
+                                          final Calendar date) {
+        return publish(new Operation<Integer>(true) {
+            @Override
+            Integer apply() {
+                return manager.addFutureMeeting(contacts, date);
+            }
+        });
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CompletableFuture<PastMeeting> getPastMeeting(final int id) {
+        return query(new Supplier<PastMeeting>() {
+            @Override
+            public PastMeeting get() {
+                return manager.getPastMeeting(id);
+            }
+        });
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CompletableFuture<FutureMeeting> getFutureMeeting(final int id) {
+        return query(new Supplier<FutureMeeting>() {
+            @Override
+            public FutureMeeting get() {
+                return manager.getFutureMeeting(id);
+            }
+        });
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CompletableFuture<Meeting> getMeeting(final int id) {
+        return query(new Supplier<Meeting>() {
+            @Override
+            public Meeting get() {
+                return manager.getMeeting(id);
+            }
+        });
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CompletableFuture<List<Meeting>> getFutureMeetingList(
+                                                final Contact contact) {
+        return query(new Supplier<List<Meeting>>() {
+            @Override
+            public List<Meeting> get() {
+                return manager.getFutureMeetingList(contact);
+            }
+        });
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CompletableFuture<List<Meeting>> getFutureMeetingList(
+                                                final Calendar date) {
+        return query(new Supplier<List<Meeting>>() {
+            @Override
+            public List<Meeting> get() {
+                return manager.getFutureMeetingList(date);
+            }
+        });
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CompletableFuture<List<PastMeeting>> getPastMeetingList(
+                                                    final Contact contact) {
+        return query(new Supplier<List<PastMeeting>>() {
+            @Override
+            public List<PastMeeting> get() {
+                return manager.getPastMeetingList(contact);
+            }
+        });
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CompletableFuture<Void> addNewPastMeeting(
+                                       final Set<Contact> contacts,
+                                       final Calendar date,
+                                       final String text) {
+        return publish(new Operation<Void>(true) {
+            @Override
+            Void apply() {
+                manager.addNewPastMeeting(contacts, date, text);
+                return null;
+            }
+        });
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CompletableFuture<Void> addMeetingNotes(final int id,
+                                                   final String text) {
+        return publish(new Operation<Void>(true) {
+            @Override
+            Void apply() {
+                manager.addMeetingNotes(id, text);
+                return null;
+            }
+        });
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CompletableFuture<Void> cancelMeeting(final int id) {
+        return publish(new Operation<Void>(true) {
+            @Override
+            Void apply() {
+                manager.cancelMeeting(id);
+                return null;
+            }
+        });
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CompletableFuture<Void> rescheduleMeeting(
+                                       final int id, final Calendar date,
+                                       final Set<Contact> contacts) {
+        return publish(new Operation<Void>(true) {
+            @Override
+            Void apply() {
+                manager.rescheduleMeeting(id, date, contacts);
+                return null;
+            }
+        });
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CompletableFuture<Void> addNewContact(final String name,
+                                                 final String notes) {
+        return publish(new Operation<Void>(true) {
+            @Override
+            Void apply() {
+                manager.addNewContact(name, notes);
+                return null;
+            }
+        });
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CompletableFuture<Set<Contact>> getContacts(final int... ids) {
+        return query(new Supplier<Set<Contact>>() {
+            @Override
+            public Set<Contact> get() {
+                return manager.getContacts(ids);
+            }
+        });
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CompletableFuture<Set<Contact>> getContacts(final String name) {
+        return query(new Supplier<Set<Contact>>() {
+            @Override
+            public Set<Contact> get() {
+                return manager.getContacts(name);
+            }
+        });
+    }
+
+    /**
+     * Save all data to disk. The data is written by the writer thread
+     * in order with the mutations, holding only the read lock.
+     *
+     * @return a future that completes when the data is saved
+     */
+    @Override
+    public CompletableFuture<Void> flush() {
+        return publish(new Operation<Void>(false) {
+            @Override
+            Void apply() {
+                manager.flush();
+                return null;
+            }
+        });
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() {
+        closed = true;
+        LockSupport.unpark(writer);
+        boolean interrupted = false;
+        while (writer.isAlive() && Thread.currentThread() != writer) {
+            try {
+                writer.join();
+            } catch (InterruptedException interruptedJoin) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Returns the number of mutations waiting in the ring buffer.
+     *
+     * @return the number of pending mutations
+     */
+    public int getPending() {
+        return (int)(claimed.get() - consumed);
+    }
+
+    /**
+     * Helper method that runs a query on the readers executor
+     * while holding the read lock.
+     *
+     * @param query the query
+     * @return the future of the result of the query
+     */
+    private <T> CompletableFuture<T> query(final Supplier<T> query) {
+        if (closed) {
+            CompletableFuture<T> rejected = new CompletableFuture<T>();
+            rejected.completeExceptionally(
+                new IllegalStateException("Contact manager is closed!"));
+            return rejected;
+        }
+        return CompletableFuture.supplyAsync(new Supplier<T>() {
+            @Override
+            public T get() {
+                lock.readLock().lock();
+                try {
+                    return query.get();
+                } finally {
+                    lock.readLock().unlock();
+                }
+            }
+        }, readers);
+    }
+
+    /**
+     * Helper method that claims the next slot of the ring buffer,
+     * waiting while the buffer is full, and publishes an operation.
+     *
+     * IMPORTANT: A slot is claimed before checking if the manager is
+     *            closed. The writer only stops once every claimed slot
+     *            is published, so an operation is either applied or
+     *            rejected, but never lost.
+     *
+     * @param operation the operation
+     * @return the future of the result of the operation
+     */
+    private <T> CompletableFuture<T> publish(Operation<T> operation) {
+        long sequence = claimed.getAndIncrement();
+        if (closed) {
+            operation.future.completeExceptionally(
+                new IllegalStateException("Contact manager is closed!"));
+        }
+        while (sequence - consumed >= slots.length()) {
+            if (closed && !writer.isAlive()) {
+                return operation.future;
+            }
+            LockSupport.parkNanos(1000);
+        }
+        slots.set((int)(sequence & mask), operation);
+        if (writerWaiting) {
+            LockSupport.unpark(writer);
+        }
+        return operation.future;
+    }
+
+    /**
+     * Helper method run by the writer thread. It waits for published
+     * operations and applies them in batches until the manager is
+     * closed and every claimed slot is consumed.
+     */
+    private void consume() {
+        Operation<?>[] batch = new Operation<?>[batchSize];
+        long cursor = 0;
+        while (true) {
+            int size = 0;
+            while (size < batchSize) {
+                Operation<?> next = slots.get((int)((cursor + size) & mask));
+                if (next == null) {
+                    break;
+                }
+                batch[size++] = next;
+            }
+            if (size == 0) {
+                if (closed && cursor == claimed.get()) {
+                    return;
+                }
+                writerWaiting = true;
+                if (slots.get((int)(cursor & mask)) == null) {
+                    LockSupport.parkNanos(PARK_NANOS);
+                }
+                writerWaiting = false;
+                continue;
+            }
+            apply(batch, size);
+            for (int i = 0; i < size; i++) {
+                slots.set((int)((cursor + i) & mask), null);
+            }
+            cursor += size;
+            consumed = cursor;
+            for (int i = 0; i < size; i++) {
+                batch[i].complete();
+                batch[i] = null;
+            }
+        }
+    }
+
+    /**
+     * Helper method run by the writer thread if it cannot go on. It
+     * closes the manager and fails the operations of all claimed
+     * slots, including those still being published.
+     *
+     * @param fatal the failure that stopped the writer
+     */
+    private void abort(Throwable fatal) {
+        closed = true;
+        IllegalStateException stopped =
+            new IllegalStateException("Writer thread failed!", fatal);
+        long cursor = consumed;
+        while (cursor < claimed.get()) {
+            int index = (int)(cursor & mask);
+            Operation<?> next = slots.get(index);
+            if (next == null) {
+                // Claimed but not yet published.
+                LockSupport.parkNanos(1000);
+                continue;
+            }
+            next.future.completeExceptionally(stopped);
+            slots.set(index, null);
+            cursor++;
+            consumed = cursor;
+        }
+    }
+
+    /**
+     * Helper method that applies a batch of operations. Runs of
+     * mutations hold the write lock once, runs of flushes the read lock.
+     *
+     * @param batch the operations
+     * @param size the number of operations in the batch
+     */
+    private void apply(Operation<?>[] batch, int size) {
+        int i = 0;
+        while (i < size) {
+            boolean exclusive = batch[i].exclusive;
+            Lock held = exclusive ? lock.writeLock() : lock.readLock();
+            held.lock();
+            try {
+                while (i < size && batch[i].exclusive == exclusive) {
+                    batch[i++].run();
+                }
+            } finally {
+                held.unlock();
+            }
+        }
+    }
+
+    /**
+     * An operation published to the ring buffer, together with the
+     * future of its result.
+     */
+    private abstract static class Operation<T> {
+        private final CompletableFuture<T> future;
+        private final boolean exclusive;
+        private T result;
+        private Throwable failure;
+
+        /**
+         * @param exclusive true if the operation changes data and
+         *        needs the write lock, false for the read lock
+         */
+        private Operation(boolean exclusive) {
+            this.future = new CompletableFuture<T>();
+            this.exclusive = exclusive;
+        }
+
+        /**
+         * Runs the operation on the contact manager.
+         *
+         * @return the result of the operation
+         */
+        abstract T apply();
+
+        private void run() {
+            if (future.isDone()) {
+                // Rejected because the manager was closed.
+                return;
+            }
+            try {
+                result = apply();
+            } catch (Throwable failed) {
+                // Also errors such as a StackOverflowError, which only
+                // fail this operation instead of the writer thread.
+                failure = failed;
+            }
+        }
+
+        private void complete() {
+            if (failure != null) {
+                future.completeExceptionally(failure);
+            } else {
+                future.complete(result);
+            }
+        }
+    }
+}
@@ -0,0 +1,469 @@
+import java.util.*;
+import java.util.concurrent.*;
+import java.io.*;
+/**
+ * A contact manager that partitions its contacts and meetings
+ * across several shards, each stored in its own file.
+ *
+ * Every shard is a ContactManagerImpl. Contact and meeting IDs are
+ * handed out in the same order as by a single contact manager, and
+ * the object with ID n is owned by shard (n - 1) % shards. Meetings
+ * may have participants from any shard.
+ *
+ * Loading and flushing run in parallel across the shards. Queries
+ * that cannot be routed to a single shard are sent to all shards in
+ * parallel and their results are merged, keeping lists sorted
+ * chronologically.
+ *
+ * IMPORTANT: Close the contact manager when done with it, which saves
+ *            all shards and stops the threads working on them.
+ *
+ * @author Stefan E. Mayer
+ * @version 1.0
+ */
+public class ShardedContactManager implements ContactManager,
+                                              AutoCloseable {
+    private ContactManagerImpl[] shards;
+    private int lastContactId;
+    private int lastMeetingId;
+
+    private ExecutorService executor;
+
+    /**
+     * Create a new sharded contact manager that stores
+     * its shards in the current directory.
+     *
+     * @param shardCount the number of shards
+     * @throws IllegalArgumentException if there is not at least one shard
+     */
+    public ShardedContactManager(int shardCount) {
+        this(new File("."), shardCount);
+    }
+
+    /**
+     * Create a new sharded contact manager.
+     * Shards whose files exist are loaded from them,
+     * all others start out empty.
+     *
+     * @param directory the directory that holds the shard files
+     * @param shardCount the number of shards
+     * @throws IllegalArgumentException if there is not at least one shard
+     */
+    public ShardedContactManager(final File directory, int shardCount) {
+        if (shardCount < 1) {
+            throw new IllegalArgumentException("Need at least one shard!");
+        }
+        shards = new ContactManagerImpl[shardCount];
+        executor = Executors.newFixedThreadPool(shardCount,
+                                                new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable task) {
+                Thread thread = new Thread(task, "contact-shard");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+
+        List<Callable<ContactManagerImpl>> loads =
+            new ArrayList<Callable<ContactManagerImpl>>();
+        for (int i = 0; i < shardCount; i++) {
+            final File file = new File(directory, "contacts-" + i + ".txt");
+            final int firstId = i + 1;
+            loads.add(new Callable<ContactManagerImpl>() {
+                @Override
+                public ContactManagerImpl call() {
+                    return new Shard(file, firstId, shards.length);
+                }
+            });
+        }
+        List<ContactManagerImpl> loaded = invokeAll(loads);
+        Map<Integer, Contact> contactsById = new HashMap<Integer, Contact>();
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = loaded.get(i);
+            lastContactId = Math.max(lastContactId,
+                                     shards[i].getLastContactId());
+            lastMeetingId = Math.max(lastMeetingId,
+                                     shards[i].getLastMeetingId());
+            for (Contact contact : shards[i].getContacts("")) {
+                contactsById.put(contact.getId(), contact);
+            }
+        }
+        for (ContactManagerImpl shard : shards) {
+            shard.relinkContacts(contactsById);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int addFutureMeeting(Set<Contact> contacts, Calendar date) {
+        int id = lastMeetingId + 1;
+        shardOf(id).addFutureMeeting(contacts, date);
+        lastMeetingId = id;
+        return id;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public PastMeeting getPastMeeting(int id) {
+        return id <= 0 ? null : shardOf(id).getPastMeeting(id);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public FutureMeeting getFutureMeeting(int id) {
+        return id <= 0 ? null : shardOf(id).getFutureMeeting(id);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Meeting getMeeting(int id) {
+        return id <= 0 ? null : shardOf(id).getMeeting(id);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<Meeting> getFutureMeetingList(final Contact contact) {
+        if (!isKnownContact(contact)) {
+            throw new IllegalArgumentException("Contact is unknown!");
+        }
+        List<Callable<List<Meeting>>> queries =
+            new ArrayList<Callable<List<Meeting>>>();
+        for (final ContactManagerImpl shard : shards) {
+            queries.add(new Callable<List<Meeting>>() {
+                @Override
+                public List<Meeting> call() {
+                    return shard.getFutureMeetingList(contact);
+                }
+            });
+        }
+        return merge(invokeAll(queries));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<Meeting> getFutureMeetingList(final Calendar date) {
+        List<Callable<List<Meeting>>> queries =
+            new ArrayList<Callable<List<Meeting>>>();
+        for (final ContactManagerImpl shard : shards) {
+            queries.add(new Callable<List<Meeting>>() {
+                @Override
+                public List<Meeting> call() {
+                    return shard.getFutureMeetingList(date);
+                }
+            });
+        }
+        return merge(invokeAll(queries));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<PastMeeting> getPastMeetingList(final Contact contact) {
+        if (!isKnownContact(contact)) {
+            throw new IllegalArgumentException("Contact is unknown!");
+        }
+        List<Callable<List<PastMeeting>>> queries =
+            new ArrayList<Callable<List<PastMeeting>>>();
+        for (final ContactManagerImpl shard : shards) {
+            queries.add(new Callable<List<PastMeeting>>() {
+                @Override
+                public List<PastMeeting> call() {
+                    return shard.getPastMeetingList(contact);
+                }
+            });
+        }
+        return merge(invokeAll(queries));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void addNewPastMeeting(Set<Contact> contacts,
+                                  Calendar date, String text) {
+        int id = lastMeetingId + 1;
+        shardOf(id).addNewPastMeeting(contacts, date, text);
+        lastMeetingId = id;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void addMeetingNotes(int id, String text) {
+        if (id <= 0) {
+            throw new IllegalArgumentException("ID is not valid");
+        }
+        shardOf(id).addMeetingNotes(id, text);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void cancelMeeting(int id) {
+        if (id <= 0) {
+            throw new IllegalArgumentException("ID is not valid");
+        }
+        shardOf(id).cancelMeeting(id);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void rescheduleMeeting(int id, Calendar date,
+                                  Set<Contact> contacts) {
+        if (id <= 0) {
+            throw new IllegalArgumentException("ID is not valid");
+        }
+        shardOf(id).rescheduleMeeting(id, date, contacts);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void addNewContact(String name, String notes) {
+        int id = lastContactId + 1;
+        shardOf(id).addNewContact(name, notes);
+        lastContactId = id;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Set<Contact> getContacts(int... ids) {
+        Set<Contact> searched = new HashSet<Contact>();
+        for (int id : ids) {
+            if (id <= 0 || id > lastContactId) {
+                throw new IllegalArgumentException("ID is not valid");
+            }
+            searched.addAll(shardOf(id).getContacts(id));
+        }
+        return searched;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Set<Contact> getContacts(final String name) {
+        if (name == null) {
+            throw new NullPointerException("'null' is invalid as parameter!");
+        }
+        List<Callable<Set<Contact>>> queries =
+            new ArrayList<Callable<Set<Contact>>>();
+        for (final ContactManagerImpl shard : shards) {
+            queries.add(new Callable<Set<Contact>>() {
+                @Override
+                public Set<Contact> call() {
+                    return shard.getContacts(name);
+                }
+            });
+        }
+        Set<Contact> searched = new HashSet<Contact>();
+        for (Set<Contact> found : invokeAll(queries)) {
+            searched.addAll(found);
+        }
+        return searched;
+    }
+
+    /**
+     * Save all shards to disk, in parallel.
+     */
+    @Override
+    public void flush() {
+        List<Callable<Void>> flushes = new ArrayList<Callable<Void>>();
+        for (final ContactManagerImpl shard : shards) {
+            flushes.add(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    shard.flush();
+                    return null;
+                }
+            });
+        }
+        invokeAll(flushes);
+    }
+
+    /**
+     * Saves all shards to disk and stops the threads working on them.
+     * The contact manager cannot be used afterwards; closing it again
+     * has no effect.
+     */
+    @Override
+    public void close() {
+        if (executor.isShutdown()) {
+            return;
+        }
+        try {
+            flush();
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Registers a listener that is told about every change in any shard.
+     *
+     * @param listener the listener
+     * @throws NullPointerException if the listener is null
+     */
+    public void addChangeListener(ChangeListener listener) {
+        for (ContactManagerImpl shard : shards) {
+            shard.addChangeListener(listener);
+        }
+    }
+
+    /**
+     * Removes a listener registered with addChangeListener.
+     *
+     * @param listener the listener
+     */
+    public void removeChangeListener(ChangeListener listener) {
+        for (ContactManagerImpl shard : shards) {
+            shard.removeChangeListener(listener);
+        }
+    }
+
+    /**
+     * Returns the number of contacts in all shards.
+     *
+     * @return the number of contacts
+     */
+    public int getContactCount() {
+        int count = 0;
+        for (ContactManagerImpl shard : shards) {
+            count += shard.getContactCount();
+        }
+        return count;
+    }
+
+    /**
+     * Returns the number of meetings in all shards.
+     *
+     * @return the number of meetings
+     */
+    public int getMeetingCount() {
+        int count = 0;
+        for (ContactManagerImpl shard : shards) {
+            count += shard.getMeetingCount();
+        }
+        return count;
+    }
+
+    /**
+     * Returns the number of shards.
+     *
+     * @return the number of shards
+     */
+    public int getShardCount() {
+        return shards.length;
+    }
+
+    /**
+     * Helper method that returns the shard owning a contact or meeting ID.
+     *
+     * @param id a positive contact or meeting ID
+     * @return the shard owning the ID
+     */
+    private ContactManagerImpl shardOf(int id) {
+        return shards[(id - 1) % shards.length];
+    }
+
+    /**
+     * Helper method that checks if a contact is stored in its shard.
+     *
+     * @param contact the contact to check
+     * @return true if the contact is known, false otherwise
+     */
+    private boolean isKnownContact(Contact contact) {
+        return contact.getId() > 0
+               && shardOf(contact.getId()).containsContact(contact);
+    }
+
+    /**
+     * Helper method that runs tasks on all shards and waits for them.
+     * Runtime exceptions thrown by a task are rethrown unchanged.
+     *
+     * @param tasks the tasks to run
+     * @return the results, in the order of the tasks
+     * @throws IllegalStateException if the contact manager is closed
+     */
+    private <T> List<T> invokeAll(List<Callable<T>> tasks) {
+        List<T> results = new ArrayList<T>();
+        try {
+            for (Future<T> future : executor.invokeAll(tasks)) {
+                results.add(future.get());
+            }
+        } catch (RejectedExecutionException closed) {
+            throw new IllegalStateException("Contact manager is closed!");
+        } catch (InterruptedException interrupted) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted!", interrupted);
+        } catch (ExecutionException failed) {
+            if (failed.getCause() instanceof RuntimeException) {
+                throw (RuntimeException)failed.getCause();
+            }
+            throw new IllegalStateException(failed.getCause());
+        }
+        return results;
+    }
+
+    /**
+     * Helper method that merges chronologically sorted lists
+     * into a single chronologically sorted list.
+     *
+     * @param lists the sorted lists, one per shard
+     * @return the merged list
+     */
+    private <T extends Meeting> List<T> merge(List<List<T>> lists) {
+        List<T> merged = new ArrayList<T>();
+        int[] next = new int[lists.size()];
+        while (true) {
+            int earliest = -1;
+            for (int i = 0; i < lists.size(); i++) {
+                if (next[i] < lists.get(i).size()
+                    && (earliest == -1
+                        || lists.get(i).get(next[i]).getDate().before(
+                           lists.get(earliest).get(next[earliest])
+                                              .getDate()))) {
+                    earliest = i;
+                }
+            }
+            if (earliest == -1) {
+                return merged;
+            }
+            merged.add(lists.get(earliest).get(next[earliest]++));
+        }
+    }
+
+    /**
+     * A shard, which accepts participants owned by other shards.
+     */
+    private class Shard extends ContactManagerImpl {
+        private Shard(File config, int firstId, int idStep) {
+            super(config, firstId, idStep);
+        }
+
+        @Override
+        protected boolean isKnownContact(Contact contact) {
+            return ShardedContactManager.this.isKnownContact(contact);
+        }
+    }
+}
@@ -0,0 +1,136 @@
+import static org.junit.Assert.*;
+import org.junit.*;
+import java.util.*;
+import java.io.*;
+
+/**
+ * The test class ShardedContactManagerTester.
+ *
+ * @author  Stefan E. Mayer
+ * @version 1.0
+ */
+public class ShardedContactManagerTester {
+    private final static int SHARDS = 3;
+    private final static File DIRECTORY = new File(".");
+
+    private ContactManager manager;
+    private Calendar twoHoursEarlier;
+    private Calendar twoHoursLater;
+    private Calendar threeHoursLater;
+
+    /**
+     * Sets up the test fixture.
+     *
+     * Called before every test case method.
+     */
+    @Before
+    public void setUp() {
+        twoHoursEarlier = new GregorianCalendar();
+        twoHoursEarlier.add(Calendar.HOUR_OF_DAY, -2);
+        twoHoursLater = new GregorianCalendar();
+        twoHoursLater.add(Calendar.HOUR_OF_DAY, 2);
+        threeHoursLater = new GregorianCalendar();
+        threeHoursLater.add(Calendar.HOUR_OF_DAY, 3);
+
+        manager = new ShardedContactManager(DIRECTORY, SHARDS);
+        manager.addNewContact("c1", "notes1");
+        manager.addNewContact("c2", "notes2");
+        manager.addNewContact("c3", "notes3");
+        manager.addNewContact("c4", "notes4");
+    }
+
+    /**
+     * Tears down the test fixture.
+     *
+     * Called after every test case method.
+     */
+    @After
+    public void tearDown() {
+        manager = null;
+        for (int i = 0; i < SHARDS; i++) {
+            new File(DIRECTORY, "contacts-" + i + ".txt").delete();
+        }
+    }
+
+    /**
+     * Tests if IDs are handed out like by a single contact manager.
+     */
+    @Test
+    public void testIdsAreSequential() {
+        assertEquals(4, manager.getContacts(1, 2, 3, 4).size());
+        assertEquals(4, manager.getContacts("c").size());
+        assertEquals(1, manager.addFutureMeeting(manager.getContacts(1, 2),
+                                                 twoHoursLater));
+        assertEquals(2, manager.addFutureMeeting(manager.getContacts(3, 4),
+                                                 twoHoursLater));
+    }
+
+    /**
+     * Tests if meetings from several shards are merged chronologically.
+     */
+    @Test
+    public void testListsAreMergedChronologically() {
+        Set<Contact> c1 = manager.getContacts(1);
+        Contact contact = c1.iterator().next();
+        manager.addFutureMeeting(c1, threeHoursLater);
+        manager.addFutureMeeting(c1, twoHoursLater);
+        manager.addNewPastMeeting(c1, twoHoursEarlier, "notes");
+
+        List<Meeting> future = manager.getFutureMeetingList(contact);
+        assertEquals(2, future.size());
+        assertEquals(twoHoursLater, future.get(0).getDate());
+        assertEquals(threeHoursLater, future.get(1).getDate());
+        assertEquals(1, manager.getPastMeetingList(contact).size());
+    }
+
+    /**
+     * Tests if unknown contacts are rejected.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownContactException() {
+        Set<Contact> unknown = new HashSet<Contact>();
+        unknown.add(new ContactImpl(2, "c2", "notes2"));
+        manager.addFutureMeeting(unknown, twoHoursLater);
+    }
+
+    /**
+     * Tests if all shards are saved and loaded again.
+     */
+    @Test
+    public void testFlushAndLoad() {
+        manager.addFutureMeeting(manager.getContacts(1, 2, 3), twoHoursLater);
+        manager.flush();
+
+        ContactManager loaded = new ShardedContactManager(DIRECTORY, SHARDS);
+        assertEquals(4, loaded.getContacts("").size());
+        Contact c3 = loaded.getContacts(3).iterator().next();
+        // The participant must be the very contact owned by its shard
+        assertTrue(loaded.getMeeting(1).getContacts().contains(c3));
+        assertEquals(1, loaded.getFutureMeetingList(c3).size());
+        loaded.addNewContact("c5", "notes5");
+        assertEquals(1, loaded.getContacts(5).size());
+    }
+
+    /**
+     * Tests if closing saves all shards and stops the contact manager.
+     */
+    @Test
+    public void testClose() {
+        manager.addFutureMeeting(manager.getContacts(1, 2, 3), twoHoursLater);
+        ShardedContactManager sharded = (ShardedContactManager)manager;
+        sharded.close();
+        sharded.close();
+        try {
+            manager.getContacts("");
+            fail("Closed contact manager still answers");
+        } catch (IllegalStateException expected) {
+            // Closed contact managers cannot be used.
+        }
+
+        ShardedContactManager loaded =
+            new ShardedContactManager(DIRECTORY, SHARDS);
+        assertEquals(4, loaded.getContacts("").size());
+        assertNotNull(loaded.getMeeting(1));
+        loaded.close();
+    }
+}
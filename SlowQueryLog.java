@@ -0,0 +1,308 @@
+import java.util.*;
+import java.io.PrintStream;
+import java.text.SimpleDateFormat;
+/**
+ * A log of contact manager queries that took longer than a threshold.
+ *
+ * Every entry tells how many rows were examined and returned, how much
+ * of the time was spent sorting and whether an index such as the query
+ * cache answered the query, so that a slow query caused by a large
+ * result can be told apart from one caused by a large scan.
+ *
+ * IMPORTANT: Queries below the threshold only cost one comparison.
+ *            Slow queries are rate limited by a token bucket, so a
+ *            burst of slow queries cannot turn the log itself into a
+ *            bottleneck. Entries over the limit are counted and dropped.
+ *
+ * @author Stefan E. Mayer
+ * @version 1.0
+ */
+public class SlowQueryLog {
+    /**
+     * The number of entries kept in memory.
+     */
+    public static final int DEFAULT_CAPACITY = 100;
+    private static final int MAX_ARGUMENT_LENGTH = 32;
+
+    private volatile long thresholdNanos;
+    private final double entriesPerSecond;
+    private final PrintStream out;
+
+    private double tokens;
+    private long lastRefill;
+    private long logged;
+    private long suppressed;
+    private Deque<Entry> entries;
+
+    /**
+     * Create a new slow query log that prints up to 10 entries
+     * per second to System.err.
+     *
+     * @param thresholdMillis the minimum duration of a logged query
+     * @throws IllegalArgumentException if the threshold is negative
+     */
+    public SlowQueryLog(long thresholdMillis) {
+        this(thresholdMillis, 10, System.err);
+    }
+
+    /**
+     * Create a new slow query log.
+     *
+     * @param thresholdMillis the minimum duration of a logged query
+     * @param entriesPerSecond the maximum rate of logged queries,
+     *        which is also the largest burst
+     * @param out the stream entries are printed to, or null to only
+     *        keep them in memory
+     * @throws IllegalArgumentException if the threshold is negative
+     *         or the rate is not positive
+     */
+    public SlowQueryLog(long thresholdMillis, int entriesPerSecond,
+                        PrintStream out) {
+        if (entriesPerSecond <= 0) {
+            throw new IllegalArgumentException("Rate must be positive!");
+        }
+        setThresholdMillis(thresholdMillis);
+        this.entriesPerSecond = entriesPerSecond;
+        this.out = out;
+        this.tokens = entriesPerSecond;
+        this.lastRefill = System.nanoTime();
+        this.entries = new ArrayDeque<Entry>();
+    }
+
+    /**
+     * Sets the minimum duration of a logged query.
+     *
+     * @param thresholdMillis the threshold in milliseconds
+     * @throws IllegalArgumentException if the threshold is negative
+     */
+    public void setThresholdMillis(long thresholdMillis) {
+        if (thresholdMillis < 0) {
+            throw new IllegalArgumentException("Threshold is negative!");
+        }
+        thresholdNanos = thresholdMillis * 1000000;
+    }
+
+    /**
+     * Returns the minimum duration of a logged query.
+     *
+     * @return the threshold in milliseconds
+     */
+    public long getThresholdMillis() {
+        return thresholdNanos / 1000000;
+    }
+
+    /**
+     * Logs a query if it took at least the threshold.
+     *
+     * @param query the name of the query
+     * @param argument the argument of the query, summarized when logged
+     * @param startNanos the value of System.nanoTime() before the query
+     * @param rowsExamined the number of meetings or contacts examined
+     * @param rowsReturned the number of meetings or contacts returned
+     * @param sortNanos the time spent sorting
+     * @param indexUsed true if an index answered the query
+     */
+    public void record(String query, Object argument, long startNanos,
+                       long rowsExamined, int rowsReturned,
+                       long sortNanos, boolean indexUsed) {
+        long now = System.nanoTime();
+        long nanos = now - startNanos;
+        if (nanos < thresholdNanos || !tryAcquire(now)) {
+            return;
+        }
+        Entry entry = new Entry(System.currentTimeMillis(), query,
+                                summarize(argument), nanos, rowsExamined,
+                                rowsReturned, sortNanos, indexUsed);
+        synchronized (this) {
+            if (entries.size() == DEFAULT_CAPACITY) {
+                entries.removeFirst();
+            }
+            entries.addLast(entry);
+        }
+        if (out != null) {
+            out.println(entry);
+        }
+    }
+
+    /**
+     * Returns the most recent entries, oldest first.
+     *
+     * @return the most recent entries
+     */
+    public synchronized List<Entry> getEntries() {
+        return new ArrayList<Entry>(entries);
+    }
+
+    /**
+     * Returns the number of queries that were logged.
+     *
+     * @return the number of logged queries
+     */
+    public synchronized long getLogged() {
+        return logged;
+    }
+
+    /**
+     * Returns the number of slow queries that were dropped
+     * because of the rate limit.
+     *
+     * @return the number of dropped queries
+     */
+    public synchronized long getSuppressed() {
+        return suppressed;
+    }
+
+    /**
+     * Helper method that takes a token from the bucket,
+     * refilling it according to the elapsed time.
+     *
+     * @param now the current value of System.nanoTime()
+     * @return true if the query may be logged, false otherwise
+     */
+    private synchronized boolean tryAcquire(long now) {
+        tokens = Math.min(entriesPerSecond, tokens
+                          + (now - lastRefill) * entriesPerSecond / 1e9);
+        lastRefill = now;
+        if (tokens < 1) {
+            suppressed++;
+            return false;
+        }
+        tokens--;
+        logged++;
+        return true;
+    }
+
+    /**
+     * Helper method that summarizes a query argument in a short string.
+     *
+     * @param argument a contact, date, name or array of IDs
+     * @return a short description of the argument
+     */
+    private static String summarize(Object argument) {
+        if (argument instanceof Contact) {
+            return "contact " + ((Contact)argument).getId();
+        } else if (argument instanceof Calendar) {
+            SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd");
+            return format.format(((Calendar)argument).getTime());
+        } else if (argument instanceof int[]) {
+            int[] ids = (int[])argument;
+            return ids.length == 1 ? "id " + ids[0] : ids.length + " ids";
+        } else if (argument instanceof String) {
+            String text = (String)argument;
+            if (text.length() > MAX_ARGUMENT_LENGTH) {
+                text = text.substring(0, MAX_ARGUMENT_LENGTH) + "...";
+            }
+            return "\"" + text + "\"";
+        }
+        return String.valueOf(argument);
+    }
+
+    /**
+     * A logged slow query.
+     */
+    public static class Entry {
+        private final long timestamp;
+        private final String query;
+        private final String arguments;
+        private final long nanos;
+        private final long rowsExamined;
+        private final int rowsReturned;
+        private final long sortNanos;
+        private final boolean indexUsed;
+
+        private Entry(long timestamp, String query, String arguments,
+                      long nanos, long rowsExamined, int rowsReturned,
+                      long sortNanos, boolean indexUsed) {
+            this.timestamp = timestamp;
+            this.query = query;
+            this.arguments = arguments;
+            this.nanos = nanos;
+            this.rowsExamined = rowsExamined;
+            this.rowsReturned = rowsReturned;
+            this.sortNanos = sortNanos;
+            this.indexUsed = indexUsed;
+        }
+
+        /**
+         * Returns when the query finished.
+         *
+         * @return the time in milliseconds since the epoch
+         */
+        public long getTimestamp() {
+            return timestamp;
+        }
+
+        /**
+         * Returns the name of the query.
+         *
+         * @return the name of the query
+         */
+        public String getQuery() {
+            return query;
+        }
+
+        /**
+         * Returns a short description of the arguments.
+         *
+         * @return a short description of the arguments
+         */
+        public String getArguments() {
+            return arguments;
+        }
+
+        /**
+         * Returns the duration of the query.
+         *
+         * @return the duration in nanoseconds
+         */
+        public long getNanos() {
+            return nanos;
+        }
+
+        /**
+         * Returns the number of meetings or contacts examined.
+         *
+         * @return the number of rows examined
+         */
+        public long getRowsExamined() {
+            return rowsExamined;
+        }
+
+        /**
+         * Returns the number of meetings or contacts returned.
+         *
+         * @return the number of rows returned
+         */
+        public int getRowsReturned() {
+            return rowsReturned;
+        }
+
+        /**
+         * Returns the time spent sorting.
+         *
+         * @return the time spent sorting in nanoseconds
+         */
+        public long getSortNanos() {
+            return sortNanos;
+        }
+
+        /**
+         * Returns true if an index answered the query.
+         *
+         * @return true if an index was used, false for a full scan
+         */
+        public boolean isIndexUsed() {
+            return indexUsed;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Slow query %s [%s] took %.3f ms: "
+                                 + "%d rows examined, %d returned, "
+                                 + "%.3f ms sorting, %s",
+                                 query, arguments, nanos / 1e6,
+                                 rowsExamined, rowsReturned, sortNanos / 1e6,
+                                 indexUsed ? "index used" : "full scan");
+        }
+    }
+}
@@ -0,0 +1,111 @@
+import static org.junit.Assert.*;
+import org.junit.*;
+import java.util.*;
+import java.io.*;
+
+/**
+ * The test class SlowQueryLogTester.
+ *
+ * @author  Stefan E. Mayer
+ * @version 1.0
+ */
+public class SlowQueryLogTester {
+    private final static File FILE = new File("slow.txt");
+
+    private ContactManagerImpl manager;
+    private SlowQueryLog log;
+
+    /**
+     * Sets up the test fixture.
+     *
+     * Called before every test case method.
+     */
+    @Before
+    public void setUp() {
+        FILE.delete();
+        manager = new ContactManagerImpl(FILE);
+        manager.addNewContact("c1", "notes1");
+        manager.addNewContact("c2", "notes2");
+        Calendar later = new GregorianCalendar();
+        later.add(Calendar.HOUR_OF_DAY, 2);
+        manager.addFutureMeeting(manager.getContacts(1), later);
+        manager.addFutureMeeting(manager.getContacts(1, 2), later);
+        log = new SlowQueryLog(0, 3, null);
+        manager.setSlowQueryLog(log);
+    }
+
+    /**
+     * Tears down the test fixture.
+     *
+     * Called after every test case method.
+     */
+    @After
+    public void tearDown() {
+        manager = null;
+        log = null;
+        FILE.delete();
+    }
+
+    /**
+     * Tests if scans and cache hits are told apart.
+     */
+    @Test
+    public void testScanAndCacheHit() {
+        Contact c1 = manager.getContacts(1).iterator().next();
+        manager.getFutureMeetingList(c1);
+        manager.getFutureMeetingList(c1);
+        List<SlowQueryLog.Entry> entries = log.getEntries();
+        // The first entry is getContacts(1).
+        assertEquals(3, entries.size());
+        SlowQueryLog.Entry scan = entries.get(1);
+        assertEquals("getFutureMeetingList(Contact)", scan.getQuery());
+        assertEquals("contact 1", scan.getArguments());
+        assertEquals(2, scan.getRowsExamined());
+        assertEquals(2, scan.getRowsReturned());
+        assertFalse(scan.isIndexUsed());
+        SlowQueryLog.Entry hit = entries.get(2);
+        assertEquals(0, hit.getRowsExamined());
+        assertEquals(2, hit.getRowsReturned());
+        assertTrue(hit.isIndexUsed());
+    }
+
+    /**
+     * Tests if the rows of cancelled meetings count as examined,
+     * as the scan still walks them.
+     */
+    @Test
+    public void testRemovedRowsAreExamined() {
+        manager.cancelMeeting(1);
+        Contact c1 = manager.getContacts(1).iterator().next();
+        manager.getFutureMeetingList(c1);
+        List<SlowQueryLog.Entry> entries = log.getEntries();
+        SlowQueryLog.Entry scan = entries.get(entries.size() - 1);
+        assertEquals("getFutureMeetingList(Contact)", scan.getQuery());
+        assertEquals(2, scan.getRowsExamined());
+        assertEquals(1, scan.getRowsReturned());
+    }
+
+    /**
+     * Tests if slow queries beyond the rate limit are dropped.
+     */
+    @Test
+    public void testRateLimit() {
+        for (int i = 0; i < 10; i++) {
+            manager.getContacts("c");
+        }
+        assertEquals(3, log.getLogged());
+        assertEquals(7, log.getSuppressed());
+        assertEquals("\"c\"", log.getEntries().get(0).getArguments());
+    }
+
+    /**
+     * Tests if queries below the threshold are not logged.
+     */
+    @Test
+    public void testThreshold() {
+        log.setThresholdMillis(60000);
+        manager.getContacts("c");
+        assertEquals(0, log.getLogged());
+        assertEquals(0, log.getSuppressed());
+    }
+}
@@ -0,0 +1,163 @@
+import java.util.*;
+import java.io.*;
+/**
+ * A dictionary of strings shared by contacts and meetings.
+ *
+ * Names and notes are heavily repeated (company names, note templates,
+ * identical meeting notes). The dictionary hands out one canonical
+ * instance per distinct value, so equal strings are only stored once
+ * on the heap. Because the canonical instances are shared, Java
+ * serialization also writes every distinct value only once and encodes
+ * all further occurrences as back-references in the config file.
+ *
+ * Every value is reference counted, so that strings which are no longer
+ * used (e.g. overwritten notes) are dropped from the dictionary.
+ *
+ * The dictionary is thread-safe, as contacts change their notes through
+ * it from any thread holding them.
+ *
+ * @author Stefan E. Mayer
+ * @version 1.0
+ */
+public class StringDictionary implements Serializable {
+    // Fixed, as the dictionary is part of every saved file.
+    private static final long serialVersionUID = 8463261892869639122L;
+
+    private Map<String, Entry> entries;
+    private long references;
+
+    /**
+     * Create a new, empty dictionary.
+     */
+    public StringDictionary() {
+        entries = new HashMap<String, Entry>();
+        references = 0;
+    }
+
+    /**
+     * Returns the canonical instance of a string and
+     * registers one more reference to it.
+     *
+     * @param value the string to be interned
+     * @return the canonical instance, or null if the value is null
+     */
+    public synchronized String intern(String value) {
+        if (value == null) {
+            return null;
+        }
+        Entry entry = entries.get(value);
+        if (entry == null) {
+            entry = new Entry(value);
+            entries.put(value, entry);
+        }
+        entry.references++;
+        references++;
+        return entry.value;
+    }
+
+    /**
+     * Drops one reference to a string. The string is removed
+     * from the dictionary once it is no longer referenced.
+     *
+     * @param value the string that is no longer used
+     */
+    public synchronized void release(String value) {
+        if (value == null) {
+            return;
+        }
+        Entry entry = entries.get(value);
+        if (entry == null) {
+            return;
+        }
+        entry.references--;
+        references--;
+        if (entry.references == 0) {
+            entries.remove(value);
+        }
+    }
+
+    /**
+     * Returns the number of distinct strings in the dictionary.
+     *
+     * @return the number of distinct strings
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Returns the number of references to strings in the dictionary,
+     * i.e. how many strings would be stored without deduplication.
+     *
+     * @return the number of references
+     */
+    public synchronized long getReferences() {
+        return references;
+    }
+
+    /**
+     * Returns the deduplication ratio, i.e. the number of references
+     * per distinct string. A ratio of 1.0 means nothing was saved.
+     *
+     * @return the deduplication ratio, 1.0 for an empty dictionary
+     */
+    public synchronized double getDedupRatio() {
+        if (entries.isEmpty()) {
+            return 1.0;
+        }
+        return (double)references / entries.size();
+    }
+
+    /**
+     * Returns the approximate number of characters that are
+     * not stored thanks to deduplication.
+     *
+     * @return the number of characters saved
+     */
+    public synchronized long getSavedChars() {
+        long saved = 0;
+        for (Entry entry : entries.values()) {
+            saved += (long)(entry.references - 1) * entry.value.length();
+        }
+        return saved;
+    }
+
+    /**
+     * Returns a short summary of the dictionary statistics.
+     *
+     * @return a summary of the statistics
+     */
+    @Override
+    public synchronized String toString() {
+        return String.format("%d distinct strings, %d references, "
+                             + "dedup ratio %.2f, %d chars saved",
+                             size(), references,
+                             getDedupRatio(), getSavedChars());
+    }
+
+    /**
+     * Helper method that writes the dictionary while no string is
+     * interned or released.
+     *
+     * @param out the stream
+     * @throws IOException if the dictionary cannot be written
+     */
+    private synchronized void writeObject(ObjectOutputStream out)
+                                          throws IOException {
+        out.defaultWriteObject();
+    }
+
+    /**
+     * A canonical string and its reference count.
+     */
+    private static class Entry implements Serializable {
+        private static final long serialVersionUID = 5712228732006986220L;
+
+        private final String value;
+        private int references;
+
+        private Entry(String value) {
+            this.value = value;
+        }
+    }
+}
@@ -0,0 +1,184 @@
+import static org.junit.Assert.*;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import java.io.*;
+import java.nio.file.Files;
+import java.util.*;
+
+/**
+ * The test class StringDictionaryTester.
+ *
+ * @author  Stefan E. Mayer
+ * @version 1.0
+ */
+public class StringDictionaryTester {
+    private final static File FILE = new File("dictionary.txt");
+    // A file written before there was a dictionary: contacts 1 and 2
+    // with notes "ACME Ltd" and a past meeting of both on 1 March 2016
+    // at 9:00 UTC with notes "Kickoff".
+    private final static String FIRST_VERSION_FILE =
+        "rO0ABXNyABFqYXZhLnV0aWwuSGFzaFNldLpEhZWWuLc0AwAAeHB3DAAAABA/"
+        + "QAAAAAAAAnNyAAtDb250YWN0SW1wbHtruU+w3PTKAgADSQACaWRMAARuYW1l"
+        + "dAASTGphdmEvbGFuZy9TdHJpbmc7TAAFbm90ZXNxAH4AA3hwAAAAAXQAC0Fs"
+        + "aWNlIFNtaXRodAAIQUNNRSBMdGRzcQB+AAIAAAACdAAJQm9iIEpvbmVzcQB+"
+        + "AAZ4c3IAEWphdmEubGFuZy5JbnRlZ2VyEuKgpPeBhzgCAAFJAAV2YWx1ZXhy"
+        + "ABBqYXZhLmxhbmcuTnVtYmVyhqyVHQuU4IsCAAB4cAAAAAJzcgATamF2YS51"
+        + "dGlsLkFycmF5TGlzdHiB0h2Zx2GdAwABSQAEc2l6ZXhwAAAAAXcEAAAAAXNy"
+        + "AA9QYXN0TWVldGluZ0ltcGzZKMrnQvHwKwIAAUwABW5vdGVzcQB+AAN4cgAL"
+        + "TWVldGluZ0ltcGzFrFNNRJJlFQIAA0kAAmlkTAAIY29udGFjdHN0AA9MamF2"
+        + "YS91dGlsL1NldDtMAARkYXRldAAUTGphdmEvdXRpbC9DYWxlbmRhcjt4cAAA"
+        + "AAFzcQB+AAB3DAAAABA/QAAAAAAAAnEAfgAEcQB+AAd4c3IAG2phdmEudXRp"
+        + "bC5HcmVnb3JpYW5DYWxlbmRhco8919blsNDBAgABSgAQZ3JlZ29yaWFuQ3V0"
+        + "b3ZlcnhyABJqYXZhLnV0aWwuQ2FsZW5kYXLm6k0eyNxbjgMAC1oADGFyZUZp"
+        + "ZWxkc1NldEkADmZpcnN0RGF5T2ZXZWVrWgAJaXNUaW1lU2V0WgAHbGVuaWVu"
+        + "dEkAFm1pbmltYWxEYXlzSW5GaXJzdFdlZWtJAAluZXh0U3RhbXBJABVzZXJp"
+        + "YWxWZXJzaW9uT25TdHJlYW1KAAR0aW1lWwAGZmllbGRzdAACW0lbAAVpc1Nl"
+        + "dHQAAltaTAAEem9uZXQAFExqYXZhL3V0aWwvVGltZVpvbmU7eHABAAAAAQEB"
+        + "AAAAAQAAAAgAAAABAAABUzFnzoB1cgACW0lNumAmduqypQIAAHhwAAAAEQAA"
+        + "AAEAAAfgAAAAAgAAAAAAAAAAAAAAAQAAAAAAAAADAAAAAAAAAAAAAAAJAAAA"
+        + "CQAAAAAAAAAAAAAAAAAAAAAAAAAAdXIAAltaV48gORS4XeICAAB4cAAAABEA"
+        + "AQEAAAEAAAABAQEBAQAAAHNyABhqYXZhLnV0aWwuU2ltcGxlVGltZVpvbmX6"
+        + "Z11g0V71pgMAEkkACmRzdFNhdmluZ3NJAAZlbmREYXlJAAxlbmREYXlPZldl"
+        + "ZWtJAAdlbmRNb2RlSQAIZW5kTW9udGhJAAdlbmRUaW1lSQALZW5kVGltZU1v"
+        + "ZGVJAAlyYXdPZmZzZXRJABVzZXJpYWxWZXJzaW9uT25TdHJlYW1JAAhzdGFy"
+        + "dERheUkADnN0YXJ0RGF5T2ZXZWVrSQAJc3RhcnRNb2RlSQAKc3RhcnRNb250"
+        + "aEkACXN0YXJ0VGltZUkADXN0YXJ0VGltZU1vZGVJAAlzdGFydFllYXJaAAt1"
+        + "c2VEYXlsaWdodFsAC21vbnRoTGVuZ3RodAACW0J4cgASamF2YS51dGlsLlRp"
+        + "bWVab25lMbPp9XdErKECAAFMAAJJRHEAfgADeHB0AANVVEMANu6AAAAAAAAA"
+        + "AAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAIAAAAAAAAAAAAAAAAAAAAAAAAA"
+        + "AAAAAAAAAAAAAHVyAAJbQqzzF/gGCFTgAgAAeHAAAAAMHxwfHh8eHx8eHx4f"
+        + "dwoAAAAGAAAAAAAAdXEAfgAaAAAAAgAAAAAAAAAAeHNyABpzdW4udXRpbC5j"
+        + "YWxlbmRhci5ab25lSW5mbyTR084AHXGbAgAISQAIY2hlY2tzdW1JAApkc3RT"
+        + "YXZpbmdzSQAJcmF3T2Zmc2V0SQANcmF3T2Zmc2V0RGlmZloAE3dpbGxHTVRP"
+        + "ZmZzZXRDaGFuZ2VbAAdvZmZzZXRzcQB+ABZbABRzaW1wbGVUaW1lWm9uZVBh"
+        + "cmFtc3EAfgAWWwALdHJhbnNpdGlvbnN0AAJbSnhxAH4AIHEAfgAiAAAAAAAA"
+        + "AAAAAAAAAAAAAABwcHB4///04vlkrAB0AAdLaWNrb2ZmeHNxAH4ACQAAAAE=";
+
+    StringDictionary dictionary;
+
+    /**
+     * Sets up the test fixture.
+     *
+     * Called before every test case method.
+     */
+    @Before
+    public void setUp() {
+        dictionary = new StringDictionary();
+    }
+
+    /**
+     * Tears down the test fixture.
+     *
+     * Called after every test case method.
+     */
+    @After
+    public void tearDown() {
+        dictionary = null;
+        FILE.delete();
+    }
+
+    /**
+     * Tests if equal strings are mapped to the same instance.
+     */
+    @Test
+    public void testInternReturnsCanonicalInstance() {
+        String first = dictionary.intern(new String("ACME Ltd"));
+        String second = dictionary.intern(new String("ACME Ltd"));
+        assertSame(first, second);
+        assertEquals(1, dictionary.size());
+        assertEquals(2, dictionary.getReferences());
+    }
+
+    /**
+     * Tests if unused strings are dropped from the dictionary.
+     */
+    @Test
+    public void testReleaseDropsUnusedStrings() {
+        dictionary.intern("notes");
+        dictionary.intern("notes");
+        dictionary.release("notes");
+        assertEquals(1, dictionary.size());
+        dictionary.release("notes");
+        assertEquals(0, dictionary.size());
+        assertEquals(0, dictionary.getReferences());
+    }
+
+    /**
+     * Tests the reported deduplication ratio.
+     */
+    @Test
+    public void testDedupRatio() {
+        assertEquals(1.0, dictionary.getDedupRatio(), 0.001);
+        dictionary.intern("a");
+        dictionary.intern("a");
+        dictionary.intern("a");
+        dictionary.intern("b");
+        assertEquals(2.0, dictionary.getDedupRatio(), 0.001);
+        assertEquals(2, dictionary.getSavedChars());
+    }
+
+    /**
+     * Tests if contacts share their notes through the dictionary.
+     */
+    @Test
+    public void testContactNotesAreInterned() {
+        Contact c1 = new ContactImpl(1, "c1", new String("same"), dictionary);
+        Contact c2 = new ContactImpl(2, "c2", new String("same"), dictionary);
+        assertSame(c1.getNotes(), c2.getNotes());
+
+        c1.addNotes("different");
+        assertEquals("different", c1.getNotes());
+        assertEquals(4, dictionary.size());
+    }
+
+    /**
+     * Tests if a file written before there was a dictionary still loads,
+     * with its names and notes interned into a new dictionary.
+     */
+    @Test
+    public void testFirstVersionFile() throws IOException {
+        Files.write(FILE.toPath(),
+                    Base64.getDecoder().decode(FIRST_VERSION_FILE));
+        ContactManagerImpl manager = new ContactManagerImpl(FILE);
+        Contact alice = manager.getContacts(1).iterator().next();
+        Contact bob = manager.getContacts(2).iterator().next();
+        assertEquals("Alice Smith", alice.getName());
+        assertSame(alice.getNotes(), bob.getNotes());
+        List<PastMeeting> past = manager.getPastMeetingList(alice);
+        assertEquals(1, past.size());
+        assertEquals("Kickoff", past.get(0).getNotes());
+        assertEquals(1456822800000L, past.get(0).getDate().getTimeInMillis());
+        assertEquals(4, manager.getDictionary().size());
+        assertEquals(5, manager.getDictionary().getReferences());
+
+        // New notes release the old ones; the file is written anew.
+        alice.addNotes("Globex");
+        assertEquals(5, manager.getDictionary().size());
+        assertEquals(5, manager.getDictionary().getReferences());
+        manager.addNewContact("Carol", "Globex");
+        manager.flush();
+        manager = new ContactManagerImpl(FILE);
+        assertEquals(3, manager.getContacts("").size());
+        assertEquals(7, manager.getDictionary().getReferences());
+        assertSame(manager.getContacts(1).iterator().next().getNotes(),
+                   manager.getContacts(3).iterator().next().getNotes());
+    }
+
+    /**
+     * Tests if the notes of a contact do not write the dictionary with
+     * the contact.
+     */
+    @Test
+    public void testDictionaryNotWrittenWithContact() throws IOException {
+        Contact contact = new ContactImpl(1, "c1", "notes", dictionary);
+        for (int i = 0; i < 1000; i++) {
+            dictionary.intern("value " + i);
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(contact);
+        }
+        assertTrue(bytes.size() < 200);
+    }
+}
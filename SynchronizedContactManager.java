@@ -0,0 +1,235 @@
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+/**
+ * A thread-safe view of a contact manager.
+ *
+ * Queries hold a shared read lock and may run concurrently, while
+ * mutations and flush() hold the exclusive write lock.
+ *
+ * @author Stefan E. Mayer
+ * @version 1.0
+ */
+public class SynchronizedContactManager implements ContactManager {
+    private ContactManager manager;
+    private ReadWriteLock lock;
+
+    /**
+     * Create a new thread-safe view of a contact manager.
+     *
+     * The contact manager must not be used directly any more.
+     *
+     * @param manager the contact manager
+     */
+    public SynchronizedContactManager(ContactManager manager) {
+        this.manager = manager;
+        this.lock = new ReentrantReadWriteLock();
+    }
+
+    /**
+     * Returns the lock guarding the contact manager, e.g. to run
+     * several operations atomically.
+     *
+     * @return the lock guarding the contact manager
+     */
+    public ReadWriteLock getLock() {
+        return lock;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int addFutureMeeting(Set<Contact> contacts, Calendar date) {
+        lock.writeLock().lock();
+        try {
+            return manager.addFutureMeeting(contacts, date);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public PastMeeting getPastMeeting(int id) {
+        lock.readLock().lock();
+        try {
+            return manager.getPastMeeting(id);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public FutureMeeting getFutureMeeting(int id) {
+        lock.readLock().lock();
+        try {
+            return manager.getFutureMeeting(id);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Meeting getMeeting(int id) {
+        lock.readLock().lock();
+        try {
+            return manager.getMeeting(id);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<Meeting> getFutureMeetingList(Contact contact) {
+        lock.readLock().lock();
+        try {
+            return manager.getFutureMeetingList(contact);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<Meeting> getFutureMeetingList(Calendar date) {
+        lock.readLock().lock();
+        try {
+            return manager.getFutureMeetingList(date);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<PastMeeting> getPastMeetingList(Contact contact) {
+        lock.readLock().lock();
+        try {
+            return manager.getPastMeetingList(contact);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void addNewPastMeeting(Set<Contact> contacts,
+                                  Calendar date, String text) {
+        lock.writeLock().lock();
+        try {
+            manager.addNewPastMeeting(contacts, date, text);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void addMeetingNotes(int id, String text) {
+        lock.writeLock().lock();
+        try {
+            manager.addMeetingNotes(id, text);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void cancelMeeting(int id) {
+        lock.writeLock().lock();
+        try {
+            manager.cancelMeeting(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void rescheduleMeeting(int id, Calendar date,
+                                  Set<Contact> contacts) {
+        lock.writeLock().lock();
+        try {
+            manager.rescheduleMeeting(id, date, contacts);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void addNewContact(String name, String notes) {
+        lock.writeLock().lock();
+        try {
+            manager.addNewContact(name, notes);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Set<Contact> getContacts(int... ids) {
+        lock.readLock().lock();
+        try {
+            return manager.getContacts(ids);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Set<Contact> getContacts(String name) {
+        lock.readLock().lock();
+        try {
+            return manager.getContacts(name);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void flush() {
+        lock.writeLock().lock();
+        try {
+            manager.flush();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+}
@@ -0,0 +1,130 @@
+import java.util.*;
+import java.io.File;
+import java.io.IOException;
+/**
+ * Runs the benchmarked operations on a ContactManagerImpl
+ * filled by the DatasetGenerator.
+ *
+ * @author Stefan E. Mayer
+ * @version 1.0
+ */
+public class ContactManagerWorkload implements benchmark.Workload {
+    private static final int DAYS = 2 * 365;
+
+    private File config;
+    private ContactManagerImpl manager;
+    private Contact[] contacts;
+    private Calendar[] days;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setUp(int contactCount, int meetingCount, long seed) {
+        try {
+            config = File.createTempFile("contacts-benchmark", ".txt");
+        } catch (IOException io) {
+            throw new IllegalStateException(io);
+        }
+        // The temporary file is empty, the manager must not load it.
+        config.delete();
+        manager = new ContactManagerImpl(config);
+        contacts = new DatasetGenerator(seed).fill(manager, contactCount,
+                                                   meetingCount);
+        // Dates from two years ago up to two years ahead
+        days = new Calendar[2 * DAYS + 1];
+        for (int i = 0; i < days.length; i++) {
+            days[i] = new GregorianCalendar();
+            days[i].add(Calendar.DATE, i - DAYS);
+        }
+        manager.flush();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void tearDown() {
+        config.delete();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Object getMeeting(int id) {
+        return manager.getMeeting(id);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Object getContacts(int... ids) {
+        return manager.getContacts(ids);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Object getContacts(String name) {
+        return manager.getContacts(name);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Object getFutureMeetingList(int contactId) {
+        return manager.getFutureMeetingList(contacts[contactId - 1]);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Object getFutureMeetingListOnDay(int dayOffset) {
+        return manager.getFutureMeetingList(days[dayOffset + DAYS]);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Object getPastMeetingList(int contactId) {
+        return manager.getPastMeetingList(contacts[contactId - 1]);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void clearQueryCache() {
+        manager.getQueryCache().clear();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void addMeetingNotes(int id, String text) {
+        manager.addMeetingNotes(id, text);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void flush() {
+        manager.flush();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Object load() {
+        return new ContactManagerImpl(config);
+    }
+}
@@ -0,0 +1,123 @@
+import java.util.*;
+import java.io.File;
+/**
+ * Generates synthetic contact managers for benchmarks.
+ *
+ * The same seed always produces the same contacts (names and notes,
+ * built from a small set of words, so strings repeat like in real data)
+ * and the same meetings (participants, notes and dates relative to the
+ * time of generation). Half of the meetings are past meetings within
+ * the last two years, the other half future meetings within the next
+ * two years.
+ *
+ * @author Stefan E. Mayer
+ * @version 1.0
+ */
+public class DatasetGenerator {
+    private static final String[] FIRST_NAMES = {
+        "Alice", "Bob", "Carol", "Dave", "Erin", "Frank", "Grace", "Heidi",
+        "Ivan", "Judy", "Mallory", "Niaj", "Olivia", "Peggy", "Rupert",
+        "Sybil", "Trent", "Victor", "Walter", "Zoe"
+    };
+    private static final String[] LAST_NAMES = {
+        "Smith", "Jones", "Taylor", "Brown", "Williams", "Wilson", "Johnson",
+        "Davies", "Robinson", "Wright", "Thompson", "Evans", "Walker",
+        "White", "Roberts", "Green", "Hall", "Wood", "Jackson", "Clarke"
+    };
+    private static final String[] COMPANIES = {
+        "ACME Ltd", "Globex", "Initech", "Umbrella", "Hooli", "Stark Industries",
+        "Wayne Enterprises", "Cyberdyne", "Soylent", "Tyrell Corporation"
+    };
+    private static final String[] NOTES = {
+        "", "Prefers email.", "Call before noon.", "Decision maker.",
+        "Met at the trade fair.", "Follow up next quarter."
+    };
+    private static final String[] MEETING_NOTES = {
+        "Agreed on next steps.", "Discussed the budget.",
+        "Contract signed.", "No decision yet, follow up in two weeks.",
+        "Reviewed the project plan and open issues."
+    };
+    private static final long TWO_YEARS = 2L * 365 * 24 * 60 * 60 * 1000;
+    private static final int MAX_PARTICIPANTS = 5;
+
+    private long seed;
+
+    /**
+     * Create a new generator.
+     *
+     * @param seed the seed, equal seeds generate equal datasets
+     */
+    public DatasetGenerator(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * Returns the name of a generated contact.
+     *
+     * @param id the ID of the contact
+     * @return the name of the contact
+     */
+    public static String nameOf(int id) {
+        return FIRST_NAMES[id % FIRST_NAMES.length] + " "
+               + LAST_NAMES[(id / FIRST_NAMES.length) % LAST_NAMES.length]
+               + " (" + COMPANIES[id % COMPANIES.length] + ")";
+    }
+
+    /**
+     * Fills a contact manager with contacts and meetings. Meeting IDs
+     * 1, 3, 5, ... are past meetings, 2, 4, 6, ... are future meetings.
+     *
+     * @param manager an empty contact manager
+     * @param contacts the number of contacts
+     * @param meetings the number of meetings
+     * @return all contacts, the contact with ID n at index n - 1
+     */
+    public Contact[] fill(ContactManager manager, int contacts, int meetings) {
+        Random random = new Random(seed);
+        for (int id = 1; id <= contacts; id++) {
+            manager.addNewContact(nameOf(id),
+                                  NOTES[random.nextInt(NOTES.length)]);
+        }
+        Contact[] all = new Contact[contacts];
+        for (Contact contact : manager.getContacts("")) {
+            all[contact.getId() - 1] = contact;
+        }
+
+        long now = System.currentTimeMillis();
+        for (int id = 1; id <= meetings; id++) {
+            Set<Contact> participants = new HashSet<Contact>();
+            int count = 1 + random.nextInt(MAX_PARTICIPANTS);
+            for (int i = 0; i < count; i++) {
+                participants.add(all[random.nextInt(contacts)]);
+            }
+            long offset = 60000 + (long)(random.nextDouble() * TWO_YEARS);
+            Calendar date = new GregorianCalendar();
+            if (id % 2 == 1) {
+                date.setTimeInMillis(now - offset);
+                manager.addNewPastMeeting(participants, date,
+                    MEETING_NOTES[random.nextInt(MEETING_NOTES.length)]);
+            } else {
+                date.setTimeInMillis(now + offset);
+                manager.addFutureMeeting(participants, date);
+            }
+        }
+        return all;
+    }
+
+    /**
+     * Creates a new contact manager, stored in the given file,
+     * and fills it with contacts and meetings.
+     *
+     * @param config the file of the contact manager, deleted first
+     * @param contacts the number of contacts
+     * @param meetings the number of meetings
+     * @return the filled contact manager
+     */
+    public ContactManagerImpl generate(File config, int contacts,
+                                       int meetings) {
+        config.delete();
+        ContactManagerImpl manager = new ContactManagerImpl(config);
+        fill(manager, contacts, meetings);
+        return manager;
+    }
+}
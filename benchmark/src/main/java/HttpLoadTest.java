@@ -0,0 +1,192 @@
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.io.*;
+import java.net.HttpURLConnection;
+import java.net.URL;
+/**
+ * A loopback load test of ContactManagerServer.
+ *
+ * The test starts a server on a free port for a generated dataset and
+ * runs a series of steps with more and more concurrent clients. Every
+ * client holds its own keep-alive connection and sends requests for
+ * contacts, meeting lists and days back to back. For every step the
+ * throughput, the p50, p99 and p99.9 latencies and the number of
+ * errors are printed, so it shows how the server scales with the
+ * number of open connections.
+ *
+ * Options (all optional):
+ *   --clients a,b,c      concurrent clients per step
+ *                        (default 16,64,256,1024)
+ *   --seconds s          duration of every step (default 10)
+ *   --contacts n         contacts in the dataset (default 10000)
+ *   --meetings n         meetings in the dataset (default 100000)
+ *
+ * @author Stefan E. Mayer
+ * @version 1.0
+ */
+public class HttpLoadTest {
+    private static final long SEED = 42;
+    private static final int DAYS = 2 * 365;
+
+    private int[] clients = {16, 64, 256, 1024};
+    private int seconds = 10;
+    private int contactCount = 10000;
+    private int meetingCount = 100000;
+
+    private String base;
+    private volatile boolean running;
+
+    /**
+     * Runs the load test.
+     *
+     * @param args the options, see the class comment
+     * @throws Exception if the server cannot be started
+     */
+    public static void main(String[] args) throws Exception {
+        HttpLoadTest test = new HttpLoadTest();
+        test.parse(args);
+        test.run();
+    }
+
+    /**
+     * Helper method that parses the command line options.
+     */
+    private void parse(String[] args) {
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            String value = args[i + 1];
+            switch (args[i]) {
+                case "--seconds": seconds = Integer.parseInt(value); break;
+                case "--contacts": contactCount = Integer.parseInt(value); break;
+                case "--meetings": meetingCount = Integer.parseInt(value); break;
+                case "--clients":
+                    String[] steps = value.split(",");
+                    clients = new int[steps.length];
+                    for (int s = 0; s < steps.length; s++) {
+                        clients[s] = Integer.parseInt(steps[s].trim());
+                    }
+                    break;
+                default:
+                    throw new IllegalArgumentException(
+                              "Unknown option " + args[i]);
+            }
+        }
+    }
+
+    /**
+     * Helper method that sets up the server and runs every step.
+     */
+    private void run() throws Exception {
+        int maxClients = 0;
+        for (int step : clients) {
+            maxClients = Math.max(maxClients, step);
+        }
+        // Keep one pooled connection per client instead of the default 5.
+        System.setProperty("http.maxConnections", String.valueOf(maxClients));
+        // See ContactManagerServer; must be set before it is created.
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+
+        File config = File.createTempFile("contacts-http", ".txt");
+        config.delete();
+        config.deleteOnExit();
+        System.out.printf("Generating %d contacts and %d meetings...%n",
+                          contactCount, meetingCount);
+        ContactManagerImpl impl = new ContactManagerImpl(config);
+        new DatasetGenerator(SEED).fill(impl, contactCount, meetingCount);
+        ContactManagerServer server = new ContactManagerServer(
+            new SynchronizedContactManager(impl), 0);
+        server.start();
+        base = "http://localhost:" + server.getPort();
+
+        System.out.printf("%8s %10s %10s %10s %10s %10s %8s%n", "clients",
+                          "req/s", "p50[us]", "p99[us]", "p99.9[us]",
+                          "max[us]", "errors");
+        for (int step : clients) {
+            runStep(step);
+        }
+        server.stop(0);
+    }
+
+    /**
+     * Helper method that runs one step with a number of clients.
+     */
+    private void runStep(int clientCount) throws InterruptedException {
+        final LatencyHistogram latencies = new LatencyHistogram();
+        final AtomicLong errors = new AtomicLong();
+        running = true;
+        Thread[] threads = new Thread[clientCount];
+        for (int i = 0; i < clientCount; i++) {
+            final Random random = new Random(SEED + i);
+            threads[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    while (running) {
+                        long start = System.nanoTime();
+                        if (request(path(random))) {
+                            latencies.record(System.nanoTime() - start);
+                        } else {
+                            errors.incrementAndGet();
+                        }
+                    }
+                }
+            }, "http-client-" + i);
+            threads[i].setDaemon(true);
+            threads[i].start();
+        }
+        Thread.sleep(seconds * 1000L);
+        running = false;
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        System.out.printf("%8d %10.0f %10.1f %10.1f %10.1f %10.1f %8d%n",
+                          clientCount, (double)latencies.getCount() / seconds,
+                          latencies.getValueAtPercentile(50) / 1000.0,
+                          latencies.getValueAtPercentile(99) / 1000.0,
+                          latencies.getValueAtPercentile(99.9) / 1000.0,
+                          latencies.getMax() / 1000.0, errors.get());
+    }
+
+    /**
+     * Helper method that picks the path of the next request.
+     */
+    private String path(Random random) {
+        int contact = 1 + random.nextInt(contactCount);
+        switch (random.nextInt(4)) {
+            case 0:
+                return "/contacts/" + contact;
+            case 1:
+                return "/contacts/" + contact + "/meetings?when=future";
+            case 2:
+                return "/contacts/" + contact + "/meetings?when=past";
+            default:
+                Calendar day = new GregorianCalendar();
+                day.add(Calendar.DATE, random.nextInt(2 * DAYS + 1) - DAYS);
+                return String.format("/meetings?date=%tF&limit=50", day);
+        }
+    }
+
+    /**
+     * Helper method that sends a request and reads the whole response,
+     * so that the connection can be reused.
+     *
+     * @return true if the request succeeded, false otherwise
+     */
+    private boolean request(String path) {
+        try {
+            HttpURLConnection connection =
+                (HttpURLConnection)new URL(base + path).openConnection();
+            int status = connection.getResponseCode();
+            InputStream in = status == 200 ? connection.getInputStream()
+                                           : connection.getErrorStream();
+            if (in != null) {
+                in.readAllBytes();
+                in.close();
+            }
+            return status == 200;
+        } catch (IOException failed) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,453 @@
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.concurrent.locks.LockSupport;
+import java.io.*;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+/**
+ * A multi-threaded load and soak test harness for the contact manager.
+ *
+ * The harness drives a SynchronizedContactManager, filled by the
+ * DatasetGenerator, with a configurable mix of operations, or replays
+ * a recorded operation log. Every report interval it prints the
+ * throughput, the p50, p99 and p99.9 latencies and the time spent in
+ * garbage collection, so that latency drift and GC stalls show up in
+ * long runs. A summary per operation is printed at the end.
+ *
+ * With a target rate, operations are scheduled at fixed intervals and
+ * latencies are measured from the intended start time, so a stalled
+ * manager is not hidden by the harness waiting for it (coordinated
+ * omission).
+ *
+ * Options (all optional):
+ *   --threads n          worker threads (default 4)
+ *   --duration s         run time in seconds (default 60)
+ *   --rate n             target operations per second, 0 = unlimited
+ *   --contacts n         contacts in the dataset (default 10000)
+ *   --meetings n         meetings in the dataset (default 100000)
+ *   --mix a,b,c,d,e      weights of FUTURE_BY_CONTACT, PAST_BY_CONTACT,
+ *                        BY_DAY, ADD_FUTURE_MEETING and BY_NAME
+ *                        (default 30,30,30,9,1)
+ *   --flush-every s      seconds between flush() calls, 0 = never
+ *                        (default 30)
+ *   --interval s         seconds between reports (default 10)
+ *   --replay file        replay an operation log instead of the mix
+ *
+ * An operation log has one operation per line:
+ *   offsetMillis FUTURE_BY_CONTACT contactId
+ *   offsetMillis PAST_BY_CONTACT contactId
+ *   offsetMillis BY_DAY daysFromToday
+ *   offsetMillis ADD_FUTURE_MEETING contactId,contactId,... minutesAhead
+ *   offsetMillis BY_NAME text
+ *   offsetMillis FLUSH
+ *
+ * @author Stefan E. Mayer
+ * @version 1.0
+ */
+public class LoadHarness {
+    private static final long SEED = 42;
+    private static final int DAYS = 2 * 365;
+
+    /**
+     * The operations driven by the harness.
+     */
+    enum Operation {
+        FUTURE_BY_CONTACT, PAST_BY_CONTACT, BY_DAY,
+        ADD_FUTURE_MEETING, BY_NAME, FLUSH
+    }
+
+    private int threads = 4;
+    private int duration = 60;
+    private int rate = 0;
+    private int contactCount = 10000;
+    private int meetingCount = 100000;
+    private int[] mix = {30, 30, 30, 9, 1};
+    private int flushEvery = 30;
+    private int interval = 10;
+    private String replay;
+
+    private ContactManager manager;
+    private Contact[] contacts;
+    private List<String[]> log;
+    private AtomicInteger nextLogEntry = new AtomicInteger();
+
+    private Map<Operation, LatencyHistogram> totals =
+        new EnumMap<Operation, LatencyHistogram>(Operation.class);
+    private IntervalRecorder current = new IntervalRecorder();
+    private AtomicLong errors = new AtomicLong();
+    private volatile boolean running = true;
+
+    /**
+     * Runs the harness.
+     *
+     * @param args the options, see the class comment
+     * @throws Exception if the operation log cannot be read
+     */
+    public static void main(String[] args) throws Exception {
+        LoadHarness harness = new LoadHarness();
+        harness.parse(args);
+        harness.run();
+    }
+
+    /**
+     * Helper method that parses the command line options.
+     */
+    private void parse(String[] args) {
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            String value = args[i + 1];
+            switch (args[i]) {
+                case "--threads": threads = Integer.parseInt(value); break;
+                case "--duration": duration = Integer.parseInt(value); break;
+                case "--rate": rate = Integer.parseInt(value); break;
+                case "--contacts": contactCount = Integer.parseInt(value); break;
+                case "--meetings": meetingCount = Integer.parseInt(value); break;
+                case "--flush-every": flushEvery = Integer.parseInt(value); break;
+                case "--interval": interval = Integer.parseInt(value); break;
+                case "--replay": replay = value; break;
+                case "--mix":
+                    String[] weights = value.split(",");
+                    int total = 0;
+                    for (int w = 0; w < mix.length; w++) {
+                        mix[w] = w < weights.length
+                                 ? Integer.parseInt(weights[w].trim()) : 0;
+                        if (mix[w] < 0) {
+                            throw new IllegalArgumentException(
+                                      "Negative weight in --mix " + value);
+                        }
+                        total += mix[w];
+                    }
+                    if (total == 0) {
+                        throw new IllegalArgumentException(
+                                  "All weights are 0 in --mix " + value);
+                    }
+                    break;
+                default:
+                    throw new IllegalArgumentException(
+                              "Unknown option " + args[i]);
+            }
+        }
+    }
+
+    /**
+     * Helper method that sets up the dataset, runs
+     * the workers and prints the reports.
+     */
+    private void run() throws Exception {
+        if (replay != null) {
+            log = readLog(replay);
+        }
+        File config = File.createTempFile("contacts-harness", ".txt");
+        config.delete();
+        config.deleteOnExit();
+        System.out.printf("Generating %d contacts and %d meetings...%n",
+                          contactCount, meetingCount);
+        ContactManagerImpl impl = new ContactManagerImpl(config);
+        contacts = new DatasetGenerator(SEED).fill(impl, contactCount,
+                                                   meetingCount);
+        manager = new SynchronizedContactManager(impl);
+        for (Operation operation : Operation.values()) {
+            totals.put(operation, new LatencyHistogram());
+        }
+
+        ScheduledExecutorService scheduler =
+            Executors.newScheduledThreadPool(2);
+        if (flushEvery > 0) {
+            scheduler.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    long start = System.nanoTime();
+                    execute(Operation.FLUSH, null, new Random());
+                    record(Operation.FLUSH, start, System.nanoTime());
+                }
+            }, flushEvery, flushEvery, TimeUnit.SECONDS);
+        }
+        final long startNanos = System.nanoTime();
+        System.out.printf("%8s %10s %10s %10s %10s %10s %8s%n", "time[s]",
+                          "ops/s", "p50[us]", "p99[us]", "p99.9[us]",
+                          "max[us]", "gc[ms]");
+        scheduler.scheduleAtFixedRate(new Runnable() {
+            private long lastGc = gcMillis();
+
+            @Override
+            public void run() {
+                LatencyHistogram done = current.swap();
+                long gc = gcMillis();
+                System.out.printf("%8d %10.0f %10.1f %10.1f %10.1f %10.1f %8d%n",
+                    (System.nanoTime() - startNanos) / 1000000000L,
+                    (double)done.getCount() / interval,
+                    done.getValueAtPercentile(50) / 1000.0,
+                    done.getValueAtPercentile(99) / 1000.0,
+                    done.getValueAtPercentile(99.9) / 1000.0,
+                    done.getMax() / 1000.0, gc - lastGc);
+                lastGc = gc;
+            }
+        }, interval, interval, TimeUnit.SECONDS);
+
+        Thread[] workers = new Thread[threads];
+        for (int i = 0; i < threads; i++) {
+            final int worker = i;
+            workers[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    work(worker, startNanos);
+                }
+            }, "harness-worker-" + i);
+            workers[i].start();
+        }
+        long end = startNanos + duration * 1000000000L;
+        while (running && System.nanoTime() < end) {
+            Thread.sleep(100);
+            if (log != null && nextLogEntry.get() >= log.size()) {
+                break;
+            }
+        }
+        running = false;
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        scheduler.shutdownNow();
+        summary((System.nanoTime() - startNanos) / 1e9);
+    }
+
+    /**
+     * Helper method with the loop of a worker thread.
+     */
+    private void work(int worker, long startNanos) {
+        Random random = new Random(SEED + worker);
+        long period = rate > 0 ? 1000000000L * threads / rate : 0;
+        long intended = startNanos + (rate > 0 ? period * worker / threads
+                                               : 0);
+        while (running) {
+            Operation operation;
+            String argument = null;
+            if (log != null) {
+                int entry = nextLogEntry.getAndIncrement();
+                if (entry >= log.size()) {
+                    return;
+                }
+                String[] line = log.get(entry);
+                intended = startNanos + Long.parseLong(line[0]) * 1000000L;
+                operation = Operation.valueOf(line[1]);
+                argument = line.length > 2 ? line[2] : null;
+            } else {
+                operation = pick(random);
+                if (rate > 0) {
+                    intended += period;
+                }
+            }
+            long start;
+            if (log != null || rate > 0) {
+                waitUntil(intended);
+                start = intended;
+            } else {
+                start = System.nanoTime();
+            }
+            execute(operation, argument, random);
+            record(operation, start, System.nanoTime());
+        }
+    }
+
+    /**
+     * Helper method that runs a single operation.
+     */
+    private void execute(Operation operation, String argument,
+                         Random random) {
+        try {
+            switch (operation) {
+                case FUTURE_BY_CONTACT:
+                    manager.getFutureMeetingList(contact(argument, random));
+                    break;
+                case PAST_BY_CONTACT:
+                    manager.getPastMeetingList(contact(argument, random));
+                    break;
+                case BY_DAY:
+                    Calendar day = new GregorianCalendar();
+                    day.add(Calendar.DATE, argument != null
+                            ? Integer.parseInt(argument.trim())
+                            : random.nextInt(2 * DAYS + 1) - DAYS);
+                    manager.getFutureMeetingList(day);
+                    break;
+                case ADD_FUTURE_MEETING:
+                    Set<Contact> participants = new HashSet<Contact>();
+                    Calendar date = new GregorianCalendar();
+                    if (argument != null) {
+                        String[] parts = argument.split(" ");
+                        for (String id : parts[0].split(",")) {
+                            participants.add(contacts[
+                                Integer.parseInt(id.trim()) - 1]);
+                        }
+                        date.add(Calendar.MINUTE, Integer.parseInt(parts[1]));
+                    } else {
+                        participants.add(contact(null, random));
+                        participants.add(contact(null, random));
+                        date.add(Calendar.MINUTE, 1 + random.nextInt(525600));
+                    }
+                    manager.addFutureMeeting(participants, date);
+                    break;
+                case BY_NAME:
+                    manager.getContacts(argument != null ? argument
+                        : DatasetGenerator.nameOf(1 + random.nextInt(
+                              contacts.length)).substring(0, 5));
+                    break;
+                case FLUSH:
+                    manager.flush();
+                    break;
+                default:
+                    throw new IllegalStateException("Unknown operation!");
+            }
+        } catch (RuntimeException failed) {
+            errors.incrementAndGet();
+        }
+    }
+
+    /**
+     * Helper method that records the latency of an operation.
+     */
+    private void record(Operation operation, long start, long end) {
+        long latency = end - start;
+        totals.get(operation).record(latency);
+        current.record(latency);
+    }
+
+    /**
+     * Helper method that picks an operation according to the mix.
+     */
+    private Operation pick(Random random) {
+        int total = 0;
+        for (int weight : mix) {
+            total += weight;
+        }
+        int value = random.nextInt(total);
+        for (int i = 0; i < mix.length; i++) {
+            value -= mix[i];
+            if (value < 0) {
+                return Operation.values()[i];
+            }
+        }
+        return Operation.BY_DAY;
+    }
+
+    /**
+     * Helper method that returns the contact given
+     * by an argument, or a random contact.
+     */
+    private Contact contact(String argument, Random random) {
+        if (argument != null) {
+            return contacts[Integer.parseInt(argument.trim()) - 1];
+        }
+        return contacts[random.nextInt(contacts.length)];
+    }
+
+    /**
+     * Helper method that waits until the given time.
+     */
+    private void waitUntil(long nanos) {
+        long remaining;
+        while (running && (remaining = nanos - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(remaining);
+        }
+    }
+
+    /**
+     * Helper method that prints the summary of all operations.
+     */
+    private void summary(double seconds) {
+        System.out.printf("%nSummary after %.0f s, %d errors%n",
+                          seconds, errors.get());
+        System.out.printf("%-20s %10s %10s %10s %10s %10s %10s%n",
+                          "operation", "count", "ops/s", "p50[us]",
+                          "p99[us]", "p99.9[us]", "max[us]");
+        for (Operation operation : Operation.values()) {
+            LatencyHistogram histogram = totals.get(operation);
+            if (histogram.getCount() == 0) {
+                continue;
+            }
+            System.out.printf("%-20s %10d %10.0f %10.1f %10.1f %10.1f %10.1f%n",
+                operation, histogram.getCount(),
+                histogram.getCount() / seconds,
+                histogram.getValueAtPercentile(50) / 1000.0,
+                histogram.getValueAtPercentile(99) / 1000.0,
+                histogram.getValueAtPercentile(99.9) / 1000.0,
+                histogram.getMax() / 1000.0);
+        }
+    }
+
+    /**
+     * Helper method that returns the total GC time of the JVM.
+     */
+    private static long gcMillis() {
+        long total = 0;
+        for (GarbageCollectorMXBean gc
+                 : ManagementFactory.getGarbageCollectorMXBeans()) {
+            total += Math.max(0, gc.getCollectionTime());
+        }
+        return total;
+    }
+
+    /**
+     * Helper method that reads an operation log, splitting every line
+     * into the offset, the operation and the rest of the line.
+     */
+    private static List<String[]> readLog(String file) throws IOException {
+        List<String[]> entries = new ArrayList<String[]>();
+        try (BufferedReader in = new BufferedReader(new FileReader(file))) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                line = line.trim();
+                if (!line.isEmpty() && !line.startsWith("#")) {
+                    entries.add(line.split("\\s+", 3));
+                }
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Records latencies into one of two histograms, so that the report
+     * of an interval can take the samples recorded so far without
+     * losing any that are being recorded at the same time. Recordings
+     * are counted per phase; a swap starts a new phase and waits until
+     * the recordings of the old one have finished.
+     *
+     * IMPORTANT: Only one thread may swap, and the histogram it gets
+     *            is reused by the swap after the next one.
+     */
+    private static class IntervalRecorder {
+        private volatile LatencyHistogram active = new LatencyHistogram();
+        private LatencyHistogram spare = new LatencyHistogram();
+        // Recordings begun, negative in odd phases, and finished.
+        private final AtomicLong begun = new AtomicLong();
+        private final AtomicLong finishedEven = new AtomicLong();
+        private final AtomicLong finishedOdd = new AtomicLong(Long.MIN_VALUE);
+
+        /**
+         * Records a latency into the active histogram.
+         */
+        void record(long nanos) {
+            long phase = begun.getAndIncrement();
+            active.record(nanos);
+            (phase < 0 ? finishedOdd : finishedEven).getAndIncrement();
+        }
+
+        /**
+         * Returns the latencies recorded since the last swap and
+         * records into an empty histogram from now on.
+         */
+        LatencyHistogram swap() {
+            LatencyHistogram done = active;
+            spare.reset();
+            active = spare;
+            boolean toEven = begun.get() < 0;
+            long initial = toEven ? 0 : Long.MIN_VALUE;
+            (toEven ? finishedEven : finishedOdd).set(initial);
+            long begunBefore = begun.getAndSet(initial);
+            AtomicLong finished = toEven ? finishedOdd : finishedEven;
+            while (finished.get() != begunBefore) {
+                Thread.yield();
+            }
+            spare = done;
+            return done;
+        }
+    }
+}
@@ -0,0 +1,116 @@
+import java.util.*;
+import java.util.concurrent.*;
+/**
+ * Measures the speedup of parallel full scans against the number of
+ * cores used. For 1, 2, 4, ... up to all available cores, it runs
+ * the scans in a ForkJoin pool of that size and prints the average
+ * time per scan and the speedup over a single core.
+ *
+ * Usage: java ParallelScanBenchmark [meetings] [contacts] [repetitions]
+ *
+ * @author Stefan E. Mayer
+ * @version 1.0
+ */
+public class ParallelScanBenchmark {
+    private static final int WARMUP_ROUNDS = 5;
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args number of meetings, number of contacts
+     *             and number of repetitions (all optional)
+     * @throws Exception if a scan fails
+     */
+    public static void main(String[] args) throws Exception {
+        int meetings = args.length > 0 ? Integer.parseInt(args[0]) : 2000000;
+        int contacts = args.length > 1 ? Integer.parseInt(args[1]) : 1000000;
+        int repetitions = args.length > 2 ? Integer.parseInt(args[2]) : 20;
+
+        final MeetingColumns columns = new MeetingColumns();
+        final List<Contact> people = new ArrayList<Contact>();
+        Random random = new Random(42);
+        for (int id = 1; id <= contacts; id++) {
+            people.add(new ContactImpl(id, "contact" + id, ""));
+        }
+        long start = new GregorianCalendar(2015, 0, 1).getTimeInMillis();
+        for (int id = 1; id <= meetings; id++) {
+            Set<Contact> participants = new HashSet<Contact>();
+            participants.add(people.get(random.nextInt(contacts)));
+            Calendar date = new GregorianCalendar();
+            date.setTimeInMillis(start + random.nextInt(365 * 24) * 3600000L);
+            columns.add(new FutureMeetingImpl(id, participants, date));
+        }
+        final long from = start + 100 * 24 * 3600000L;
+        final long to = start + 101 * 24 * 3600000L;
+
+        // The manager is never flushed, it must not find a config file.
+        java.io.File config = java.io.File.createTempFile("benchmark", ".txt");
+        config.delete();
+        final ContactManagerImpl manager = new ContactManagerImpl(config);
+        for (int id = 1; id <= contacts; id++) {
+            manager.addNewContact("contact" + id, "");
+        }
+
+        int cores = Runtime.getRuntime().availableProcessors();
+        System.out.printf("%d meetings, %d contacts, %d cores%n",
+                          meetings, contacts, cores);
+        System.out.printf("%-8s %-26s %10s %8s%n",
+                          "threads", "scan", "ms/scan", "speedup");
+
+        columns.setParallelThreshold(Math.max(1, meetings / (4 * cores)));
+        manager.setParallelThreshold(Math.max(1, contacts / (4 * cores)));
+        Map<String, Double> singleCore = new HashMap<String, Double>();
+        List<Integer> threadCounts = new ArrayList<Integer>();
+        for (int threads = 1; threads < cores; threads *= 2) {
+            threadCounts.add(threads);
+        }
+        threadCounts.add(cores);
+        for (int threads : threadCounts) {
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            report(pool, threads, "columns.findIds(window)", repetitions,
+                   singleCore, new Callable<Object>() {
+                @Override
+                public Object call() {
+                    return columns.findIds(from, to);
+                }
+            });
+            report(pool, threads, "columns.findIds(contact)", repetitions,
+                   singleCore, new Callable<Object>() {
+                @Override
+                public Object call() {
+                    return columns.findIds(7, false);
+                }
+            });
+            report(pool, threads, "getContacts(String)", repetitions,
+                   singleCore, new Callable<Object>() {
+                @Override
+                public Object call() {
+                    return manager.getContacts("99");
+                }
+            });
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Helper method that times a scan running inside a pool
+     * and prints the result.
+     */
+    private static void report(ForkJoinPool pool, int threads, String name,
+                               int repetitions, Map<String, Double> baseline,
+                               Callable<Object> scan) throws Exception {
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            pool.submit(scan).get();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < repetitions; i++) {
+            pool.submit(scan).get();
+        }
+        double millis = (System.nanoTime() - start) / 1e6 / repetitions;
+        if (threads == 1) {
+            baseline.put(name, millis);
+        }
+        System.out.printf("%-8d %-26s %10.3f %8.2f%n",
+                          threads, name, millis, baseline.get(name) / millis);
+    }
+}
@@ -0,0 +1,171 @@
+package benchmark;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * JMH benchmarks for every ContactManager operation, run against
+ * datasets of 10^3 up to 10^5 contacts and meetings by default.
+ *
+ * Select other sizes with the usual JMH options, e.g.
+ * -p contacts=1000000,10000000 -p meetings=1000000,10000000 for the
+ * large datasets, which need a large heap (-jvmArgs -Xmx24g) and take
+ * hours for all benchmarks, so best select some of them as well, e.g.
+ * getPastMeetingList. Results are written as JSON to jmh-result.json,
+ * unless -rf/-rff say otherwise, so that runs can be compared against
+ * each other.
+ *
+ * The meeting list benchmarks run with and without the query cache
+ * (-p cached=false measures the queries themselves).
+ *
+ * @author Stefan E. Mayer
+ * @version 1.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ContactManagerBenchmark {
+    private static final long SEED = 42;
+    private static final String WORKLOAD = "ContactManagerWorkload";
+
+    @Param({"1000", "10000", "100000"})
+    private int contacts;
+
+    @Param({"1000", "10000", "100000"})
+    private int meetings;
+
+    private Workload workload;
+    private int next;
+
+    /**
+     * Generates the dataset of this trial.
+     *
+     * @throws ReflectiveOperationException if the workload is missing
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws ReflectiveOperationException {
+        workload = (Workload)Class.forName(WORKLOAD)
+                                  .getDeclaredConstructor().newInstance();
+        workload.setUp(contacts, meetings, SEED);
+    }
+
+    /**
+     * Deletes the files of this trial.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        workload.tearDown();
+    }
+
+    @Benchmark
+    public Object getMeeting() {
+        return workload.getMeeting(1 + nextIndex(meetings));
+    }
+
+    @Benchmark
+    public Object getContactsById() {
+        return workload.getContacts(1 + nextIndex(contacts),
+                                    1 + nextIndex(contacts));
+    }
+
+    @Benchmark
+    public Object getContactsByName() {
+        // Generated names contain a first name, a last name and a company
+        return workload.getContacts("Wood (Initech)");
+    }
+
+    @Benchmark
+    public Object getFutureMeetingListByContact(CacheMode mode) {
+        mode.prepare(workload);
+        return workload.getFutureMeetingList(1 + nextIndex(contacts));
+    }
+
+    @Benchmark
+    public Object getFutureMeetingListByDate(CacheMode mode) {
+        mode.prepare(workload);
+        return workload.getFutureMeetingListOnDay(nextIndex(1461) - 730);
+    }
+
+    @Benchmark
+    public Object getPastMeetingList(CacheMode mode) {
+        mode.prepare(workload);
+        return workload.getPastMeetingList(1 + nextIndex(contacts));
+    }
+
+    @Benchmark
+    public void addMeetingNotes() {
+        // Odd meeting IDs are past meetings
+        int id = 1 + 2 * nextIndex((meetings + 1) / 2);
+        workload.addMeetingNotes(id, "Notes updated by the benchmark.");
+    }
+
+    @Benchmark
+    @Measurement(iterations = 5, batchSize = 1)
+    public void flush() {
+        workload.flush();
+    }
+
+    @Benchmark
+    @Measurement(iterations = 5, batchSize = 1)
+    public Object load() {
+        return workload.load();
+    }
+
+    /**
+     * Runs the benchmarks, writing JSON results by default.
+     *
+     * @param args JMH command line options
+     * @throws Exception if the options are invalid or a benchmark fails
+     */
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+        OptionsBuilder options = new OptionsBuilder();
+        options.parent(commandLine);
+        if (!commandLine.getResultFormat().hasValue()) {
+            options.resultFormat(ResultFormatType.JSON);
+        }
+        if (!commandLine.getResult().hasValue()) {
+            options.result("jmh-result.json");
+        }
+        new Runner(options.build()).run();
+    }
+
+    /**
+     * Whether the meeting list benchmarks may answer from the query
+     * cache. Only those benchmarks use this state, so the others do not
+     * run once per mode.
+     */
+    @State(Scope.Benchmark)
+    public static class CacheMode {
+        @Param({"true", "false"})
+        private boolean cached;
+
+        /**
+         * Empties the query cache before a query that must not use it.
+         * With at most one cached result this takes next to no time.
+         *
+         * @param workload the workload
+         */
+        private void prepare(Workload workload) {
+            if (!cached) {
+                workload.clearQueryCache();
+            }
+        }
+    }
+
+    /**
+     * Helper method that cycles through the indexes 0 to bound - 1
+     * with a large stride, so that consecutive calls hit different data.
+     */
+    private int nextIndex(int bound) {
+        next = (next + 7919) % bound;
+        return next;
+    }
+}
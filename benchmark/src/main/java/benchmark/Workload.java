@@ -0,0 +1,104 @@
+package benchmark;
+
+/**
+ * The operations measured by ContactManagerBenchmark.
+ *
+ * JMH does not accept benchmarks in the default package, and classes
+ * in a named package cannot use the contact manager classes in the
+ * default package. The benchmarks therefore call the contact manager
+ * through this interface, implemented by ContactManagerWorkload in the
+ * default package. Contacts and meetings are passed by ID; the
+ * implementation resolves them in advance so lookups are not measured.
+ *
+ * @author Stefan E. Mayer
+ * @version 1.0
+ */
+public interface Workload {
+    /**
+     * Generates the dataset.
+     *
+     * @param contacts the number of contacts
+     * @param meetings the number of meetings
+     * @param seed the seed of the dataset generator
+     */
+    void setUp(int contacts, int meetings, long seed);
+
+    /**
+     * Deletes all files written by the workload.
+     */
+    void tearDown();
+
+    /**
+     * Calls ContactManager.getMeeting(int).
+     *
+     * @param id the ID of the meeting
+     * @return the result of the call
+     */
+    Object getMeeting(int id);
+
+    /**
+     * Calls ContactManager.getContacts(int...).
+     *
+     * @param ids the IDs of the contacts
+     * @return the result of the call
+     */
+    Object getContacts(int... ids);
+
+    /**
+     * Calls ContactManager.getContacts(String).
+     *
+     * @param name the string to search for
+     * @return the result of the call
+     */
+    Object getContacts(String name);
+
+    /**
+     * Calls ContactManager.getFutureMeetingList(Contact).
+     *
+     * @param contactId the ID of the contact
+     * @return the result of the call
+     */
+    Object getFutureMeetingList(int contactId);
+
+    /**
+     * Calls ContactManager.getFutureMeetingList(Calendar).
+     *
+     * @param dayOffset the date as days from today, may be negative
+     * @return the result of the call
+     */
+    Object getFutureMeetingListOnDay(int dayOffset);
+
+    /**
+     * Calls ContactManager.getPastMeetingList(Contact).
+     *
+     * @param contactId the ID of the contact
+     * @return the result of the call
+     */
+    Object getPastMeetingList(int contactId);
+
+    /**
+     * Removes all results from the query cache of the contact manager,
+     * so that the next meeting list query is computed.
+     */
+    void clearQueryCache();
+
+    /**
+     * Calls ContactManager.addMeetingNotes(int, String).
+     *
+     * @param id the ID of a past meeting
+     * @param text the notes
+     */
+    void addMeetingNotes(int id, String text);
+
+    /**
+     * Calls ContactManager.flush().
+     */
+    void flush();
+
+    /**
+     * Loads a new contact manager from the file written by flush().
+     *
+     * @return the loaded contact manager
+     */
+    Object load();
+}